@@ -159,7 +159,7 @@ public class ClusterStateGenerator {
         baseline.setDescription(wanted.getDescription());
     }
 
-    private static NodeState computeEffectiveNodeState(final NodeInfo nodeInfo, final Params params) {
+    static NodeState computeEffectiveNodeState(final NodeInfo nodeInfo, final Params params) {
         final NodeState reported = nodeInfo.getReportedState();
         final NodeState wanted   = nodeInfo.getWantedState();
         final NodeState baseline = reported.clone();
@@ -265,14 +265,18 @@ public class ClusterStateGenerator {
 
         for (Integer idx : nodesToTakeDown) {
             final Node node = storageNode(idx);
-            final NodeState newState = new NodeState(NodeType.STORAGE, State.DOWN);
-            newState.setDescription("group node availability below configured threshold");
-            workingState.setNodeState(node, newState);
+            workingState.setNodeState(node, groupTakenDownNodeState());
             nodeStateReasons.put(node, NodeStateReason.GROUP_IS_DOWN);
         }
     }
 
-    private static Node storageNode(int index) {
+    static NodeState groupTakenDownNodeState() {
+        final NodeState newState = new NodeState(NodeType.STORAGE, State.DOWN);
+        newState.setDescription("group node availability below configured threshold");
+        return newState;
+    }
+
+    static Node storageNode(int index) {
         return new Node(NodeType.STORAGE, index);
     }
 
@@ -285,13 +289,20 @@ public class ClusterStateGenerator {
                                                  final ClusterState state,
                                                  final Params params)
     {
-        int bitCount = params.idealDistributionBits;
         final Optional<Integer> minBits = cluster.getConfiguredNodes().values().stream()
                 .map(configuredNode -> cluster.getNodeInfo(storageNode(configuredNode.index())))
                 .filter(node -> state.getNodeState(node.getNode()).getState().oneOf("iur"))
                 .map(nodeInfo -> nodeInfo.getReportedState().getMinUsedBits())
                 .min(Integer::compare);
+        return inferDistributionBitCount(minBits, params);
+    }
 
+    /**
+     * Returns the distribution bit count to use given the lowest min used bits
+     * reported by the storage nodes which are available.
+     */
+    static int inferDistributionBitCount(final Optional<Integer> minBits, final Params params) {
+        int bitCount = params.idealDistributionBits;
         if (minBits.isPresent() && minBits.get() < bitCount) {
             bitCount = minBits.get();
         }
@@ -302,7 +313,7 @@ public class ClusterStateGenerator {
         return bitCount;
     }
 
-    private static boolean nodeStateIsConsideredAvailable(final NodeState ns) {
+    static boolean nodeStateIsConsideredAvailable(final NodeState ns) {
         return (ns.getState() == State.UP
                 || ns.getState() == State.RETIRED
                 || ns.getState() == State.INITIALIZING);
@@ -326,7 +337,14 @@ public class ClusterStateGenerator {
         // There's a 1-1 relationship between distributors and storage nodes, so don't need to
         // keep track of separate node counts for computing availability ratios.
         final long nodeCount = cluster.getConfiguredNodes().size();
+        return clusterDownReason(upStorageCount, upDistributorCount, nodeCount, params);
+    }
 
+    static Optional<ClusterStateReason> clusterDownReason(final long upStorageCount,
+                                                          final long upDistributorCount,
+                                                          final long nodeCount,
+                                                          final Params params)
+    {
         if (upStorageCount < params.minStorageNodesUp) {
             return Optional.of(ClusterStateReason.TOO_FEW_STORAGE_NODES_AVAILABLE);
         }
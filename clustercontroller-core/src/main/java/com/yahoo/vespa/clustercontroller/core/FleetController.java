@@ -74,6 +74,7 @@ public class FleetController implements NodeStateOrHostInfoChangeHandler, NodeAd
     private long nextConfigGeneration = -1;
     private Queue<RemoteClusterControllerTask> remoteTasks = new LinkedList<>();
     private final MetricUpdater metricUpdater;
+    private final IncrementalClusterStateGenerator clusterStateGenerator = new IncrementalClusterStateGenerator();
 
     private boolean isMaster = false;
     private boolean isStateGatherer = false;
@@ -825,7 +826,11 @@ public class FleetController implements NodeStateOrHostInfoChangeHandler, NodeAd
         params.currentTimeInMilllis(timer.getCurrentTimeInMillis())
                 .cluster(cluster)
                 .lowestObservedDistributionBitCount(stateVersionTracker.getLowestObservedDistributionBits());
-        return ClusterStateGenerator.generatedStateFrom(params);
+        final long startTimeMs = timer.getCurrentTimeInMillis();
+        final AnnotatedClusterState state = clusterStateGenerator.generatedStateFrom(params);
+        metricUpdater.updateClusterStateGenerationMetrics(timer.getCurrentTimeInMillis() - startTimeMs,
+                                                          clusterStateGenerator.getLastReevaluatedNodeCount());
+        return state;
     }
 
     private void emitEventsForAlteredStateEdges(final AnnotatedClusterState fromState,
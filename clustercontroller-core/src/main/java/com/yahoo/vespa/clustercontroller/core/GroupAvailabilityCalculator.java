@@ -106,6 +106,22 @@ class GroupAvailabilityCalculator {
         return root.isLeafGroup();
     }
 
+    /** Returns whether implicit group takedown applies to the distribution of this */
+    boolean appliesToDistribution() {
+        // Implicit group takedown only applies to hierarchic cluster setups.
+        return distribution != null && ! isFlatCluster(distribution.getRootGroup());
+    }
+
+    /**
+     * Returns the indices of the nodes of the given leaf group which should be set down
+     * in the given state because of too low availability in the group.
+     */
+    Set<Integer> nodesInGroupThatShouldBeDown(ClusterState state, Group leafGroup) {
+        InsufficientAvailabilityGroupVisitor visitor = new InsufficientAvailabilityGroupVisitor(state);
+        visitor.visitGroup(leafGroup);
+        return visitor.implicitlyDownNodeIndices();
+    }
+
     public Set<Integer> nodesThatShouldBeDown(ClusterState state) {
         if (distribution == null) { // FIXME: for tests that don't set distribution properly!
             return Collections.emptySet();
@@ -0,0 +1,322 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.clustercontroller.core;
+
+import com.yahoo.vdslib.distribution.ConfiguredNode;
+import com.yahoo.vdslib.distribution.Distribution;
+import com.yahoo.vdslib.distribution.Group;
+import com.yahoo.vdslib.state.ClusterState;
+import com.yahoo.vdslib.state.Node;
+import com.yahoo.vdslib.state.NodeState;
+import com.yahoo.vdslib.state.NodeType;
+import com.yahoo.vdslib.state.State;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Cluster state generator which generates the same states as {@link ClusterStateGenerator},
+ * but which remembers the effective state of each node between invocations, and only
+ * re-evaluates the nodes whose inputs (reported and wanted state, crash count, timers etc.)
+ * have changed, or whose state depends on a timer which has expired since the node was last
+ * evaluated. Group availability is only re-evaluated for the groups containing nodes whose
+ * effective state changed, and the counts of available nodes and the lowest min used bits
+ * which decide cluster state and distribution bits are maintained as node states change.
+ *
+ * Checking whether the inputs of a node have changed is still done for every node,
+ * but that is much cheaper than computing the state of the node and building
+ * the cluster state from scratch.
+ *
+ * Not thread safe; this is intended to be owned by the fleet controller thread.
+ */
+class IncrementalClusterStateGenerator {
+
+    private ContentCluster cluster = null;
+    private int maxPrematureCrashes;
+    private int maxInitProgressTimeMs;
+    private Map<NodeType, Integer> transitionTimes;
+    private Distribution distribution = null;
+    private double minNodeRatioPerGroup;
+
+    private final Map<NodeInfo, CachedNode> nodes = new IdentityHashMap<>();
+    private final Map<Integer, CachedNode> storageNodes = new HashMap<>();
+    private ClusterState baseState;
+
+    private GroupAvailabilityCalculator groupAvailabilityCalculator;
+    /** The leaf group of each storage node index, or null when group takedown does not apply */
+    private Map<Integer, Group> leafGroups;
+    private final Map<Group, Set<Integer>> groupTakedowns = new IdentityHashMap<>();
+
+    private int availableStorageNodes;
+    private int availableDistributorNodes;
+    /** Multiset of the min used bits of the available storage nodes */
+    private final TreeMap<Integer, Integer> minUsedBitsCounts = new TreeMap<>();
+
+    private int lastReevaluatedNodeCount = 0;
+
+    /** Returns the number of nodes which were evaluated in the last invocation of generatedStateFrom */
+    int getLastReevaluatedNodeCount() { return lastReevaluatedNodeCount; }
+
+    AnnotatedClusterState generatedStateFrom(final ClusterStateGenerator.Params params) {
+        if (params.cluster != cluster || ! sameNodeEvaluationParams(params)) {
+            reset(params);
+        }
+        if (groupAvailabilityCalculator == null
+                || params.cluster.getDistribution() != distribution
+                || params.minNodeRatioPerGroup != minNodeRatioPerGroup)
+        {
+            distribution = params.cluster.getDistribution();
+            minNodeRatioPerGroup = params.minNodeRatioPerGroup;
+            groupAvailabilityCalculator = new GroupAvailabilityCalculator.Builder()
+                    .withMinNodeRatioPerGroup(minNodeRatioPerGroup)
+                    .withDistribution(distribution)
+                    .build();
+            leafGroups = null;
+        }
+
+        lastReevaluatedNodeCount = 0;
+        final Set<Group> changedGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+        int seenNodes = 0;
+        for (final NodeInfo nodeInfo : cluster.getNodeInfo()) {
+            CachedNode node = nodes.get(nodeInfo);
+            if (node == null) {
+                node = new CachedNode(nodeInfo);
+                nodes.put(nodeInfo, node);
+                if (nodeInfo.isStorage()) {
+                    storageNodes.put(nodeInfo.getNodeIndex(), node);
+                }
+            }
+            if (node.mustBeReevaluated(params.currentTimeInMillis)) {
+                reevaluate(node, params, changedGroups);
+            }
+            ++seenNodes;
+        }
+        if (seenNodes != nodes.size()) { // Nodes were removed; rebuild everything rather than shrinking the state
+            reset(params);
+            return generatedStateFrom(params);
+        }
+
+        updateGroupTakedowns(changedGroups);
+        return currentState(params);
+    }
+
+    private boolean sameNodeEvaluationParams(final ClusterStateGenerator.Params params) {
+        return params.maxPrematureCrashes == maxPrematureCrashes
+                && params.maxInitProgressTimeMs == maxInitProgressTimeMs
+                && params.transitionTimes.equals(transitionTimes);
+    }
+
+    private void reset(final ClusterStateGenerator.Params params) {
+        cluster = params.cluster;
+        maxPrematureCrashes = params.maxPrematureCrashes;
+        maxInitProgressTimeMs = params.maxInitProgressTimeMs;
+        transitionTimes = new TreeMap<>(params.transitionTimes);
+        distribution = null;
+        groupAvailabilityCalculator = null;
+        nodes.clear();
+        storageNodes.clear();
+        baseState = ClusterState.emptyState();
+        leafGroups = null;
+        groupTakedowns.clear();
+        availableStorageNodes = 0;
+        availableDistributorNodes = 0;
+        minUsedBitsCounts.clear();
+    }
+
+    private void reevaluate(final CachedNode node, final ClusterStateGenerator.Params params, Set<Group> changedGroups) {
+        ++lastReevaluatedNodeCount;
+        node.snapshotInputs(params);
+        final NodeState effective = ClusterStateGenerator.computeEffectiveNodeState(node.info, params);
+        if (sameState(effective, node.effective)) {
+            return;
+        }
+        removeContribution(node);
+        node.effective = effective;
+        baseState.setNodeState(node.info.getNode(), effective);
+        addContribution(node);
+        if (node.info.isStorage() && leafGroups != null) {
+            final Group group = leafGroups.get(node.info.getNodeIndex());
+            if (group != null) {
+                changedGroups.add(group);
+            }
+        }
+    }
+
+    private void updateGroupTakedowns(Set<Group> changedGroups) {
+        if (leafGroups == null) {
+            leafGroups = findLeafGroups();
+            changedGroups.clear();
+            changedGroups.addAll(leafGroups.values());
+            for (Set<Integer> takenDown : groupTakedowns.values()) {
+                setTakenDown(takenDown, false);
+            }
+            groupTakedowns.clear();
+        }
+        for (Group group : changedGroups) {
+            final Set<Integer> previous = groupTakedowns.getOrDefault(group, Collections.emptySet());
+            final Set<Integer> current = groupAvailabilityCalculator.nodesInGroupThatShouldBeDown(baseState, group);
+            if (current.equals(previous)) {
+                continue;
+            }
+            setTakenDown(previous, false);
+            setTakenDown(current, true);
+            if (current.isEmpty()) {
+                groupTakedowns.remove(group);
+            } else {
+                groupTakedowns.put(group, current);
+            }
+        }
+    }
+
+    private Map<Integer, Group> findLeafGroups() {
+        final Map<Integer, Group> leafGroups = new HashMap<>();
+        if (groupAvailabilityCalculator.appliesToDistribution()) {
+            distribution.visitGroups(group -> {
+                if (group.isLeafGroup()) {
+                    for (ConfiguredNode node : group.getNodes()) {
+                        leafGroups.put(node.index(), group);
+                    }
+                }
+                return true;
+            });
+        }
+        return leafGroups;
+    }
+
+    private void setTakenDown(final Set<Integer> indices, boolean takenDown) {
+        for (Integer index : indices) {
+            final CachedNode node = storageNodes.get(index);
+            if (node == null) continue; // Configured in the distribution, but not (yet) in the cluster
+            removeContribution(node);
+            node.takenDown = takenDown;
+            addContribution(node);
+        }
+    }
+
+    private AnnotatedClusterState currentState(final ClusterStateGenerator.Params params) {
+        final ClusterState workingState = baseState.clone();
+        final Map<Node, NodeStateReason> nodeStateReasons = new HashMap<>();
+        for (Set<Integer> takenDown : groupTakedowns.values()) {
+            for (Integer index : takenDown) {
+                final Node node = ClusterStateGenerator.storageNode(index);
+                workingState.setNodeState(node, ClusterStateGenerator.groupTakenDownNodeState());
+                nodeStateReasons.put(node, NodeStateReason.GROUP_IS_DOWN);
+            }
+        }
+
+        final Optional<ClusterStateReason> reasonToBeDown = ClusterStateGenerator.clusterDownReason(
+                availableStorageNodes, availableDistributorNodes, cluster.getConfiguredNodes().size(), params);
+        if (reasonToBeDown.isPresent()) {
+            workingState.setClusterState(State.DOWN);
+        }
+        final Optional<Integer> minBits = minUsedBitsCounts.isEmpty() ? Optional.empty() : Optional.of(minUsedBitsCounts.firstKey());
+        workingState.setDistributionBits(ClusterStateGenerator.inferDistributionBitCount(minBits, params));
+
+        return new AnnotatedClusterState(workingState, reasonToBeDown, nodeStateReasons);
+    }
+
+    private void removeContribution(final CachedNode node) {
+        updateContribution(node, -1);
+    }
+
+    private void addContribution(final CachedNode node) {
+        updateContribution(node, 1);
+    }
+
+    /** Adds or removes the given node from the available node counts and min used bits */
+    private void updateContribution(final CachedNode node, int delta) {
+        if (node.effective == null) return; // Not evaluated yet
+        final boolean storage = node.info.isStorage();
+        final NodeState finalState = node.takenDown ? ClusterStateGenerator.groupTakenDownNodeState() : node.effective;
+        if (ClusterStateGenerator.nodeStateIsConsideredAvailable(finalState)) {
+            if (storage) {
+                availableStorageNodes += delta;
+            } else {
+                availableDistributorNodes += delta;
+            }
+        }
+        if (storage && finalState.getState().oneOf("iur")) {
+            // The effective state has the min used bits of the reported state
+            minUsedBitsCounts.merge(node.effective.getMinUsedBits(), delta, Integer::sum);
+            minUsedBitsCounts.remove(node.effective.getMinUsedBits(), 0);
+        }
+    }
+
+    private static boolean sameState(final NodeState a, final NodeState b) {
+        return a != null && b != null && a.equals(b) && Objects.equals(a.getDescription(), b.getDescription());
+    }
+
+    /** A node, the inputs its effective state was last computed from, and that state */
+    private static class CachedNode {
+
+        final NodeInfo info;
+        NodeState effective = null;
+        boolean takenDown = false;
+
+        private NodeState reported;
+        private NodeState userWanted;
+        private boolean configuredRetired;
+        private int prematureCrashCount;
+        private boolean recentlyObservedUnstableDuringInit;
+        private long startTimestamp;
+        private long transitionTime;
+        private long initProgressTime;
+        private long evaluatedAt;
+        /** The time at which a timer the effective state depends on expires */
+        private long reevaluateAt;
+
+        CachedNode(NodeInfo info) {
+            this.info = info;
+        }
+
+        boolean mustBeReevaluated(long currentTimeMs) {
+            return effective == null
+                    || currentTimeMs >= reevaluateAt
+                    || currentTimeMs < evaluatedAt
+                    || ! sameState(info.getReportedState(), reported)
+                    || ! sameState(info.getUserWantedState(), userWanted)
+                    || info.isConfiguredRetired() != configuredRetired
+                    || info.getPrematureCrashCount() != prematureCrashCount
+                    || info.recentlyObservedUnstableDuringInit() != recentlyObservedUnstableDuringInit
+                    || info.getStartTimestamp() != startTimestamp
+                    || info.getTransitionTime() != transitionTime
+                    || info.getInitProgressTime() != initProgressTime;
+        }
+
+        void snapshotInputs(final ClusterStateGenerator.Params params) {
+            // Reported states may be modified in place, so keep a copy
+            reported = info.getReportedState().clone();
+            userWanted = info.getUserWantedState().clone();
+            configuredRetired = info.isConfiguredRetired();
+            prematureCrashCount = info.getPrematureCrashCount();
+            recentlyObservedUnstableDuringInit = info.recentlyObservedUnstableDuringInit();
+            startTimestamp = info.getStartTimestamp();
+            transitionTime = info.getTransitionTime();
+            initProgressTime = info.getInitProgressTime();
+            evaluatedAt = params.currentTimeInMillis;
+
+            // The effective state only changes with time when one of these deadlines passes
+            reevaluateAt = Long.MAX_VALUE;
+            if (info.isStorage()) {
+                if (params.maxInitProgressTimeMs > 0) {
+                    reevaluateAt = earliestFutureTime(reevaluateAt, initProgressTime + params.maxInitProgressTimeMs);
+                }
+                final Integer transitionTimeMs = params.transitionTimes.get(info.getNode().getType());
+                if (transitionTimeMs != null && transitionTimeMs != 0) {
+                    reevaluateAt = earliestFutureTime(reevaluateAt, transitionTime + transitionTimeMs);
+                }
+            }
+        }
+
+        private long earliestFutureTime(long current, long deadline) {
+            return deadline > evaluatedAt ? Math.min(current, deadline) : current;
+        }
+
+    }
+
+}
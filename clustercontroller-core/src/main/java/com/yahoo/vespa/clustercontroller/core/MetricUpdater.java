@@ -80,6 +80,11 @@ public class MetricUpdater {
         }
     }
 
+    public void updateClusterStateGenerationMetrics(long millis, int reevaluatedNodes) {
+        metricReporter.set("state-generation-time-ms", millis);
+        metricReporter.set("state-generation-reevaluated-nodes", reevaluatedNodes);
+    }
+
     public void recordNewNodeEvent() {
         // TODO(hakonhall): Replace add() with a persistent aggregate metric.
         metricReporter.add("node-event", 1);
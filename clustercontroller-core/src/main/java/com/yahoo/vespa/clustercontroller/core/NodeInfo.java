@@ -174,6 +174,8 @@ abstract public class NodeInfo implements Comparable<NodeInfo> {
         this.configuredRetired = retired;
     }
 
+    public boolean isConfiguredRetired() { return configuredRetired; }
+
     public void setNextGetStateAttemptTime(long timeInMillis) {
         nextAttemptTime = timeInMillis;
     }
@@ -0,0 +1,201 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.clustercontroller.core;
+
+import com.yahoo.vdslib.distribution.ConfiguredNode;
+import com.yahoo.vdslib.state.Node;
+import com.yahoo.vdslib.state.NodeState;
+import com.yahoo.vdslib.state.NodeType;
+import com.yahoo.vdslib.state.State;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalClusterStateGeneratorTest {
+
+    private static void bringEntireClusterUp(ClusterFixture fixture) {
+        for (NodeInfo nodeInfo : fixture.cluster.getNodeInfo()) {
+            nodeInfo.setReportedState(new NodeState(nodeInfo.getNode().getType(), State.UP), 0);
+        }
+    }
+
+    private static void assertSameAsFullGeneration(ClusterFixture fixture, IncrementalClusterStateGenerator generator) {
+        fixture.params.currentTimeInMilllis(fixture.timer.getCurrentTimeInMillis());
+        final AnnotatedClusterState expected = ClusterStateGenerator.generatedStateFrom(fixture.params);
+        final AnnotatedClusterState actual = generator.generatedStateFrom(fixture.params);
+        assertThat(actual.getClusterState().toString(true), equalTo(expected.getClusterState().toString(true)));
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    public void only_changed_nodes_are_reevaluated() {
+        final ClusterFixture fixture = ClusterFixture.forFlatCluster(100);
+        bringEntireClusterUp(fixture);
+        final IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+
+        assertSameAsFullGeneration(fixture, generator);
+        assertThat(generator.getLastReevaluatedNodeCount(), is(200));
+
+        assertSameAsFullGeneration(fixture, generator);
+        assertThat(generator.getLastReevaluatedNodeCount(), is(0));
+
+        fixture.cluster.getNodeInfo(new Node(NodeType.STORAGE, 17)).setReportedState(new NodeState(NodeType.STORAGE, State.DOWN), 0);
+        fixture.cluster.getNodeInfo(new Node(NodeType.DISTRIBUTOR, 3)).setWantedState(new NodeState(NodeType.DISTRIBUTOR, State.DOWN));
+        assertSameAsFullGeneration(fixture, generator);
+        assertThat(generator.getLastReevaluatedNodeCount(), is(2));
+    }
+
+    @Test
+    public void nodes_with_expiring_timers_are_reevaluated() {
+        final ClusterFixture fixture = ClusterFixture.forFlatCluster(10);
+        fixture.enableTransientMaintenanceModeOnDown(1000);
+        bringEntireClusterUp(fixture);
+        final IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+        assertSameAsFullGeneration(fixture, generator);
+
+        final NodeInfo node = fixture.cluster.getNodeInfo(new Node(NodeType.STORAGE, 5));
+        node.setReportedState(new NodeState(NodeType.STORAGE, State.DOWN), fixture.timer.getCurrentTimeInMillis());
+        node.setTransitionTime(fixture.timer.getCurrentTimeInMillis());
+        assertSameAsFullGeneration(fixture, generator);
+        assertThat(generator.generatedStateFrom(fixture.params).toString(), equalTo("distributor:10 storage:10 .5.s:m"));
+
+        fixture.timer.advanceTime(999);
+        assertSameAsFullGeneration(fixture, generator);
+        assertThat(generator.getLastReevaluatedNodeCount(), is(0));
+
+        fixture.timer.advanceTime(1);
+        assertSameAsFullGeneration(fixture, generator);
+        assertThat(generator.getLastReevaluatedNodeCount(), is(1));
+        assertThat(generator.generatedStateFrom(fixture.params).toString(), equalTo("distributor:10 storage:10 .5.s:d"));
+    }
+
+    @Test
+    public void changed_configured_nodes_are_handled() {
+        final ClusterFixture fixture = ClusterFixture.forFlatCluster(5);
+        bringEntireClusterUp(fixture);
+        final IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+        assertSameAsFullGeneration(fixture, generator);
+
+        fixture.markNodeAsConfigRetired(2);
+        assertSameAsFullGeneration(fixture, generator);
+
+        final Set<ConfiguredNode> nodes = new HashSet<>(fixture.cluster.getConfiguredNodes().values());
+        nodes.remove(new ConfiguredNode(4, false));
+        fixture.cluster.setNodes(nodes);
+        assertSameAsFullGeneration(fixture, generator);
+
+        nodes.add(new ConfiguredNode(7, false));
+        fixture.cluster.setNodes(nodes);
+        assertSameAsFullGeneration(fixture, generator);
+    }
+
+    private static void randomlyChangeNode(ClusterFixture fixture, Random random, int nodeCount) {
+        final long now = fixture.timer.getCurrentTimeInMillis();
+        final NodeType type = random.nextBoolean() ? NodeType.STORAGE : NodeType.DISTRIBUTOR;
+        final NodeInfo nodeInfo = fixture.cluster.getNodeInfo(new Node(type, random.nextInt(nodeCount)));
+        switch (random.nextInt(6)) {
+            case 0: case 1:
+                final State[] reportable = type == NodeType.STORAGE
+                        ? new State[] { State.UP, State.UP, State.DOWN, State.STOPPING, State.INITIALIZING }
+                        : new State[] { State.UP, State.UP, State.DOWN, State.STOPPING };
+                final NodeState reported = new NodeState(type, reportable[random.nextInt(reportable.length)]);
+                if (reported.getState() == State.INITIALIZING) {
+                    reported.setInitProgress(random.nextDouble());
+                    nodeInfo.setInitProgressTime(now);
+                }
+                if (type == NodeType.STORAGE) {
+                    reported.setMinUsedBits(14 + random.nextInt(3));
+                }
+                reported.setDescription("reported " + random.nextInt(3));
+                nodeInfo.setReportedState(reported, now);
+                if (reported.getState().oneOf("sd")) {
+                    nodeInfo.setTransitionTime(now);
+                }
+                break;
+            case 2:
+                final State[] wantable = type == NodeType.STORAGE
+                        ? new State[] { State.UP, State.UP, State.MAINTENANCE, State.RETIRED, State.DOWN }
+                        : new State[] { State.UP, State.UP, State.DOWN };
+                final NodeState wanted = new NodeState(type, wantable[random.nextInt(wantable.length)]);
+                wanted.setDescription("wanted");
+                nodeInfo.setWantedState(wanted);
+                break;
+            case 3:
+                nodeInfo.setPrematureCrashCount(random.nextInt(4));
+                break;
+            case 4:
+                nodeInfo.setStartTimestamp(random.nextInt(3));
+                break;
+            default:
+                // Only time passes
+        }
+    }
+
+    private static final int groupCount = 40;
+    private static final int nodesPerGroup = 50;
+    private static final int nodeCount = groupCount * nodesPerGroup;
+    private static final int steps = 500;
+
+    private static ClusterFixture largeHierarchicCluster() {
+        final ClusterFixture fixture = ClusterFixture.forHierarchicCluster(
+                DistributionBuilder.withGroups(groupCount).eachWithNodeCount(nodesPerGroup));
+        fixture.setMinNodeRatioPerGroup(0.95);
+        fixture.setMinNodesUp(1, 1, 0.5, 0.99);
+        fixture.enableTransientMaintenanceModeOnDown(2000);
+        fixture.params.maxInitProgressTime(3000).maxPrematureCrashes(2);
+        bringEntireClusterUp(fixture);
+        return fixture;
+    }
+
+    /** Applies the same sequence of random changes to a new cluster, and returns the state generated after each */
+    private static List<AnnotatedClusterState> simulate(Function<ClusterStateGenerator.Params, AnnotatedClusterState> generator) {
+        final ClusterFixture fixture = largeHierarchicCluster();
+        final Random random = new Random(1234);
+        final List<AnnotatedClusterState> states = new ArrayList<>();
+        for (int step = 0; step < steps; ++step) {
+            for (int i = random.nextInt(4); i > 0; --i) {
+                randomlyChangeNode(fixture, random, nodeCount);
+            }
+            fixture.timer.advanceTime(random.nextInt(500));
+            fixture.params.currentTimeInMilllis(fixture.timer.getCurrentTimeInMillis());
+            states.add(generator.apply(fixture.params));
+        }
+        return states;
+    }
+
+    /**
+     * Simulates a large hierarchic cluster where a few nodes change between each
+     * generation, and verifies that the incremental generator gives the same
+     * states as generating them from scratch.
+     */
+    @Test
+    public void simulated_large_cluster_gives_same_states_as_full_generation() {
+        final List<AnnotatedClusterState> expected = simulate(ClusterStateGenerator::generatedStateFrom);
+
+        final IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+        final long[] reevaluatedNodes = new long[1];
+        final List<AnnotatedClusterState> actual = simulate(params -> {
+            final AnnotatedClusterState state = generator.generatedStateFrom(params);
+            reevaluatedNodes[0] += generator.getLastReevaluatedNodeCount();
+            return state;
+        });
+
+        for (int step = 0; step < steps; ++step) {
+            assertThat("Step " + step, actual.get(step).getClusterState().toString(true),
+                       equalTo(expected.get(step).getClusterState().toString(true)));
+            assertThat("Step " + step, actual.get(step), equalTo(expected.get(step)));
+        }
+        final double reevaluatedPerState = (reevaluatedNodes[0] - 2 * nodeCount) / (double)(steps - 1);
+        assertTrue(reevaluatedPerState + " nodes reevaluated per state", reevaluatedPerState < 10);
+    }
+
+}
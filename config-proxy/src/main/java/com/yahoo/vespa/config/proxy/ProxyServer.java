@@ -16,12 +16,15 @@ import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.filedistribution.FileDistributionRpcServer;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static com.yahoo.vespa.config.proxy.Mode.ModeName.DEFAULT;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -60,6 +63,7 @@ public class ProxyServer implements Runnable {
     private final static TimingValues defaultTimingValues;
     private final boolean delayedResponseHandling;
     private final FileDownloader fileDownloader;
+    private final FileDistributionRpcServer fileDistributionRpcServer;
 
     private volatile Mode mode = new Mode(DEFAULT);
 
@@ -76,7 +80,7 @@ public class ProxyServer implements Runnable {
     private ProxyServer(Spec spec, DelayedResponses delayedResponses, ConfigSourceSet source,
                         ConfigProxyStatistics statistics, TimingValues timingValues,
                         boolean delayedResponseHandling, MemoryCache memoryCache,
-                        ConfigSourceClient configClient) {
+                        ConfigSourceClient configClient, List<String> fileDistributionPeers) {
         this.delayedResponses = delayedResponses;
         this.configSource = source;
         log.log(LogLevel.DEBUG, "Using config source '" + source);
@@ -87,8 +91,8 @@ public class ProxyServer implements Runnable {
         this.rpcServer = createRpcServer(spec);
         clientUpdater = new ClientUpdater(rpcServer, statistics, delayedResponses);
         this.configClient = createClient(clientUpdater, delayedResponses, source, timingValues, memoryCache, configClient);
-        this.fileDownloader = new FileDownloader(new JRTConnectionPool(source));
-        new FileDistributionRpcServer(supervisor, fileDownloader);
+        this.fileDownloader = new FileDownloader(new JRTConnectionPool(source), fileDistributionPeers);
+        this.fileDistributionRpcServer = new FileDistributionRpcServer(supervisor, fileDownloader);
     }
 
     static ProxyServer createTestServer(ConfigSourceSet source) {
@@ -102,7 +106,7 @@ public class ProxyServer implements Runnable {
         final boolean delayedResponseHandling = false;
         return new ProxyServer(null, new DelayedResponses(statistics),
                                source, statistics, defaultTimingValues(), delayedResponseHandling,
-                               memoryCache, configSourceClient);
+                               memoryCache, configSourceClient, Collections.emptyList());
     }
 
     public void run() {
@@ -213,7 +217,8 @@ public class ProxyServer implements Runnable {
         ConfigSourceSet configSources = new ConfigSourceSet(properties.configSources);
         DelayedResponses delayedResponses = new DelayedResponses(statistics);
         ProxyServer proxyServer = new ProxyServer(new Spec(null, port), delayedResponses, configSources, statistics,
-                                                  defaultTimingValues(), true, new MemoryCache(), null);
+                                                  defaultTimingValues(), true, new MemoryCache(), null,
+                                                  properties.fileDistributionPeers);
         // catch termination signal
         proxyServer.setupSigTermHandler();
         Thread proxyserverThread = new Thread(proxyServer);
@@ -226,16 +231,23 @@ public class ProxyServer implements Runnable {
         // Read system properties
         long eventInterval = Long.getLong("eventinterval", ConfigProxyStatistics.defaultEventInterval);
         final String[] inputConfigSources = System.getProperty("proxyconfigsources", DEFAULT_PROXY_CONFIG_SOURCES).split(",");
-        return new Properties(eventInterval, inputConfigSources);
+        // Other nodes to download file references from before asking the config servers, e.g. "tcp/host:19090"
+        List<String> fileDistributionPeers = Arrays.stream(System.getProperty("filedistributionpeers", "").split(","))
+                .map(String::trim)
+                .filter(peer -> ! peer.isEmpty())
+                .collect(Collectors.toList());
+        return new Properties(eventInterval, inputConfigSources, fileDistributionPeers);
     }
 
     static class Properties {
         final long eventInterval;
         final String[] configSources;
+        final List<String> fileDistributionPeers;
 
-        Properties(long eventInterval, String[] configSources) {
+        Properties(long eventInterval, String[] configSources, List<String> fileDistributionPeers) {
             this.eventInterval = eventInterval;
             this.configSources = configSources;
+            this.fileDistributionPeers = fileDistributionPeers;
         }
     }
 
@@ -262,6 +274,7 @@ public class ProxyServer implements Runnable {
         Event.stopping("configproxy", "shutdown");
         if (rpcServer != null) rpcServer.shutdown();
         if (delayedResponseScheduler != null) delayedResponseScheduler.cancel(true);
+        fileDistributionRpcServer.close();
         flush();
         if (statistics != null) {
             statistics.stop();
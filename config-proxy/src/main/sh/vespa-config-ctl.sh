@@ -104,7 +104,8 @@ case $1 in
         vespa-runserver -r 10 -s configproxy -p $P_CONFIG_PROXY -- \
             java ${jvmopts} \
                  -XX:OnOutOfMemoryError="kill -9 %p" $(getJavaOptionsIPV46) \
-                 -Dproxyconfigsources="${configsources}" ${userargs} \
+                 -Dproxyconfigsources="${configsources}" \
+                 -Dfiledistributionpeers="${VESPA_FILEDISTRIBUTION_PEERS}" ${userargs} \
                  -cp $cp com.yahoo.vespa.config.proxy.ProxyServer 19090
 
         echo "Waiting for config proxy to start"
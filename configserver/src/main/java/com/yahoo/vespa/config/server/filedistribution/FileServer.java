@@ -18,6 +18,7 @@ import com.yahoo.vespa.filedistribution.FileDownloader;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -57,7 +58,8 @@ public class FileServer {
     }
 
     private FileServer(ConnectionPool connectionPool, File rootDir) {
-        this.downloader = new FileDownloader(connectionPool);
+        // No peers: The connection pool already holds the other config servers, which have all file references
+        this.downloader = new FileDownloader(connectionPool, Collections.emptyList());
         this.root = new FileDirectory(rootDir);
         this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
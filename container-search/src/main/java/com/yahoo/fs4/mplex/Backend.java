@@ -2,6 +2,7 @@
 package com.yahoo.fs4.mplex;
 
 
+import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.fs4.*;
 import com.yahoo.io.Connection;
 import com.yahoo.io.ConnectionFactory;
@@ -12,8 +13,11 @@ import com.yahoo.yolean.Exceptions;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.channels.SocketChannel;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,6 +49,9 @@ public class Backend implements ConnectionFactory {
 
     private static final Logger log = Logger.getLogger(Backend.class.getName());
 
+    /** The max time to wait for a new connection to be established */
+    private static final int connectTimeoutMillis = 20;
+
     private final ListenerPool listeners;
     private final InetSocketAddress address;
     private final String host;
@@ -61,6 +68,7 @@ public class Backend implements ConnectionFactory {
     private final ConnectionPool connectionPool;
     private final PacketDumper packetDumper;
     private final AtomicInteger connectionCount = new AtomicInteger(0);
+    private final ScheduledExecutorService timeoutScheduler;
 
 
     /**
@@ -74,9 +82,11 @@ public class Backend implements ConnectionFactory {
         packetDumper = null;
         address = null;
         connectionPool = new ConnectionPool();
+        timeoutScheduler = DefaultTimeoutScheduler.instance;
     }
 
-    public Backend(String host, int port, String serverDiscriminator, ListenerPool listenerPool, ConnectionPool connectionPool) {
+    public Backend(String host, int port, String serverDiscriminator, ListenerPool listenerPool, ConnectionPool connectionPool,
+                   ScheduledExecutorService timeoutScheduler) {
         String fileNamePattern = "qrs." + serverDiscriminator + '.' + host + ":" + port + ".%s" + ".dump";
         packetDumper = new PacketDumper(new File(Defaults.getDefaults().underVespaHome("logs/vespa/qrs/")),
                                         fileNamePattern);
@@ -86,6 +96,18 @@ public class Backend implements ConnectionFactory {
         this.port = port;
         address = new InetSocketAddress(host, port);
         this.connectionPool = connectionPool;
+        this.timeoutScheduler = timeoutScheduler != null ? timeoutScheduler : DefaultTimeoutScheduler.instance;
+    }
+
+    /** Returns the scheduler used to time out asynchronous receives on channels of this, never null */
+    ScheduledExecutorService getTimeoutScheduler() {
+        return timeoutScheduler;
+    }
+
+    /** Times out asynchronous receives on backends which are not given a scheduler. Created on first use. */
+    static class DefaultTimeoutScheduler {
+        static final ScheduledExecutorService instance =
+                Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getDaemonThreadFactory("fs4-receive-timeout"));
     }
 
     private void logWarning(String attemptDescription, Exception e) {
@@ -151,35 +173,15 @@ public class Backend implements ConnectionFactory {
     }
 
     private void connectSocket(SocketChannel socket) throws IOException {
-        socket.configureBlocking(false);
-
-        boolean connected = socket.connect(address);
-
-        // wait for connection
-        if (!connected) {
-            long timeBarrier = System.currentTimeMillis() + 20L;
-            while (true) {
-                try {
-                    Thread.sleep(5L);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IllegalStateException("Received InterruptedException while waiting for socket to connect.", e);
-                }
-                // don't care whether it's spurious wakeup
-                connected = socket.finishConnect();
-                if (connected || System.currentTimeMillis() > timeBarrier) {
-                    break;
-                }
-            }
-        }
-
-        // did we get a connection?
-        if ( !connected) {
+        // Connect in blocking mode, which waits for the connection without polling, then switch to non-blocking
+        try {
+            socket.socket().connect(address, connectTimeoutMillis);
+        } catch (SocketTimeoutException e) {
             throw new IllegalArgumentException("Could not create connection to dispatcher on "
                     + address.getHostName() + ":" + address.getPort());
         }
-        socket.socket().
-        setTcpNoDelay(true);
+        socket.configureBlocking(false);
+        socket.socket().setTcpNoDelay(true);
     }
 
 
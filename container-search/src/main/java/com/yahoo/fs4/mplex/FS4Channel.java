@@ -6,7 +6,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -27,6 +30,12 @@ import com.yahoo.search.Query;
  * <em>session</em>, which might be a more appropriate name for it).
  *
  * <P>
+ * Packets may be received either by blocking on the response queue, or
+ * asynchronously through {@link #receivePacketsAsync}, in which case the
+ * packets are handed directly to the pending receiver by the thread
+ * reading them from the network.
+ *
+ * <P>
  * Outbound packets are handed off to the FS4Connection.
  *
  * @author Bjorn Borud
@@ -41,6 +50,9 @@ public class FS4Channel
     private Query query;
     private boolean isPingChannel = false;
 
+    /** The asynchronous receive currently in progress, or null if none. Guarded by this. */
+    private PendingReceive pendingReceive = null;
+
     /** for unit testing.  do not use */
     protected FS4Channel () {
     }
@@ -89,6 +101,14 @@ public class FS4Channel
         if (q != null) {
             q.clear();
         }
+        PendingReceive receive;
+        synchronized (this) {
+            receive = pendingReceive;
+            pendingReceive = null;
+        }
+        if (receive != null) {
+            receive.fail(new InvalidChannelException("Channel was closed"));
+        }
     }
 
     /**
@@ -159,6 +179,54 @@ public class FS4Channel
         throw new ChannelTimeoutException();
     }
 
+    /**
+     * Receives packets as {@link #receivePackets} does, but without blocking the calling thread.
+     * The returned future is completed by the thread which receives the last packet, or
+     * exceptionally with a ChannelTimeoutException if the timeout is reached first, or an
+     * InvalidChannelException if the channel is or becomes invalid.
+     * Only one asynchronous receive may be in progress on a channel at any time.
+     *
+     * @param timeout the number of ms to wait for packets before failing with a timeout
+     * @param packetCount the number of packets to receive, or -1 to receive any number up to eol/error
+     */
+    public CompletableFuture<BasicPacket[]> receivePacketsAsync(long timeout, int packetCount) {
+        PendingReceive receive = new PendingReceive(packetCount);
+        boolean valid;
+        synchronized (this) {
+            BlockingQueue<BasicPacket> q = responseQueue;
+            valid = q != null;
+            if (valid) {
+                if (pendingReceive != null)
+                    throw new IllegalStateException("An asynchronous receive is already in progress on " + this);
+                while ( ! receive.isDone() && ! q.isEmpty()) // packets which arrived before this was called
+                    receive.add(q.poll());
+                if ( ! receive.isDone())
+                    pendingReceive = receive;
+            }
+        }
+        if ( ! valid) {
+            receive.fail(new InvalidChannelException("Channel is no longer valid"));
+            return receive.future;
+        }
+        if (receive.isDone()) {
+            receive.complete();
+            return receive.future;
+        }
+
+        ScheduledExecutorService scheduler = backend != null ? backend.getTimeoutScheduler()
+                                                             : Backend.DefaultTimeoutScheduler.instance;
+        receive.timeoutTask = scheduler.schedule(() -> timeOut(receive), timeout, TimeUnit.MILLISECONDS);
+        return receive.future;
+    }
+
+    private void timeOut(PendingReceive receive) {
+        synchronized (this) {
+            if (pendingReceive != receive) return;
+            pendingReceive = null;
+        }
+        receive.fail(new ChannelTimeoutException("Timed out"));
+    }
+
     private static boolean hasEnoughPackets(int packetCount,List<BasicPacket> packets) {
         if (packetCount<0) return false;
         return packets.size()>=packetCount;
@@ -204,7 +272,18 @@ public class FS4Channel
     protected void addPacket (BasicPacket packet)
         throws InterruptedException, InvalidChannelException
     {
-        ensureValidQ().put(packet);
+        PendingReceive receive;
+        synchronized (this) {
+            receive = pendingReceive;
+            if (receive == null) {
+                ensureValidQ().put(packet);
+                return;
+            }
+            receive.add(packet);
+            if ( ! receive.isDone()) return;
+            pendingReceive = null;
+        }
+        receive.complete();
     }
 
     /**
@@ -249,4 +328,47 @@ public class FS4Channel
         return "fs4 channel " + channelId + (isValid() ? " [valid]" : " [invalid]");
     }
 
+    /** The packets received so far by an asynchronous receive */
+    private class PendingReceive {
+
+        private final CompletableFuture<BasicPacket[]> future = new CompletableFuture<>();
+        private final int packetCount;
+        private final List<BasicPacket> packets = new ArrayList<>(12);
+        private boolean done = false;
+        private volatile ScheduledFuture<?> timeoutTask = null;
+
+        PendingReceive(int packetCount) {
+            this.packetCount = packetCount;
+        }
+
+        /** Adds a packet to this. This must be called while synchronized on the channel. */
+        void add(BasicPacket packet) {
+            if (!isPingChannel && ((Packet)packet).getChannel() != getChannelId().intValue()) {
+                log.warning("Ignoring received " + packet + ", when excepting channel " + getChannelId());
+                return;
+            }
+            packets.add(packet);
+            done = isLastPacket(packet) || hasEnoughPackets(packetCount, packets);
+        }
+
+        boolean isDone() { return done; }
+
+        void complete() {
+            cancelTimeout();
+            future.complete(packets.toArray(new BasicPacket[packets.size()]));
+        }
+
+        void fail(Exception e) {
+            cancelTimeout();
+            future.completeExceptionally(e);
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> task = timeoutTask;
+            if (task != null)
+                task.cancel(false);
+        }
+
+    }
+
 }
@@ -43,6 +43,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
@@ -451,7 +452,7 @@ public class ClusterSearcher extends Searcher {
         query.getRanking().setQueryCache(false);
     }
 
-    private Result doSearch(Searcher searcher, Query query, Execution execution) {
+    private Result doSearch(VespaBackEndSearcher searcher, Query query, Execution execution) {
         Result result;
         if (documentTypes.size() > 1) {
             result = searchMultipleDocumentTypes(searcher, query, execution);
@@ -471,7 +472,7 @@ public class ClusterSearcher extends Searcher {
     }
 
 
-    private Result searchMultipleDocumentTypes(Searcher searcher, Query query, Execution execution) {
+    private Result searchMultipleDocumentTypes(VespaBackEndSearcher searcher, Query query, Execution execution) {
         Set<String> docTypes = resolveDocumentTypes(query, execution.context().getIndexFacts());
 
         Result invalidRankProfile = checkValidRankProfiles(query, docTypes);
@@ -483,9 +484,14 @@ public class ClusterSearcher extends Searcher {
         if (queries.size() == 1) {
             return searcher.search(queries.get(0), execution);
         } else {
+            // Send all the queries before waiting for any of the results
+            List<CompletableFuture<Result>> results = new ArrayList<>(queries.size());
+            for (Query q : queries)
+                results.add(searcher.searchAsync(q, execution));
+
             Result mergedResult = new Result(query.clone());
-            for (Query q : queries) {
-                Result result = searcher.search(q, execution);
+            for (CompletableFuture<Result> futureResult : results) {
+                Result result = futureResult.join();
                 mergedResult.mergeWith(result);
                 mergedResult.hits().addAll(result.hits().asUnorderedHits());
             }
@@ -65,7 +65,7 @@ public class FS4ResourcePool extends AbstractComponent {
         synchronized (connectionPoolMap) {
             Backend pool = connectionPoolMap.get(key);
             if (pool == null) {
-                pool = new Backend(host, port, Server.get().getServerDiscriminator(), listeners, new ConnectionPool(timer));
+                pool = new Backend(host, port, Server.get().getServerDiscriminator(), listeners, new ConnectionPool(timer), scheduledExecutor);
                 connectionPoolMap.put(key, pool);
             }
             return pool;
@@ -35,6 +35,8 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 
 import static com.yahoo.container.util.Util.quote;
@@ -170,10 +172,7 @@ public class FastSearcher extends VespaBackEndSearcher {
     public Result doSearch2(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution) {
         FS4Channel channel = null;
         try {
-            if (dispatcher.searchCluster().groupSize() == 1)
-                forceSinglePassGrouping(query);
-            channel = chooseBackend(query).openChannel();
-            channel.setQuery(query);
+            channel = openChannel(query);
 
             Result result = searchTwoPhase(channel, query, queryPacket, cacheKey);
 
@@ -187,19 +186,91 @@ public class FastSearcher extends VespaBackEndSearcher {
                 fill(result, query.getPresentation().getSummary(), execution); // ARGH
             }
             return result;
-        } catch (TimeoutException e) {
-            return new Result(query,ErrorMessage.createTimeout(e.getMessage()));
         } catch (IOException e) {
-            Result result = new Result(query);
-            if (query.getTraceLevel() >= 1)
-                query.trace(getName() + " error response: " + result, false, 1);
-            result.hits().addError(ErrorMessage.createBackendCommunicationError(getName() + " failed: "+ e.getMessage()));
-            return result;
+            return errorResult(query, e);
         } finally {
             if (channel != null)
                 channel.close();
         }
     }
+
+    /** Searches without blocking the calling thread while waiting for the response */
+    @Override
+    public CompletableFuture<Result> searchAsync(Query query, Execution execution) {
+        return search(query, execution, true);
+    }
+
+    /**
+     * Searches without blocking while waiting for the query result packet. The result is created
+     * from the packet by the executor of the resource pool rather than the thread receiving it.
+     * For queries requesting rank features the summaries are then fetched the same way.
+     */
+    @Override
+    protected CompletableFuture<Result> doSearch2Async(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution) {
+        FS4Channel channel = null;
+        try {
+            channel = openChannel(query);
+
+            Result sendError = sendQueryPacket(channel, query, queryPacket);
+            if (sendError != null) {
+                channel.close();
+                return CompletableFuture.completedFuture(sendError);
+            }
+
+            FS4Channel sentChannel = channel;
+            CompletableFuture<Result> result =
+                    channel.receivePacketsAsync(Math.max(50, query.getTimeLeft()), 1).handleAsync((basicPackets, exception) -> {
+                try {
+                    if (exception != null)
+                        return receiveErrorResult(query, exception);
+                    return createResult(basicPackets, query, queryPacket, cacheKey);
+                } catch (IOException e) {
+                    return errorResult(query, e);
+                } catch (RuntimeException e) {
+                    return receiveErrorResult(query, e);
+                } finally {
+                    sentChannel.close();
+                }
+            }, fs4ResourcePool.getExecutor());
+
+            if ( ! query.properties().getBoolean(Ranking.RANKFEATURES, false)) return result;
+            // See doSearch2 for why this is done here
+            return result.thenCompose(r -> fillAsync(r, query.getPresentation().getSummary(), execution).handle((ignored, exception) -> {
+                if (exception != null)
+                    r.hits().addError(ErrorMessage.createBackendCommunicationError(getName() + " failed filling rank features: " +
+                                                                                   exception.getMessage()));
+                return r;
+            }));
+        } catch (IOException e) {
+            if (channel != null)
+                channel.close();
+            return CompletableFuture.completedFuture(errorResult(query, e));
+        } catch (RuntimeException e) {
+            if (channel != null)
+                channel.close();
+            throw e;
+        }
+    }
+
+    /** Opens a channel to the backend chosen for the given query, and sets the query on it */
+    private FS4Channel openChannel(Query query) {
+        if (dispatcher.searchCluster().groupSize() == 1)
+            forceSinglePassGrouping(query);
+        FS4Channel channel = chooseBackend(query).openChannel();
+        channel.setQuery(query);
+        return channel;
+    }
+
+    private Result errorResult(Query query, IOException e) {
+        if (e instanceof TimeoutException)
+            return new Result(query,ErrorMessage.createTimeout(e.getMessage()));
+
+        Result result = new Result(query);
+        if (query.getTraceLevel() >= 1)
+            query.trace(getName() + " error response: " + result, false, 1);
+        result.hits().addError(ErrorMessage.createBackendCommunicationError(getName() + " failed: "+ e.getMessage()));
+        return result;
+    }
     
     /** When we only search a single node, doing all grouping in one pass is more efficient */
     private void forceSinglePassGrouping(Query query) {
@@ -257,7 +328,16 @@ public class FastSearcher extends VespaBackEndSearcher {
      * @param summaryClass the summary class we want to fill with
      **/
     protected void doPartialFill(Result result, String summaryClass) {
-        if (result.isFilled(summaryClass)) return;
+        doPartialFillAsync(result, summaryClass).join();
+    }
+
+    /**
+     * Sends the summary request for a partial fill, and fills the hits when the summaries arrive,
+     * using the executor of the resource pool rather than the thread receiving them.
+     */
+    @Override
+    protected CompletableFuture<Void> doPartialFillAsync(Result result, String summaryClass) {
+        if (result.isFilled(summaryClass)) return CompletableFuture.completedFuture(null);
 
         Query query = result.getQuery();
         traceQuery(getName(), "fill", query, query.getOffset(), query.getHits(), 2, quotedSummaryClass(summaryClass));
@@ -267,7 +347,7 @@ public class FastSearcher extends VespaBackEndSearcher {
                 CompressionType.valueOf(query.properties().getString(dispatchCompression, "LZ4").toUpperCase());
             fillSDDocName(result);
             dispatcher.fill(result, summaryClass, compression);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         CacheKey cacheKey = null;
@@ -281,75 +361,92 @@ public class FastSearcher extends VespaBackEndSearcher {
             packetWrapper = cacheLookupTwoPhase(cacheKey, result,summaryClass);
         }
 
+        DocsumPacketKey[] packetKeys = countFastHits(result) > 0 ? getPacketKeys(result, summaryClass, false)
+                                                                 : new DocsumPacketKey[0];
+        if (packetKeys.length == 0) {
+            fillHits(result, summaryClass, packetKeys, new Packet[0], cacheKey, packetWrapper);
+            return CompletableFuture.completedFuture(null);
+        }
+
         FS4Channel channel = chooseBackend(query).openChannel();
         channel.setQuery(query);
-        Packet[] receivedPackets;
+        CompletableFuture<BasicPacket[]> summaries;
         try {
-            DocsumPacketKey[] packetKeys;
-
-            if (countFastHits(result) > 0) {
-                packetKeys = getPacketKeys(result, summaryClass, false);
-                if (packetKeys.length == 0) {
-                    receivedPackets = new Packet[0];
-                } else {
-                    try {
-                        receivedPackets = fetchSummaries(channel, result, summaryClass);
-                    } catch (InvalidChannelException e) {
-                        result.hits().addError(ErrorMessage.createBackendCommunicationError("Invalid channel " + getName() + " (summary fetch)"));
-                        return;
-                    } catch (ChannelTimeoutException e) {
-                        result.hits().addError(ErrorMessage.createTimeout("timeout waiting for summaries from " + getName()));
-                        return;
-                    } catch (IOException e) {
-                        result.hits().addError(ErrorMessage.createBackendCommunicationError(
-                                "IO error while talking on channel " + getName() + " (summary fetch): " + e.getMessage()));
-                        return;
-                    }
-                    if (receivedPackets.length == 0) {
-                        result.hits().addError(ErrorMessage.createBackendCommunicationError(getName() + " got no packets back (summary fetch)"));
-                        return;
-                    }
-                }
-            } else {
-                packetKeys = new DocsumPacketKey[0];
-                receivedPackets = new Packet[0];
-            }
+            summaries = fetchSummaries(channel, result, summaryClass);
+        } catch (InvalidChannelException e) {
+            channel.close();
+            result.hits().addError(ErrorMessage.createBackendCommunicationError("Invalid channel " + getName() + " (summary fetch)"));
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            channel.close();
+            result.hits().addError(ErrorMessage.createBackendCommunicationError(
+                    "IO error while talking on channel " + getName() + " (summary fetch): " + e.getMessage()));
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
 
-            int skippedHits;
+        CacheKey summaryCacheKey = cacheKey;
+        PacketWrapper summaryPacketWrapper = packetWrapper;
+        return summaries.handleAsync((receivedPackets, exception) -> {
             try {
-                skippedHits = fillHits(result, 0, receivedPackets, summaryClass);
-            } catch (TimeoutException e) {
-                result.hits().addError(ErrorMessage.createTimeout(e.getMessage()));
-                return;
-            } catch (IOException e) {
-                result.hits().addError(ErrorMessage.createBackendCommunicationError("Error filling hits with summary fields, source: " + getName()));
-                return;
-            }
-            if (skippedHits==0 && packetWrapper != null) {
-                cacheControl.updateCacheEntry(cacheKey, query, packetKeys, receivedPackets);
+                if (exception instanceof CompletionException)
+                    exception = exception.getCause();
+                if (exception instanceof InvalidChannelException)
+                    result.hits().addError(ErrorMessage.createBackendCommunicationError("Invalid channel " + getName() + " (summary fetch)"));
+                else if (exception instanceof ChannelTimeoutException)
+                    result.hits().addError(ErrorMessage.createTimeout("timeout waiting for summaries from " + getName()));
+                else if (exception != null)
+                    result.hits().addError(ErrorMessage.createBackendCommunicationError(
+                            "Error while talking on channel " + getName() + " (summary fetch): " + exception.getMessage()));
+                else if (receivedPackets.length == 0)
+                    result.hits().addError(ErrorMessage.createBackendCommunicationError(getName() + " got no packets back (summary fetch)"));
+                else
+                    fillHits(result, summaryClass, packetKeys, convertBasicPackets(receivedPackets), summaryCacheKey, summaryPacketWrapper);
+                return null;
+            } finally {
+                channel.close();
             }
+        }, fs4ResourcePool.getExecutor());
+    }
 
-            if ( skippedHits>0 ) {
-                getLogger().info("Could not fill summary '" + summaryClass + "' for " + skippedHits + " hits for query: " + result.getQuery());
-                result.hits().addError(com.yahoo.search.result.ErrorMessage.createEmptyDocsums("Missing hit data for summary '" + summaryClass + "' for " + skippedHits + " hits"));
-            }
-            result.analyzeHits();
-
-            if (query.getTraceLevel() >= 3) {
-                int hitNumber = 0;
-                for (Iterator<com.yahoo.search.result.Hit> i = hitIterator(result); i.hasNext();) {
-                    com.yahoo.search.result.Hit hit = i.next();
-                    if ( ! (hit instanceof FastHit)) continue;
-                    FastHit fastHit = (FastHit) hit;
-
-                    String traceMsg = "Hit: " + (hitNumber++) + " from " + (fastHit.isCached() ? "cache" : "backend" );
-                    if ( ! fastHit.isFilled(summaryClass))
-                        traceMsg += ". Error, hit, not filled";
-                    query.trace(traceMsg, false, 3);
-                }
+    /** Fills the hits of a partial fill from the received summary packets */
+    private void fillHits(Result result, String summaryClass, DocsumPacketKey[] packetKeys, Packet[] receivedPackets,
+                          CacheKey cacheKey, PacketWrapper packetWrapper) {
+        Query query = result.getQuery();
+        int skippedHits;
+        try {
+            skippedHits = fillHits(result, 0, receivedPackets, summaryClass);
+        } catch (TimeoutException e) {
+            result.hits().addError(ErrorMessage.createTimeout(e.getMessage()));
+            return;
+        } catch (IOException e) {
+            result.hits().addError(ErrorMessage.createBackendCommunicationError("Error filling hits with summary fields, source: " + getName()));
+            return;
+        }
+        if (skippedHits==0 && packetWrapper != null) {
+            cacheControl.updateCacheEntry(cacheKey, query, packetKeys, receivedPackets);
+        }
+
+        if ( skippedHits>0 ) {
+            getLogger().info("Could not fill summary '" + summaryClass + "' for " + skippedHits + " hits for query: " + result.getQuery());
+            result.hits().addError(com.yahoo.search.result.ErrorMessage.createEmptyDocsums("Missing hit data for summary '" + summaryClass + "' for " + skippedHits + " hits"));
+        }
+        result.analyzeHits();
+
+        if (query.getTraceLevel() >= 3) {
+            int hitNumber = 0;
+            for (Iterator<com.yahoo.search.result.Hit> i = hitIterator(result); i.hasNext();) {
+                com.yahoo.search.result.Hit hit = i.next();
+                if ( ! (hit instanceof FastHit)) continue;
+                FastHit fastHit = (FastHit) hit;
+
+                String traceMsg = "Hit: " + (hitNumber++) + " from " + (fastHit.isCached() ? "cache" : "backend" );
+                if ( ! fastHit.isFilled(summaryClass))
+                    traceMsg += ". Error, hit, not filled";
+                query.trace(traceMsg, false, 3);
             }
-        } finally {
-            channel.close();
         }
     }
 
@@ -374,7 +471,20 @@ public class FastSearcher extends VespaBackEndSearcher {
     }
 
     private Result searchTwoPhase(FS4Channel channel, Query query, QueryPacket queryPacket, CacheKey cacheKey) throws IOException {
+        Result sendError = sendQueryPacket(channel, query, queryPacket);
+        if (sendError != null) return sendError;
 
+        BasicPacket[] basicPackets;
+        try {
+            basicPackets = channel.receivePackets(Math.max(50, query.getTimeLeft()), 1);
+        } catch (ChannelTimeoutException | InvalidChannelException e) {
+            return receiveErrorResult(query, e);
+        }
+        return createResult(basicPackets, query, queryPacket, cacheKey);
+    }
+
+    /** Sends the query packet over the given channel and returns null, or an error result if it could not be sent */
+    private Result sendQueryPacket(FS4Channel channel, Query query, QueryPacket queryPacket) throws IOException {
         if (isLoggingFine())
             getLogger().finest("sending query packet");
 
@@ -387,17 +497,20 @@ public class FastSearcher extends VespaBackEndSearcher {
         } catch (IllegalStateException e) {
             return new Result(query, ErrorMessage.createBackendCommunicationError("Illegal state in FS4: " + e.getMessage()));
         }
+        return null;
+    }
 
-        BasicPacket[] basicPackets;
-
-        try {
-            basicPackets = channel.receivePackets(Math.max(50, query.getTimeLeft()), 1);
-        } catch (ChannelTimeoutException e) {
+    /** Returns the error result to return when receiving the query result failed with the given exception */
+    private Result receiveErrorResult(Query query, Throwable exception) {
+        if (exception instanceof ChannelTimeoutException)
             return new Result(query,ErrorMessage.createTimeout("Timeout while waiting for " + getName()));
-        } catch (InvalidChannelException e) {
+        if (exception instanceof InvalidChannelException)
             return new Result(query,ErrorMessage.createBackendCommunicationError("Invalid channel for " + getName()));
-        }
+        return new Result(query,ErrorMessage.createBackendCommunicationError(getName() + " failed: " + exception.getMessage()));
+    }
 
+    /** Creates the first phase result from the packets received in response to a query packet */
+    private Result createResult(BasicPacket[] basicPackets, Query query, QueryPacket queryPacket, CacheKey cacheKey) throws IOException {
         if (basicPackets.length == 0) {
             return new Result(query,ErrorMessage.createBackendCommunicationError(getName() + " got no packets back"));
         }
@@ -453,10 +566,10 @@ public class FastSearcher extends VespaBackEndSearcher {
         return packets;
     }
 
-    private Packet[] fetchSummaries(FS4Channel channel, Result result, String summaryClass)
-            throws InvalidChannelException, ChannelTimeoutException, ClassCastException, IOException {
+    /** Sends a request for the summaries of the given result and returns the future summary packets */
+    private CompletableFuture<BasicPacket[]> fetchSummaries(FS4Channel channel, Result result, String summaryClass)
+            throws InvalidChannelException, IOException {
 
-        BasicPacket[] receivedPackets;
         boolean summaryNeedsQuery = summaryNeedsQuery(result.getQuery());
         if (result.getQuery().getTraceLevel() >=3)
             result.getQuery().trace((summaryNeedsQuery ? "Resending " : "Not resending ") + "query during document summary fetching", 3);
@@ -472,12 +585,7 @@ public class FastSearcher extends VespaBackEndSearcher {
         if (isLoggingFine())
             getLogger().finest("Sent " + docsumsPacket + " on " + channel);
         if ( ! couldSend) throw new IOException("Could not successfully send GetDocSumsPacket.");
-        receivedPackets = channel.receivePackets(Math.max(50, result.getQuery().getTimeLeft()), docsumsPacket.getNumDocsums() + 1);
-
-        if (isLoggingFine())
-            getLogger().finest("got " + receivedPackets.length + "docsumPackets");
-
-        return convertBasicPackets(receivedPackets);
+        return channel.receivePacketsAsync(Math.max(50, result.getQuery().getTimeLeft()), docsumsPacket.getNumDocsums() + 1);
     }
 
     public String toString() {
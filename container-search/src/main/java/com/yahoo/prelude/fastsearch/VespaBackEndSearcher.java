@@ -42,6 +42,8 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 
 
@@ -110,8 +112,37 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
      */
     protected abstract Result doSearch2(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution);
 
+    /**
+     * Searches a search cluster without waiting for the response.
+     * This default implementation searches synchronously and returns a completed future.
+     * Subclasses which can receive the response asynchronously should override this.
+     *
+     * @param query the query to search
+     * @param queryPacket the serialized query representation to pass to the search cluster
+     * @param cacheKey the cache key created from the query packet, or null if caching is not used
+     * @param execution the query execution context
+     * @return a future which is completed with the result, never completed exceptionally
+     */
+    protected CompletableFuture<Result> doSearch2Async(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution) {
+        return CompletableFuture.completedFuture(doSearch2(query, queryPacket, cacheKey, execution));
+    }
+
     protected abstract void doPartialFill(Result result, String summaryClass);
 
+    /**
+     * Performs a partial fill without waiting for the summaries.
+     * This default implementation fills synchronously and returns a completed future.
+     * Subclasses which can receive the summaries asynchronously should override this.
+     *
+     * @param result result containing a partition of the unfilled hits
+     * @param summaryClass the summary class we want to fill with
+     * @return a future which is completed when the hits are filled, or errors are added to the result
+     */
+    protected CompletableFuture<Void> doPartialFillAsync(Result result, String summaryClass) {
+        doPartialFill(result, summaryClass);
+        return CompletableFuture.completedFuture(null);
+    }
+
     protected static boolean wantsRPCSummaryFill(Query query) {
         return query.properties().getBoolean(dispatchSummaries);
     }
@@ -212,16 +243,36 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
     protected void transformQuery(Query query) { }
 
     public Result search(Query query, Execution execution) {
+        return search(query, execution, false).join();
+    }
+
+    /**
+     * Searches this cluster without blocking the calling thread while waiting for the response,
+     * if the subclass supports it. This default implementation calls {@link #search(Query, Execution)}
+     * and returns a completed future, such that subclasses overriding search are used.
+     *
+     * @return a future which is completed with the result, never completed exceptionally
+     */
+    public CompletableFuture<Result> searchAsync(Query query, Execution execution) {
+        return CompletableFuture.completedFuture(search(query, execution));
+    }
+
+    /**
+     * Prepares the query, looks it up in the cache and otherwise searches by doSearch2, or by doSearch2Async
+     * if async is true. Query preparation and cache lookup are done in the calling thread.
+     */
+    protected final CompletableFuture<Result> search(Query query, Execution execution, boolean async) {
         // query root should not be null here
         Item root = query.getModel().getQueryTree().getRoot();
         if (root == null || root instanceof NullItem) {
-            return new Result(query, ErrorMessage.createNullQuery(query.getHttpRequest().getUri().toString()));
+            return CompletableFuture.completedFuture(
+                    new Result(query, ErrorMessage.createNullQuery(query.getHttpRequest().getUri().toString())));
         }
 
         if (wantsRPCSummaryFill(query) && summaryNeedsQuery(query)) {
-            return new Result(query, ErrorMessage.createInvalidQueryParameter(
+            return CompletableFuture.completedFuture(new Result(query, ErrorMessage.createInvalidQueryParameter(
                     "When using dispatch.summaries and your summary/rankprofile require the query, " +
-                    " you need to enable ranking.queryCache."));
+                    " you need to enable ranking.queryCache.")));
         }
 
         QueryRewrite.optimizeByRestrict(query);
@@ -230,7 +281,7 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
         root = query.getModel().getQueryTree().getRoot();
         if (root == null || root instanceof NullItem) // root can become null after optimization
-            return new Result(query);
+            return CompletableFuture.completedFuture(new Result(query));
 
         resolveDocumentDatabase(query);
         transformQuery(query);
@@ -238,7 +289,7 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
         root = query.getModel().getQueryTree().getRoot();
         if (root == null || root instanceof NullItem) // root can become null after resolving and transformation?
-            return new Result(query);
+            return CompletableFuture.completedFuture(new Result(query));
 
         QueryPacket queryPacket = QueryPacket.create(query);
         int compressionLimit = query.properties().getInteger(PACKET_COMPRESSION_LIMIT, 0);
@@ -249,22 +300,26 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
         if (isLoggingFine())
             getLogger().fine("made QueryPacket: " + queryPacket);
 
-        Result result = null;
         CacheKey cacheKey = null;
         if (cacheControl.useCache(query)) {
             cacheKey = new CacheKey(queryPacket);
-            result = getCached(cacheKey, queryPacket.getQueryPacketData(), query);
+            Result result = getCached(cacheKey, queryPacket.getQueryPacketData(), query);
+            if (result != null)
+                return CompletableFuture.completedFuture(result);
         }
 
-        if (result == null) {
-            result = doSearch2(query, queryPacket, cacheKey, execution);
-            if (isLoggingFine())
-                getLogger().fine("Result NOT retrieved from cache");
+        if ( ! async)
+            return CompletableFuture.completedFuture(traceResponse(query, doSearch2(query, queryPacket, cacheKey, execution)));
+        return doSearch2Async(query, queryPacket, cacheKey, execution).thenApply(result -> traceResponse(query, result));
+    }
+
+    private Result traceResponse(Query query, Result result) {
+        if (isLoggingFine())
+            getLogger().fine("Result NOT retrieved from cache");
 
-            if (query.getTraceLevel() >= 1)
-                query.trace(getName() + " dispatch response: " + result, false, 1);
-            result.trace(getName());
-        }
+        if (query.getTraceLevel() >= 1)
+            query.trace(getName() + " dispatch response: " + result, false, 1);
+        result.trace(getName());
         return result;
     }
 
@@ -339,17 +394,36 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
     @Override
     public void fill(Result result, String summaryClass, Execution execution) {
-        if (result.isFilled(summaryClass)) return; // TODO: Checked in the superclass - remove
+        try {
+            fillAsync(result, summaryClass, execution).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
 
-        List<Result> parts= partitionHits(result, summaryClass);
-        if (parts.size() > 0) { // anything to fill at all?
-            for (Result r : parts) {
-                doPartialFill(r, summaryClass);
+    /**
+     * Fills the given result without blocking the calling thread while waiting for summaries,
+     * if the subclass supports it. Hits belonging to different queries are filled in parallel.
+     *
+     * @return a future which is completed when the result is filled, or errors are added to it
+     */
+    public CompletableFuture<Void> fillAsync(Result result, String summaryClass, Execution execution) {
+        if (result.isFilled(summaryClass)) return CompletableFuture.completedFuture(null); // TODO: Checked in the superclass - remove
+
+        List<Result> parts = partitionHits(result, summaryClass);
+        if (parts.isEmpty()) return CompletableFuture.completedFuture(null); // nothing to fill
+
+        CompletableFuture<?>[] partFills = new CompletableFuture<?>[parts.size()];
+        for (int i = 0; i < parts.size(); i++)
+            partFills[i] = doPartialFillAsync(parts.get(i), summaryClass);
+        return CompletableFuture.allOf(partFills).thenRun(() -> {
+            for (Result r : parts)
                 mergeErrorsInto(result, r);
-            }
             result.hits().setSorted(false);
             result.analyzeHits();
-        }
+        });
     }
 
     private void mergeErrorsInto(Result destination, Result source) {
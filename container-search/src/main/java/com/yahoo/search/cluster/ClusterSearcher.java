@@ -15,8 +15,10 @@ import com.yahoo.search.cluster.Hasher.NodeList;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.searchchain.Execution;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implements clustering (failover and load balancing) over a set of client
@@ -31,6 +33,10 @@ import java.util.concurrent.*;
  * <p>
  * The type argument is the class (of any type) representing the connections.
  * The connection objects should implement a good toString to ease diagnostics.
+ * <p>
+ * Nodes are selected by the hash of the query by default. Selecting by response times and
+ * hedging slow requests can be enabled in the {@link ReplicaSelection} of this.
+ * Results are filled from the node which produced them if it is still in service.
  *
  * @author bratseth
  * @author Arne Bergene Fossaa
@@ -39,6 +45,7 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
 
     private final Hasher<T> hasher;
     private final ClusterMonitor<T> monitor = new ClusterMonitor<>(this);
+    private final ReplicaSelection<T> replicaSelection = new ReplicaSelection<>();
 
     /**
      * Creates a new cluster searcher
@@ -126,7 +133,7 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
     protected abstract Pong ping(Ping ping, T connection);
 
     protected T getFirstConnection(NodeList<T> nodes, int code, int trynum, Query query) {
-        return nodes.select(code, trynum);
+        return replicaSelection.select(nodes, code, trynum);
     }
 
     @Override
@@ -155,7 +162,11 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
             if (query.getTraceLevel() >= 8)
                 query.trace("Trying " + connection, false, 8);
 
-            result = robustSearch(query, execution, connection);
+            long hedgeDelay = replicaSelection.hedgeDelay();
+            if (hedgeDelay >= 0 && nodes.getNodeCount() > 1)
+                result = hedgedSearch(query, execution, connection, nodes, code, hedgeDelay);
+            else
+                result = trackedSearch(query, execution, connection);
 
             if (!shouldRetry(query, result))
                 return result;
@@ -194,6 +205,90 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
         return new Result(query, message);
     }
 
+    /**
+     * Calls robustSearch, records the response time of the connection if response times are tracked,
+     * and records the connection as the one serving the result if it is successful
+     */
+    private Result trackedSearch(Query query, Execution execution, T connection) {
+        if ( ! replicaSelection.isTracking()) return servedBy(connection, robustSearch(query, execution, connection));
+
+        long startTime = replicaSelection.nanoTime();
+        replicaSelection.started(connection);
+        Result result = null;
+        try {
+            result = robustSearch(query, execution, connection);
+            return servedBy(connection, result);
+        }
+        finally {
+            replicaSelection.completed(connection, replicaSelection.nanoTime() - startTime,
+                                       result != null && result.hits().getError() == null);
+        }
+    }
+
+    /** Records the given connection as the one serving the given result if it is successful, and returns it */
+    private Result servedBy(T connection, Result result) {
+        if (result.hits().getError() == null)
+            result.hits().setSearcherSpecificMetaData(this, connection);
+        return result;
+    }
+
+    /** Returns the connection which served the given result if it is still in the given nodes, or null otherwise */
+    @SuppressWarnings("unchecked")
+    private T servingConnection(Result result, NodeList<T> nodes) {
+        T connection = (T)result.hits().getSearcherSpecificMetaData(this);
+        if (connection == null || ! nodes.hasNode(connection)) return null;
+        return connection;
+    }
+
+    /**
+     * Searches the given connection, and another connection as well if there is no response within the
+     * given delay, and returns the first successful result, or an error result if neither succeeds.
+     * As the requests run concurrently they are made with clones of the query, so changes made to
+     * the query by the connection search methods are not visible to the caller.
+     * The request which has not completed when the other succeeds is cancelled by interrupting it.
+     * If all hedge threads are busy the connection is searched without hedging in the calling thread.
+     */
+    private Result hedgedSearch(Query query, Execution execution, T connection, NodeList<T> nodes, int code,
+                                long hedgeDelay) {
+        HedgedSearch hedgedSearch = new HedgedSearch(query, execution);
+        if ( ! hedgedSearch.start(connection))
+            return trackedSearch(query, execution, connection);
+
+        Result result = await(hedgedSearch.firstSuccess, Math.min(hedgeDelay, query.getTimeLeft()));
+        if (result == null) {
+            T hedgeConnection = replicaSelection.selectOther(nodes, code, connection);
+            if (hedgeConnection != null && ! timedOut(query)) {
+                if (query.getTraceLevel() >= 6)
+                    query.trace("No response from " + connection + " after " + hedgeDelay +
+                                " ms: Also trying " + hedgeConnection, false, 6);
+                hedgedSearch.start(hedgeConnection);
+            }
+        }
+        hedgedSearch.allStarted();
+        if (result == null)
+            result = await(hedgedSearch.firstSuccess, query.getTimeLeft());
+        if (result == null) {
+            hedgedSearch.cancel(null);
+            return new Result(query, ErrorMessage.createTimeout("No response from " + this + " within the timeout"));
+        }
+        result.setQuery(query);
+        return result;
+    }
+
+    /** Returns the result of the given future, or null if it is not completed within the given time */
+    private Result await(CompletableFuture<Result> future, long timeoutMillis) {
+        try {
+            return future.get(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + this, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed waiting for " + this, e);
+        }
+    }
+
     /**
      * Call search(Query,Execution,T) and handle any exceptions returned which
      * we do not want to propagate upwards By default this catches all runtime
@@ -238,7 +333,9 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
         Hasher.NodeList<T> nodes = getHasher().getNodes();
         int code = query.hashCode();
 
-        T connection = nodes.select(code, 0);
+        T connection = servingConnection(result, nodes);
+        if (connection == null)
+            connection = nodes.select(code, 0);
         if (connection != null) {
             if (timedOut(query)) {
                 result.hits().addError(
@@ -291,6 +388,7 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
     @Override
     public void failed(T node) {
         getHasher().remove(node);
+        replicaSelection.removed(node);
     }
 
     /** Returns the hasher used internally in this. Do not mutate this hasher while in use. */
@@ -299,6 +397,9 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
     /** Returns the monitor of these nodes */
     public ClusterMonitor<T> getMonitor() { return monitor; }
 
+    /** Returns the selection of which node to send each request to */
+    public ReplicaSelection<T> getReplicaSelection() { return replicaSelection; }
+
     /** Returns true if this query has timed out now */
     protected boolean timedOut(Query query) {
         return query.getDurationTime() >= query.getTimeout();
@@ -317,6 +418,103 @@ public abstract class ClusterSearcher<T> extends PingableSearcher implements Nod
     public void deconstruct() {
         super.deconstruct();
         monitor.shutdown();
+        replicaSelection.shutdown();
+    }
+
+    /**
+     * Concurrent searches of the same query in multiple connections, completing with the first successful
+     * result, or the last result if none are successful. Searches still running when one succeeds are cancelled.
+     */
+    private class HedgedSearch {
+
+        final CompletableFuture<Result> firstSuccess = new CompletableFuture<>();
+
+        private final Query query;
+        private final Execution execution;
+
+        /** The number of searches not completed, plus one until all searches are started */
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile Result lastFailure = null;
+
+        /** The connections searched and the futures of their searches. Guarded by this. */
+        private final List<T> connections = new ArrayList<>();
+        private final List<Future<?>> searches = new ArrayList<>();
+
+        HedgedSearch(Query query, Execution execution) {
+            this.query = query;
+            this.execution = execution;
+        }
+
+        /**
+         * Starts a search of a clone of the query in the given connection.
+         *
+         * @return false if the search was not started because a search has already succeeded
+         *         or because all hedge threads are busy
+         */
+        boolean start(T connection) {
+            Query clone = query.clone();
+            Execution branchExecution = new Execution(execution);
+            synchronized (this) {
+                if (firstSuccess.isDone()) return false;
+                pending.incrementAndGet();
+                try {
+                    searches.add(replicaSelection.hedgeExecutor().submit(() -> search(clone, branchExecution, connection)));
+                    connections.add(connection);
+                    return true;
+                }
+                catch (RejectedExecutionException e) { // all threads are busy, or shut down
+                    pending.decrementAndGet();
+                    return false;
+                }
+            }
+        }
+
+        /** Call this when no more searches will be started */
+        void allStarted() {
+            if (pending.decrementAndGet() == 0)
+                firstSuccess.complete(lastFailure);
+        }
+
+        /** Cancels all searches except the one to the given connection, which may be null to cancel all */
+        synchronized void cancel(T except) {
+            for (int i = 0; i < searches.size(); i++)
+                if (connections.get(i) != except)
+                    searches.get(i).cancel(true);
+        }
+
+        private void search(Query query, Execution execution, T connection) {
+            long startTime = replicaSelection.nanoTime();
+            replicaSelection.started(connection);
+            Result result = null;
+            try {
+                result = robustSearch(query, execution, connection);
+            }
+            finally {
+                long elapsedNanos = replicaSelection.nanoTime() - startTime;
+                if (firstSuccess.isDone()) // this was cancelled, or lost the race
+                    replicaSelection.cancelled(connection, elapsedNanos);
+                else
+                    replicaSelection.completed(connection, elapsedNanos,
+                                               result != null && result.hits().getError() == null);
+                if (result == null) // an Error was thrown: Complete anyway, so the caller is not left waiting
+                    result = new Result(query, ErrorMessage.createBackendCommunicationError(
+                            "Failed calling " + connection + " in " + ClusterSearcher.this));
+                completed(result, connection);
+            }
+        }
+
+        private void completed(Result result, T connection) {
+            if (result.hits().getError() == null) {
+                if (firstSuccess.complete(servedBy(connection, result)))
+                    cancel(connection);
+            }
+            else {
+                lastFailure = result;
+            }
+            if (pending.decrementAndGet() == 0)
+                firstSuccess.complete(lastFailure);
+        }
+
     }
 
     private class Pinger implements Callable<Pong> {
@@ -0,0 +1,262 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cluster;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Selects the replica (node) to send each request to in a cluster, and tracks the response times of each node.
+ * <p>
+ * By default nodes are selected by the hash of the query only. With adaptive selection, the hashed node
+ * is compared to another randomly chosen node, and the one with the lowest cost is selected, where the cost
+ * is the moving average response time of the node times its number of outstanding requests plus one.
+ * This moves load away from slow and overloaded nodes while keeping most of the locality of hashing.
+ * <p>
+ * With hedging, a request which has not completed within a given percentile of the recent response times
+ * of the cluster is sent to another node as well, and the first successful response is used.
+ * The other request is then cancelled. Hedged requests run in a bounded thread pool. When all its
+ * threads are busy, requests are sent to a single node from the calling thread instead.
+ * <p>
+ * This is thread safe.
+ */
+public class ReplicaSelection<T> {
+
+    /** The weight of a new sample in the moving average response time of a node */
+    private static final double decay = 0.2;
+
+    /** The number of recent response times kept to compute the hedge delay */
+    private static final int sampleCapacity = 1024;
+
+    /** The number of samples required before requests are hedged */
+    private static final int minSamples = 20;
+
+    /** The number of new samples after which the hedge delay is recomputed */
+    private static final int recomputeInterval = 64;
+
+    /** The max number of threads running hedged requests */
+    private static final int maxHedgeThreads = 256;
+
+    private final Map<T, NodeStatistics> nodeStatistics = new ConcurrentHashMap<>();
+
+    private volatile boolean adaptive = false;
+    private volatile double hedgePercentile = 0;
+    private volatile ExecutorService hedgeExecutor = null;
+    private volatile LongSupplier nanoClock = System::nanoTime;
+
+    // Guarded by samples
+    private final long[] samples = new long[sampleCapacity];
+    private int sampleCount = 0;
+    private int samplesSinceRecompute = 0;
+    private long hedgeDelayNanos = -1;
+
+    /** Sets whether nodes should be selected by their response times and outstanding requests. Default is false. */
+    public void setAdaptive(boolean adaptive) { this.adaptive = adaptive; }
+
+    /** Returns whether nodes are selected by their response times and outstanding requests. */
+    public boolean isAdaptive() { return adaptive; }
+
+    /**
+     * Sets the percentile (between 0 and 100) of the recent response times of this cluster after which
+     * a request is also sent to another node, or 0 to not hedge requests. Default is 0.
+     */
+    public synchronized void setHedgePercentile(double hedgePercentile) {
+        if (hedgePercentile < 0 || hedgePercentile >= 100)
+            throw new IllegalArgumentException("Hedge percentile must be in [0, 100), not " + hedgePercentile);
+        this.hedgePercentile = hedgePercentile;
+        if (hedgePercentile > 0 && hedgeExecutor == null)
+            hedgeExecutor = createHedgeExecutor();
+        synchronized (samples) {
+            samplesSinceRecompute = recomputeInterval;
+        }
+    }
+
+    /** Returns the percentile of response times after which requests are hedged, or 0 if they are not */
+    public double getHedgePercentile() { return hedgePercentile; }
+
+    /** Returns whether requests are hedged */
+    public boolean isHedging() { return hedgePercentile > 0; }
+
+    /** Returns whether response times should be tracked */
+    boolean isTracking() { return adaptive || isHedging(); }
+
+    /**
+     * Sets the clock used to measure response times, returning the current time in nanoseconds.
+     * Default is System.nanoTime. This is for testing.
+     */
+    public void setNanoClock(LongSupplier nanoClock) { this.nanoClock = nanoClock; }
+
+    /** Returns the current time in nanoseconds according to the clock of this */
+    long nanoTime() { return nanoClock.getAsLong(); }
+
+    /** Returns the executor of hedged requests, or null if requests are not hedged */
+    ExecutorService hedgeExecutor() { return hedgeExecutor; }
+
+    /** Creates a pool of up to maxHedgeThreads threads, which rejects requests rather than queuing them */
+    private static ExecutorService createHedgeExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxHedgeThreads, maxHedgeThreads, 60, TimeUnit.SECONDS,
+                                                             new SynchronousQueue<>(),
+                                                             ThreadFactoryFactory.getDaemonThreadFactory("search.hedge"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns the node to send a request to
+     *
+     * @param nodes the nodes in service
+     * @param code the hash code of the request
+     * @param trynum the number of nodes tried before for this request
+     * @return the selected node, or null if there are none
+     */
+    public T select(Hasher.NodeList<T> nodes, int code, int trynum) {
+        if ( ! adaptive || trynum > 0 || nodes.getNodeCount() < 2) return nodes.select(code, trynum);
+
+        T hashed = nodes.select(code, 0);
+        T other = nodes.select(code, 1 + ThreadLocalRandom.current().nextInt(nodes.getNodeCount() - 1));
+        return cost(other) < cost(hashed) ? other : hashed;
+    }
+
+    /** Returns the node with the lowest cost which is not the given node, or null if there are none */
+    T selectOther(Hasher.NodeList<T> nodes, int code, T node) {
+        T best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < nodes.getNodeCount(); i++) {
+            T candidate = nodes.select(code, i);
+            if (candidate == null || candidate == node) continue;
+            double candidateCost = cost(candidate);
+            if (candidateCost < bestCost) {
+                best = candidate;
+                bestCost = candidateCost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the time in milliseconds after which a request should be sent to another node as well,
+     * or -1 if requests should not be hedged (now)
+     */
+    long hedgeDelay() {
+        if ( ! isHedging()) return -1;
+        synchronized (samples) {
+            if (sampleCount < minSamples) return -1;
+            if (hedgeDelayNanos < 0 || samplesSinceRecompute >= recomputeInterval) {
+                long[] sorted = Arrays.copyOf(samples, Math.min(sampleCount, sampleCapacity));
+                Arrays.sort(sorted);
+                hedgeDelayNanos = sorted[(int)Math.min(sorted.length - 1, sorted.length * hedgePercentile / 100)];
+                samplesSinceRecompute = 0;
+            }
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos));
+        }
+    }
+
+    /** Returns the moving average response time of the given node in milliseconds, or 0 if it is not known */
+    public double averageResponseTime(T node) {
+        NodeStatistics statistics = nodeStatistics.get(node);
+        return statistics == null ? 0 : statistics.averageResponseTime();
+    }
+
+    /** Returns the number of requests to the given node which have not completed */
+    public int outstandingRequests(T node) {
+        NodeStatistics statistics = nodeStatistics.get(node);
+        return statistics == null ? 0 : statistics.outstanding.get();
+    }
+
+    /** Call this when a request to a node is started */
+    void started(T node) {
+        statisticsOf(node).outstanding.incrementAndGet();
+    }
+
+    /**
+     * Call this when a request to a node is completed
+     *
+     * @param node the node which completed the request
+     * @param elapsedNanos the time taken by the request
+     * @param success whether the request succeeded. The moving average response time of nodes
+     *                failing requests is doubled, as a fast failure is no reason to send more requests to a node.
+     */
+    void completed(T node, long elapsedNanos, boolean success) {
+        NodeStatistics statistics = nodeStatistics.get(node);
+        if (statistics != null) {
+            statistics.outstanding.decrementAndGet();
+            statistics.add(elapsedNanos / 1e6, success);
+        }
+        if (success && isHedging())
+            addSample(elapsedNanos);
+    }
+
+    /**
+     * Call this when a request to a node is cancelled because another node responded first.
+     * The time until cancellation is used as the response time of the node, as it is a lower bound of it.
+     */
+    void cancelled(T node, long elapsedNanos) {
+        NodeStatistics statistics = nodeStatistics.get(node);
+        if (statistics == null) return;
+        statistics.outstanding.decrementAndGet();
+        statistics.add(elapsedNanos / 1e6, true);
+    }
+
+    /**
+     * Call this when a node is taken out of service, to forget its statistics.
+     * Requests to it which are still running when this is called are not recorded when they complete.
+     */
+    void removed(T node) {
+        nodeStatistics.remove(node);
+    }
+
+    /** Stops the threads of this */
+    void shutdown() {
+        ExecutorService executor = hedgeExecutor;
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    private void addSample(long elapsedNanos) {
+        synchronized (samples) {
+            samples[sampleCount++ % sampleCapacity] = elapsedNanos;
+            if (sampleCount >= 2 * sampleCapacity) // avoid overflow, keeping the position in the ring
+                sampleCount -= sampleCapacity;
+            samplesSinceRecompute++;
+        }
+    }
+
+    private double cost(T node) {
+        NodeStatistics statistics = nodeStatistics.get(node);
+        if (statistics == null) return 0;
+        return statistics.averageResponseTime() * (statistics.outstanding.get() + 1);
+    }
+
+    private NodeStatistics statisticsOf(T node) {
+        return nodeStatistics.computeIfAbsent(node, n -> new NodeStatistics());
+    }
+
+    private static final class NodeStatistics {
+
+        final AtomicInteger outstanding = new AtomicInteger(0);
+
+        private double averageResponseTime = 0;
+
+        synchronized void add(double responseTime, boolean success) {
+            if ( ! success)
+                averageResponseTime = Math.max(averageResponseTime * 2, responseTime);
+            else if (averageResponseTime == 0)
+                averageResponseTime = responseTime;
+            else
+                averageResponseTime = decay * responseTime + (1 - decay) * averageResponseTime;
+        }
+
+        synchronized double averageResponseTime() { return averageResponseTime; }
+
+    }
+
+}
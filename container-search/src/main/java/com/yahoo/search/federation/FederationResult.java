@@ -7,9 +7,14 @@ import com.yahoo.search.searchchain.FutureResult;
 
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -56,6 +61,53 @@ class FederationResult {
         }
     }
     
+    /**
+     * Waits for the targets in the order they complete, and passes each completed target to the given consumer
+     * in this thread as soon as it completes. This returns when all targets to wait for are complete or past their
+     * timeout, or when the given budget is spent, whichever comes first.
+     * Targets which completed while waiting are passed to the consumer also if we did not need to wait for them.
+     *
+     * @param queryTimeout the timeout of the query in ms
+     * @param budget the max time in ms to wait for any target
+     * @param clock the clock to measure time by
+     * @param consumer the consumer of completed targets
+     * @return the targets which have not been passed to the consumer, in the order they were added
+     */
+    public List<TargetResult> waitForEach(int queryTimeout, long budget, Clock clock, Consumer<TargetResult> consumer) {
+        long startTime = clock.millis();
+        BlockingQueue<TargetResult> completed = new LinkedBlockingQueue<>();
+        for (TargetResult targetResult : targetResults)
+            targetResult.futureResult.whenDone(() -> completed.add(targetResult));
+
+        Set<TargetResult> remaining = new LinkedHashSet<>(targetResults);
+        try {
+            while ( ! targetsToWaitFor.isEmpty()) {
+                long elapsedTime = clock.millis() - startTime;
+                targetsToWaitFor.removeIf(targetResult -> targetResult.timeout(queryTimeout) <= elapsedTime);
+                if (targetsToWaitFor.isEmpty()) break;
+
+                TargetResult nextTimeout = targetWithSmallestTimeout(targetsToWaitFor, queryTimeout);
+                long timeLeft = Math.min(budget, nextTimeout.timeout(queryTimeout)) - elapsedTime;
+                if (timeLeft <= 0) break;
+
+                TargetResult next = completed.poll(timeLeft, TimeUnit.MILLISECONDS);
+                if (next == null) continue; // a timeout or the budget is reached: Reevaluate
+                targetsToWaitFor.remove(next);
+                remaining.remove(next);
+                consumer.accept(next);
+            }
+        }
+        catch (InterruptedException e) {
+            // return what we have
+        }
+
+        for (TargetResult next; (next = completed.poll()) != null; ) {
+            if (remaining.remove(next))
+                consumer.accept(next);
+        }
+        return new ArrayList<>(remaining);
+    }
+
     /** Returns an immutable list of the results of this */
     public List<TargetResult> all() { return targetResults; }
 
@@ -107,6 +159,9 @@ class FederationResult {
             return futureResult.isDone() && ! futureResult.isCancelled();
         }
 
+        /** Returns the future result of this target */
+        FutureResult futureResult() { return futureResult; }
+
         private int timeout(long queryTimeout) {
             return (int)target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(queryTimeout);
         }
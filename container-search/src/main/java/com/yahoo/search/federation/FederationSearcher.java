@@ -10,6 +10,7 @@ import com.yahoo.component.chain.dependencies.After;
 import com.yahoo.component.chain.dependencies.Provides;
 import com.yahoo.component.provider.ComponentRegistry;
 import com.yahoo.concurrent.CopyOnWriteHashMap;
+import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.errorhandling.Results;
 import com.yahoo.errorhandling.Results.Builder;
 import com.yahoo.prelude.IndexFacts;
@@ -28,6 +29,7 @@ import com.yahoo.search.federation.sourceref.UnresolvedSearchChainException;
 import com.yahoo.search.query.Properties;
 import com.yahoo.search.query.properties.QueryProperties;
 import com.yahoo.search.query.properties.SubProperties;
+import com.yahoo.search.result.DefaultErrorHit;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
@@ -53,7 +55,10 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -80,6 +85,17 @@ public class FederationSearcher extends ForkingSearcher {
     public final static CompoundName SOURCENAME = new CompoundName("sourceName");
     public final static CompoundName PROVIDERNAME = new CompoundName("providerName");
 
+    /**
+     * The name of the query property which, if true, makes this merge the targets in the order they complete
+     * and return as soon as the targets to wait for are complete or the budget is spent.
+     * The targets still running at that point are returned as incomplete hit groups which are
+     * completed when the target completes, such that they can be rendered as they arrive.
+     */
+    public final static CompoundName STREAMING = new CompoundName("federation.streaming");
+
+    /** The name of the query property with the max time in ms to wait for targets when streaming */
+    public final static CompoundName BUDGET = new CompoundName("federation.budget");
+
     /** Logging field name constants */
     public static final String LOG_COUNT_PREFIX = "count_";
 
@@ -93,6 +109,16 @@ public class FederationSearcher extends ForkingSearcher {
 
     private final Clock clock = Clock.systemUTC();
 
+    /** Completes the groups of streamed targets which do not complete within their timeout */
+    private static final ScheduledThreadPoolExecutor timeoutScheduler = createTimeoutScheduler();
+
+    private static ScheduledThreadPoolExecutor createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler =
+                new ScheduledThreadPoolExecutor(1, ThreadFactoryFactory.getDaemonThreadFactory("federation.timeout"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
     @Inject
     public FederationSearcher(FederationConfig config, StrictContractsConfig strict,
                               ComponentRegistry<TargetSelector> targetSelectors) {
@@ -213,10 +239,37 @@ public class FederationSearcher extends ForkingSearcher {
 
     private void search(Query query, Execution execution, Collection<Target> targets, Result mergedResults) {
         FederationResult results = search(query, execution, targets);
-        results.waitForAll((int)query.getTimeLeft(), clock);
+        if (query.properties().getBoolean(STREAMING)) {
+            searchStreaming(query, execution, results, mergedResults);
+        }
+        else {
+            results.waitForAll((int)query.getTimeLeft(), clock);
+            mergeResults(query, results.all(), mergedResults);
+        }
+    }
 
+    private void searchStreaming(Query query, Execution execution, FederationResult results, Result mergedResults) {
+        long startTime = clock.millis();
+        int queryTimeout = (int)query.getTimeLeft();
+        long budget = query.properties().getLong(BUDGET, (long)queryTimeout);
+
+        List<FederationResult.TargetResult> completed = new ArrayList<>();
+        List<FederationResult.TargetResult> remaining = results.waitForEach(queryTimeout, budget, clock, completed::add);
+        mergeResults(query, completed, mergedResults);
+
+        for (FederationResult.TargetResult targetResult : remaining) {
+            long timeout = targetResult.target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(queryTimeout);
+            long timeLeft = timeout - (clock.millis() - startTime);
+            if (timeLeft <= 0)
+                addSearchChainTimedOutError(query, targetResult.target.getId());
+            else
+                mergedResults.hits().add(new StreamedTarget(query, execution, targetResult, timeLeft).group());
+        }
+    }
+
+    private void mergeResults(Query query, List<FederationResult.TargetResult> targetResults, Result mergedResults) {
         HitOrderer s = null;
-        for (FederationResult.TargetResult targetResult : results.all()) {
+        for (FederationResult.TargetResult targetResult : targetResults) {
             if ( ! targetResult.successfullyCompleted()) {
                 addSearchChainTimedOutError(query, targetResult.target.getId());
             } else {
@@ -556,27 +609,41 @@ public class FederationSearcher extends ForkingSearcher {
     }
 
     private static void addSearchChainTimedOutError(Query query, ComponentId searchChainId) {
+        query.errors().add(searchChainTimedOutError(searchChainId));
+    }
+
+    private static ErrorMessage searchChainTimedOutError(ComponentId searchChainId) {
         ErrorMessage timeoutMessage = ErrorMessage.createTimeout("The search chain '" + searchChainId + "' timed out.");
         timeoutMessage.setSource(searchChainId.stringValue());
-        query.errors().add(timeoutMessage);
+        return timeoutMessage;
     }
 
     private void mergeResult(Query query, Target target, Result mergedResults, Result result) {
         target.modifyTargetResult(result);
-        ComponentId searchChainId = target.getId();
-        Chain<Searcher> searchChain = target.getChain();
-
         mergedResults.mergeWith(result);
         HitGroup group = result.hits();
+        decorateGroup(group, target, result.getQuery());
+        decorateHits(target, result);
+        if (query.getTraceLevel()>=4)
+            query.trace("Got " + group.getConcreteSize() + " hits from " + group.getId(),false, 4);
+        mergedResults.hits().add(group);
+    }
+
+    private void decorateGroup(HitGroup group, Target target, Query targetQuery) {
+        ComponentId searchChainId = target.getId();
         group.setId("source:" + searchChainId.getName());
 
-        group.setSearcherSpecificMetaData(this, searchChain);
+        group.setSearcherSpecificMetaData(this, target.getChain());
         group.setMeta(false); // Set hit groups as non-meta as a default
         group.setAuxiliary(true); // Set hit group as auxiliary so that it doesn't contribute to count
         group.setSource(searchChainId.getName());
-        group.setQuery(result.getQuery());
+        group.setQuery(targetQuery);
+    }
 
-        for (Iterator<Hit> it = group.unorderedDeepIterator(); it.hasNext();) {
+    private void decorateHits(Target target, Result result) {
+        ComponentId searchChainId = target.getId();
+        Chain<Searcher> searchChain = target.getChain();
+        for (Iterator<Hit> it = result.hits().unorderedDeepIterator(); it.hasNext();) {
             Hit hit = it.next();
             hit.setSearcherSpecificMetaData(this, searchChain);
             hit.setSource(searchChainId.stringValue());
@@ -593,9 +660,63 @@ public class FederationSearcher extends ForkingSearcher {
             }
 
         }
-        if (query.getTraceLevel()>=4)
-            query.trace("Got " + group.getConcreteSize() + " hits from " + group.getId(),false, 4);
-        mergedResults.hits().add(group);
+    }
+
+    /**
+     * A target which was still running when federation returned. The hits of the target are added to
+     * an incomplete group when it completes, after filling them if necessary, or a timeout error
+     * if it does not complete within its timeout.
+     */
+    private class StreamedTarget {
+
+        private final Query query;
+        private final Execution execution;
+        private final Target target;
+        private final FutureResult futureResult;
+        private final HitGroup group;
+        private final AtomicBoolean complete = new AtomicBoolean(false);
+        private final ScheduledFuture<?> timeoutTask;
+
+        StreamedTarget(Query query, Execution execution, FederationResult.TargetResult targetResult, long timeout) {
+            this.query = query;
+            this.execution = execution;
+            this.target = targetResult.target;
+            this.futureResult = targetResult.futureResult();
+            this.group = HitGroup.createAsync("source:" + target.getId().getName());
+            decorateGroup(group, target, futureResult.getQuery());
+            timeoutTask = timeoutScheduler.schedule(this::timeout, timeout, TimeUnit.MILLISECONDS);
+            futureResult.whenDone(this::targetCompleted);
+        }
+
+        /** Returns the group which receives the hits of this target */
+        HitGroup group() { return group; }
+
+        private void targetCompleted() {
+            if (futureResult.isCancelled()) return;
+
+            Result result = futureResult.get();
+            target.modifyTargetResult(result);
+            decorateHits(target, result);
+            String summaryClass = query.getPresentation().getSummary();
+            if (result.hits().getConcreteSize() == 0 || result.isFilled(summaryClass))
+                complete(result.hits().asList());
+            else
+                new AsyncExecution(target.getChain(), execution).fill(result, summaryClass)
+                        .whenDone(() -> complete(result.hits().asList()));
+        }
+
+        private void timeout() {
+            futureResult.cancel(false);
+            ErrorMessage error = searchChainTimedOutError(target.getId());
+            complete(Collections.singletonList(new DefaultErrorHit(target.getId().stringValue(), error)));
+        }
+
+        private void complete(List<Hit> hits) {
+            if ( ! complete.compareAndSet(false, true)) return;
+            timeoutTask.cancel(false);
+            group.incoming().addLast(hits);
+        }
+
     }
 
     private Results<Target, ErrorMessage> resolveSearchChains(Collection<SearchChainInvocationSpec> prunedTargets,
@@ -3,6 +3,7 @@ package com.yahoo.search.federation.http;
 
 import com.google.inject.Inject;
 import com.yahoo.component.ComponentId;
+import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.jdisc.http.CertificateStore;
 import com.yahoo.log.LogLevel;
 import com.yahoo.prelude.Ping;
@@ -13,8 +14,11 @@ import com.yahoo.search.cluster.ClusterSearcher;
 import com.yahoo.search.federation.ProviderConfig.PingOption;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
+import com.yahoo.statistics.Callback;
 import com.yahoo.statistics.Counter;
+import com.yahoo.statistics.Handle;
 import com.yahoo.statistics.Statistics;
+import com.yahoo.statistics.Value;
 import com.yahoo.text.Utf8;
 
 import org.apache.http.*;
@@ -55,6 +59,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -164,6 +170,7 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
     public static final String LOG_HITCOUNT = "hit_count";
     public static final String LOG_CONNECT_TIMEOUT_PREFIX = "connect_timeout_";
     public static final String LOG_READ_TIMEOUT_PREFIX = "read_timeout_";
+    public static final String LOG_POOLED_CONNECTIONS_PREFIX = "pooled_connections_";
 
     protected final Logger log = Logger.getLogger(HTTPSearcher.class.getName());
 
@@ -172,6 +179,12 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
 
     private final Counter connectTimeouts;
 
+    /** The response latency of each backend node, by "host:port" */
+    private final Map<String, Value> nodeLatencies = new HashMap<>();
+
+    /** The number of connections in the shared pool, or null if connections are not persistent */
+    private Value pooledConnections = null;
+
     /** Whether to use certificates */
     protected boolean useCertificate = false;
 
@@ -190,7 +203,17 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
     private long certificateRetry = 0L;
 
     /** Set at construction if this is using persistent connections */
-    private ClientConnectionManager sharedConnectionManager = null;
+    private ThreadSafeClientConnManager sharedConnectionManager = null;
+
+    /** Set when this is deconstructed, after which the shared connections are no longer purged */
+    private volatile boolean closed = false;
+
+    /** Closes stale persistent connections of all instances */
+    private static final ScheduledExecutorService connectionPurger =
+            Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getDaemonThreadFactory("http.connection.purger"));
+
+    /** The DNS TTL to assume if none is set. This is the default value in yahoo jvm installations */
+    private static final long defaultDnsTtlSeconds = 120;
 
     /** Set at construction if using non-persistent connections */
     private ThreadLocal<SingleClientConnManager> singleClientConnManagerThreadLocal = null;
@@ -232,6 +255,13 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
         String suffix = "_" + getId().getName().replace('.', '_');
 
         connectTimeouts = new Counter(LOG_CONNECT_TIMEOUT_PREFIX + suffix, statistics, false);
+        for (Connection connection : connections) {
+            String node = connection.getHost() + ":" + connection.getPort();
+            nodeLatencies.put(node, new Value(LOG_LATENCY_START + suffix + "_" + node.replace('.', '_').replace(':', '_'),
+                                              statistics,
+                                              new Value.Parameters().setLogRaw(false).setLogMean(true).setLogMax(true)
+                                                                    .setNameExtension(true)));
+        }
 
         parameters.freeze();
         this.httpParameters = parameters;
@@ -242,34 +272,10 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
             HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
             ConnManagerParams.setTimeout(params, 10);
             sharedConnectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
-            Thread connectionPurgerThread = new Thread(() -> {
-                //this is the default value in yahoo jvm installations
-                long DNSTTLSec = 120;
-                while (true) {
-                    try {
-                        Thread.sleep(DNSTTLSec * 1000);
-                        if (sharedConnectionManager == null)
-                            continue;
-
-                        sharedConnectionManager.closeExpiredConnections();
-                        DNSTTLSec = Long.valueOf(java.security.Security
-                                .getProperty("networkaddress.cache.ttl"));
-                        //No DNS TTL, no need to close idle connections
-                        if (DNSTTLSec <= 0) {
-                            DNSTTLSec = 120;
-                            continue;
-                        }
-                        sharedConnectionManager.closeIdleConnections(2 * DNSTTLSec, TimeUnit.SECONDS);
-                    } catch (InterruptedException e) {
-                        return;
-                    } catch (NumberFormatException e) {
-                        continue;
-                    }
-                }
-            });
-            connectionPurgerThread.setDaemon(true);
-            connectionPurgerThread.start();
-
+            pooledConnections = new Value(LOG_POOLED_CONNECTIONS_PREFIX + suffix, statistics,
+                                          new Value.Parameters().setLogRaw(true).setNameExtension(false)
+                                                                .setCallback(new PooledConnections()));
+            schedulePurge(defaultDnsTtlSeconds);
         }
         else {
             singleClientConnManagerThreadLocal =new ThreadLocal<>();
@@ -278,6 +284,28 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
         initializeCertificate(httpParameters, certificateStore);
     }
 
+    private void schedulePurge(long delaySeconds) {
+        if (closed) return;
+        connectionPurger.schedule(() -> purgeConnections(delaySeconds), delaySeconds, TimeUnit.SECONDS);
+    }
+
+    /** Closes expired connections, and idle connections which may point to an address with an expired DNS entry */
+    private void purgeConnections(long dnsTtlSeconds) {
+        if (closed) return;
+        try {
+            sharedConnectionManager.closeExpiredConnections();
+            dnsTtlSeconds = Long.valueOf(java.security.Security.getProperty("networkaddress.cache.ttl"));
+            if (dnsTtlSeconds <= 0) // No DNS TTL, no need to close idle connections
+                dnsTtlSeconds = defaultDnsTtlSeconds;
+            else
+                sharedConnectionManager.closeIdleConnections(2 * dnsTtlSeconds, TimeUnit.SECONDS);
+        } catch (NumberFormatException e) {
+            // keep the current ttl
+        } finally {
+            schedulePurge(dnsTtlSeconds);
+        }
+    }
+
     /**
      * Initialize certificate store and proxy if they have been set to non-null,
      * non-empty values. It will wrap thrown exceptions from the certificate store into
@@ -692,7 +720,7 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
 
         HttpParams httpParams = httpParameters.toHttpParams(connectionTimeout, readTimeout);
         HttpClient httpClient = createClient(httpParams);
-        long start = 0L;
+        long start;
         HttpUriRequest request;
         if (httpParameters.getEnableProxy() && "http".equals(httpParameters.getProxyType())) {
             HttpHost proxy = new HttpHost(httpParameters.getProxyHost(),
@@ -729,11 +757,11 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
                 Header h = headers.nextHeader();
                 requestMeta.setField(LOG_HEADER_PREFIX + h.getName(), h.getValue());
             }
-            start = System.currentTimeMillis();
         }
 
         HttpResponse response;
 
+        start = System.currentTimeMillis();
         try {
             HttpContext context = new BasicHttpContext();
             response = httpClient.execute(request, context);
@@ -752,9 +780,17 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
             requestMeta.setField(LOG_LATENCY_START, latencyStart);
         }
         logResponseLatency(latencyStart);
+        Value nodeLatency = nodeLatencies.get(uri.getHost() + ":" + uri.getPort());
+        if (nodeLatency != null)
+            nodeLatency.put((double) latencyStart);
         return response;
     }
 
+    /** Returns the response latency statistics of the given backend node, or null if it is not a node of this */
+    Value getNodeLatency(Connection connection) {
+        return nodeLatencies.get(connection.getHost() + ":" + connection.getPort());
+    }
+
     private String getIpAddress(HttpContext context) {
         HttpConnection connection = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
         if (connection instanceof HttpInetConnection) {
@@ -930,6 +966,24 @@ public abstract class HTTPSearcher extends ClusterSearcher<Connection> {
         }
     }
 
+    @Override
+    public void deconstruct() {
+        super.deconstruct();
+        closed = true;
+        if (sharedConnectionManager != null)
+            sharedConnectionManager.shutdown();
+    }
+
+    /** Samples the number of connections in the shared pool each logging cycle */
+    private final class PooledConnections implements Callback {
+
+        @Override
+        public void run(Handle h, boolean firstTime) {
+            ((Value) h).put(closed ? 0 : sharedConnectionManager.getConnectionsInPool());
+        }
+
+    }
+
     /**
      * Only for testing.
      */
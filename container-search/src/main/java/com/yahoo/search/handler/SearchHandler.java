@@ -47,9 +47,11 @@ import com.yahoo.search.query.profile.config.QueryProfilesConfig;
 import com.yahoo.search.query.properties.DefaultProperties;
 import com.yahoo.search.rendering.RendererRegistry;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.searchchain.AsyncExecution;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.search.searchchain.SearchChainRegistry;
 import com.yahoo.search.statistics.ElapsedTime;
+import com.yahoo.search.statistics.SearcherTimingMetrics;
 import com.yahoo.statistics.Callback;
 import com.yahoo.statistics.Handle;
 import com.yahoo.statistics.Statistics;
@@ -60,6 +62,7 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -79,6 +82,9 @@ public class SearchHandler extends LoggingRequestHandler {
 
     private static final CompoundName DETAILED_TIMING_LOGGING = new CompoundName("trace.timingDetails");
 
+    /** The fraction of queries, between 0 and 1, for which time use per searcher is tracked and reported as metrics */
+    private static final CompoundName TIMING_SAMPLE_RATE = new CompoundName("trace.timingSampleRate");
+
     /** Event name for number of connections to the search subsystem */
     private static final String SEARCH_CONNECTIONS = "search_connections";
 
@@ -114,6 +120,8 @@ public class SearchHandler extends LoggingRequestHandler {
     
     private final String selfHostname = HostName.getLocalhost();
 
+    private final SearcherTimingMetrics searcherTimingMetrics;
+
     private final class MeanConnections implements Callback {
 
         @Override
@@ -124,6 +132,7 @@ public class SearchHandler extends LoggingRequestHandler {
             }
             Value v = (Value) h;
             metric.set(SEARCH_CONNECTIONS, v.getMean(), null);
+            AsyncExecution.reportExecutorMetrics(metric);
         }
     }
 
@@ -155,6 +164,7 @@ public class SearchHandler extends LoggingRequestHandler {
 
         this.linguistics = linguistics;
         this.maxThreads = examineExecutor(executor);
+        this.searcherTimingMetrics = new SearcherTimingMetrics(metric);
 
         searchConnections = new Value(SEARCH_CONNECTIONS, statistics,
                                       new Value.Parameters().setLogRaw(true).setLogMax(true)
@@ -383,7 +393,8 @@ public class SearchHandler extends LoggingRequestHandler {
                                             new Execution.Context(registry, indexFacts, specialTokens, rendererRegistry, linguistics));
         query.getModel().setExecution(execution);
         execution.trace().setForceTimestamps(query.properties().getBoolean(FORCE_TIMESTAMPS, false));
-        if (query.properties().getBoolean(DETAILED_TIMING_LOGGING, false)) {
+        boolean timingDetails = query.properties().getBoolean(DETAILED_TIMING_LOGGING, false) || isTimingSampled(query);
+        if (timingDetails) {
             // check and set (instead of set directly) to avoid overwriting stuff from prepareForBreakdownAnalysis()
             execution.context().setDetailedDiagnostics(true);
         }
@@ -396,6 +407,8 @@ public class SearchHandler extends LoggingRequestHandler {
         execution.fill(result, result.getQuery().getPresentation().getSummary());
 
         traceExecutionTimes(query, result);
+        if (timingDetails)
+            reportTimingDetails(query, result, searchChain);
         traceVespaVersion(query);
         traceRequestAttributes(query);
         return result;
@@ -551,6 +564,18 @@ public class SearchHandler extends LoggingRequestHandler {
         }
     }
 
+    private boolean isTimingSampled(Query query) {
+        double sampleRate = query.properties().getDouble(TIMING_SAMPLE_RATE, 0.0);
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private void reportTimingDetails(Query query, Result result, Chain<? extends Searcher> searchChain) {
+        ElapsedTime elapsedTime = result.getElapsedTime();
+        searcherTimingMetrics.report(searchChain.getId().stringValue(), elapsedTime);
+        if (query.isTraceable(3) && elapsedTime.hasDetailedData())
+            query.trace(elapsedTime.detailedReport(), false, 3);
+    }
+
     private void traceVespaVersion(Query query) {
         query.trace("Vespa version: " + Vtag.currentVersion.toString(), false, 4);
     }
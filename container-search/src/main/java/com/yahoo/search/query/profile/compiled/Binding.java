@@ -75,6 +75,12 @@ public class Binding implements Comparable<Binding> {
         this.hashCode = bindingHash;
     }
 
+    /** Returns the dimensions bound by this. The returned array must not be modified. */
+    String[] dimensions() { return dimensions; }
+
+    /** Returns the values of the dimensions bound by this, in the same order. The returned array must not be modified. */
+    String[] dimensionValues() { return dimensionValues; }
+
     /** Returns true only if this binding is null (contains no values for its dimensions (if any) */
     public boolean isNull() { return dimensions.length == 0; }
 
@@ -18,11 +18,18 @@ import java.util.Set;
  */
 public class DimensionalValue<VALUE> {
 
+    /** The minimal number of variants for which we index the variant bindings */
+    private static final int minIndexedVariants = 8;
+
     private final List<Value<VALUE>> values;
 
+    /** An index of the bindings of the values, in the same order, or null to match each value in turn */
+    private final VariantIndex index;
+
     /** Create a set of variants which is a single value regardless of dimensions */
     public DimensionalValue(Value<VALUE> value) {
         this.values = Collections.singletonList(value);
+        this.index = null;
     }
 
     public DimensionalValue(List<Value<VALUE>> valueVariants) {
@@ -33,12 +40,24 @@ public class DimensionalValue<VALUE> {
             this.values = new ArrayList<>(valueVariants);
             Collections.sort(this.values);
         }
+        this.index = values.size() >= minIndexedVariants ? new VariantIndex(bindings(values)) : null;
+    }
+
+    private static List<Binding> bindings(List<? extends Value<?>> values) {
+        List<Binding> bindings = new ArrayList<>(values.size());
+        for (Value<?> value : values)
+            bindings.add(value.binding());
+        return bindings;
     }
 
     /** Returns the value matching this context, or null if none */
     public VALUE get(Map<String, String> context) {
         if (context == null)
             context = Collections.emptyMap();
+        if (index != null) {
+            int match = index.firstMatch(context);
+            return match < 0 ? null : values.get(match).value();
+        }
         for (Value<VALUE> value : values) {
             if (value.matches(context))
                 return value.value();
@@ -0,0 +1,116 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.compiled;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over an ordered list of bindings which finds the first binding matching a context
+ * using a single lookup per dimension, rather than matching each binding in turn.
+ * <p>
+ * For each dimension, this holds the set of bindings which are compatible with each value of that dimension
+ * (those binding it to that value, and those not binding it at all). The bindings matching a context
+ * is the intersection of these sets over all dimensions.
+ */
+class VariantIndex {
+
+    private final int size;
+
+    /** The number of 64 bit words in each set of bindings */
+    private final int words;
+
+    /** The dimensions bound by any of the bindings */
+    private final String[] dimensions;
+
+    /** For each dimension, the bindings which are compatible with each value of that dimension */
+    private final List<Map<String, long[]>> compatibleBindings;
+
+    /** For each dimension, the bindings which do not bind that dimension */
+    private final long[][] unboundBindings;
+
+    /** Creates an index over the given bindings. The order of the bindings is the order of precedence. */
+    VariantIndex(List<Binding> bindings) {
+        this.size = bindings.size();
+        this.words = (size + 63) / 64;
+
+        Map<String, Map<String, long[]>> boundValues = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Binding binding = bindings.get(i);
+            for (int j = 0; j < binding.dimensions().length; j++) {
+                Map<String, long[]> values = boundValues.computeIfAbsent(binding.dimensions()[j], k -> new HashMap<>());
+                set(values.computeIfAbsent(binding.dimensionValues()[j], k -> new long[words]), i);
+            }
+        }
+
+        this.dimensions = boundValues.keySet().toArray(new String[boundValues.size()]);
+        this.compatibleBindings = new ArrayList<>(dimensions.length);
+        this.unboundBindings = new long[dimensions.length][];
+        for (int d = 0; d < dimensions.length; d++) {
+            long[] unbound = new long[words];
+            for (int i = 0; i < size; i++) {
+                if ( ! binds(bindings.get(i), dimensions[d]))
+                    set(unbound, i);
+            }
+            Map<String, long[]> compatible = boundValues.get(dimensions[d]);
+            for (long[] bound : compatible.values()) {
+                for (int w = 0; w < words; w++)
+                    bound[w] |= unbound[w];
+            }
+            unboundBindings[d] = unbound;
+            compatibleBindings.add(compatible);
+        }
+    }
+
+    /** Returns the index of the first binding matching this context, or -1 if none */
+    int firstMatch(Map<String, String> context) {
+        if (words == 1) // special cased to avoid allocation
+            return firstMatchInSingleWord(context);
+
+        long[] candidates = new long[words];
+        for (int w = 0; w < words; w++)
+            candidates[w] = -1L;
+        for (int d = 0; d < dimensions.length; d++) {
+            long[] compatible = compatibleWith(d, context);
+            long remaining = 0;
+            for (int w = 0; w < words; w++) {
+                candidates[w] &= compatible[w];
+                remaining |= candidates[w];
+            }
+            if (remaining == 0) return -1;
+        }
+        for (int w = 0; w < words; w++) {
+            if (candidates[w] != 0) {
+                int index = w * 64 + Long.numberOfTrailingZeros(candidates[w]);
+                return index < size ? index : -1;
+            }
+        }
+        return -1;
+    }
+
+    private int firstMatchInSingleWord(Map<String, String> context) {
+        long candidates = -1L >>> (64 - size);
+        for (int d = 0; d < dimensions.length && candidates != 0; d++)
+            candidates &= compatibleWith(d, context)[0];
+        return candidates == 0 ? -1 : Long.numberOfTrailingZeros(candidates);
+    }
+
+    private long[] compatibleWith(int dimension, Map<String, String> context) {
+        String value = context.get(dimensions[dimension]);
+        long[] compatible = value == null ? null : compatibleBindings.get(dimension).get(value);
+        return compatible != null ? compatible : unboundBindings[dimension];
+    }
+
+    private static boolean binds(Binding binding, String dimension) {
+        for (String bound : binding.dimensions())
+            if (bound.equals(dimension)) return true;
+        return false;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index / 64] |= 1L << (index % 64);
+    }
+
+}
@@ -3,14 +3,19 @@ package com.yahoo.search.searchchain;
 
 import com.yahoo.component.chain.Chain;
 import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.result.ErrorMessage;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides asynchronous execution of searchchains.
@@ -44,17 +49,32 @@ import java.util.concurrent.*;
  */
 public class AsyncExecution {
 
+    public static final String QUEUE_TIME_METRIC = "async_execution_queue_time";
+    public static final String MAX_QUEUE_TIME_METRIC = "async_execution_queue_time_max";
+    public static final String QUEUED_METRIC = "async_execution_queued";
+    public static final String THREADS_METRIC = "async_execution_threads";
+    public static final String REJECTED_METRIC = "async_execution_rejected";
+    public static final String CALLER_RUNS_METRIC = "async_execution_caller_runs";
+
     private static final ThreadFactory threadFactory = ThreadFactoryFactory.getThreadFactory("search");
 
-    private static final Executor executorMain = createExecutor();
+    /** The number of threads kept when idle */
+    private static final int coreThreads = 100;
+
+    /** The max number of threads. Tasks are queued when all are busy */
+    private static final int maxThreads = 500;
+
+    /** The max number of queued tasks. Tasks are rejected with an error result when the queue is full */
+    private static final int queueCapacity = 5000;
 
-    private static Executor createExecutor() {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(100, Integer.MAX_VALUE, 1L, TimeUnit.SECONDS,
-                                                            new SynchronousQueue<>(false), threadFactory);
+    private static final FairExecutor executorMain = createExecutor();
+
+    private static FairExecutor createExecutor() {
+        FairExecutor executor = new FairExecutor(threadFactory, coreThreads, maxThreads, queueCapacity, 1L, TimeUnit.SECONDS);
         // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
         // get the dreaded thread locals initialized even if they will never run.
         // That counters what we we want to achieve with the Q that will prefer thread locality.
-        executor.prestartAllCoreThreads();
+        executor.prestartCoreThreads();
         return executor;
     }
 
@@ -129,10 +149,21 @@ public class AsyncExecution {
         }, query);
     }
 
-    private static Executor getExecutor() {
+    private static FairExecutor getExecutor() {
         return executorMain;
     }
 
+    /** Reports metrics of the executor running async executions, since the last call to this */
+    public static void reportExecutorMetrics(Metric metric) {
+        FairExecutor.Statistics statistics = executorMain.takeStatistics();
+        metric.set(QUEUE_TIME_METRIC, statistics.meanQueueTimeMillis(), null);
+        metric.set(MAX_QUEUE_TIME_METRIC, statistics.maxQueueTimeMillis(), null);
+        metric.set(QUEUED_METRIC, statistics.queuedTasks(), null);
+        metric.set(THREADS_METRIC, statistics.threads(), null);
+        metric.add(REJECTED_METRIC, statistics.rejectedTasks(), null);
+        metric.add(CALLER_RUNS_METRIC, statistics.callerRunTasks(), null);
+    }
+
     /**
      * The future of this functions returns the original Result
      *
@@ -146,25 +177,24 @@ public class AsyncExecution {
 
     }
 
-    private static <T> Future<T> getFuture(Callable<T> callable) {
-        final FutureTask<T> future = new FutureTask<>(callable);
-        getExecutor().execute(future);
-        return future;
-    }
-
-    private static Future<Void> runTask(Runnable runnable) {
-        return getFuture(() -> {
-            runnable.run();
-            return null;
-        });
-    }
-
     private FutureResult getFutureResult(Callable<Result> callable, Query query) {
         FutureResult future = new FutureResult(callable, execution, query);
-        getExecutor().execute(future);
+        try {
+            getExecutor().execute(execution.chain().getId(), future);
+        }
+        catch (RejectedExecutionException e) {
+            // Complete with an error rather than adding threads or queueing without bound on overload
+            future = new FutureResult(() -> new Result(query, createOverloadError(e)), execution, query);
+            future.run();
+        }
         return future;
     }
 
+    private ErrorMessage createOverloadError(RejectedExecutionException e) {
+        return ErrorMessage.createUnspecifiedError("Could not execute '" + execution + "' due to overload: " +
+                                                   e.getMessage());
+    }
+
     /*
      * Waits for all futures until the given timeout. If a FutureResult isn't
      * done when the timeout expires, it will be cancelled, and it will return a
@@ -176,13 +206,11 @@ public class AsyncExecution {
     public static List<Result> waitForAll(Collection<FutureResult> tasks, long timeoutMs) {
         // Copy the list in case it is modified while we are waiting
         List<FutureResult> workingTasks = new ArrayList<>(tasks);
-        try {
-            runTask(() -> {
-                for (FutureResult task : workingTasks)
-                    task.get();
-            }).get(timeoutMs, TimeUnit.MILLISECONDS);
-        }catch (TimeoutException | InterruptedException | ExecutionException e) {
-            // Handle timeouts below
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (FutureResult task : workingTasks) {
+            long timeLeft = deadline - System.currentTimeMillis();
+            if (timeLeft <= 0) break;
+            task.getIfAvailable(timeLeft, TimeUnit.MILLISECONDS);
         }
 
         List<Result> results = new ArrayList<>(tasks.size());
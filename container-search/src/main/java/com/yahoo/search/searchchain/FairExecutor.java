@@ -0,0 +1,274 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded executor which takes queued tasks in turn from each key (such as a search chain), such that
+ * tasks for one key cannot starve those of others.
+ * <p>
+ * Threads are created on demand up to a max number, and threads above the core number exit when idle.
+ * When no thread is available, tasks are queued up to a max number, after which they are rejected.
+ * Tasks submitted by a thread of this executor when no thread is available are run by the submitting thread,
+ * as the submitter may be waiting for the task, which would deadlock if all threads did so.
+ * <p>
+ * This is thread safe.
+ */
+final class FairExecutor {
+
+    private static final Logger log = Logger.getLogger(FairExecutor.class.getName());
+
+    private final ThreadFactory threadFactory;
+    private final int coreThreads;
+    private final int maxThreads;
+    private final int queueCapacity;
+    private final long keepAliveNanos;
+
+    /** The queued tasks of each key which has any */
+    private final Map<Object, ArrayDeque<QueuedTask>> queues = new HashMap<>();
+
+    /** The keys having queued tasks, in the order they should be served */
+    private final ArrayDeque<Object> keysInTurn = new ArrayDeque<>();
+
+    private final ThreadLocal<Boolean> isWorker = new ThreadLocal<>();
+
+    // All fields below are guarded by this
+    private int queuedTasks = 0;
+    private int threads = 0;
+    private int startingThreads = 0;
+    private int idleThreads = 0;
+    private boolean shutdown = false;
+    private Statistics statistics = new Statistics();
+
+    /**
+     * Creates an executor
+     *
+     * @param threadFactory the factory of the threads of this
+     * @param coreThreads the number of threads to keep also when idle
+     * @param maxThreads the max number of threads
+     * @param queueCapacity the max number of tasks waiting for a thread
+     * @param keepAlive the time threads above the core number are kept when idle
+     */
+    FairExecutor(ThreadFactory threadFactory, int coreThreads, int maxThreads, int queueCapacity, long keepAlive, TimeUnit unit) {
+        if (coreThreads > maxThreads)
+            throw new IllegalArgumentException("Core threads (" + coreThreads + ") cannot exceed max threads (" + maxThreads + ")");
+        this.threadFactory = threadFactory;
+        this.coreThreads = coreThreads;
+        this.maxThreads = maxThreads;
+        this.queueCapacity = queueCapacity;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+    }
+
+    /** Starts all core threads */
+    void prestartCoreThreads() {
+        synchronized (this) {
+            while (threads < coreThreads)
+                startThread();
+        }
+    }
+
+    /**
+     * Executes a task at some point in the future
+     *
+     * @param key the key of the task, which determines the queue it waits in
+     * @param task the task to run
+     * @throws RejectedExecutionException if the task is rejected due to overload or shutdown
+     */
+    void execute(Object key, Runnable task) {
+        synchronized (this) {
+            if (shutdown)
+                throw new RejectedExecutionException("This executor is shut down");
+
+            int waitingTasks = queuedTasks - idleThreads - startingThreads; // tasks no thread is about to take
+            boolean threadAvailable = waitingTasks < 0;
+            if ( ! threadAvailable && threads < maxThreads) {
+                startThread();
+                threadAvailable = true;
+            }
+            if (threadAvailable || ( ! isWorker() && waitingTasks < queueCapacity)) {
+                enqueue(key, new QueuedTask(task));
+                return;
+            }
+            if ( ! isWorker()) {
+                statistics.rejectedTasks++;
+                throw new RejectedExecutionException("Rejected: " + waitingTasks + " tasks are waiting for " +
+                                                     threads + " busy threads");
+            }
+            statistics.callerRunTasks++;
+        }
+        task.run();
+    }
+
+    /** Stops all threads of this once the tasks already submitted are run */
+    void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+    }
+
+    /** Returns the statistics of this since the last call to this, or since this was created */
+    synchronized Statistics takeStatistics() {
+        Statistics taken = statistics;
+        taken.queuedTasks = queuedTasks;
+        taken.threads = threads;
+        statistics = new Statistics();
+        return taken;
+    }
+
+    private boolean isWorker() {
+        return isWorker.get() != null;
+    }
+
+    private void startThread() {
+        threads++;
+        startingThreads++;
+        threadFactory.newThread(this::work).start();
+    }
+
+    private void enqueue(Object key, QueuedTask task) {
+        ArrayDeque<QueuedTask> queue = queues.get(key);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(key, queue);
+            keysInTurn.add(key);
+        }
+        queue.add(task);
+        queuedTasks++;
+        notify();
+    }
+
+    /** Returns the next task in turn. This must be called while synchronized and when there are queued tasks */
+    private QueuedTask dequeue() {
+        Object key = keysInTurn.poll();
+        ArrayDeque<QueuedTask> queue = queues.get(key);
+        QueuedTask task = queue.poll();
+        if (queue.isEmpty())
+            queues.remove(key);
+        else
+            keysInTurn.add(key);
+        queuedTasks--;
+        statistics.add(System.nanoTime() - task.queuedAt);
+        return task;
+    }
+
+    private void work() {
+        isWorker.set(Boolean.TRUE);
+        boolean exited = false;
+        try {
+            for (QueuedTask task = nextTask(true); task != null; task = nextTask(false)) {
+                try {
+                    task.task.run();
+                }
+                catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Exception running " + task.task, e);
+                }
+            }
+            exited = true;
+        }
+        finally {
+            if ( ! exited) // an Error is ending this thread
+                died();
+        }
+    }
+
+    /** Removes a thread ended by an Error from the count, replacing it if tasks are waiting */
+    private synchronized void died() {
+        threads--;
+        if ( ! shutdown && queuedTasks > 0)
+            startThread();
+    }
+
+    /**
+     * Waits for and returns the next task to run, or null if the calling thread should exit
+     *
+     * @param first whether this is the first call from a new thread
+     */
+    private synchronized QueuedTask nextTask(boolean first) {
+        if (first)
+            startingThreads--;
+        long idleUntil = System.nanoTime() + keepAliveNanos;
+        while (queuedTasks == 0) {
+            long timeLeft = idleUntil - System.nanoTime();
+            if (shutdown || (timeLeft <= 0 && threads > coreThreads)) {
+                threads--;
+                return null;
+            }
+            idleThreads++;
+            try {
+                if (threads > coreThreads)
+                    TimeUnit.NANOSECONDS.timedWait(this, timeLeft);
+                else
+                    wait();
+            }
+            catch (InterruptedException e) {
+                // Ignore; continue waiting for tasks
+            }
+            finally {
+                idleThreads--;
+            }
+        }
+        return dequeue();
+    }
+
+    private static final class QueuedTask {
+
+        final Runnable task;
+        final long queuedAt = System.nanoTime();
+
+        QueuedTask(Runnable task) {
+            this.task = task;
+        }
+
+    }
+
+    /** Statistics of the tasks of an executor over some period of time */
+    static final class Statistics {
+
+        private long startedTasks = 0;
+        private long totalQueueTimeNanos = 0;
+        private long maxQueueTimeNanos = 0;
+        private long rejectedTasks = 0;
+        private long callerRunTasks = 0;
+        private int queuedTasks = 0;
+        private int threads = 0;
+
+        private void add(long queueTimeNanos) {
+            startedTasks++;
+            totalQueueTimeNanos += queueTimeNanos;
+            maxQueueTimeNanos = Math.max(maxQueueTimeNanos, queueTimeNanos);
+        }
+
+        /** Returns the number of tasks started by threads of the executor */
+        long startedTasks() { return startedTasks; }
+
+        /** Returns the average time tasks waited for a thread in milliseconds, or 0 if no tasks were started */
+        double meanQueueTimeMillis() {
+            return startedTasks == 0 ? 0 : totalQueueTimeNanos / 1e6 / startedTasks;
+        }
+
+        /** Returns the max time a task waited for a thread in milliseconds */
+        double maxQueueTimeMillis() { return maxQueueTimeNanos / 1e6; }
+
+        /** Returns the number of tasks which were rejected because the queue was full */
+        long rejectedTasks() { return rejectedTasks; }
+
+        /** Returns the number of tasks which were run by the submitting thread of the executor */
+        long callerRunTasks() { return callerRunTasks; }
+
+        /** Returns the number of tasks waiting for a thread when these statistics were taken */
+        int queuedTasks() { return queuedTasks; }
+
+        /** Returns the number of threads when these statistics were taken */
+        int threads() { return threads; }
+
+    }
+
+}
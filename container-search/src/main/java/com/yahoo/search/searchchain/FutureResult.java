@@ -6,6 +6,8 @@ import com.yahoo.search.Result;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.yolean.Exceptions;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -27,6 +29,9 @@ public class FutureResult extends FutureTask<Result> {
     /** Only used for generating messages */
     private final Execution execution;
 
+    /** Listeners to run when this completes, or null when they have been run. Guarded by this */
+    private List<Runnable> doneListeners = new ArrayList<>();
+
     private final static Logger log = Logger.getLogger(FutureResult.class.getName());
 
     public FutureResult(Callable<Result> callable, Execution execution, Query query) {
@@ -85,6 +90,31 @@ public class FutureResult extends FutureTask<Result> {
         }
     }
 
+    /**
+     * Runs the given listener when this completes, successfully or not, or immediately if it is already complete.
+     * The listener is run by the thread completing this, so it should be fast and must not block.
+     */
+    public void whenDone(Runnable listener) {
+        synchronized (this) {
+            if (doneListeners != null) {
+                doneListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    @Override
+    protected void done() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            listeners = doneListeners;
+            doneListeners = null;
+        }
+        for (Runnable listener : listeners)
+            listener.run();
+    }
+
     /** Returns the query used in this execution, never null */
     public Query getQuery() {
         return query;
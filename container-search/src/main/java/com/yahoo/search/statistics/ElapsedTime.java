@@ -202,10 +202,26 @@ public class ElapsedTime {
     }
 
     public String detailedReport() {
-        Map<String, TimeTracker.SearcherTimer> raw = new LinkedHashMap<>();
         StringBuilder report = new StringBuilder();
         int preLen;
         report.append("Time use per searcher: ");
+        preLen = report.length();
+        for (TimeTracker.SearcherTimer value : searcherTimers().values()) {
+            if (report.length() > preLen) {
+                report.append(",\n    ");
+            }
+            report.append(value.toString());
+        }
+        report.append(".");
+        return report.toString();
+    }
+
+    /**
+     * The time use of each searcher summed over all tracks, keyed on
+     * searcher ID, in the order the searchers were first seen.
+     */
+    Map<String, TimeTracker.SearcherTimer> searcherTimers() {
+        Map<String, TimeTracker.SearcherTimer> raw = new LinkedHashMap<>();
         for (TimeTracker t : tracks) {
             if (t.searcherTracking() == null) {
                 continue;
@@ -222,14 +238,6 @@ public class ElapsedTime {
                 sum.merge(s);
             }
         }
-        preLen = report.length();
-        for (TimeTracker.SearcherTimer value : raw.values()) {
-            if (report.length() > preLen) {
-                report.append(",\n    ");
-            }
-            report.append(value.toString());
-        }
-        report.append(".");
-        return report.toString();
+        return raw;
     }
 }
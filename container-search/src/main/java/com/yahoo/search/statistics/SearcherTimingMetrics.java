@@ -0,0 +1,71 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.statistics;
+
+import com.yahoo.concurrent.CopyOnWriteHashMap;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.statistics.TimeTracker.Activity;
+import com.yahoo.search.statistics.TimeTracker.SearcherTimer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the time spent in each searcher by a query as metrics, with the chain, searcher and
+ * activity as dimensions. Time use per searcher is only tracked for executions having detailed
+ * diagnostics enabled, so this is typically used for a sampled fraction of queries.
+ * <p>
+ * The time reported for a searcher is the time spent in the searcher itself, both processing the query
+ * and processing the result, excluding the time spent in the searchers following it. For the searcher
+ * talking to a backend, this is the round trip time to the backend.
+ * <p>
+ * This is thread safe.
+ */
+public final class SearcherTimingMetrics {
+
+    /** The milliseconds spent in a searcher by a query, for one activity */
+    public static final String SEARCHER_LATENCY_METRIC = "searcher_latency";
+
+    private final Metric metric;
+    private final Map<String, Metric.Context> contexts = new CopyOnWriteHashMap<>();
+
+    public SearcherTimingMetrics(Metric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Reports the time spent in each searcher tracked by the given elapsed time.
+     * This does nothing if time use per searcher was not tracked.
+     *
+     * @param chainName the name of the chain executing the query
+     * @param elapsedTime the elapsed time of the result of the query
+     */
+    public void report(String chainName, ElapsedTime elapsedTime) {
+        if ( ! elapsedTime.hasDetailedData()) return;
+
+        for (SearcherTimer timer : elapsedTime.searcherTimers().values()) {
+            for (Activity activity : Activity.values()) {
+                Long invoking = timer.getInvoking(activity);
+                Long returning = timer.getReturning(activity);
+                if (invoking == null && returning == null) continue; // the searcher did not take part in this
+
+                long time = (invoking == null ? 0L : invoking) + (returning == null ? 0L : returning);
+                metric.set(SEARCHER_LATENCY_METRIC, time, getContext(chainName, timer.getName(), activity));
+            }
+        }
+    }
+
+    private Metric.Context getContext(String chainName, String searcherName, Activity activity) {
+        String key = chainName + "/" + searcherName + "/" + activity;
+        Metric.Context context = contexts.get(key);
+        if (context == null) {
+            Map<String, String> dimensions = new HashMap<>();
+            dimensions.put("chain", chainName);
+            dimensions.put("searcher", searcherName);
+            dimensions.put("activity", activity.name().toLowerCase());
+            context = metric.createContext(dimensions);
+            contexts.put(key, context);
+        }
+        return context;
+    }
+
+}
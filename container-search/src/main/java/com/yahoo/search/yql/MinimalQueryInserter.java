@@ -2,6 +2,8 @@
 package com.yahoo.search.yql;
 
 import com.google.common.annotations.Beta;
+import com.google.inject.Inject;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -36,7 +38,18 @@ public class MinimalQueryInserter extends Searcher {
     private static final CompoundName MAX_HITS = new CompoundName("maxHits");
     private static final CompoundName MAX_OFFSET = new CompoundName("maxOffset");
 
+    /** The max number of distinct YQL program templates to cache */
+    private static final int programCacheCapacity = 1000;
+
+    private final YqlProgramCache programCache;
+
     public MinimalQueryInserter() {
+        this(null);
+    }
+
+    @Inject
+    public MinimalQueryInserter(Metric metric) {
+        programCache = new YqlProgramCache(programCacheCapacity, metric);
     }
 
     @Override
@@ -47,6 +60,7 @@ public class MinimalQueryInserter extends Searcher {
         ParserEnvironment env = ParserEnvironment.fromExecutionContext(execution.context());
         YqlParser parser = (YqlParser) ParserFactory.newInstance(Query.Type.YQL, env);
         parser.setQueryParser(false);
+        parser.setProgramCache(programCache);
         parser.setUserQuery(query);
         QueryTree newTree;
         try {
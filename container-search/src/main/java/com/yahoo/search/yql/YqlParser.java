@@ -200,6 +200,7 @@ public class YqlParser implements Parser {
     private boolean resegment = false;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
+    private YqlProgramCache programCache = null;
 
     private static final QueryVisitor noEmptyTerms = new QueryVisitor() {
 
@@ -728,7 +729,10 @@ public class YqlParser implements Parser {
     private OperatorNode<?> parseYqlProgram() {
         OperatorNode<?> ast;
         try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
+            if (programCache != null)
+                ast = programCache.parse(currentlyParsing.getQuery());
+            else
+                ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
@@ -1462,6 +1466,9 @@ public class YqlParser implements Parser {
     @Beta
     public void setQueryParser(boolean queryParser) { this.queryParser = queryParser; }
 
+    /** Sets a cache of parsed programs to use when parsing, or null (default) to parse each program from scratch */
+    void setProgramCache(YqlProgramCache programCache) { this.programCache = programCache; }
+
     @Beta
     public void setUserQuery(@NonNull Query userQuery) { this.userQuery = userQuery; }
 
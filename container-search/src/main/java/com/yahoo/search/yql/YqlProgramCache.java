@@ -0,0 +1,254 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.yahoo.jdisc.Metric;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of parsed YQL programs. Programs are cached as templates keyed by the program text with all literals
+ * replaced by placeholders, such that programs differing only in literal values share a template.
+ * On a hit, the template is bound to the literal values of the given program, which is much cheaper than
+ * parsing it.
+ * <p>
+ * Literals which do not end up as literal nodes in the parsed program (such as annotation values and map keys)
+ * cannot be bound. Once a program shape is parsed, these literals are kept verbatim in the key of its templates.
+ * <p>
+ * This is thread safe.
+ */
+final class YqlProgramCache {
+
+    public static final String HITS_METRIC = "yql_program_cache_hits";
+    public static final String MISSES_METRIC = "yql_program_cache_misses";
+
+    /** Marks the place of a literal in a template key */
+    private static final char placeholder = '\u0000';
+
+    private static final ANTLRErrorListener failOnError = new BaseErrorListener() {
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+                                int line, int charPositionInLine, String msg, RecognitionException e) {
+            throw new ProgramCompileException(new Location("query", line, charPositionInLine), msg);
+        }
+    };
+
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    /** The literals which are not parameters, for each program shape which has been parsed */
+    private final Map<String, boolean[]> fixedLiterals = new ConcurrentHashMap<>();
+
+    private final int capacity;
+    private final Metric metric;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a program cache
+     *
+     * @param capacity the max number of templates to keep. The cache is cleared when this is exceeded.
+     * @param metric the metric to report hits and misses to, or null to not report metrics
+     */
+    YqlProgramCache(int capacity, Metric metric) {
+        this.capacity = capacity;
+        this.metric = metric;
+    }
+
+    /** Returns the parsed form of the given program, which is either bound from a cached template or parsed */
+    OperatorNode<StatementOperator> parse(String program) throws IOException, RecognitionException {
+        List<Token> literals = literalsOf(program);
+        if (literals == null) { // Not lexically valid; let the parser produce the error
+            countMiss();
+            return new ProgramParser().parse("query", program);
+        }
+
+        String shape = templateKey(program, literals, null);
+        boolean[] fixed = fixedLiterals.get(shape);
+        if (fixed != null) {
+            Template template = templates.get(templateKey(program, literals, fixed));
+            if (template != null) {
+                countHit();
+                return template.bind(literals);
+            }
+        }
+
+        countMiss();
+        OperatorNode<StatementOperator> parsed = new ProgramParser().parse("query", program);
+        Template template = new Template(parsed, literals);
+        if (templates.size() >= capacity) {
+            templates.clear();
+            fixedLiterals.clear();
+        }
+        fixedLiterals.put(shape, template.fixedLiterals);
+        templates.put(templateKey(program, literals, template.fixedLiterals), template);
+        return parsed;
+    }
+
+    /** Returns the number of lookups which were served from a template */
+    long getHits() { return hits.get(); }
+
+    /** Returns the number of lookups which required a parse */
+    long getMisses() { return misses.get(); }
+
+    /** Returns the number of templates currently in this */
+    int size() { return templates.size(); }
+
+    private void countHit() {
+        hits.incrementAndGet();
+        if (metric != null)
+            metric.add(HITS_METRIC, 1, null);
+    }
+
+    private void countMiss() {
+        misses.incrementAndGet();
+        if (metric != null)
+            metric.add(MISSES_METRIC, 1, null);
+    }
+
+    /** Returns the literal tokens of the given program, or null if it cannot be tokenized */
+    private static List<Token> literalsOf(String program) {
+        try {
+            yqlplusLexer lexer = new yqlplusLexer(new CaseInsensitiveInputStream(program));
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(failOnError);
+            List<Token> literals = new ArrayList<>();
+            for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+                if (isLiteral(token.getType()))
+                    literals.add(token);
+            }
+            return literals;
+        } catch (IOException | ProgramCompileException e) {
+            return null;
+        }
+    }
+
+    private static boolean isLiteral(int tokenType) {
+        return tokenType == yqlplusLexer.STRING || tokenType == yqlplusLexer.INT ||
+               tokenType == yqlplusLexer.LONG_INT || tokenType == yqlplusLexer.FLOAT;
+    }
+
+    /**
+     * Returns the program text with each literal replaced by a placeholder and its type,
+     * except the fixed literals, which are kept verbatim.
+     *
+     * @param fixed the literals to keep, or null to replace all
+     */
+    private static String templateKey(String program, List<Token> literals, boolean[] fixed) {
+        StringBuilder key = new StringBuilder(program.length());
+        int position = 0;
+        for (int i = 0; i < literals.size(); i++) {
+            if (fixed != null && fixed[i]) continue;
+            Token literal = literals.get(i);
+            key.append(program, position, literal.getStartIndex());
+            key.append(placeholder).append((char)literal.getType());
+            position = literal.getStopIndex() + 1;
+        }
+        key.append(program, position, program.length());
+        return key.toString();
+    }
+
+    /** A parsed program with the literal nodes which can be replaced by the literals of another program */
+    private static final class Template {
+
+        private final OperatorNode<StatementOperator> program;
+
+        /** The literal nodes of the program which are parameters, and their index in the literal tokens */
+        private final Map<OperatorNode<?>, Integer> parameters = new IdentityHashMap<>();
+
+        /** Whether each literal token is fixed, that is, not a parameter */
+        private final boolean[] fixedLiterals;
+
+        Template(OperatorNode<StatementOperator> program, List<Token> literals) {
+            this.program = program;
+            Map<String, OperatorNode<?>> literalNodes = new HashMap<>();
+            program.visit(new OperatorVisitor() {
+                @Override
+                public <T extends Operator> boolean enter(OperatorNode<T> node) {
+                    if (node.getOperator() == ExpressionOperator.LITERAL && node.getLocation() != null)
+                        literalNodes.put(positionOf(node.getLocation().getLineNumber(),
+                                                    node.getLocation().getCharacterOffset()), node);
+                    return true;
+                }
+
+                @Override
+                public <T extends Operator> void exit(OperatorNode<T> node) { }
+            });
+
+            fixedLiterals = new boolean[literals.size()];
+            for (int i = 0; i < literals.size(); i++) {
+                Token literal = literals.get(i);
+                OperatorNode<?> node = literalNodes.get(positionOf(literal.getLine(), literal.getCharPositionInLine()));
+                if (node != null && node.getArgument(0).equals(valueOf(literal)))
+                    parameters.put(node, i);
+                else
+                    fixedLiterals[i] = true;
+            }
+        }
+
+        /** Returns a copy of the program of this where the parameters are replaced by the given literals */
+        @SuppressWarnings("unchecked")
+        OperatorNode<StatementOperator> bind(List<Token> literals) {
+            if (parameters.isEmpty()) return program;
+            return (OperatorNode<StatementOperator>)bind(program, literals);
+        }
+
+        private Object bind(Object argument, List<Token> literals) {
+            if (argument instanceof OperatorNode)
+                return bind((OperatorNode<?>)argument, literals);
+            if (argument instanceof List)
+                return bind((List<?>)argument, literals);
+            return argument;
+        }
+
+        private OperatorNode<?> bind(OperatorNode<?> node, List<Token> literals) {
+            Integer parameter = parameters.get(node);
+            if (parameter != null)
+                return OperatorNode.create(node.getLocation(), node.getAnnotations(), ExpressionOperator.LITERAL,
+                                           valueOf(literals.get(parameter)));
+
+            Object[] arguments = node.getArguments();
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                Object bound = bind(arguments[i], literals);
+                changed |= bound != arguments[i];
+                arguments[i] = bound;
+            }
+            if ( ! changed) return node;
+            return OperatorNode.create(node.getLocation(), node.getAnnotations(), node.getOperator(), arguments);
+        }
+
+        private List<?> bind(List<?> list, List<Token> literals) {
+            List<Object> boundList = null;
+            for (int i = 0; i < list.size(); i++) {
+                Object bound = bind(list.get(i), literals);
+                if (bound != list.get(i) && boundList == null)
+                    boundList = new ArrayList<>(list.subList(0, i));
+                if (boundList != null)
+                    boundList.add(bound);
+            }
+            return boundList != null ? boundList : list;
+        }
+
+        private static String positionOf(int line, int characterOffset) {
+            return line + ":" + characterOffset;
+        }
+
+        private static Object valueOf(Token literal) {
+            return ProgramParser.convertLiteral(literal.getType(), literal.getText());
+        }
+
+    }
+
+}
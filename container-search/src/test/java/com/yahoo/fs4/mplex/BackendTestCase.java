@@ -20,6 +20,9 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
@@ -177,6 +180,44 @@ public class BackendTestCase {
         channel.close();
     }
 
+    @Test
+    public void testAsyncReceive() throws Exception {
+        FS4Channel channel = backend.openChannel();
+        server.dispatch.channelId = channel.getChannelId();
+
+        CompletableFuture<BasicPacket[]> response = channel.receivePacketsAsync(1000, 1);
+        assertTrue(channel.sendPacket(QueryPacket.create(new Query("/?query=a"))));
+        BasicPacket[] b = response.get(10, TimeUnit.SECONDS);
+        assertEquals(1, b.length);
+        assertEquals(217, b[0].getCode());
+        channel.close();
+    }
+
+    @Test
+    public void testAsyncReceiveTimesOut() throws Exception {
+        FS4Channel channel = backend.openChannel();
+        try {
+            channel.receivePacketsAsync(10, 1).get(10, TimeUnit.SECONDS);
+            fail("Expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ChannelTimeoutException);
+        }
+        channel.close();
+    }
+
+    @Test
+    public void testAsyncReceiveFailsWhenChannelIsClosed() throws Exception {
+        FS4Channel channel = backend.openChannel();
+        CompletableFuture<BasicPacket[]> response = channel.receivePacketsAsync(10000, 1);
+        channel.close();
+        try {
+            response.get(10, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InvalidChannelException);
+        }
+    }
+
     @Test
     public void testPinging() throws IOException, InvalidChannelException {
         FS4Channel channel = backend.openPingChannel();
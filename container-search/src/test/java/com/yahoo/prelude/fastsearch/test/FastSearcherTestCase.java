@@ -260,6 +260,51 @@ public class FastSearcherTestCase {
         return new Chain<>(searchers);
     }
 
+    @Test
+    public void testSearchAsync() {
+        FastSearcher fastSearcher = createFastSearcher();
+        Execution execution = createExecution(fastSearcher);
+
+        Query query = new Query("?query=ignored");
+        Result result = fastSearcher.searchAsync(query, execution).join();
+        assertNull(result.hits().getError());
+        assertEquals(2, result.getHitCount());
+        execution.fill(result);
+        assertCorrectHit1((FastHit) result.hits().get(0));
+        assertFalse(result.hits().get(0).isCached());
+
+        // The asynchronous result is cached like a synchronous one
+        result = fastSearcher.searchAsync(new Query("?query=ignored"), execution).join();
+        assertEquals(2, result.getHitCount());
+        assertTrue(result.hits().get(0).isCached());
+    }
+
+    @Test
+    public void testFillAsync() {
+        FastSearcher fastSearcher = createFastSearcher();
+        Execution execution = createExecution(fastSearcher);
+
+        Result result = fastSearcher.searchAsync(new Query("?query=ignored"), execution).join();
+        assertEquals(2, result.getHitCount());
+        assertFalse(result.isFilled("default"));
+        fastSearcher.fillAsync(result, "default", execution).join();
+        assertNull(result.hits().getError());
+        assertTrue(result.isFilled("default"));
+        assertCorrectHit1((FastHit) result.hits().get(0));
+    }
+
+    @Test
+    public void testSearchAsyncFillsWhenRankFeaturesAreRequested() {
+        FastSearcher fastSearcher = createFastSearcher();
+        Execution execution = createExecution(fastSearcher);
+
+        Query query = new Query("?query=ignored&ranking.listFeatures=true");
+        Result result = fastSearcher.searchAsync(query, execution).join();
+        assertNull(result.hits().getError());
+        assertEquals(2, result.getHitCount());
+        assertCorrectHit1((FastHit) result.hits().get(0));
+    }
+
     private Result doSearch(Searcher searcher, Query query, int offset, int hits) {
         query.setOffset(offset);
         query.setHits(hits);
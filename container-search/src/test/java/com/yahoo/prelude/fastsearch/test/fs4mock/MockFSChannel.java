@@ -19,6 +19,7 @@ import com.yahoo.prelude.fastsearch.test.DocsumDefinitionTestCase;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A channel which returns hardcoded packets of the same type as fdispatch
@@ -80,6 +81,11 @@ public class MockFSChannel extends FS4Channel {
         return lastReceived;
     }
 
+    @Override
+    public CompletableFuture<BasicPacket[]> receivePacketsAsync(long timeout, int packetCount) {
+        return CompletableFuture.completedFuture(receivePackets(timeout, packetCount));
+    }
+
     public BasicPacket[] receivePackets(long timeout, int packetCount) {
         List<BasicPacket> packets = new java.util.ArrayList<>();
 
@@ -0,0 +1,220 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cluster.test;
+
+import com.yahoo.component.ComponentId;
+import com.yahoo.prelude.Ping;
+import com.yahoo.prelude.Pong;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.cluster.ClusterSearcher;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Simulates clusters of local backends with varying latencies. Latencies are measured by a simulated clock
+ * which backends advance by their latency.
+ */
+public class ReplicaSelectionTestCase {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testAdaptiveSelectionAvoidsSlowNode() {
+        Backend fast0 = new Backend("fast0", 1);
+        Backend fast1 = new Backend("fast1", 1);
+        Backend slow = new Backend("slow", 20);
+        SimulatedCluster cluster = new SimulatedCluster(Arrays.asList(fast0, fast1, slow));
+        cluster.getReplicaSelection().setAdaptive(true);
+
+        for (int i = 0; i < 300; i++) {
+            Result result = search(cluster, i);
+            assertNull(result.hits().getError());
+            cluster.fill(result, "default", new Execution(cluster, Execution.Context.createContextStub()));
+        }
+        assertEquals(300, fast0.requests.get() + fast1.requests.get() + slow.requests.get());
+        assertEquals("Results are filled from the node serving them", fast0.requests.get(), fast0.fills.get());
+        assertEquals("Results are filled from the node serving them", fast1.requests.get(), fast1.fills.get());
+        assertEquals("Results are filled from the node serving them", slow.requests.get(), slow.fills.get());
+        assertTrue("Few requests to the slow node: " + slow.requests.get(), slow.requests.get() < 30);
+        assertTrue(cluster.getReplicaSelection().averageResponseTime(slow) >
+                   cluster.getReplicaSelection().averageResponseTime(fast0));
+        assertEquals(0, cluster.getReplicaSelection().outstandingRequests(slow));
+        cluster.deconstruct();
+    }
+
+    @Test
+    public void testRequestsAreHashedWhenNotAdaptive() {
+        Backend fast = new Backend("fast", 1);
+        Backend slow = new Backend("slow", 20);
+        SimulatedCluster cluster = new SimulatedCluster(Arrays.asList(fast, slow));
+
+        for (int i = 0; i < 20; i++)
+            assertNull(search(cluster, i).hits().getError());
+        assertTrue("Requests are spread evenly: " + slow.requests.get(),
+                   slow.requests.get() > 5 && fast.requests.get() > 5);
+        cluster.deconstruct();
+    }
+
+    @Test
+    public void testHedgingCancelsSlowRequests() throws InterruptedException {
+        Backend sometimesSlow = new Backend("sometimesSlow", 1);
+        Backend fast = new Backend("fast", 1);
+        SimulatedCluster cluster = new SimulatedCluster(Arrays.asList(sometimesSlow, fast));
+        cluster.getReplicaSelection().setHedgePercentile(50);
+
+        for (int i = 0; i < 30; i++) // warm up: Hedging starts once response times are known
+            assertNull(search(cluster, i).hits().getError());
+
+        sometimesSlow.slowEvery = 4;
+        for (int i = 0; i < 100; i++) {
+            Result result = search(cluster, i);
+            assertNull(result.hits().getError());
+            assertEquals(1, result.hits().size());
+        }
+        int slowRequests = sometimesSlow.slowRequests.get();
+        assertTrue("Some requests were slow", slowRequests > 0);
+        assertTrue("Slow requests are cancelled", sometimesSlow.cancelled.tryAcquire(slowRequests, 1, TimeUnit.MINUTES));
+        cluster.deconstruct();
+    }
+
+    @Test
+    public void testStatisticsOfFailedNodesAreForgotten() {
+        Backend fast = new Backend("fast", 1);
+        Backend slow = new Backend("slow", 20);
+        SimulatedCluster cluster = new SimulatedCluster(Arrays.asList(fast, slow));
+        cluster.getReplicaSelection().setAdaptive(true);
+
+        for (int i = 0; i < 20; i++)
+            assertNull(search(cluster, i).hits().getError());
+        assertTrue(cluster.getReplicaSelection().averageResponseTime(slow) > 0);
+
+        cluster.failed(slow);
+        assertEquals(0, cluster.getReplicaSelection().averageResponseTime(slow), 0);
+        cluster.deconstruct();
+    }
+
+    @Test
+    public void testHedgedSearchCompletesWhenBackendsThrowErrors() {
+        Backend first = new Backend("first", 1);
+        Backend second = new Backend("second", 1);
+        SimulatedCluster cluster = new SimulatedCluster(Arrays.asList(first, second));
+        cluster.getReplicaSelection().setHedgePercentile(50);
+
+        for (int i = 0; i < 30; i++) // warm up: Hedging starts once response times are known
+            assertNull(search(cluster, i).hits().getError());
+
+        first.throwError = true;
+        second.throwError = true;
+        Result result = search(cluster, 0);
+        assertTrue("Failed without waiting for the timeout: " + result.hits().getError(),
+                   result.hits().getError().getDetailedMessage().startsWith("Failed calling"));
+        cluster.deconstruct();
+    }
+
+    private static Result search(SimulatedCluster cluster, int hash) {
+        return new Execution(cluster, Execution.Context.createContextStub()).search(new HashedQuery(hash));
+    }
+
+    /** A local stand-in for a backend node */
+    private class Backend {
+
+        private final String name;
+        private final long latency;
+
+        /** Every nth request blocks until it is cancelled, or none if this is 0 */
+        volatile int slowEvery = 0;
+
+        /** Whether requests throw an Error rather than returning */
+        volatile boolean throwError = false;
+
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger slowRequests = new AtomicInteger();
+        final AtomicInteger fills = new AtomicInteger();
+        final Semaphore cancelled = new Semaphore(0);
+
+        /**
+         * Creates a backend
+         *
+         * @param latency the latency in ms by which requests advance the clock
+         */
+        Backend(String name, long latency) {
+            this.name = name;
+            this.latency = latency;
+        }
+
+        Hit search() {
+            int request = requests.incrementAndGet();
+            if (throwError)
+                throw new AssertionError("Simulated error in " + this);
+            if (slowEvery > 0 && request % slowEvery == 0) {
+                slowRequests.incrementAndGet();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                }
+                catch (InterruptedException e) {
+                    cancelled.release();
+                    throw new IllegalStateException("Cancelled", e);
+                }
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latency));
+            return new Hit("from:" + name);
+        }
+
+        @Override
+        public String toString() { return "backend " + name; }
+
+    }
+
+    private class SimulatedCluster extends ClusterSearcher<Backend> {
+
+        SimulatedCluster(List<Backend> backends) {
+            super(new ComponentId("simulated"), backends, false);
+            getReplicaSelection().setNanoClock(clock::get);
+        }
+
+        @Override
+        protected Result search(Query query, Execution execution, Backend backend) {
+            Result result = new Result(query);
+            result.hits().add(backend.search());
+            return result;
+        }
+
+        @Override
+        protected void fill(Result result, String summaryClass, Execution execution, Backend backend) {
+            backend.fills.incrementAndGet();
+        }
+
+        @Override
+        protected Pong ping(Ping ping, Backend backend) {
+            return new Pong();
+        }
+
+    }
+
+    /** A query with a predictable hash code */
+    private static class HashedQuery extends Query {
+
+        private final int hash;
+
+        HashedQuery(int hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+    }
+
+}
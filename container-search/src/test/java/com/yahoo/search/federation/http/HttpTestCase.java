@@ -26,6 +26,8 @@ import java.util.Map;
  */
 public class HttpTestCase extends junit.framework.TestCase {
 
+    private static final long responseDelay = 10;
+
     private StupidSingleThreadedHttpServer httpServer;
     private TestHTTPClientSearcher searcher;
 
@@ -52,6 +54,12 @@ public class HttpTestCase extends junit.framework.TestCase {
         assertEquals(ip, "127.0.0.1");
     }
 
+    public void test_that_latency_is_tracked_per_node() {
+        searchUsingLocalhost();
+        assertTrue(searcher.getNodeLatency(new Connection("localhost", getPort())).getMax() >= responseDelay);
+        assertNull(searcher.getNodeLatency(new Connection("otherhost", getPort())));
+    }
+
     private Hit getFirstMetaHit(HitGroup hits) {
         for (Iterator<Hit> i = hits.unorderedDeepIterator(); i.hasNext();) {
             Hit hit = i.next();
@@ -66,6 +74,10 @@ public class HttpTestCase extends junit.framework.TestCase {
         httpServer = new StupidSingleThreadedHttpServer(0, 0) {
             @Override
             protected byte[] getResponse(String request) {
+                try {
+                    Thread.sleep(responseDelay);
+                } catch (InterruptedException e) {
+                }
                 return Utf8.toBytes("HTTP/1.1 200 OK\r\n" +
                                     "Content-Type: text/xml; charset=UTF-8\r\n" +
                                     "Connection: close\r\n" +
@@ -17,6 +17,7 @@ import com.yahoo.search.federation.selection.FederationTarget;
 import com.yahoo.search.federation.selection.TargetSelector;
 import com.yahoo.search.federation.StrictContractsConfig;
 import com.yahoo.search.result.ErrorHit;
+import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
 import com.yahoo.search.searchchain.Execution;
@@ -31,6 +32,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
@@ -92,6 +95,26 @@ public class FederationSearcherTest {
 
     }
 
+    /** Passes the query on when it is released */
+    private static class LatchedSearcher extends Searcher {
+
+        private final CountDownLatch release;
+
+        LatchedSearcher(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+            }
+            return execution.search(query);
+        }
+
+    }
+
     private static class ModifyQueryAndAddHitSearcher extends AddHitSearcher {
 
         private final String marker;
@@ -208,6 +231,68 @@ public class FederationSearcherTest {
         assertNotNull(result.hits().getError());
     }
 
+    @Test
+    public void require_that_streaming_returns_slow_optional_search_chains_as_incomplete_groups() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FederationTester tester = new FederationTester();
+        tester.addSearchChain("chain1", new AddHitSearcher());
+        tester.addOptionalSearchChain("chain2", new LatchedSearcher(release), new AddHitSearcher());
+
+        Query query = new Query();
+        query.properties().set(FederationSearcher.STREAMING, true);
+        Result result = tester.search(query);
+        assertNull(result.hits().getError());
+        assertEquals(1, ((HitGroup)result.hits().get("source:chain1")).size());
+        HitGroup streamedGroup = (HitGroup)result.hits().get("source:chain2");
+        assertFalse(streamedGroup.incoming().isComplete());
+
+        release.countDown();
+        streamedGroup.complete().get(10, TimeUnit.SECONDS);
+        assertEquals(1, streamedGroup.size());
+        assertFilled(streamedGroup.get(0));
+    }
+
+    @Test
+    public void require_that_streaming_returns_when_the_budget_is_spent() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FederationTester tester = new FederationTester();
+        tester.addSearchChain("chain1", new AddHitSearcher());
+        tester.addSearchChain("chain2", new LatchedSearcher(release), new AddHitSearcher());
+
+        Query query = new Query();
+        query.properties().set(FederationSearcher.STREAMING, true);
+        query.properties().set(FederationSearcher.BUDGET, 50);
+        long startTime = System.currentTimeMillis();
+        Result result = tester.search(query);
+        assertTrue(System.currentTimeMillis() - startTime < 5000);
+        assertNull(result.hits().getError());
+        assertEquals(1, ((HitGroup)result.hits().get("source:chain1")).size());
+        HitGroup streamedGroup = (HitGroup)result.hits().get("source:chain2");
+        assertFalse(streamedGroup.incoming().isComplete());
+
+        release.countDown();
+        streamedGroup.complete().get(10, TimeUnit.SECONDS);
+        assertEquals(1, streamedGroup.size());
+    }
+
+    @Test
+    public void require_that_streamed_search_chains_time_out() throws Exception {
+        FederationTester tester = new FederationTester();
+        tester.addSearchChain("chain1", new AddHitSearcher());
+        tester.addSearchChain("chain2",
+                              new FederationOptions().setUseByDefault(true).setTimeoutInMilliseconds(200),
+                              new BlockingSearcher());
+
+        Query query = new Query();
+        query.properties().set(FederationSearcher.STREAMING, true);
+        query.properties().set(FederationSearcher.BUDGET, 10);
+        Result result = tester.search(query);
+        HitGroup streamedGroup = (HitGroup)result.hits().get("source:chain2");
+        streamedGroup.complete().get(10, TimeUnit.SECONDS);
+        assertNotNull(streamedGroup.getErrorHit());
+        assertEquals(ErrorMessage.timeoutCode, streamedGroup.getErrorHit().errors().iterator().next().getCode());
+    }
+
     private Hit getFirstHit(Hit hitGroup) {
         if (hitGroup instanceof HitGroup)
             return ((HitGroup) hitGroup).get(0);
@@ -40,6 +40,7 @@ import java.util.concurrent.Executors;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -216,6 +217,16 @@ public class SearchHandlerTestCase {
         assertThat(response, containsString("\"code\":" + 406));
     }
 
+    @Test
+    public void testSampledTimingDetailsAreTraced() {
+        String response = driver.sendRequest("http://localhost/search/?query=abc&trace.timingSampleRate=1.0&tracelevel=3")
+                                .readAll();
+        assertThat(response, containsString("Time use per searcher"));
+        response = driver.sendRequest("http://localhost/search/?query=abc&trace.timingSampleRate=0&tracelevel=3")
+                         .readAll();
+        assertThat(response, not(containsString("Time use per searcher")));
+    }
+
     @Test
     public void testNormalResultImplicitDefaultRendering() throws Exception {
         assertJsonResult("http://localhost?query=abc", driver);
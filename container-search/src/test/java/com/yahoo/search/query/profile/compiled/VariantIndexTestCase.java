@@ -0,0 +1,101 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.compiled;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.DimensionBinding;
+import com.yahoo.search.query.profile.DimensionValues;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantIndexTestCase {
+
+    private static final List<String> dimensions = Collections.unmodifiableList(Arrays.asList("d0", "d1", "d2", "d3", "d4", "d5"));
+
+    /** Returns values for all dimensions, where each is null (unbound) with the given probability */
+    private static String[] randomValues(Random random, double nullProbability) {
+        String[] values = new String[dimensions.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = random.nextDouble() < nullProbability ? null : "v" + random.nextInt(3);
+        return values;
+    }
+
+    private static Map<String, String> randomContext(Random random) {
+        Map<String, String> context = new HashMap<>();
+        String[] values = randomValues(random, 0.2);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null)
+                context.put(dimensions.get(i), random.nextInt(10) == 0 ? "unknown" : values[i]);
+        }
+        return context;
+    }
+
+    private static void assertSameAsMatchingEachBinding(int bindingCount, long seed) {
+        Random random = new Random(seed);
+        List<Binding> bindings = new ArrayList<>();
+        for (int i = 0; i < bindingCount; i++)
+            bindings.add(Binding.createFrom(DimensionBinding.createFrom(dimensions,
+                                                                        DimensionValues.createFrom(randomValues(random, 0.6)))));
+        Collections.sort(bindings);
+
+        VariantIndex index = new VariantIndex(bindings);
+        for (int i = 0; i < 1000; i++) {
+            Map<String, String> context = randomContext(random);
+            int expected = -1;
+            for (int j = 0; j < bindings.size() && expected < 0; j++) {
+                if (bindings.get(j).matches(context))
+                    expected = j;
+            }
+            assertEquals("Match in " + context, expected, index.firstMatch(context));
+        }
+    }
+
+    @Test
+    public void testIndexGivesSameMatchAsMatchingEachBinding() {
+        assertSameAsMatchingEachBinding(1, 1);
+        assertSameAsMatchingEachBinding(10, 2);
+        assertSameAsMatchingEachBinding(64, 3);
+        assertSameAsMatchingEachBinding(65, 4);
+        assertSameAsMatchingEachBinding(300, 5);
+    }
+
+    @Test
+    public void testIndexWithoutBoundDimensions() {
+        VariantIndex index = new VariantIndex(Arrays.asList(Binding.nullBinding, Binding.nullBinding));
+        assertEquals(0, index.firstMatch(Collections.singletonMap("d0", "v0")));
+        assertEquals(0, index.firstMatch(Collections.emptyMap()));
+    }
+
+    @Test
+    public void testCompiledProfileWithManyVariantsGivesSameValuesAsProfile() {
+        Random random = new Random(42);
+        QueryProfile profile = new QueryProfile("test");
+        profile.setDimensions(dimensions.toArray(new String[dimensions.size()]));
+        profile.set("a", "default", (QueryProfileRegistry)null);
+        for (int i = 0; i < 200; i++) {
+            String[] values = randomValues(random, 0.6);
+            profile.set("a", "a" + Arrays.toString(values), values, null);
+            profile.set("b", "b" + Arrays.toString(values), values, null);
+        }
+        CompiledQueryProfile compiled = profile.compile(null);
+
+        CompoundName a = new CompoundName("a");
+        CompoundName b = new CompoundName("b");
+        for (int i = 0; i < 1000; i++) {
+            Map<String, String> context = randomContext(random);
+            assertEquals(profile.get("a", context, null), compiled.get(a, context, null));
+            assertEquals(profile.get("b", context, null), compiled.get(b, context, null));
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.test;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures lookups in a compiled query profile with many dimensions, where each key
+ * has variants for many combinations of dimension values.
+ */
+public class QueryProfileMultiDimensionalVariantsMicroBenchmark {
+
+    private static final String[] dimensions =
+            { "region", "market", "device", "client", "bucket", "language", "experiment", "tier" };
+
+    private final int keyCount, variantCount;
+
+    public QueryProfileMultiDimensionalVariantsMicroBenchmark(int keyCount, int variantCount) {
+        this.keyCount = keyCount;
+        this.variantCount = variantCount;
+    }
+
+    public void benchmark(int count) {
+        Random random = new Random(17);
+        CompiledQueryProfile profile = createProfile(random).compile(null);
+        List<Map<String, String>> contexts = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            contexts.add(createContext(random));
+        CompoundName[] keys = new CompoundName[keyCount];
+        for (int i = 0; i < keyCount; i++)
+            keys[i] = new CompoundName("key" + i);
+
+        getValues(count / 10, profile, keys, contexts); // warm-up
+        System.out.print(this + ": ");
+        long startTime = System.currentTimeMillis();
+        long found = getValues(count, profile, keys, contexts);
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("Done in " + totalTime + " ms (" + ((float) totalTime * 1000 / (count * keyCount)) +
+                           " microsecond per get, " + found + " found)");
+    }
+
+    private QueryProfile createProfile(Random random) {
+        QueryProfile profile = new QueryProfile("main");
+        profile.setDimensions(dimensions);
+        for (int key = 0; key < keyCount; key++) {
+            profile.set("key" + key, "default", (QueryProfileRegistry)null);
+            for (int i = 0; i < variantCount; i++) {
+                String[] values = new String[dimensions.length];
+                for (int d = 0; d < dimensions.length; d++)
+                    values[d] = random.nextInt(3) == 0 ? dimensions[d] + random.nextInt(5) : null;
+                profile.set("key" + key, "value" + i, values, null);
+            }
+        }
+        profile.freeze();
+        return profile;
+    }
+
+    private Map<String, String> createContext(Random random) {
+        Map<String, String> context = new HashMap<>();
+        for (String dimension : dimensions)
+            context.put(dimension, dimension + random.nextInt(5));
+        return context;
+    }
+
+    private long getValues(int count, CompiledQueryProfile profile, CompoundName[] keys, List<Map<String, String>> contexts) {
+        long found = 0;
+        for (int i = 0; i < count; i++) {
+            Map<String, String> context = contexts.get(i % contexts.size());
+            for (CompoundName key : keys) {
+                if ( ! "default".equals(profile.get(key, context, null)))
+                    found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public String toString() {
+        return "dimensions: " + dimensions.length + ", keys: " + keyCount + ", variants per key: " + variantCount;
+    }
+
+    public static void main(String[] args) {
+        new QueryProfileMultiDimensionalVariantsMicroBenchmark(20, 4).benchmark(1000000);
+        new QueryProfileMultiDimensionalVariantsMicroBenchmark(20, 50).benchmark(100000);
+        new QueryProfileMultiDimensionalVariantsMicroBenchmark(20, 500).benchmark(10000);
+    }
+
+}
@@ -0,0 +1,187 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FairExecutorTestCase {
+
+    private static FairExecutor createExecutor(int maxThreads, int queueCapacity) {
+        return new FairExecutor(ThreadFactoryFactory.getDaemonThreadFactory("test"), 0, maxThreads, queueCapacity,
+                                1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOverloadIsRejectedRatherThanAddingThreads() throws InterruptedException {
+        FairExecutor executor = createExecutor(4, 8);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        int rejected = 0;
+        for (int i = 0; i < 100; i++) {
+            try {
+                executor.execute("chain", () -> {
+                    await(release);
+                    completed.incrementAndGet();
+                });
+            }
+            catch (RejectedExecutionException e) {
+                rejected++;
+            }
+        }
+        assertEquals(88, rejected);
+        FairExecutor.Statistics statistics = executor.takeStatistics();
+        assertEquals(4, statistics.threads());
+        assertEquals(88, statistics.rejectedTasks());
+
+        release.countDown();
+        waitFor(() -> completed.get() == 12);
+        executor.shutdown();
+    }
+
+    /** Many clients submitting short tasks: Threads stay bounded and every task is either run or rejected */
+    @Test
+    public void testLoadDegradesGracefully() throws InterruptedException {
+        FairExecutor executor = createExecutor(8, 50);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < 50; c++) {
+            Thread client = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    try {
+                        executor.execute("chain" + (i % 3), () -> {
+                            sleep(1);
+                            completed.incrementAndGet();
+                        });
+                    }
+                    catch (RejectedExecutionException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            clients.add(client);
+            client.start();
+        }
+        int maxThreads = 0;
+        for (Thread client : clients) {
+            while (client.isAlive()) {
+                maxThreads = Math.max(maxThreads, executor.takeStatistics().threads());
+                client.join(1);
+            }
+        }
+        waitFor(() -> completed.get() + rejected.get() == 5000);
+        assertTrue("Threads are bounded: " + maxThreads, maxThreads <= 8);
+        assertTrue("Some tasks are rejected", rejected.get() > 0);
+        assertTrue("Some tasks are run", completed.get() > 0);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTasksAreTakenInTurnFromEachKey() throws InterruptedException {
+        FairExecutor executor = createExecutor(1, 100);
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("blocker", () -> {
+            blockerStarted.countDown();
+            await(release);
+        });
+        await(blockerStarted);
+        executor.takeStatistics();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 1; i <= 5; i++) {
+            String name = "a" + i;
+            executor.execute("a", () -> order.add(name));
+        }
+        for (int i = 1; i <= 2; i++) {
+            String name = "b" + i;
+            executor.execute("b", () -> order.add(name));
+        }
+        release.countDown();
+        waitFor(() -> order.size() == 7);
+        assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3", "a4", "a5"), order);
+
+        FairExecutor.Statistics statistics = executor.takeStatistics();
+        assertEquals(7, statistics.startedTasks());
+        assertTrue(statistics.maxQueueTimeMillis() > 0);
+        assertTrue(statistics.meanQueueTimeMillis() <= statistics.maxQueueTimeMillis());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTasksSubmittedByBusyWorkersAreRunByTheSubmitter() throws InterruptedException {
+        FairExecutor executor = createExecutor(1, 100);
+        CountDownLatch innerDone = new CountDownLatch(1);
+        CountDownLatch outerDone = new CountDownLatch(1);
+        executor.execute("outer", () -> {
+            executor.execute("inner", innerDone::countDown);
+            await(innerDone);
+            outerDone.countDown();
+        });
+        assertTrue("No deadlock", outerDone.await(60, TimeUnit.SECONDS));
+        assertEquals(1, executor.takeStatistics().callerRunTasks());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testThreadsEndedByErrorsAreReplaced() throws InterruptedException {
+        FairExecutor executor = new FairExecutor(FairExecutorTestCase::createSilentThread, 0, 1, 10, 1, TimeUnit.SECONDS);
+        executor.execute("chain", () -> { throw new AssertionError("Simulated error"); });
+        waitFor(() -> executor.takeStatistics().threads() == 0);
+
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute("chain", done::countDown);
+        assertTrue("The task is run by a new thread", done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    /** Creates a daemon thread which does not print uncaught exceptions */
+    private static Thread createSilentThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> { });
+        return thread;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if ( ! latch.await(60, TimeUnit.SECONDS))
+                throw new IllegalStateException("Timed out");
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while ( ! condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline)
+                fail("Timed out waiting for condition");
+            Thread.sleep(1);
+        }
+    }
+
+}
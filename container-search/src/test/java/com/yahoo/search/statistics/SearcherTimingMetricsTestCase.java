@@ -0,0 +1,95 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.statistics;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.statistics.ElapsedTimeTestCase.CreativeTimeSource;
+import com.yahoo.search.statistics.ElapsedTimeTestCase.UselessSearcher;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearcherTimingMetricsTestCase {
+
+    @Test
+    public void testTimeInEachSearcherIsReported() {
+        TimeTracker tracker = new TimeTracker(new Chain<Searcher>(new UselessSearcher("first"),
+                                                                  new UselessSearcher("second"),
+                                                                  new UselessSearcher("third")));
+        tracker.injectTimeSource(new CreativeTimeSource(new long[] { 1L, 2L, 3L, 5L, 6L, 8L }));
+        tracker.sampleSearch(0, true);
+        tracker.sampleSearch(1, true);
+        tracker.sampleSearch(2, true);
+        tracker.sampleSearchReturn(2, true, null);
+        tracker.sampleSearchReturn(1, true, null);
+        tracker.sampleSearchReturn(0, true, null);
+        ElapsedTime elapsedTime = new ElapsedTime();
+        elapsedTime.add(tracker);
+
+        RecordingMetric metric = new RecordingMetric();
+        new SearcherTimingMetrics(metric).report("default", elapsedTime);
+        assertEquals(3, metric.values.size());
+        assertEquals(3L, metric.values.get(dimensions("default", "first", "search")));
+        assertEquals(2L, metric.values.get(dimensions("default", "second", "search")));
+        assertEquals(2L, metric.values.get(dimensions("default", "third", "search")));
+    }
+
+    @Test
+    public void testNothingIsReportedWithoutDetailedData() {
+        TimeTracker tracker = new TimeTracker(new Chain<Searcher>(new UselessSearcher("first")));
+        tracker.sampleSearch(0, false);
+        tracker.sampleSearchReturn(0, false, null);
+        ElapsedTime elapsedTime = new ElapsedTime();
+        elapsedTime.add(tracker);
+
+        RecordingMetric metric = new RecordingMetric();
+        new SearcherTimingMetrics(metric).report("default", elapsedTime);
+        assertTrue(metric.values.isEmpty());
+    }
+
+    private static Map<String, String> dimensions(String chain, String searcher, String activity) {
+        Map<String, String> dimensions = new HashMap<>();
+        dimensions.put("chain", chain);
+        dimensions.put("searcher", searcher);
+        dimensions.put("activity", activity);
+        return dimensions;
+    }
+
+    private static class RecordingMetric implements Metric {
+
+        final Map<Map<String, ?>, Number> values = new HashMap<>();
+
+        @Override
+        public void set(String key, Number value, Context context) {
+            assertEquals(SearcherTimingMetrics.SEARCHER_LATENCY_METRIC, key);
+            values.put(((RecordingContext)context).dimensions, value);
+        }
+
+        @Override
+        public void add(String key, Number value, Context context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Context createContext(Map<String, ?> dimensions) {
+            return new RecordingContext(dimensions);
+        }
+
+    }
+
+    private static class RecordingContext implements Metric.Context {
+
+        final Map<String, ?> dimensions;
+
+        RecordingContext(Map<String, ?> dimensions) {
+            this.dimensions = dimensions;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares parsing YQL programs from scratch with using a program cache, for a workload where
+ * a few program shapes are repeated with different literal values.
+ * Annotations, grouping expressions and map keys are constant, as these are not bound from templates.
+ */
+public class YqlProgramCacheMicroBenchmark {
+
+    private static final String[] shapes = {
+        "select * from sources * where title contains \"%s\" and year > %d limit 10;",
+        "select title, year from sources music where (title contains \"%s\" or artist contains \"%s\") " +
+        "and range(year, %d, %d) order by year desc limit %d offset %d;",
+        "select * from sources * where [{\"defaultIndex\": \"text\"}]weakAnd(text contains \"%s\", text contains \"%s\", " +
+        "text contains \"%s\") | all(group(artist) max(10) each(output(count())));",
+        "select * from sources * where weightedSet(tags, {\"rock\": %d, \"pop\": %d}) and price < %d.5;"
+    };
+
+    private static List<String> createPrograms(int count) {
+        Random random = new Random(1);
+        List<String> programs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String shape = shapes[random.nextInt(shapes.length)];
+            List<Object> values = new ArrayList<>();
+            for (int p = shape.indexOf('%'); p >= 0; p = shape.indexOf('%', p + 1))
+                values.add(shape.charAt(p + 1) == 's' ? "word" + random.nextInt(1000) : (Object)random.nextInt(3000));
+            programs.add(String.format(shape, values.toArray()));
+        }
+        return programs;
+    }
+
+    private static long parseAll(List<String> programs, YqlProgramCache cache) throws Exception {
+        long startTime = System.currentTimeMillis();
+        for (String program : programs) {
+            if (cache == null)
+                new ProgramParser().parse("query", program);
+            else
+                cache.parse(program);
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> programs = createPrograms(100000);
+        YqlProgramCache cache = new YqlProgramCache(1000, null);
+        for (int run = 0; run < 3; run++) {
+            long parseTime = parseAll(programs, null);
+            long cachedTime = parseAll(programs, cache);
+            System.out.println("Parsing " + programs.size() + " programs: " + parseTime + " ms without cache, " +
+                               cachedTime + " ms with cache (" + cache.getHits() + " hits, " + cache.getMisses() + " misses)");
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.language.simple.SimpleLinguistics;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.searchchain.Execution;
+import org.apache.http.client.utils.URIBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class YqlProgramCacheTestCase {
+
+    private static void assertSameAsParsed(YqlProgramCache cache, String program) throws Exception {
+        assertEquals(program, new ProgramParser().parse("query", program), cache.parse(program));
+    }
+
+    @Test
+    public void programsWithSameShapeShareTemplate() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, null);
+        assertSameAsParsed(cache, "select * from sources * where title contains \"madonna\" and year > 1980 limit 10 offset 0;");
+        assertSameAsParsed(cache, "select * from sources * where title contains \"prince\" and year > 2001 limit 20 offset 5;");
+        assertSameAsParsed(cache, "select * from sources * where title contains 'a \\'quoted\\' value' and year > -3 limit 1 offset 1;");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void literalTypesArePartOfTheShape() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, null);
+        assertSameAsParsed(cache, "select * from sources * where price > 10;");
+        assertSameAsParsed(cache, "select * from sources * where price > 10.5;");
+        assertSameAsParsed(cache, "select * from sources * where price > 10L;");
+        assertSameAsParsed(cache, "select * from sources * where price > 11L;");
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void literalsWhichAreNotNodesArePartOfTheKey() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, null);
+        assertSameAsParsed(cache, "select * from sources * where title contains ([{\"id\": 1}]\"a\");");
+        assertSameAsParsed(cache, "select * from sources * where title contains ([{\"id\": 1}]\"b\");");
+        assertEquals(1, cache.getHits());
+        assertSameAsParsed(cache, "select * from sources * where title contains ([{\"id\": 2}]\"b\");");
+        assertEquals(1, cache.getHits());
+        assertSameAsParsed(cache, "select * from sources * where title contains ([{\"id\": 2}]\"c\");");
+        assertSameAsParsed(cache, "select * from sources * where title contains ([{\"id\": 1}]\"c\");");
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void groupingAndSortingIsBound() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, null);
+        assertSameAsParsed(cache, "select * from sources * where range(year, 1990, 2000) " +
+                                  "| all(group(a) max(5) each(output(count())));");
+        assertSameAsParsed(cache, "select * from sources * where range(year, 1970, 1980) " +
+                                  "| all(group(a) max(5) each(output(count())));");
+        assertSameAsParsed(cache, "select * from sources * where range(year, 1970, 1980) " +
+                                  "| all(group(a) max(7) each(output(count())));");
+        assertSameAsParsed(cache, "select * from sources * where weightedSet(tags, {\"a\": 1, \"b\": 2}) order by year desc;");
+        assertSameAsParsed(cache, "select * from sources * where weightedSet(tags, {\"c\": 3, \"d\": 4}) order by year desc;");
+    }
+
+    @Test
+    public void invalidProgramsAreNotCached() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(10, null);
+        try {
+            cache.parse("select * from sources * where title contains \"unterminated;");
+        }
+        catch (RuntimeException expected) {
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cacheIsClearedWhenCapacityIsExceeded() throws Exception {
+        YqlProgramCache cache = new YqlProgramCache(2, null);
+        cache.parse("select * from sources * where a contains \"x\";");
+        cache.parse("select * from sources * where b contains \"x\";");
+        assertEquals(2, cache.size());
+        cache.parse("select * from sources * where c contains \"x\";");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void queryInserterUsesCache() {
+        Execution execution = new Execution(new Chain<Searcher>(new MinimalQueryInserter()),
+                                            Execution.Context.createContextStub(null, null, new SimpleLinguistics()));
+        assertEquals("AND title:madonna year:>1980", search("title contains \"madonna\" and year > 1980", execution));
+        assertEquals("AND title:prince year:>2001", search("title contains \"prince\" and year > 2001", execution));
+    }
+
+    private static String search(String where, Execution execution) {
+        URIBuilder builder = new URIBuilder();
+        builder.setPath("search/");
+        builder.setParameter("yql", "select * from sources * where " + where + ";");
+        Query query = new Query(builder.toString());
+        Result result = execution.search(query);
+        assertNull(result.hits().getError());
+        assertNotNull(query.getModel().getQueryTree().getRoot());
+        return query.getModel().getQueryTree().toString();
+    }
+
+}
@@ -0,0 +1,37 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A document processor which can process multiple processings in one call. This is useful for processors
+ * which have a high cost per call, e.g because they make a remote request or evaluate a model, which can be
+ * amortized over many documents.</p>
+ *
+ * <p>When the framework has multiple processings which have reached this processor in the same chain at the same
+ * time, it calls {@link #process(List)} once with all of them. Other document processors in the chain are
+ * still called once per processing. Processings which are processed one at a time (for example by
+ * {@link DocprocExecutor#process(Processing)}) are passed to this as a batch of size one.</p>
+ *
+ * @see DocprocExecutor#process(List, java.util.function.BiConsumer)
+ */
+public abstract class BatchDocumentProcessor extends DocumentProcessor {
+
+    /**
+     * Processes a batch of processings. The implementing document processor is free to modify, replace or delete
+     * elements in the lists inside the processings, but not to change the list of processings.
+     * If this throws an exception, all the processings of the batch fail.
+     *
+     * @param processings the processings to process
+     * @return the outcome of each processing, in the same order as the given processings
+     */
+    public abstract List<Progress> process(List<Processing> processings);
+
+    /** Processes a single processing as a batch of size one */
+    @Override
+    public final Progress process(Processing processing) {
+        return process(Collections.singletonList(processing)).get(0);
+    }
+
+}
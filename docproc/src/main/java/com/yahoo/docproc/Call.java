@@ -14,6 +14,7 @@ import com.yahoo.concurrent.SystemTimer;
 import com.yahoo.statistics.Counter;
 import com.yahoo.statistics.Statistics;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -166,6 +167,42 @@ public class Call implements Cloneable {
         }
     }
 
+    /**
+     * Call the DocumentProcessor of this call once with all the given processings, if it is a
+     * {@link BatchDocumentProcessor}, and once for each processing otherwise.
+     *
+     * @param processings the Processing objects to use
+     * @return the progress of each processing, in the same order as the given processings
+     * @throws IllegalStateException if a batch processor does not return one progress per processing
+     */
+    public List<DocumentProcessor.Progress> call(List<Processing> processings) {
+        if ( ! (processor instanceof BatchDocumentProcessor)) {
+            List<DocumentProcessor.Progress> progresses = new ArrayList<>(processings.size());
+            for (Processing processing : processings)
+                progresses.add(call(processing));
+            return progresses;
+        }
+
+        try {
+            int numDocs = 0;
+            for (Processing processing : processings) {
+                numDocs += processing.getDocumentOperations().size();
+                schemaMapProcessing(processing);
+            }
+            long startTime = SystemTimer.INSTANCE.milliTime();
+            List<DocumentProcessor.Progress> retval = ((BatchDocumentProcessor)processor).process(processings);
+            incrementProcTime(SystemTimer.INSTANCE.milliTime() - startTime);
+            incrementDocs(numDocs);
+            if (retval == null || retval.size() != processings.size())
+                throw new IllegalStateException(processor + " returned " + (retval == null ? "no" : retval.size()) +
+                                                " progresses for a batch of " + processings.size() + " processings");
+            return retval;
+        } finally {
+            for (Processing processing : processings)
+                unwrapSchemaMapping(processing);
+        }
+    }
+
     public String toString() {
         return "call to class " + processor.getClass().getName() + " (id: " + getDocumentProcessorId() + ")";
     }
@@ -9,7 +9,18 @@ import com.yahoo.log.LogLevel;
 import com.yahoo.statistics.Counter;
 import com.yahoo.text.Utf8;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 
 /**
@@ -131,6 +142,97 @@ public class DocprocExecutor {
         return progress;
     }
 
+    /**
+     * Processes a batch of processings through the CallStack of this executor. This produces the same outcome
+     * for each processing as {@link #process(Processing)}, but processings which are at the same
+     * {@link BatchDocumentProcessor} in the call stack are passed to it in a single call.
+     * Processings are advanced one processor at a time, so processings following the same path through
+     * the call stack stay together.
+     *
+     * @param processings the processings to process. The CallStack of each Processing will be set to a clone of the CallStack of this executor, iff. it is currently null.
+     * @param failureHandler called with each processing which fails because a document processor throws an exception
+     * @return the progress of each processing, in the same order as the given processings; if this is LATER, the Processing is not done and must be reprocessed later.
+     *         Processings which are passed to the failure handler have progress FAILED.
+     */
+    public List<DocumentProcessor.Progress> process(List<Processing> processings,
+                                                    BiConsumer<Processing, Exception> failureHandler) {
+        DocumentProcessor.Progress[] progresses = new DocumentProcessor.Progress[processings.size()];
+        Call[] calls = new Call[processings.size()];
+        List<Integer> active = new ArrayList<>(processings.size());
+        for (int i = 0; i < processings.size(); i++) {
+            Processing processing = processings.get(i);
+            processing.setServiceName(getName());
+            if (processing.callStack() == null) {
+                processing.setCallStack(new CallStack(getCallStack()));
+            }
+            incrementNumDocsProcessed(processing);
+            progresses[i] = DocumentProcessor.Progress.DONE;
+            active.add(i);
+        }
+
+        while ( ! active.isEmpty()) {
+            // Group the processings by the processor they are at, preserving order
+            Map<DocumentProcessor, List<Integer>> groups = new LinkedHashMap<>();
+            for (int i : active) {
+                calls[i] = processings.get(i).callStack().pop();
+                if (calls[i] == null) continue; // No more processors - done
+                groups.computeIfAbsent(calls[i].getDocumentProcessor(), processor -> new ArrayList<>()).add(i);
+            }
+
+            active = new ArrayList<>();
+            for (List<Integer> group : groups.values()) {
+                for (int i : group)
+                    progresses[i] = DocumentProcessor.Progress.FAILED;
+                if (calls[group.get(0)].getDocumentProcessor() instanceof BatchDocumentProcessor)
+                    callBatch(group, processings, calls, progresses, failureHandler);
+                else
+                    callEach(group, processings, calls, progresses, failureHandler);
+
+                for (int i : group) {
+                    Processing processing = processings.get(i);
+                    if (log.isLoggable(LogLevel.SPAM)) {
+                        logProgress(processing, progresses[i], calls[i]);
+                    }
+                    if (DocumentProcessor.Progress.LATER.equals(progresses[i])) {
+                        processing.callStack().addNext(calls[i]);
+                    } else if (DocumentProcessor.Progress.DONE.equals(progresses[i])) {
+                        active.add(i);
+                    }
+                }
+            }
+        }
+        return Arrays.asList(progresses);
+    }
+
+    private static void callBatch(List<Integer> group, List<Processing> processings, Call[] calls,
+                                  DocumentProcessor.Progress[] progresses,
+                                  BiConsumer<Processing, Exception> failureHandler) {
+        List<Processing> batch = new ArrayList<>(group.size());
+        for (int i : group)
+            batch.add(processings.get(i));
+        try {
+            // The calls of a group are clones of the same call, so any of them will do
+            List<DocumentProcessor.Progress> batchProgresses = calls[group.get(0)].call(batch);
+            for (int j = 0; j < group.size(); j++)
+                progresses[group.get(j)] = batchProgresses.get(j);
+        } catch (Exception e) {
+            for (Processing processing : batch)
+                failureHandler.accept(processing, e);
+        }
+    }
+
+    private static void callEach(List<Integer> group, List<Processing> processings, Call[] calls,
+                                 DocumentProcessor.Progress[] progresses,
+                                 BiConsumer<Processing, Exception> failureHandler) {
+        for (int i : group) {
+            try {
+                progresses[i] = calls[i].call(processings.get(i));
+            } catch (Exception e) {
+                failureHandler.accept(processings.get(i), e);
+            }
+        }
+    }
+
     private void logProgress(Processing processing, DocumentProcessor.Progress progress, Call call) {
         StringBuilder message = new StringBuilder();
         boolean first = true;
@@ -156,7 +258,7 @@ public class DocprocExecutor {
     /**
      * Processes a given Processing through the CallStack of this executor. Note that if a DocumentProcessor
      * returns a LaterProgress for this processing, it will be re-processed (after waiting the specified delay given
-     * by the LaterProgress), until done or failed.
+     * by the LaterProgress, or until its completion completes), until done or failed.
      *
      * @param processing the Processing to process. The CallStack of the Processing will be set to a clone of the CallStack of this executor, iff. it is currently null.
      * @return a Progress; this is never a LaterProgress.
@@ -174,7 +276,10 @@ public class DocprocExecutor {
             }
             DocumentProcessor.LaterProgress later = (DocumentProcessor.LaterProgress) progress;
             try {
-                Thread.sleep(later.getDelay());
+                if (later.getCompletion().isPresent())
+                    awaitCompletion(later.getCompletion().get(), later.getDelay());
+                else
+                    Thread.sleep(later.getDelay());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
@@ -182,4 +287,13 @@ public class DocprocExecutor {
         }
         return progress;
     }
+
+    /** Waits until the given future completes, in any way, or the given time has passed */
+    private static void awaitCompletion(CompletableFuture<?> completion, long maxDelay) throws InterruptedException {
+        try {
+            completion.get(maxDelay, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CancellationException | TimeoutException e) {
+            // the processor handles the outcome when called again
+        }
+    }
 }
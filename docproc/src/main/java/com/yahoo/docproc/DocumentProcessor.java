@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -116,6 +117,19 @@ public abstract class DocumentProcessor extends ChainedComponent {
             return new LaterProgress(delay);
         }
 
+        /**
+         * Returned by a processor which is waiting for an asynchronous operation, such as a request to an external
+         * service, to complete. The processor is called again for the same processing when the given future
+         * completes, or after the given delay, whichever comes first. The thread processing the processing
+         * is released while waiting.
+         *
+         * @param completion the future whose completion the processor is waiting for
+         * @param maxDelay the max time in milliseconds to wait before the processor is called again
+         */
+        public static Progress later(CompletableFuture<?> completion, long maxDelay) {
+            return new LaterProgress(maxDelay, completion);
+        }
+
         public Progress withReason(String reason) {
             return new Progress(this.name, reason);
         }
@@ -139,6 +153,7 @@ public abstract class DocumentProcessor extends ChainedComponent {
 
     public static final class LaterProgress extends Progress {
         private final long delay;
+        private final Optional<CompletableFuture<?>> completion;
         public static final long DEFAULT_LATER_DELAY = 20;  //ms
 
         private LaterProgress() {
@@ -146,13 +161,24 @@ public abstract class DocumentProcessor extends ChainedComponent {
         }
 
         private LaterProgress(long delay) {
+            this(delay, null);
+        }
+
+        private LaterProgress(long delay, CompletableFuture<?> completion) {
             super("later");
             this.delay = delay;
+            this.completion = Optional.ofNullable(completion);
         }
 
+        /** Returns the time in milliseconds to wait before processing again, at most */
         public long getDelay() {
             return delay;
         }
+
+        /** Returns the future which should cause processing to resume when it completes, if any */
+        public Optional<CompletableFuture<?>> getCompletion() {
+            return completion;
+        }
     }
 
     /** Sets the schema map for field names */
@@ -0,0 +1,182 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.log.LogLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs continuations (tasks which are waiting to be resubmitted for processing) after a delay, using a hashed
+ * timer wheel: Continuations are put in the slot of the wheel their delay expires in, and a single thread
+ * advances through the slots at a fixed tick interval, running the continuations which have expired.
+ * Scheduling and cancelling are constant time regardless of the number of scheduled continuations,
+ * and continuations run no earlier than their delay and at most one tick later.
+ * <p>
+ * Continuations should be fast as they are run by the thread of this; they should just submit a task to an executor.
+ * Continuations which are run by other means before their delay expires should be cancelled to remove them
+ * from the wheel.
+ * <p>
+ * This is thread safe.
+ */
+class ContinuationScheduler {
+
+    private static final Logger log = Logger.getLogger(ContinuationScheduler.class.getName());
+
+    private final long tickMillis;
+    private final List<List<Entry>> slots;
+    private final Thread thread;
+    private volatile boolean shutdown = false;
+
+    // Guarded by this
+    private long currentTick = 0;
+
+    ContinuationScheduler(String name) {
+        this(name, 5, 512);
+    }
+
+    ContinuationScheduler(String name, long tickMillis, int slotCount) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++)
+            slots.add(new ArrayList<>());
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs the given continuation after the given delay in milliseconds, or at shutdown, whichever comes first
+     *
+     * @return the scheduled continuation, which can be cancelled to remove it from this
+     */
+    Entry schedule(Runnable continuation, long delayMillis) {
+        long ticks = 1 + Math.max(0, (delayMillis + tickMillis - 1) / tickMillis); // the next tick may be close
+        Entry entry;
+        synchronized (this) {
+            entry = new Entry(continuation, currentTick + ticks);
+            if ( ! shutdown) {
+                List<Entry> slot = slots.get(entry.slot());
+                entry.index = slot.size();
+                slot.add(entry);
+                return entry;
+            }
+        }
+        continuation.run(); // shut down, so run it now, without holding the lock of this
+        return entry;
+    }
+
+    /** Returns the number of continuations waiting to run */
+    synchronized int size() {
+        int size = 0;
+        for (List<Entry> slot : slots)
+            size += slot.size();
+        return size;
+    }
+
+    /** Stops the thread of this, running all remaining continuations */
+    void shutdown() {
+        shutdown = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        long nextTickNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        while ( ! shutdown) {
+            long sleepNanos = nextTickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+                catch (InterruptedException e) {
+                    continue; // check for shutdown
+                }
+            }
+            nextTickNanos += TimeUnit.MILLISECONDS.toNanos(tickMillis);
+            runAll(expire());
+        }
+        runAll(drain());
+    }
+
+    /** Advances the wheel one tick and returns the continuations which expired */
+    private synchronized List<Runnable> expire() {
+        currentTick++;
+        List<Entry> slot = slots.get((int)(currentTick % slots.size()));
+        List<Runnable> expired = new ArrayList<>();
+        for (int i = 0; i < slot.size(); ) {
+            Entry entry = slot.get(i);
+            if (entry.expiryTick <= currentTick) {
+                expired.add(entry.continuation);
+                removeAt(i, slot);
+            }
+            else {
+                i++;
+            }
+        }
+        return expired;
+    }
+
+    private synchronized void remove(Entry entry) {
+        if (entry.index < 0) return; // already run
+        removeAt(entry.index, slots.get(entry.slot()));
+    }
+
+    /** Removes the entry at the given index by moving the last entry of the slot into its place */
+    private void removeAt(int index, List<Entry> slot) {
+        slot.get(index).index = -1;
+        Entry last = slot.remove(slot.size() - 1);
+        if (index < slot.size()) {
+            slot.set(index, last);
+            last.index = index;
+        }
+    }
+
+    private synchronized List<Runnable> drain() {
+        List<Runnable> all = new ArrayList<>();
+        for (List<Entry> slot : slots) {
+            for (Entry entry : slot) {
+                all.add(entry.continuation);
+                entry.index = -1;
+            }
+            slot.clear();
+        }
+        return all;
+    }
+
+    private static void runAll(List<Runnable> continuations) {
+        for (Runnable continuation : continuations) {
+            try {
+                continuation.run();
+            }
+            catch (RuntimeException e) {
+                log.log(LogLevel.WARNING, "Continuation failed", e);
+            }
+        }
+    }
+
+    /** A scheduled continuation */
+    final class Entry {
+
+        final Runnable continuation;
+        final long expiryTick;
+
+        /** The index of this in its slot, or -1 if it is not in the wheel. Guarded by the scheduler. */
+        private int index = -1;
+
+        private Entry(Runnable continuation, long expiryTick) {
+            this.continuation = continuation;
+            this.expiryTick = expiryTick;
+        }
+
+        private int slot() { return (int)(expiryTick % slots.size()); }
+
+        /** Removes this from the scheduler without running it, if it has not already run */
+        void cancel() {
+            remove(this);
+        }
+
+    }
+
+}
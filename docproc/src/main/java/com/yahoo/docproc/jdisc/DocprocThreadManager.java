@@ -53,6 +53,11 @@ class DocprocThreadManager {
     void afterExecute(DocumentProcessingTask task) {
         bytesFinished.getAndAdd(task.getApproxSize());
     }
+
+    /** Call this when tasks of the given size, started as part of a batch task, are no longer part of it */
+    void splitFromBatch(int approxSize) {
+        bytesFinished.getAndAdd(approxSize);
+    }
     void shutdown() {
     }
 
@@ -56,4 +56,8 @@ public class DocprocThreadPoolExecutor extends ThreadPoolExecutor {
         return threadManager.isAboveLimit();
     }
 
+    void splitFromBatch(int approxSize) {
+        threadManager.splitFromBatch(approxSize);
+    }
+
 }
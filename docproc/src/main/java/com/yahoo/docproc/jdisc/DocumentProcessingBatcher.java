@@ -0,0 +1,107 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.docproc.BatchDocumentProcessor;
+import com.yahoo.docproc.Call;
+import com.yahoo.docproc.DocprocService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Groups incoming tasks into batches per docproc service, such that the processings of a batch are processed
+ * together by the {@link BatchDocumentProcessor}s of the service. A batch is submitted when it reaches the max
+ * batch size, or when the first task in it has waited for the max batch delay, whichever comes first.
+ * Tasks for services without batch document processors are submitted directly, as they gain nothing from waiting.
+ * <p>
+ * This is thread safe.
+ */
+class DocumentProcessingBatcher {
+
+    private final int maxBatchSize;
+    private final long maxBatchDelayMs;
+    private final ContinuationScheduler scheduler;
+    private final Consumer<DocumentProcessingTask> submitter;
+
+    // Guarded by this
+    private final Map<DocprocService, List<DocumentProcessingTask>> pending = new HashMap<>();
+
+    /**
+     * Creates a batcher
+     *
+     * @param maxBatchSize the max number of tasks in a batch
+     * @param maxBatchDelayMs the max time in milliseconds a task waits for a batch to fill up
+     * @param scheduler the scheduler used to submit batches which are not full after the max delay
+     * @param submitter receives the first task of each batch, with the other tasks of the batch added to it
+     */
+    DocumentProcessingBatcher(int maxBatchSize, long maxBatchDelayMs, ContinuationScheduler scheduler,
+                              Consumer<DocumentProcessingTask> submitter) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayMs = maxBatchDelayMs;
+        this.scheduler = scheduler;
+        this.submitter = submitter;
+    }
+
+    /** Adds a task for the given service to its current batch, or submits it directly if it should not be batched */
+    void add(DocumentProcessingTask task, DocprocService service) {
+        if ( ! hasBatchProcessor(service)) {
+            submitter.accept(task);
+            return;
+        }
+
+        List<DocumentProcessingTask> full = null;
+        synchronized (this) {
+            List<DocumentProcessingTask> batch = pending.get(service);
+            if (batch == null) {
+                List<DocumentProcessingTask> newBatch = new ArrayList<>(maxBatchSize);
+                pending.put(service, newBatch);
+                scheduler.schedule(() -> submitIfPending(service, newBatch), maxBatchDelayMs);
+                batch = newBatch;
+            }
+            batch.add(task);
+            if (batch.size() >= maxBatchSize) {
+                pending.remove(service);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+    }
+
+    /** Returns the number of tasks waiting for their batch to be submitted */
+    synchronized int size() {
+        int size = 0;
+        for (List<DocumentProcessingTask> batch : pending.values())
+            size += batch.size();
+        return size;
+    }
+
+    private void submitIfPending(DocprocService service, List<DocumentProcessingTask> batch) {
+        synchronized (this) {
+            if (pending.get(service) != batch) return; // already submitted when full
+            pending.remove(service);
+        }
+        submit(batch);
+    }
+
+    private void submit(List<DocumentProcessingTask> batch) {
+        DocumentProcessingTask first = batch.get(0);
+        for (int i = 1; i < batch.size(); i++)
+            first.addToBatch(batch.get(i));
+        submitter.accept(first);
+    }
+
+    private static boolean hasBatchProcessor(DocprocService service) {
+        for (Iterator<Call> i = service.getExecutor().getCallStack().iterator(); i.hasNext(); ) {
+            if (i.next().getDocumentProcessor() instanceof BatchDocumentProcessor)
+                return true;
+        }
+        return false;
+    }
+
+}
@@ -5,7 +5,6 @@ import com.google.inject.Inject;
 import com.yahoo.component.chain.Chain;
 import com.yahoo.component.chain.model.ChainsModel;
 import com.yahoo.component.provider.ComponentRegistry;
-import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.docproc.DocprocConfig;
 import com.yahoo.config.docproc.SchemamappingConfig;
 import com.yahoo.container.core.ChainsConfig;
@@ -30,8 +29,9 @@ import com.yahoo.messagebus.jdisc.MbusRequest;
 import com.yahoo.processing.execution.chain.ChainRegistry;
 import com.yahoo.statistics.Statistics;
 
-import java.util.TimerTask;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static com.yahoo.component.chain.ChainsConfigurer.prepareChainRegistry;
@@ -44,13 +44,17 @@ import static com.yahoo.component.chain.model.ChainsModelBuilder.buildFromConfig
  */
 public class DocumentProcessingHandler extends AbstractRequestHandler {
 
+    private static final String METRIC_NAME_PROCESSINGS_PARKED = "processings_parked";
+
     private static Logger log = Logger.getLogger(DocumentProcessingHandler.class.getName());
     private final ComponentRegistry<DocprocService> docprocServiceRegistry;
     private final ComponentRegistry<AbstractConcreteDocumentFactory> docFactoryRegistry;
     private final ChainRegistry<DocumentProcessor> chainRegistry = new ChainRegistry<>();
     private DocprocThreadPoolExecutor threadPool;
-    private final ScheduledThreadPoolExecutor laterExecutor =
-            new ScheduledThreadPoolExecutor(2, new DaemonThreadFactory("docproc-later-"));
+    private final ContinuationScheduler laterScheduler = new ContinuationScheduler("docproc-later");
+    private final AtomicInteger parkedProcessings = new AtomicInteger();
+    private DocumentProcessingBatcher batcher = null;
+    private final Metric metric;
     private ContainerDocumentConfig containerDocConfig;
     private final DocumentTypeManager documentTypeManager;
 
@@ -67,9 +71,8 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         this.containerDocConfig = containerDocConfig;
         this.documentTypeManager = documentTypeManager;
         DocprocService.schemaMap = schemaMap;
+        this.metric = metric;
         threadPool.prestartCoreThread();
-        laterExecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
-        laterExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
 
         if (chainsModel != null) {
             prepareChainRegistry(chainRegistry, chainsModel, documentProcessorComponentRegistry);
@@ -104,6 +107,10 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
              params.getStatisticsManager(),
              params.getMetric(),
              params.getContainerDocConfig());
+        if (params.getMaxBatchSize() > 1) {
+            batcher = new DocumentProcessingBatcher(params.getMaxBatchSize(), params.getMaxBatchDelayMs(),
+                                                    laterScheduler, this::submit);
+        }
     }
 
     @Inject
@@ -124,6 +131,8 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
                      .setDocumentExpansionFactor(containerMbusConfig.documentExpansionFactor())
                      .setContainerCoreMemoryMb(containerMbusConfig.containerCoreMemory())
                      .setMaxQueueTimeMs(docprocConfig.maxqueuetimems())
+                     .setMaxBatchSize(docprocConfig.maxbatchsize())
+                     .setMaxBatchDelayMs(docprocConfig.maxbatchdelayms())
                      .setDocumentTypeManager(new DocumentTypeManager(docManConfig))
                      .setChainsModel(buildFromConfig(chainsConfig)).setSchemaMap(configureMapping(mappingConfig))
                      .setStatisticsManager(manager)
@@ -134,6 +143,7 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
     @Override
     protected void destroy() {
         threadPool.shutdown();  //calling shutdownNow() seems like a bit of an overkill
+        laterScheduler.shutdown();
     }
 
     public ComponentRegistry<DocprocService> getDocprocServiceRegistry() {
@@ -190,7 +200,11 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         }
 
         DocumentProcessingTask task = new DocumentProcessingTask(requestContext, this, service);
-        submit(task);
+        if (batcher != null) {
+            batcher.add(task, service);
+        } else {
+            submit(task);
+        }
         return null;
     }
 
@@ -207,26 +221,60 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         }
     }
 
-    void submit(DocumentProcessingTask task, long delay) {
-        LaterTimerTask timerTask = new LaterTimerTask(task, delay);
-        laterExecutor.schedule(timerTask, delay, TimeUnit.MILLISECONDS);
+    /**
+     * Call this when tasks batched with a running task are split out of it, such that they are
+     * no longer counted as part of the size of the running task
+     */
+    void splitFromBatch(int approxSize) {
+        threadPool.splitFromBatch(approxSize);
     }
 
-    private class LaterTimerTask extends TimerTask {
-        private DocumentProcessingTask processingTask;
-        private long delay;
+    /**
+     * Parks a task which returned LATER, releasing its thread, and submits it again when the delay of the given
+     * progress has passed, or when its completion completes, whichever comes first.
+     */
+    void submit(DocumentProcessingTask task, DocumentProcessor.LaterProgress later) {
+        Continuation continuation = new Continuation(task, later.getDelay());
+        continuation.scheduled = laterScheduler.schedule(continuation, later.getDelay());
+        later.getCompletion().ifPresent(completion -> completion.whenComplete((result, exception) -> continuation.run()));
+    }
 
-        private LaterTimerTask(DocumentProcessingTask processingTask, long delay) {
-            this.delay = delay;
-            log.log(LogLevel.DEBUG, "Enqueueing in " + delay + " ms due to Progress.LATER: " + processingTask);
+    /** Returns the number of processings which are waiting to be processed again after returning LATER */
+    int parkedProcessings() {
+        return parkedProcessings.get();
+    }
+
+    private void addParkedProcessings(int count) {
+        metric.set(METRIC_NAME_PROCESSINGS_PARKED, parkedProcessings.addAndGet(count), null);
+    }
+
+    /** Submits a parked task, once, and removes it from the scheduler if it is resumed before its delay */
+    private class Continuation implements Runnable {
+
+        private final DocumentProcessingTask processingTask;
+        private final long delay;
+        private final int processingCount;
+        private final AtomicBoolean resumed = new AtomicBoolean(false);
+        private volatile ContinuationScheduler.Entry scheduled = null;
+
+        private Continuation(DocumentProcessingTask processingTask, long delay) {
             this.processingTask = processingTask;
+            this.delay = delay;
+            this.processingCount = processingTask.processingCount();
+            log.log(LogLevel.DEBUG, "Parking for at most " + delay + " ms due to Progress.LATER: " + processingTask);
+            addParkedProcessings(processingCount);
         }
 
         @Override
         public void run() {
-            log.log(LogLevel.DEBUG, "Submitting after having waited " + delay + " ms in LATER queue: " + processingTask);
+            if ( ! resumed.compareAndSet(false, true)) return;
+            if (scheduled != null)
+                scheduled.cancel();
+            addParkedProcessings(-processingCount);
+            log.log(LogLevel.DEBUG, "Submitting after having been parked at most " + delay + " ms: " + processingTask);
             submit(processingTask);
         }
+
     }
 
     public DocumentTypeManager getDocumentTypeManager() {
@@ -22,6 +22,8 @@ public class DocumentProcessingHandlerParameters {
     private double documentExpansionFactor = 20.0;
     private int containerCoreMemoryMb = 50;
     private long maxQueueTimeMs = 0;
+    private int maxBatchSize = 1;
+    private long maxBatchDelayMs = 5;
     private DocumentTypeManager documentTypeManager = null;
     private ChainsModel chainsModel = null;
     private SchemaMap schemaMap = null;
@@ -114,6 +116,35 @@ public class DocumentProcessingHandlerParameters {
         return this;
     }
 
+    /**
+     * Returns the maximum number of requests to a chain containing batch document processors which are processed
+     * together.&nbsp;The default value of 1 disables batching.
+     *
+     * @return the maximum number of requests which are processed together.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public DocumentProcessingHandlerParameters setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Returns the maximum time (in milliseconds) that a request may wait for more requests to be batched with.
+     *
+     * @return the maximum time (in milliseconds) that a request may wait for more requests to be batched with.
+     */
+    public long getMaxBatchDelayMs() {
+        return maxBatchDelayMs;
+    }
+
+    public DocumentProcessingHandlerParameters setMaxBatchDelayMs(long maxBatchDelayMs) {
+        this.maxBatchDelayMs = maxBatchDelayMs;
+        return this;
+    }
+
     public DocumentTypeManager getDocumentTypeManager() {
         return documentTypeManager;
     }
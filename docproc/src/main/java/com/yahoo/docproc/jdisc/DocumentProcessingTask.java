@@ -15,9 +15,13 @@ import com.yahoo.yolean.Exceptions;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
@@ -35,6 +39,11 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     private final DocumentProcessingHandler docprocHandler;
     private RequestContext requestContext;
     private int waitCounter;
+    private boolean failed = false;
+
+    /** Tasks to process together with this the first time this is run. Not changed after this is submitted */
+    private final List<DocumentProcessingTask> batch = new ArrayList<>();
+    private boolean batchProcessed = false;
 
     private final static AtomicLong seq = new AtomicLong();
     private final long seqNum;
@@ -52,21 +61,15 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     @Override
     public void run() {
         try {
-            try {
-                processings.addAll(requestContext.getProcessings());
-            } catch (Exception e) {
-                //deserialization failed:
-                log.log(LogLevel.WARNING, "Deserialization of message failed.", e);
-                requestContext.processingFailed(e);
-                return;
-            }
-
-            DocprocExecutor executor = service.getExecutor();
-            DocumentProcessor.Progress progress = process(executor);
-
-            if (DocumentProcessor.Progress.LATER.equals(progress) && !processings.isEmpty()) {
-                DocumentProcessor.LaterProgress laterProgress = (DocumentProcessor.LaterProgress) progress;
-                docprocHandler.submit(this, laterProgress.getDelay());
+            if ( ! batch.isEmpty() && ! batchProcessed) {
+                int batchedSize = getApproxSize() - requestContext.getApproxSize();
+                batchProcessed = true; // the batched tasks are on their own from here
+                docprocHandler.splitFromBatch(batchedSize);
+                processBatch();
+            } else {
+                if ( ! loadProcessings()) return;
+                DocprocExecutor executor = service.getExecutor();
+                resubmitIfLater(process(executor));
             }
         } catch (Error error) {
             try {
@@ -79,6 +82,33 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         }
     }
 
+    /** Adds the processings of the request of this, if not already added. Returns false if this failed */
+    private boolean loadProcessings() {
+        try {
+            processings.addAll(requestContext.getProcessings());
+            return true;
+        } catch (Exception e) {
+            //deserialization failed:
+            log.log(LogLevel.WARNING, "Deserialization of message failed.", e);
+            requestContext.processingFailed(e);
+            return false;
+        }
+    }
+
+    private void resubmitIfLater(DocumentProcessor.Progress progress) {
+        if (DocumentProcessor.Progress.LATER.equals(progress) && !processings.isEmpty()) {
+            docprocHandler.submit(this, (DocumentProcessor.LaterProgress) progress);
+        }
+    }
+
+    /**
+     * Adds a task to be processed together with this the first time this is run.
+     * This must be done before this is submitted.
+     */
+    void addToBatch(DocumentProcessingTask task) {
+        batch.add(task);
+    }
+
     /**
      * Used by DocprocThreadManager. If a ProcessingTask has been taken by a thread, it can wait() no longer than
      * waitCounter (currently 10) times before being executed. This is to prevent large tasks from being delayed
@@ -103,56 +133,100 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
             Processing processing = iterator.next();
             iterator.remove();
             if (requestContext.hasExpired()) {
-                DocumentProcessor.Progress progress = DocumentProcessor.Progress.FAILED;
-                final String location;
-                if (processing != null) {
-                    final CallStack callStack = processing.callStack();
-                    if (callStack != null) {
-                        final Call lastPopped = callStack.getLastPopped();
-                        if (lastPopped != null) {
-                            location = lastPopped.toString();
-                        } else {
-                            location = "empty call stack or no processors popped";
-                        }
-                    } else {
-                        location = "no call stack";
-                    }
-                } else {
-                    location = "no processing instance";
-                }
-                String errorMsg = processing + " failed, " + location;
-                log.log(Level.FINE, "Time is up for '" + errorMsg + "'.");
-                requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE, "Time is up.");
-                return progress;
+                failExpired(processing);
+                return DocumentProcessor.Progress.FAILED;
             }
 
             DocumentProcessor.Progress progress = DocumentProcessor.Progress.FAILED;
             try {
                 progress = executor.process(processing);
             } catch (Exception e) {
-                logProcessingFailure(processing, e);
-                requestContext.processingFailed(e);
+                fail(processing, e);
                 return progress;
             }
 
-            if (DocumentProcessor.Progress.LATER.equals(progress)) {
-                later.add(new Tuple2<>(progress, processing));
-            } else if (DocumentProcessor.Progress.DONE.equals(progress)) {
-                processingsDone.add(processing);
-            } else if (DocumentProcessor.Progress.FAILED.equals(progress)) {
-                logProcessingFailure(processing, null);
-                requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
-                        progress.getReason().orElse("Document processing failed."));
-                return progress;
-            } else if (DocumentProcessor.Progress.PERMANENT_FAILURE.equals(progress)) {
-                logProcessingFailure(processing, null);
-                requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
-                        progress.getReason().orElse("Document processing failed."));
+            if ( ! addProgress(processing, progress, later)) {
                 return progress;
             }
         }
+        return complete(later);
+    }
+
+    /**
+     * Processes the processings of this and the tasks batched with it together, such that batch document
+     * processors are called once for all of them. Each task still fails, completes or is parked on its own.
+     */
+    private void processBatch() {
+        List<DocumentProcessingTask> tasks = new ArrayList<>(batch.size() + 1);
+        tasks.add(this);
+        tasks.addAll(batch);
+
+        List<Processing> batchProcessings = new ArrayList<>();
+        Map<Processing, DocumentProcessingTask> owners = new IdentityHashMap<>();
+        Map<DocumentProcessingTask, List<Tuple2<DocumentProcessor.Progress, Processing>>> later = new LinkedHashMap<>();
+        for (DocumentProcessingTask task : tasks) {
+            if ( ! task.loadProcessings()) continue;
+            if ( ! task.processings.isEmpty() && task.requestContext.hasExpired()) {
+                task.failExpired(task.processings.get(0));
+                continue;
+            }
+            for (Processing processing : task.processings) {
+                batchProcessings.add(processing);
+                owners.put(processing, task);
+            }
+            task.processings.clear();
+            later.put(task, new ArrayList<>());
+        }
 
-        // Processings that have FAILED will have made this method terminate by now.
+        List<DocumentProcessor.Progress> progresses =
+                service.getExecutor().process(batchProcessings, (processing, exception) -> {
+                    DocumentProcessingTask owner = owners.get(processing);
+                    if ( ! owner.failed) {
+                        owner.fail(processing, exception);
+                    }
+                });
+
+        for (int i = 0; i < batchProcessings.size(); i++) {
+            DocumentProcessingTask owner = owners.get(batchProcessings.get(i));
+            if ( ! owner.failed) {
+                owner.addProgress(batchProcessings.get(i), progresses.get(i), later.get(owner));
+            }
+        }
+        for (Map.Entry<DocumentProcessingTask, List<Tuple2<DocumentProcessor.Progress, Processing>>> entry : later.entrySet()) {
+            DocumentProcessingTask task = entry.getKey();
+            if ( ! task.failed) {
+                task.resubmitIfLater(task.complete(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Adds the progress of a processing to this, and fails the message if the processing failed.
+     *
+     * @return whether the processing has not failed
+     */
+    private boolean addProgress(Processing processing, DocumentProcessor.Progress progress,
+                                List<Tuple2<DocumentProcessor.Progress, Processing>> later) {
+        if (DocumentProcessor.Progress.LATER.equals(progress)) {
+            later.add(new Tuple2<>(progress, processing));
+        } else if (DocumentProcessor.Progress.DONE.equals(progress)) {
+            processingsDone.add(processing);
+        } else if (DocumentProcessor.Progress.FAILED.equals(progress)) {
+            fail(processing, progress);
+            return false;
+        } else if (DocumentProcessor.Progress.PERMANENT_FAILURE.equals(progress)) {
+            fail(processing, progress);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Completes the message if all processings are done, or returns the progress to resume the processings
+     * which returned LATER with.
+     */
+    private DocumentProcessor.Progress complete(List<Tuple2<DocumentProcessor.Progress, Processing>> later) {
+        // Processings that have FAILED will have made processing terminate by now.
         // We now have successful Processings in 'processingsDone' and
         // the ones that have returned LATER in 'later'.
 
@@ -162,26 +236,73 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
             // return the one with the lowest timeout:"
             // As multioperation is removed this can probably be simplified?
             DocumentProcessor.LaterProgress shortestDelay = (DocumentProcessor.LaterProgress) later.get(0).first;
+            List<CompletableFuture<?>> completions = new ArrayList<>();
             for (Tuple2<DocumentProcessor.Progress, Processing> tuple : later) {
                 // re-add the LATER one to processings
                 processings.add(tuple.second);
+                DocumentProcessor.LaterProgress laterProgress = (DocumentProcessor.LaterProgress) tuple.first;
                 // check to see if this one had a lower timeout than the previous one:
-                if (((DocumentProcessor.LaterProgress) tuple.first).getDelay() < shortestDelay.getDelay()) {
-                    shortestDelay = (DocumentProcessor.LaterProgress) tuple.first;
+                if (laterProgress.getDelay() < shortestDelay.getDelay()) {
+                    shortestDelay = laterProgress;
                 }
+                laterProgress.getCompletion().ifPresent(completions::add);
+            }
+            if (completions.isEmpty()) {
+                return shortestDelay;
             }
-            return shortestDelay;
+            // resume when any of the processings waiting for a completion may continue
+            return DocumentProcessor.Progress.later(CompletableFuture.anyOf(completions.toArray(new CompletableFuture<?>[0])),
+                                                    shortestDelay.getDelay());
         } else {
             requestContext.processingDone(processingsDone);
             return DocumentProcessor.Progress.DONE;
         }
     }
 
+    private void failExpired(Processing processing) {
+        failed = true;
+        final String location;
+        if (processing != null) {
+            final CallStack callStack = processing.callStack();
+            if (callStack != null) {
+                final Call lastPopped = callStack.getLastPopped();
+                if (lastPopped != null) {
+                    location = lastPopped.toString();
+                } else {
+                    location = "empty call stack or no processors popped";
+                }
+            } else {
+                location = "no call stack";
+            }
+        } else {
+            location = "no processing instance";
+        }
+        String errorMsg = processing + " failed, " + location;
+        log.log(Level.FINE, "Time is up for '" + errorMsg + "'.");
+        requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE, "Time is up.");
+    }
+
+    private void fail(Processing processing, Exception exception) {
+        failed = true;
+        logProcessingFailure(processing, exception);
+        requestContext.processingFailed(exception);
+    }
+
+    private void fail(Processing processing, DocumentProcessor.Progress progress) {
+        failed = true;
+        logProcessingFailure(processing, null);
+        requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
+                                        progress.getReason().orElse("Document processing failed."));
+    }
 
     void queueFull() {
         requestContext.processingFailed(RequestContext.ErrorCode.ERROR_BUSY,
                                         "Queue temporarily full. Returning message " + requestContext +
                                         ". Will be automatically resent.");
+        if ( ! batchProcessed) {
+            for (DocumentProcessingTask task : batch)
+                task.queueFull();
+        }
     }
 
     public int compareTo(DocumentProcessingTask other) {
@@ -204,8 +325,19 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
                '}';
     }
 
+    /** Returns the number of processings of this which are not done */
+    int processingCount() {
+        return processings.size();
+    }
+
+    /** Returns the approximate size of the requests of this, and of the tasks batched with it until they are processed */
     public int getApproxSize() {
-        return requestContext.getApproxSize();
+        int size = requestContext.getApproxSize();
+        if ( ! batchProcessed) {
+            for (DocumentProcessingTask task : batch)
+                size += task.getApproxSize();
+        }
+        return size;
     }
 
     final long getSeqNum() {
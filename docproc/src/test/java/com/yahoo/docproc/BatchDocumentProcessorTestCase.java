@@ -0,0 +1,206 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.StringFieldValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests processing batches of processings through chains of batch and legacy document processors.
+ */
+public class BatchDocumentProcessorTestCase {
+
+    private final DocumentType type;
+
+    public BatchDocumentProcessorTestCase() {
+        type = new DocumentType("test");
+        type.addField("test", DataType.STRING);
+    }
+
+    @Test
+    public void requireThatBatchProcessorsAreCalledOnceForTheBatch() {
+        RecordingBatchProcessor batchProcessor = new RecordingBatchProcessor();
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(new AppendingProcessor("a"))
+                                                                               .addLast(batchProcessor)
+                                                                               .addLast(new AppendingProcessor("c")));
+        List<Processing> processings = createProcessings(3);
+
+        List<DocumentProcessor.Progress> progresses = executor.process(processings, (processing, e) -> {
+            throw new AssertionError("Unexpected failure", e);
+        });
+
+        assertEquals(Arrays.asList(DocumentProcessor.Progress.DONE, DocumentProcessor.Progress.DONE,
+                                   DocumentProcessor.Progress.DONE), progresses);
+        assertEquals(Arrays.asList(3), batchProcessor.batchSizes);
+        for (Processing processing : processings)
+            assertEquals(new StringFieldValue("abc"), valueOf(processing));
+    }
+
+    @Test
+    public void requireThatSingleProcessingsArePassedAsBatchesOfOne() {
+        RecordingBatchProcessor batchProcessor = new RecordingBatchProcessor();
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(batchProcessor));
+        Processing processing = createProcessings(1).get(0);
+
+        assertEquals(DocumentProcessor.Progress.DONE, executor.process(processing));
+        assertEquals(Arrays.asList(1), batchProcessor.batchSizes);
+        assertEquals(new StringFieldValue("b"), valueOf(processing));
+    }
+
+    @Test
+    public void requireThatProcessingsReturningLaterAreResumedAtTheSameProcessor() {
+        RecordingBatchProcessor batchProcessor = new RecordingBatchProcessor();
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(new PostponingProcessor())
+                                                                               .addLast(batchProcessor));
+        List<Processing> processings = createProcessings(4);
+        for (int i = 0; i < processings.size(); i += 2)
+            processings.get(i).setVariable("postpone", true);
+
+        List<DocumentProcessor.Progress> progresses = executor.process(processings, (processing, e) -> {
+            throw new AssertionError("Unexpected failure", e);
+        });
+        assertTrue(progresses.get(0) instanceof DocumentProcessor.LaterProgress);
+        assertEquals(DocumentProcessor.Progress.DONE, progresses.get(1));
+        assertTrue(progresses.get(2) instanceof DocumentProcessor.LaterProgress);
+        assertEquals(DocumentProcessor.Progress.DONE, progresses.get(3));
+        assertEquals(Arrays.asList(2), batchProcessor.batchSizes);
+
+        List<Processing> postponed = Arrays.asList(processings.get(0), processings.get(2));
+        progresses = executor.process(postponed, (processing, e) -> {
+            throw new AssertionError("Unexpected failure", e);
+        });
+        assertEquals(Arrays.asList(DocumentProcessor.Progress.DONE, DocumentProcessor.Progress.DONE), progresses);
+        assertEquals(Arrays.asList(2, 2), batchProcessor.batchSizes);
+        for (Processing processing : processings)
+            assertEquals(new StringFieldValue("b"), valueOf(processing));
+    }
+
+    @Test
+    public void requireThatExceptionsOnlyFailTheProcessingsOfTheFailingCall() {
+        RecordingBatchProcessor batchProcessor = new RecordingBatchProcessor();
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(new ThrowingProcessor())
+                                                                               .addLast(batchProcessor));
+        List<Processing> processings = createProcessings(3);
+        processings.get(1).setVariable("throw", true);
+
+        Map<Processing, Exception> failures = new IdentityHashMap<>();
+        List<DocumentProcessor.Progress> progresses = executor.process(processings, failures::put);
+
+        assertEquals(Arrays.asList(DocumentProcessor.Progress.DONE, DocumentProcessor.Progress.FAILED,
+                                   DocumentProcessor.Progress.DONE), progresses);
+        assertEquals(1, failures.size());
+        assertEquals("Thrown for processing", failures.get(processings.get(1)).getMessage());
+        assertEquals(Arrays.asList(2), batchProcessor.batchSizes);
+    }
+
+    @Test
+    public void requireThatBatchProcessorExceptionsFailTheWholeBatch() {
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(new ThrowingBatchProcessor()));
+        List<Processing> processings = createProcessings(2);
+
+        Map<Processing, Exception> failures = new IdentityHashMap<>();
+        List<DocumentProcessor.Progress> progresses = executor.process(processings, failures::put);
+
+        assertEquals(Arrays.asList(DocumentProcessor.Progress.FAILED, DocumentProcessor.Progress.FAILED), progresses);
+        assertEquals(2, failures.size());
+        assertSame(failures.get(processings.get(0)), failures.get(processings.get(1)));
+    }
+
+    private List<Processing> createProcessings(int count) {
+        List<Processing> processings = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            processings.add(Processing.of(new DocumentPut(type, new DocumentId("doc:test:test:" + i))));
+        return processings;
+    }
+
+    private static StringFieldValue valueOf(Processing processing) {
+        return (StringFieldValue)((DocumentPut)processing.getDocumentOperations().get(0)).getDocument().getFieldValue("test");
+    }
+
+    private static void append(Processing processing, String value) {
+        for (DocumentOperation operation : processing.getDocumentOperations()) {
+            DocumentPut put = (DocumentPut)operation;
+            StringFieldValue current = (StringFieldValue)put.getDocument().getFieldValue("test");
+            put.getDocument().setFieldValue("test", new StringFieldValue((current == null ? "" : current.getString()) + value));
+        }
+    }
+
+    private static class AppendingProcessor extends DocumentProcessor {
+
+        private final String value;
+
+        AppendingProcessor(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public Progress process(Processing processing) {
+            append(processing, value);
+            return Progress.DONE;
+        }
+
+    }
+
+    private static class PostponingProcessor extends DocumentProcessor {
+
+        @Override
+        public Progress process(Processing processing) {
+            if (processing.removeVariable("postpone") != null)
+                return Progress.later(1);
+            return Progress.DONE;
+        }
+
+    }
+
+    private static class ThrowingProcessor extends DocumentProcessor {
+
+        @Override
+        public Progress process(Processing processing) {
+            if (processing.hasVariable("throw"))
+                throw new IllegalArgumentException("Thrown for processing");
+            return Progress.DONE;
+        }
+
+    }
+
+    private static class RecordingBatchProcessor extends BatchDocumentProcessor {
+
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public List<Progress> process(List<Processing> processings) {
+            batchSizes.add(processings.size());
+            List<Progress> progresses = new ArrayList<>();
+            for (Processing processing : processings) {
+                append(processing, "b");
+                progresses.add(Progress.DONE);
+            }
+            return progresses;
+        }
+
+    }
+
+    private static class ThrowingBatchProcessor extends BatchDocumentProcessor {
+
+        @Override
+        public List<Progress> process(List<Processing> processings) {
+            throw new IllegalStateException("Thrown for batch");
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContinuationSchedulerTestCase {
+
+    @Test
+    public void requireThatContinuationsRunInOrderOfDelay() throws InterruptedException {
+        ContinuationScheduler scheduler = new ContinuationScheduler("test", 1, 16);
+        List<Long> completed = new CopyOnWriteArrayList<>();
+        List<Long> elapsed = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(4);
+        long startTime = System.nanoTime();
+        for (long delay : new long[] { 60, 5, 30, 100 }) { // 60 and 100 wrap around the wheel
+            scheduler.schedule(() -> {
+                completed.add(delay);
+                elapsed.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                latch.countDown();
+            }, delay);
+        }
+        assertEquals(4, scheduler.size());
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        assertEquals("[5, 30, 60, 100]", completed.toString());
+        for (int i = 0; i < completed.size(); i++)
+            assertTrue("Waited at least the delay", elapsed.get(i) >= completed.get(i));
+        assertEquals(0, scheduler.size());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void requireThatCancelledContinuationsAreRemovedWithoutRunning() throws InterruptedException {
+        ContinuationScheduler scheduler = new ContinuationScheduler("test");
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        ContinuationScheduler.Entry cancelled = scheduler.schedule(cancelledRuns::incrementAndGet, 10);
+        scheduler.schedule(latch::countDown, 50); // runs after the cancelled one would have
+        assertEquals(2, scheduler.size());
+        cancelled.cancel();
+        assertEquals(1, scheduler.size());
+        cancelled.cancel();
+        assertEquals(1, scheduler.size());
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        assertEquals(0, cancelledRuns.get());
+        assertEquals(0, scheduler.size());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void requireThatContinuationsInTheSameSlotCanBeCancelledInAnyOrder() throws InterruptedException {
+        ContinuationScheduler scheduler = new ContinuationScheduler("test");
+        List<Integer> completed = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        List<ContinuationScheduler.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int id = i;
+            entries.add(scheduler.schedule(() -> { completed.add(id); latch.countDown(); }, 50));
+        }
+        entries.get(0).cancel(); // moves the last entry into its place
+        entries.get(2).cancel();
+        entries.get(4).cancel();
+        assertEquals(2, scheduler.size());
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        Collections.sort(completed);
+        assertEquals("[1, 3]", completed.toString());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void requireThatContinuationsScheduledAfterShutdownRunWithoutLockingTheScheduler() throws InterruptedException {
+        ContinuationScheduler scheduler = new ContinuationScheduler("test");
+        scheduler.shutdown();
+        CountDownLatch sized = new CountDownLatch(1);
+        scheduler.schedule(() -> {
+            new Thread(() -> { scheduler.size(); sized.countDown(); }).start();
+            try {
+                assertTrue("Other threads can use the scheduler", sized.await(60, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, 10);
+    }
+
+    @Test
+    public void requireThatRemainingContinuationsRunAtShutdown() throws InterruptedException {
+        ContinuationScheduler scheduler = new ContinuationScheduler("test");
+        CountDownLatch latch = new CountDownLatch(2);
+        scheduler.schedule(latch::countDown, 600 * 1000);
+        scheduler.shutdown();
+        scheduler.schedule(latch::countDown, 600 * 1000);
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+    }
+
+}
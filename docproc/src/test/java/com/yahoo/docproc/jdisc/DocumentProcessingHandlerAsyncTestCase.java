@@ -0,0 +1,105 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.collections.Pair;
+import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.DocumentProcessor;
+import com.yahoo.docproc.Processing;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests a document processor which waits for an asynchronous operation by returning a later progress
+ * with a completion.
+ */
+public class DocumentProcessingHandlerAsyncTestCase extends DocumentProcessingHandlerTestBase {
+
+    private final DocumentType type;
+    private final EnrichingDocumentProcessor processor = new EnrichingDocumentProcessor();
+
+    public DocumentProcessingHandlerAsyncTestCase() {
+        type = new DocumentType("yalla");
+        type.addField(new Field("blahblah", DataType.STRING));
+    }
+
+    @Test
+    public void requireThatProcessingResumesWhenCompletionCompletes() throws InterruptedException {
+        Document document = new Document(getType(), "doc:yalla:balla");
+        document.setFieldValue("blahblah", new StringFieldValue("This is a test."));
+        long startTime = System.currentTimeMillis();
+        assertTrue(sendMessage("foobar", new PutDocumentMessage(new DocumentPut(document))));
+
+        assertTrue(processor.started.await(60, TimeUnit.SECONDS));
+        while (handler.parkedProcessings() == 0)
+            Thread.sleep(1);
+        assertEquals(1, handler.parkedProcessings());
+        processor.enrichment.complete("enriched");
+
+        Message msg = remoteServer.awaitMessage(60, TimeUnit.SECONDS);
+        assertNotNull(msg);
+        assertTrue("Resumed before the max delay", System.currentTimeMillis() - startTime < 50 * 1000);
+        remoteServer.ackMessage(msg);
+        Reply reply = driver.client().awaitReply(60, TimeUnit.SECONDS);
+        assertNotNull(reply);
+        assertFalse(reply.hasErrors());
+
+        Document output = ((PutDocumentMessage)msg).getDocumentPut().getDocument();
+        assertEquals(new StringFieldValue("enriched"), output.getFieldValue("blahblah"));
+        assertEquals(0, handler.parkedProcessings());
+    }
+
+    @Override
+    public List<Pair<String, CallStack>> getCallStacks() {
+        CallStack stack = new CallStack();
+        stack.addLast(processor);
+
+        ArrayList<Pair<String, CallStack>> stacks = new ArrayList<>(1);
+        stacks.add(new Pair<>("foobar", stack));
+        return stacks;
+    }
+
+    @Override
+    public DocumentType getType() {
+        return type;
+    }
+
+    /** Waits for an enrichment which is completed by the test */
+    private static class EnrichingDocumentProcessor extends DocumentProcessor {
+
+        final CompletableFuture<String> enrichment = new CompletableFuture<>();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        @Override
+        public Progress process(Processing processing) {
+            if ( ! enrichment.isDone()) {
+                started.countDown();
+                return Progress.later(enrichment, 55 * 1000);
+            }
+            for (DocumentOperation operation : processing.getDocumentOperations())
+                ((DocumentPut)operation).getDocument().setFieldValue("blahblah", new StringFieldValue(enrichment.join()));
+            return Progress.DONE;
+        }
+
+    }
+
+}
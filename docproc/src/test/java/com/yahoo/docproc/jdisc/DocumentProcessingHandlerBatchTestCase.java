@@ -0,0 +1,120 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.collections.Pair;
+import com.yahoo.docproc.BatchDocumentProcessor;
+import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.Processing;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests that requests to a chain with a batch document processor are processed in batches.
+ */
+public class DocumentProcessingHandlerBatchTestCase extends DocumentProcessingHandlerTestBase {
+
+    private final DocumentType type;
+    private final CountingBatchProcessor processor = new CountingBatchProcessor();
+
+    public DocumentProcessingHandlerBatchTestCase() {
+        type = new DocumentType("yalla");
+        type.addField(new Field("blahblah", DataType.STRING));
+    }
+
+    @Override
+    protected DocumentProcessingHandlerParameters configure(DocumentProcessingHandlerParameters parameters) {
+        return parameters.setMaxBatchSize(4).setMaxBatchDelayMs(50);
+    }
+
+    @Test
+    public void requireThatRequestsAreProcessedInBatches() throws InterruptedException {
+        sendAndAwait(4);
+        assertEquals(Arrays.asList(4), processor.batchSizes());
+    }
+
+    @Test
+    public void requireThatBatchesAreSubmittedAfterTheMaxDelay() throws InterruptedException {
+        sendAndAwait(1);
+        assertEquals(Arrays.asList(1), processor.batchSizes());
+    }
+
+    private void sendAndAwait(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            Document document = new Document(getType(), "doc:yalla:balla" + i);
+            document.setFieldValue("blahblah", new StringFieldValue("This is a test."));
+            sendMessage("foobar", new PutDocumentMessage(new DocumentPut(document)));
+        }
+
+        for (int i = 0; i < count; i++) {
+            Message msg = remoteServer.awaitMessage(60, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            Document output = ((PutDocumentMessage)msg).getDocumentPut().getDocument();
+            assertEquals(new StringFieldValue("batched"), output.getFieldValue("blahblah"));
+            remoteServer.ackMessage(msg);
+        }
+        for (int i = 0; i < count; i++) {
+            Reply reply = driver.client().awaitReply(60, TimeUnit.SECONDS);
+            assertNotNull(reply);
+            assertFalse(reply.hasErrors());
+        }
+    }
+
+    @Override
+    public List<Pair<String, CallStack>> getCallStacks() {
+        CallStack stack = new CallStack();
+        stack.addLast(processor);
+
+        ArrayList<Pair<String, CallStack>> stacks = new ArrayList<>(1);
+        stacks.add(new Pair<>("foobar", stack));
+        return stacks;
+    }
+
+    @Override
+    public DocumentType getType() {
+        return type;
+    }
+
+    private static class CountingBatchProcessor extends BatchDocumentProcessor {
+
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<Progress> process(List<Processing> processings) {
+            batchSizes.add(processings.size());
+            List<Progress> progresses = new ArrayList<>();
+            for (Processing processing : processings) {
+                for (DocumentOperation operation : processing.getDocumentOperations())
+                    ((DocumentPut)operation).getDocument().setFieldValue("blahblah", new StringFieldValue("batched"));
+                progresses.add(Progress.DONE);
+            }
+            return progresses;
+        }
+
+        List<Integer> batchSizes() {
+            synchronized (batchSizes) {
+                return new ArrayList<>(batchSizes);
+            }
+        }
+
+    }
+
+}
@@ -63,9 +63,9 @@ public abstract class DocumentProcessingHandlerTestBase {
         handler = new DocumentProcessingHandler(registry,
                 new ComponentRegistry<>(),
                 new ComponentRegistry<>(),
-                new DocumentProcessingHandlerParameters().
+                configure(new DocumentProcessingHandlerParameters().
                         setDocumentTypeManager(documentTypeManager).
-                        setContainerDocumentConfig(new ContainerDocumentConfig(new ContainerDocumentConfig.Builder())));
+                        setContainerDocumentConfig(new ContainerDocumentConfig(new ContainerDocumentConfig.Builder()))));
         builder.serverBindings().bind("mbus://*/*", handler);
 
         ReferencedResource<SharedSourceSession> sessionRef = sessionCache.retainSource(new SourceSessionParams());
@@ -118,6 +118,11 @@ public abstract class DocumentProcessingHandlerTestBase {
 
     protected abstract List<Pair<String, CallStack>> getCallStacks();
 
+    /** Override to set additional parameters of the handler */
+    protected DocumentProcessingHandlerParameters configure(DocumentProcessingHandlerParameters parameters) {
+        return parameters;
+    }
+
     protected abstract DocumentType getType();
 
     public boolean sendMessage(String destinationChainName, DocumentMessage msg) {
@@ -18,6 +18,8 @@ import com.yahoo.document.update.FieldUpdate;
 import com.yahoo.document.update.MapValueUpdate;
 import com.yahoo.document.update.ValueUpdate;
 import com.yahoo.vespa.indexinglanguage.AdapterFactory;
+import com.yahoo.vespa.indexinglanguage.CompiledScript;
+import com.yahoo.vespa.indexinglanguage.SimpleDocumentAdapter;
 import com.yahoo.vespa.indexinglanguage.expressions.Expression;
 
 import java.util.*;
@@ -30,21 +32,52 @@ public class DocumentScript {
     private final String documentType;
     private final Set<String> inputFields;
     private final Expression expression;
+    private final CompiledScript compiled;
 
     public DocumentScript(String documentType, Collection<String> inputFields, Expression expression) {
+        this(documentType, inputFields, expression, null);
+    }
+
+    /**
+     * Creates a document script
+     *
+     * @param compiled the expression compiled for the document type, or null to always interpret the expression
+     */
+    public DocumentScript(String documentType, Collection<String> inputFields, Expression expression,
+                          CompiledScript compiled) {
         this.documentType = documentType;
         this.inputFields = new HashSet<>(inputFields);
         this.expression = expression;
+        this.compiled = compiled;
     }
 
     public Expression getExpression() { return expression; }
+
+    /** Returns the compiled form of the expression of this, or null if it is not compiled */
+    public CompiledScript getCompiled() { return compiled; }
+
     public Document execute(AdapterFactory adapterFactory, Document document) {
+        prepareInput(document);
+        return expression.execute(adapterFactory, document);
+    }
+
+    /**
+     * Executes this on a document, updating it in place. The compiled form of this is used if the document
+     * is of the type it is compiled for.
+     */
+    public Document execute(Document document) {
+        prepareInput(document);
+        if (compiled != null && document.getDataType() == compiled.getDocumentType())
+            return compiled.execute(document);
+        return expression.execute(new SimpleDocumentAdapter(document, document));
+    }
+
+    private void prepareInput(Document document) {
         for (Iterator<Map.Entry<Field, FieldValue>> it = document.iterator(); it.hasNext(); ) {
             Map.Entry<Field, FieldValue> entry = it.next();
             requireThatFieldIsDeclaredInDocument(entry.getKey());
             removeAnyLinguisticsSpanTree(entry.getValue());
         }
-        return expression.execute(adapterFactory, document);
     }
 
     public DocumentUpdate execute(AdapterFactory adapterFactory, DocumentUpdate update) {
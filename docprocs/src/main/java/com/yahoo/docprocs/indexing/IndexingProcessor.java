@@ -87,7 +87,7 @@ public class IndexingProcessor extends DocumentProcessor {
             return;
         }
         log.log(LogLevel.DEBUG, "Processing document '%s'.", prev.getId());
-        Document next = script.execute(adapterFactory, prev.getDocument());
+        Document next = script.execute(prev.getDocument());
         if (next == null) {
             log.log(LogLevel.DEBUG, "Document '" + prev.getId() + "' produced no output.");
             return;
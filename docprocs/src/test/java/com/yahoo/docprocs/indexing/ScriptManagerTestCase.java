@@ -11,6 +11,7 @@ import java.util.Iterator;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
@@ -48,6 +49,19 @@ public class ScriptManagerTestCase {
         assertNull(scriptMgr.getScript(new DocumentType("unknown")));
     }
 
+    @Test
+    public void requireThatFullScriptsAreCompiledForTheirDocumentType() {
+        DocumentTypeManager typeMgr = new DocumentTypeManager();
+        typeMgr.configure("file:src/test/cfg/documentmanager_inherit.cfg");
+        IlscriptsConfig.Builder config = new IlscriptsConfig.Builder();
+        config.ilscript(new IlscriptsConfig.Ilscript.Builder().doctype("newsarticle")
+                                                              .content("index"));
+        ScriptManager scriptMgr = new ScriptManager(typeMgr, new IlscriptsConfig(config), null);
+        DocumentScript script = scriptMgr.getScript(typeMgr.getDocumentType("newsarticle"));
+        assertNotNull(script.getCompiled());
+        assertSame(typeMgr.getDocumentType("newsarticle"), script.getCompiled().getDocumentType());
+    }
+
     @Test
     public void requireThatEmptyConfigurationDoesNotThrow() {
         DocumentTypeManager typeMgr = new DocumentTypeManager();
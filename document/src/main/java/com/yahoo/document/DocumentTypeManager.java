@@ -314,13 +314,14 @@ public class DocumentTypeManager {
     }
 
     void replaceTemporaryTypes() {
+        // Structs are only visited once, as all the types reachable from a struct are handled on the first visit
+        Set<DataType> seenStructs = Collections.newSetFromMap(new IdentityHashMap<>());
         for (DataType type : dataTypes.values()) {
-            List<DataType> seenStructs = new LinkedList<>();
             replaceTemporaryTypes(type, seenStructs);
         }
     }
 
-    private void replaceTemporaryTypes(DataType type, List<DataType> seenStructs) {
+    private void replaceTemporaryTypes(DataType type, Set<DataType> seenStructs) {
         if (type instanceof WeightedSetDataType) {
             replaceTemporaryTypesInWeightedSet((WeightedSetDataType) type, seenStructs);
         } else if (type instanceof MapDataType) {
@@ -347,8 +348,8 @@ public class DocumentTypeManager {
     }
 
     @SuppressWarnings("deprecation")
-    private void replaceTemporaryTypesInStruct(StructDataType structDataType, List<DataType> seenStructs) {
-        seenStructs.add(structDataType);
+    private void replaceTemporaryTypesInStruct(StructDataType structDataType, Set<DataType> seenStructs) {
+        if ( ! seenStructs.add(structDataType)) return;
         for (Field field : structDataType.getFieldsThisTypeOnly()) {
             DataType fieldType = field.getDataType();
             if (fieldType instanceof TemporaryDataType) {
@@ -368,7 +369,7 @@ public class DocumentTypeManager {
         // TODO should we recursively invoke replaceTemporaryTypes for the target type? It should only ever be a doc type
     }
 
-    private void replaceTemporaryTypesInCollection(CollectionDataType collectionDataType, List<DataType> seenStructs) {
+    private void replaceTemporaryTypesInCollection(CollectionDataType collectionDataType, Set<DataType> seenStructs) {
         if (collectionDataType.getNestedType() instanceof TemporaryDataType) {
             collectionDataType.setNestedType(getDataType(collectionDataType.getNestedType().getCode(), ""));
         } else {
@@ -376,7 +377,7 @@ public class DocumentTypeManager {
         }
     }
 
-    private void replaceTemporaryTypesInMap(MapDataType mapDataType, List<DataType> seenStructs) {
+    private void replaceTemporaryTypesInMap(MapDataType mapDataType, Set<DataType> seenStructs) {
         if (mapDataType.getValueType() instanceof TemporaryDataType) {
             mapDataType.setValueType(getDataType(mapDataType.getValueType().getCode(), ""));
         } else {
@@ -390,7 +391,7 @@ public class DocumentTypeManager {
         }
     }
 
-    private void replaceTemporaryTypesInWeightedSet(WeightedSetDataType weightedSetDataType, List<DataType> seenStructs) {
+    private void replaceTemporaryTypesInWeightedSet(WeightedSetDataType weightedSetDataType, Set<DataType> seenStructs) {
         if (weightedSetDataType.getNestedType() instanceof TemporaryDataType) {
             weightedSetDataType.setNestedType(getDataType(weightedSetDataType.getNestedType().getCode(), ""));
         } else {
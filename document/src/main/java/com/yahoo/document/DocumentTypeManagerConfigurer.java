@@ -8,6 +8,12 @@ import com.yahoo.document.annotation.AnnotationReferenceDataType;
 import com.yahoo.document.annotation.AnnotationType;
 import com.yahoo.log.LogLevel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -69,7 +75,7 @@ public class DocumentTypeManagerConfigurer implements ConfigSubscriber.SingleSub
 
         log.log(LogLevel.DEBUG, "Configuring document manager with " + config.datatype().size() + " data types.");
         ArrayList<DocumentmanagerConfig.Datatype> failed = new ArrayList<>();
-        failed.addAll(config.datatype());
+        failed.addAll(inDependencyOrder(config.datatype()));
         int failCounter = 30;
         while (!failed.isEmpty()) {
             --failCounter;
@@ -95,6 +101,69 @@ public class DocumentTypeManagerConfigurer implements ConfigSubscriber.SingleSub
         manager.replaceTemporaryTypes();
     }
 
+    /**
+     * Returns the given data types ordered such that each type comes after the configured types it refers to,
+     * such that they can all be registered in a single pass. Types referring to each other in a cycle
+     * are left to be retried.
+     */
+    private static List<DocumentmanagerConfig.Datatype> inDependencyOrder(List<DocumentmanagerConfig.Datatype> dataTypes) {
+        Map<Integer, DocumentmanagerConfig.Datatype> dataTypesById = new HashMap<>();
+        Map<String, Integer> documentTypeIds = new HashMap<>();
+        for (DocumentmanagerConfig.Datatype dataType : dataTypes) {
+            dataTypesById.put(dataType.id(), dataType);
+            for (DocumentmanagerConfig.Datatype.Documenttype documentType : dataType.documenttype())
+                documentTypeIds.put(documentType.name(), dataType.id());
+        }
+
+        List<DocumentmanagerConfig.Datatype> ordered = new ArrayList<>(dataTypes.size());
+        Set<DocumentmanagerConfig.Datatype> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DocumentmanagerConfig.Datatype dataType : dataTypes)
+            addInDependencyOrder(dataType, dataTypesById, documentTypeIds, visited, ordered);
+        return ordered;
+    }
+
+    private static void addInDependencyOrder(DocumentmanagerConfig.Datatype dataType,
+                                             Map<Integer, DocumentmanagerConfig.Datatype> dataTypesById,
+                                             Map<String, Integer> documentTypeIds,
+                                             Set<DocumentmanagerConfig.Datatype> visited,
+                                             List<DocumentmanagerConfig.Datatype> ordered) {
+        if ( ! visited.add(dataType)) return;
+        for (int dependencyId : dependenciesOf(dataType, documentTypeIds)) {
+            DocumentmanagerConfig.Datatype dependency = dataTypesById.get(dependencyId);
+            if (dependency != null) // otherwise built in, or missing
+                addInDependencyOrder(dependency, dataTypesById, documentTypeIds, visited, ordered);
+        }
+        ordered.add(dataType);
+    }
+
+    /** Returns the ids of the data types which must be registered before the given one can be */
+    private static List<Integer> dependenciesOf(DocumentmanagerConfig.Datatype dataType, Map<String, Integer> documentTypeIds) {
+        List<Integer> dependencies = new ArrayList<>();
+        for (DocumentmanagerConfig.Datatype.Arraytype array : dataType.arraytype())
+            dependencies.add(array.datatype());
+        for (DocumentmanagerConfig.Datatype.Maptype map : dataType.maptype()) {
+            dependencies.add(map.keytype());
+            dependencies.add(map.valtype());
+        }
+        for (DocumentmanagerConfig.Datatype.Weightedsettype wset : dataType.weightedsettype())
+            dependencies.add(wset.datatype());
+        for (DocumentmanagerConfig.Datatype.Structtype struct : dataType.structtype()) {
+            for (DocumentmanagerConfig.Datatype.Structtype.Field field : struct.field())
+                dependencies.add(field.datatype());
+        }
+        for (DocumentmanagerConfig.Datatype.Documenttype doc : dataType.documenttype()) {
+            dependencies.add(doc.headerstruct());
+            dependencies.add(doc.bodystruct());
+            for (DocumentmanagerConfig.Datatype.Documenttype.Inherits parent : doc.inherits()) {
+                Integer parentId = documentTypeIds.get(parent.name());
+                if (parentId != null)
+                    dependencies.add(parentId);
+            }
+        }
+        // Reference types are registered with a temporary target type when the target is not yet registered
+        return dependencies;
+    }
+
     private static void registerTypeIdMapping(DocumentmanagerConfig config, DocumentTypeManager manager, DocumentmanagerConfig.Datatype thisDataType, int id) {
         for (Object o : thisDataType.arraytype()) {
             registerArrayType(manager, id, (DocumentmanagerConfig.Datatype.Arraytype) o);
@@ -267,6 +336,12 @@ public class DocumentTypeManagerConfigurer implements ConfigSubscriber.SingleSub
     }
 
     private static void addStructInheritance(DocumentmanagerConfig config, DocumentTypeManager manager) {
+        // Look up parents by the ids in config, as looking up data types by name in the manager is a linear scan
+        Map<String, Integer> structIds = new HashMap<>();
+        for (DocumentmanagerConfig.Datatype dataType : config.datatype()) {
+            for (DocumentmanagerConfig.Datatype.Structtype struct : dataType.structtype())
+                structIds.put(struct.name(), dataType.id());
+        }
         for (int i = 0; i < config.datatype().size(); i++) {
             DocumentmanagerConfig.Datatype thisDataType = config.datatype(i);
             int id = thisDataType.id();
@@ -275,7 +350,9 @@ public class DocumentTypeManagerConfigurer implements ConfigSubscriber.SingleSub
                 StructDataType thisStruct = (StructDataType) manager.getDataType(id, "");
 
                 for (DocumentmanagerConfig.Datatype.Structtype.Inherits parent : struct.inherits()) {
-                    StructDataType parentStruct = (StructDataType) manager.getDataType(parent.name());
+                    Integer parentId = structIds.get(parent.name());
+                    StructDataType parentStruct = (StructDataType) (parentId != null ? manager.getDataType(parentId, "")
+                                                                                     : manager.getDataType(parent.name()));
                     thisStruct.inherit(parentStruct);
                 }
             }
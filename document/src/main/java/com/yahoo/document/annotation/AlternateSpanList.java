@@ -6,7 +6,6 @@ import com.yahoo.document.serialization.SpanNodeReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -19,7 +18,7 @@ import java.util.ListIterator;
  */
 public class AlternateSpanList extends SpanList {
     public static final byte ID = 4;
-    private final List<Children> childTrees = new LinkedList<Children>();
+    private final List<Children> childTrees = new ArrayList<Children>();
     private static final Comparator<Children> childComparator = new ProbabilityComparator();
 
     /** Create a new AlternateSpanList instance, having a single subtree with probability 1.0. */
@@ -1,10 +1,10 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.document.annotation;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
@@ -13,7 +13,7 @@ import java.util.NoSuchElementException;
  * @author <a href="mailto:einarmr@yahoo-inc.com">Einar M R Rosenvinge</a>
  */
 public class ListAnnotationContainer extends IteratingAnnotationContainer {
-    private final List<Annotation> annotations = new LinkedList<Annotation>();
+    private final List<Annotation> annotations = new ArrayList<Annotation>();
 
     @Override
     void annotateAll(Collection<Annotation> annotations) {
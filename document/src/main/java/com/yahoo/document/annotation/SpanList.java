@@ -3,8 +3,8 @@ package com.yahoo.document.annotation;
 
 import com.yahoo.document.serialization.SpanNodeReader;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -21,7 +21,7 @@ public class SpanList extends SpanNode {
 
     /** Creates a new SpanList. */
     public SpanList() {
-        this.children = new LinkedList<SpanNode>();
+        this.children = new ArrayList<SpanNode>();
     }
 
     public SpanList(SpanNodeReader reader) {
@@ -39,7 +39,7 @@ public class SpanList extends SpanNode {
      * @param other the SpanList to copy.
      */
     public SpanList(SpanList other) {
-        this.children = new LinkedList<SpanNode>();
+        this.children = new ArrayList<SpanNode>(other.children.size());
         for (SpanNode otherNode : other.children) {
             if (otherNode instanceof Span) {
                 children.add(new Span((Span) otherNode));
@@ -283,8 +283,8 @@ public class SpanList extends SpanNode {
             if (node instanceof SpanList) {
                 ((SpanList) node).sortChildrenRecursive();
             }
-            Collections.sort(children());
         }
+        Collections.sort(children());
     }
 
     /**
@@ -262,11 +262,9 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
         //    - remove value from annotation
         //    - remove annotation and add it to removedAnnotations map
         if (!removedAnnotations.isEmpty()) {
-            Iterator<Annotation> annotationIt = iterator();
-            while (annotationIt.hasNext()) {
-                Annotation a = annotationIt.next();
+            getAnnotations().removeIf(a -> {
                 if (!a.hasFieldValue()) {
-                    continue;
+                    return false;
                 }
                 FieldValue value = a.getFieldValue();
 
@@ -279,12 +277,13 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
                         a.setFieldValue(null);
                         if (!a.isSpanNodeValid()) {
                             //this annotation has no span node, delete it
-                            annotationIt.remove();
                             removedAnnotations.put(a, a);
+                            return true;
                         }
                     }
                 }
-            }
+                return false;
+            });
         }
 
         //there may still be references to removed annotations,
@@ -372,16 +371,16 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     private Map<Annotation, Annotation> removeAnnotationsThatPointToInvalidSpanNodes() {
         Map<Annotation, Annotation> removedAnnotations = new IdentityHashMap<Annotation, Annotation>();
 
-        Iterator<Annotation> annotationIt = iterator();
-        while (annotationIt.hasNext()) {
-            Annotation a = annotationIt.next();
+        //removeIf, as removing through an iterator one at a time is quadratic when annotations are kept in a list
+        getAnnotations().removeIf(a -> {
             if (a.hasSpanNode() && !a.isSpanNodeValid()) {
                 a.setSpanNode(null);
                 a.setFieldValue(null);
                 removedAnnotations.put(a, a);
-                annotationIt.remove();
+                return true;
             }
-        }
+            return false;
+        });
         return removedAnnotations;
     }
 
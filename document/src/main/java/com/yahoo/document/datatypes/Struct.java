@@ -5,6 +5,7 @@ import com.yahoo.collections.Hashlet;
 import com.yahoo.document.*;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
+import com.yahoo.document.serialization.SerializedFieldValue;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.vespa.objects.Ids;
@@ -20,21 +21,64 @@ public class Struct extends StructuredFieldValue {
 
     public static final int classId = registerClass(Ids.document + 33, Struct.class);
     private Hashlet<Integer, FieldValue> values = new Hashlet<>();
+    /**
+     * Values which are deserialized on first access. Disjoint with values. Null if none.
+     * Accessing a value does not modify this map, so concurrent reads of a struct are safe,
+     * as with structs which are not deserialized lazily.
+     */
+    private Map<Integer, SerializedFieldValue> serializedValues = null;
     private int [] order = null;
 
     private int version;
 
     private int [] getInOrder() {
         if (order == null) {
-            order = new int[values.size()];
+            order = new int[getFieldCount()];
             for (int i = 0; i < values.size(); i++) {
                 order[i] = values.key(i);
             }
+            if (serializedValues != null) {
+                int i = values.size();
+                for (Integer id : serializedValues.keySet()) {
+                    order[i++] = id;
+                }
+            }
             Arrays.sort(order);
         }
         return order;
     }
 
+    /**
+     * Sets the serialized value of a field, which is deserialized when the field value is accessed.
+     * This is used by document deserializers.
+     */
+    public void setSerializedFieldValue(Field field, SerializedFieldValue value) {
+        if (values.getIndexOfKey(field.getId()) != -1) {
+            removeFieldValue(field);
+        }
+        if (serializedValues == null) {
+            serializedValues = new HashMap<>();
+        }
+        serializedValues.put(field.getId(), value);
+        invalidateOrder();
+    }
+
+    /**
+     * Returns the serialized value of the given field if it has not been accessed since it was deserialized,
+     * or null otherwise. This is used by document serializers to copy unchanged values.
+     */
+    public SerializedFieldValue getSerializedFieldValue(Field field) {
+        SerializedFieldValue serialized = (serializedValues == null) ? null : serializedValues.get(field.getId());
+        return (serialized == null || serialized.isDeserialized()) ? null : serialized;
+    }
+
+    /** Removes the serialized value of the given field, if any */
+    private void removeSerializedFieldValue(int id) {
+        if (serializedValues != null && serializedValues.remove(id) != null && serializedValues.isEmpty()) {
+            serializedValues = null;
+        }
+    }
+
     private void invalidateOrder() {
         order = null;
     }
@@ -86,12 +130,26 @@ public class Struct extends StructuredFieldValue {
         for (int i = 0; i < values.size(); i++) {
             struct.values.put(values.key(i), values.value(i).clone());
         }
+        if (serializedValues != null) {
+            struct.serializedValues = new HashMap<>();
+            for (Map.Entry<Integer, SerializedFieldValue> entry : serializedValues.entrySet()) {
+                SerializedFieldValue serialized = entry.getValue();
+                if (serialized.isDeserialized()) // may have been modified
+                    struct.values.put(entry.getKey(), serialized.getValue(getDataType().getField(entry.getKey())).clone());
+                else // the bytes are immutable, so they may be shared
+                    struct.serializedValues.put(entry.getKey(), serialized.copy());
+            }
+            if (struct.serializedValues.isEmpty()) {
+                struct.serializedValues = null;
+            }
+        }
         return struct;
     }
 
     @Override
     public void clear() {
         values = new Hashlet<>();
+        serializedValues = null;
         invalidateOrder();
     }
 
@@ -119,7 +177,14 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
-        return values.get(field.getId());
+        FieldValue value = values.get(field.getId());
+        if (value == null && serializedValues != null) {
+            SerializedFieldValue serialized = serializedValues.get(field.getId());
+            if (serialized != null) {
+                value = serialized.getValue(getDataType().getField(field.getId()));
+            }
+        }
+        return value;
     }
 
 
@@ -130,7 +195,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public int getFieldCount() {
-        return values.size();
+        return values.size() + (serializedValues == null ? 0 : serializedValues.size());
     }
 
     @Override
@@ -156,6 +221,7 @@ public class Struct extends StructuredFieldValue {
                     "Inconsistent field: " + field);
         }
 
+        removeSerializedFieldValue(field.getId());
         int index = values.getIndexOfKey(field.getId());
         if (index == -1) {
             values.put(field.getId(), value);
@@ -167,8 +233,12 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
-        if (found != null) {
+        FieldValue found = getFieldValue(field);
+        if (found != null && serializedValues != null && serializedValues.containsKey(field.getId())) {
+            removeSerializedFieldValue(field.getId());
+            invalidateOrder();
+        }
+        else if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
             for (int i=0; i < values.size(); i++) {
@@ -215,13 +285,26 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
-        return values.equals(struct.values);
+        if (serializedValues == null && struct.serializedValues == null) {
+            return values.equals(struct.values);
+        }
+        if (getFieldCount() != struct.getFieldCount()) return false;
+        for (Field field : getDataType().getFields()) {
+            if ( ! Objects.equals(getFieldValue(field), struct.getFieldValue(field))) return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
+        int valuesHashCode = values.hashCode(); // summed over fields, so serialized values may be added
+        if (serializedValues != null) {
+            for (Integer id : serializedValues.keySet()) {
+                valuesHashCode += id.hashCode() + getFieldValue(getDataType().getField(id)).hashCode();
+            }
+        }
         int result = super.hashCode();
-        result = 31 * result + values.hashCode();
+        result = 31 * result + valuesHashCode;
         return result;
     }
 
@@ -232,7 +315,8 @@ public class Struct extends StructuredFieldValue {
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
-            retVal.append(getDataType().getField(id)).append("=").append(values.get(id)).append(", ");
+            Field field = getDataType().getField(id);
+            retVal.append(field).append("=").append(getFieldValue(field)).append(", ");
         }
         return retVal.toString();
     }
@@ -249,7 +333,7 @@ public class Struct extends StructuredFieldValue {
             return cmp;
         }
         Struct rhs = (Struct)obj;
-        cmp = values.size() - rhs.values.size();
+        cmp = getFieldCount() - rhs.getFieldCount();
         if (cmp != 0) {
             return cmp;
         }
@@ -290,7 +374,7 @@ public class Struct extends StructuredFieldValue {
         }
 
         public FieldValue getValue() {
-            return values.get(id);
+            return getFieldValue(getKey());
         }
 
         public FieldValue setValue(FieldValue value) {
@@ -298,8 +382,12 @@ public class Struct extends StructuredFieldValue {
                 throw new NullPointerException("Null values in Struct not supported, use removeFieldValue() to remove value instead.");
             }
 
-            int index = values.getIndexOfKey(id);
             FieldValue retVal = null;
+            if (serializedValues != null && serializedValues.containsKey(id)) {
+                retVal = getValue();
+                removeSerializedFieldValue(id);
+            }
+            int index = values.getIndexOfKey(id);
             if (index == -1) {
                 values.put(id, value);
                 invalidateOrder();
@@ -327,7 +415,7 @@ public class Struct extends StructuredFieldValue {
     private class FieldSet extends AbstractSet<Map.Entry<Field, FieldValue>> {
         @Override
         public int size() {
-            return values.size();
+            return getFieldCount();
         }
 
         @Override
@@ -16,6 +16,8 @@ import com.yahoo.document.json.readers.VespaJsonDocumentReader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.yahoo.document.json.JsonReader.ReaderState.END_OF_FEED;
@@ -38,6 +40,9 @@ public class JsonReader {
 
     private final JsonParser parser;
     private final DocumentTypeManager typeManager;
+    private final VespaJsonDocumentReader documentReader = new VespaJsonDocumentReader();
+    /** The document types of this feed, resolved once per type rather than once per operation */
+    private final Map<String, DocumentType> documentTypes = new HashMap<>();
     private ReaderState state = ReaderState.AT_START;
 
     enum ReaderState {
@@ -72,11 +77,7 @@ public class JsonReader {
             throw new RuntimeException(e);
         }
         documentParseInfo.operationType = operationType;
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
-        return operation;
+        return createDocumentOperation(documentParseInfo);
     }
 
     public DocumentOperation next() {
@@ -103,23 +104,25 @@ public class JsonReader {
             state = END_OF_FEED;
             return null;
         }
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.get().documentId.getDocType(), typeManager),
-                documentParseInfo.get());
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.get().condition));
-        return operation;
+        return createDocumentOperation(documentParseInfo.get());
     }
 
-
-    public DocumentType readDocumentType(DocumentId docId) {
-        return getDocumentTypeFromString(docId.getDocType(), typeManager);
+    private DocumentOperation createDocumentOperation(DocumentParseInfo documentParseInfo) {
+        DocumentOperation operation = documentReader.createDocumentOperation(
+                readDocumentType(documentParseInfo.documentId), documentParseInfo);
+        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
+        return operation;
     }
 
-    private static DocumentType getDocumentTypeFromString(String docTypeString, DocumentTypeManager typeManager) {
-        final DocumentType docType = typeManager.getDocumentType(docTypeString);
+    public DocumentType readDocumentType(DocumentId docId) {
+        String docTypeString = docId.getDocType();
+        DocumentType docType = documentTypes.get(docTypeString);
         if (docType == null) {
-            throw new IllegalArgumentException(String.format("Document type %s does not exist", docTypeString));
+            docType = typeManager.getDocumentType(docTypeString);
+            if (docType == null) {
+                throw new IllegalArgumentException(String.format("Document type %s does not exist", docTypeString));
+            }
+            documentTypes.put(docTypeString, docType);
         }
         return docType;
     }
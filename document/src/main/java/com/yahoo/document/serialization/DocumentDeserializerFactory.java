@@ -19,6 +19,19 @@ public class DocumentDeserializerFactory {
         return new VespaDocumentDeserializerHead(manager, buf);
     }
 
+    /**
+     * Creates a de-serializer for the current head document format, which optionally keeps the fields of
+     * documents and structs serialized until they are accessed.
+     *
+     * @see SerializedFieldValue
+     */
+    public static DocumentDeserializer createHead(DocumentTypeManager manager, GrowableByteBuffer buf,
+                                                  boolean deserializeFieldsLazily) {
+        VespaDocumentDeserializerHead deserializer = new VespaDocumentDeserializerHead(manager, buf);
+        deserializer.setDeserializeFieldsLazily(deserializeFieldsLazily);
+        return deserializer;
+    }
+
     /**
      * Creates a de-serializer for the document format that was created on Vespa 4.2.
      */
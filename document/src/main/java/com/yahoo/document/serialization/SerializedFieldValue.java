@@ -0,0 +1,89 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The value of a struct field on the current head document format, kept serialized until it is accessed.
+ * This allows documents to be passed through without deserializing and serializing the fields which
+ * are not accessed.
+ * <p>
+ * The bytes of a value are not validated until it is deserialized, so a corrupt value which is never
+ * accessed is passed on as is, and a corrupt value which is accessed causes a {@link DeserializationException}
+ * on access rather than when the document is decoded.
+ * <p>
+ * This is thread safe: The value is deserialized at most once, by the first thread accessing it.
+ *
+ * @see com.yahoo.document.datatypes.Struct#getSerializedFieldValue
+ * @see DocumentDeserializerFactory#createHead(DocumentTypeManager, GrowableByteBuffer, boolean)
+ */
+public final class SerializedFieldValue {
+
+    private final DocumentTypeManager manager;
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    private volatile FieldValue value = null;
+
+    /**
+     * Creates a serialized field value
+     *
+     * @param manager the document type manager to use when deserializing this
+     * @param data the array containing the serialized value. This is not copied and must not be modified
+     * @param offset the offset of the serialized value in the array
+     * @param length the length in bytes of the serialized value
+     */
+    SerializedFieldValue(DocumentTypeManager manager, byte[] data, int offset, int length) {
+        this.manager = manager;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /** Returns the value of this as the given field, deserializing it on the first call */
+    public FieldValue getValue(Field field) {
+        FieldValue value = this.value;
+        if (value == null) {
+            synchronized (this) {
+                value = this.value;
+                if (value == null) {
+                    value = deserialize(field);
+                    this.value = value;
+                }
+            }
+        }
+        return value;
+    }
+
+    /** Returns whether the value of this has been accessed, such that it may be modified and differ from the bytes */
+    public boolean isDeserialized() { return value != null; }
+
+    /** Returns a copy of this which is not deserialized, sharing the immutable bytes of this */
+    public SerializedFieldValue copy() {
+        return new SerializedFieldValue(manager, data, offset, length);
+    }
+
+    /** Deserializes this as a new value of the given field */
+    public FieldValue deserialize(Field field) {
+        VespaDocumentDeserializerHead in = new VespaDocumentDeserializerHead(manager, GrowableByteBuffer.wrap(data, offset, length));
+        in.setDeserializeFieldsLazily(true);
+        FieldValue value = field.getDataType().createFieldValue();
+        value.deserialize(field, in);
+        return value;
+    }
+
+    /** Returns a read-only buffer of the serialized bytes of this */
+    public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(data, offset, length).asReadOnlyBuffer();
+    }
+
+    /** Returns the length in bytes of the serialized value */
+    public int getLength() { return length; }
+
+}
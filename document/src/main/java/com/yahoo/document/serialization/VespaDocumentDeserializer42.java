@@ -90,6 +90,7 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
     private List<SpanNode> spanNodes;
     private List<Annotation> annotations;
     private int[] stringPositions;
+    private boolean deserializeFieldsLazily = false;
 
     VespaDocumentDeserializer42(DocumentTypeManager manager, GrowableByteBuffer header, GrowableByteBuffer body, short version) {
         super(header);
@@ -108,6 +109,17 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
 
     final public DocumentTypeManager getDocumentTypeManager() { return manager; }
 
+    /**
+     * Sets whether struct fields (including the fields of documents) should be kept serialized until they are
+     * accessed, rather than being deserialized by this. This only applies to structs on the current
+     * serialization version. Default is false.
+     *
+     * @see SerializedFieldValue
+     */
+    public void setDeserializeFieldsLazily(boolean deserializeFieldsLazily) {
+        this.deserializeFieldsLazily = deserializeFieldsLazily;
+    }
+
     public void read(Document document) {
          read(null, document);
     }
@@ -363,6 +375,14 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
             if (structField == null) {
                 //ignoring unknown field:
                 position(position() + fieldIdsAndLengths.get(i).second.intValue());
+            } else if (deserializeFieldsLazily && version == Document.SERIALIZED_VERSION) {
+                int length = fieldIdsAndLengths.get(i).second.intValue();
+                if (length < 0 || position() + length > destination.length) { // the value itself is validated on access
+                    throw new DeserializationException("Field " + structField + " of length " + length +
+                                                       " exceeds the " + destination.length + " bytes of " + type);
+                }
+                s.setSerializedFieldValue(structField, new SerializedFieldValue(manager, destination, position(), length));
+                position(position() + length);
             } else {
                 int posBefore = position();
                 FieldValue value = structField.getDataType().createFieldValue();
@@ -652,7 +672,6 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
 
         //we're going to write a new SpanTree, create a new Map for nodes:
         spanNodes = new ArrayList<SpanNode>();
-        annotations = new ArrayList<Annotation>();
 
         try {
             if (readName) {
@@ -665,6 +684,7 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
             tree.setRoot(root);
 
             int numAnnotations = buf.getInt1_2_4Bytes();
+            annotations = new ArrayList<Annotation>(numAnnotations);
 
             for (int i = 0; i < numAnnotations; i++) {
                 Annotation a = new Annotation();
@@ -758,9 +778,9 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
         if ((type & SpanList.ID) != SpanList.ID) {
             throw new DeserializationException("Cannot deserialize SpanList with type " + type);
         }
-        List<SpanNode> nodes = readSpanList(spanList);
-        for (SpanNode node : nodes) {
-            spanList.add(node);
+        int size = buf.getInt1_2_4Bytes();
+        for (int i = 0; i < size; i++) {
+            spanList.add(readSpanNode());
         }
     }
 
@@ -788,7 +808,7 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
 
     private List<SpanNode> readSpanList(SpanNodeParent parent) {
         int size = buf.getInt1_2_4Bytes();
-        List<SpanNode> spanList = new ArrayList<SpanNode>();
+        List<SpanNode> spanList = new ArrayList<SpanNode>(size);
         for (int i = 0; i < size; i++) {
             spanList.add(readSpanNode());
         }
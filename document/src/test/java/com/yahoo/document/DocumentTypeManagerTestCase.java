@@ -2,6 +2,7 @@
 package com.yahoo.document;
 
 import com.yahoo.document.annotation.*;
+import com.yahoo.document.config.DocumentmanagerConfig;
 import com.yahoo.document.datatypes.Array;
 import com.yahoo.document.datatypes.FloatFieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
@@ -127,6 +128,33 @@ public class DocumentTypeManagerTestCase {
         assertNotNull(manager.getDataType(1001));
     }
 
+    @Test
+    public void testConfigureTypesListedBeforeTheTypesTheyReferTo() {
+        DocumentmanagerConfig.Builder builder = new DocumentmanagerConfig.Builder();
+        int depth = 100;
+        for (int i = depth; i > 0; i--) {
+            builder.datatype(new DocumentmanagerConfig.Datatype.Builder()
+                                     .id(1000 + i)
+                                     .arraytype(new DocumentmanagerConfig.Datatype.Arraytype.Builder().datatype(1000 + i - 1)));
+        }
+        builder.datatype(new DocumentmanagerConfig.Datatype.Builder()
+                                 .id(1000)
+                                 .structtype(new DocumentmanagerConfig.Datatype.Structtype.Builder()
+                                                     .name("innermost")
+                                                     .field(new DocumentmanagerConfig.Datatype.Structtype.Field.Builder()
+                                                                    .name("value")
+                                                                    .datatype(DataType.INT.getId()))));
+
+        DocumentTypeManager manager = DocumentTypeManagerConfigurer.configureNewManager(new DocumentmanagerConfig(builder));
+
+        DataType type = manager.getDataType(1000 + depth);
+        for (int i = depth; i > 0; i--) {
+            assertTrue(type instanceof ArrayDataType);
+            type = ((ArrayDataType)type).getNestedType();
+        }
+        assertSame(manager.getDataType(1000), type);
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void testConfigure() {
@@ -518,6 +518,32 @@ public class SpanTreeTestCase extends AbstractTypesTest {
         assertFalse(annotationIt.hasNext());
     }
 
+    @Test
+    public void testCleanupKeepsOrderOfRemainingAnnotations() {
+        AnnotationType token = new AnnotationType("token");
+        SpanTree tokens = new SpanTree("tokens");
+        SpanList tokenRoot = (SpanList) tokens.getRoot();
+        List<Annotation> kept = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Span span = tokenRoot.span(i, 1);
+            Annotation annotation = new Annotation(token);
+            tokens.annotate(span, annotation);
+            if (i % 2 == 0) {
+                kept.add(annotation);
+            } else {
+                tokenRoot.remove(span);
+            }
+        }
+
+        tokens.cleanup();
+
+        assertEquals(500, tokenRoot.numChildren());
+        assertEquals(500, tokens.numAnnotations());
+        List<Annotation> remaining = new ArrayList<>();
+        tokens.iterator().forEachRemaining(remaining::add);
+        assertEquals(kept, remaining);
+    }
+
     @Test
     public void testSimpleCopy() {
         StringFieldValue string = new StringFieldValue("yahoooo");
@@ -0,0 +1,72 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.text.Utf8;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+/**
+ * Measures reading feeds of puts of about 1 kB and 100 kB.
+ */
+public class JsonReaderMicroBenchmark {
+
+    private static final JsonFactory jsonFactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+
+    private static DocumentTypeManager createTypes() {
+        DocumentTypeManager types = new DocumentTypeManager();
+        DocumentType type = new DocumentType("bench");
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("body", DataType.STRING));
+        type.addField(new Field("popularity", DataType.INT));
+        type.addField(new Field("tags", new ArrayDataType(DataType.STRING)));
+        types.registerDocumentType(type);
+        return types;
+    }
+
+    private static byte[] createFeed(int documents, int bodyLength) {
+        Random random = new Random(1);
+        StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < documents; i++) {
+            if (i > 0) feed.append(",");
+            feed.append("{\"put\":\"id:bench:bench::").append(i).append("\",\"fields\":{");
+            feed.append("\"title\":\"Title of document ").append(i).append("\",");
+            feed.append("\"body\":\"");
+            for (int c = 0; c < bodyLength; c++)
+                feed.append(c % 8 == 7 ? ' ' : (char)('a' + random.nextInt(26)));
+            feed.append("\",\"popularity\":").append(random.nextInt(1000)).append(",");
+            feed.append("\"tags\":[\"one\",\"two\",\"three\"]}}");
+        }
+        return Utf8.toBytes(feed.append("]").toString());
+    }
+
+    private static long read(DocumentTypeManager types, byte[] feed) {
+        JsonReader reader = new JsonReader(types, new ByteArrayInputStream(feed), jsonFactory);
+        long operations = 0;
+        while (reader.next() != null)
+            operations++;
+        return operations;
+    }
+
+    private static void run(String name, DocumentTypeManager types, byte[] feed) {
+        for (int run = 0; run < 5; run++) {
+            long startTime = System.nanoTime();
+            long operations = read(types, feed);
+            long elapsed = Math.max(1, System.nanoTime() - startTime);
+            System.out.println(name + ": " + operations + " puts, " + (feed.length * 1000L / elapsed) + " MB/s");
+        }
+    }
+
+    public static void main(String[] args) {
+        DocumentTypeManager types = createTypes();
+        run("1 kB documents", types, createFeed(50000, 900));
+        run("100 kB documents", types, createFeed(500, 100000));
+    }
+
+}
@@ -0,0 +1,193 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.StructDataType;
+import com.yahoo.document.annotation.Annotation;
+import com.yahoo.document.annotation.AnnotationType;
+import com.yahoo.document.annotation.Span;
+import com.yahoo.document.annotation.SpanList;
+import com.yahoo.document.annotation.SpanTree;
+import com.yahoo.document.datatypes.Array;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.Struct;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests deserializing documents with fields which are deserialized on access.
+ */
+public class LazyFieldDeserializationTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type;
+    private final StructDataType structType;
+    private final AnnotationType annotationType = new AnnotationType("token");
+
+    public LazyFieldDeserializationTestCase() {
+        structType = new StructDataType("my_struct");
+        structType.addField(new Field("name", DataType.STRING));
+        structType.addField(new Field("count", DataType.INT));
+
+        type = new DocumentType("my_type");
+        type.addField("my_str", DataType.STRING);
+        type.addField("my_int", DataType.INT);
+        type.addField("my_array", new ArrayDataType(DataType.STRING));
+        type.addField("my_struct", structType);
+        type.addField("my_annotated", DataType.STRING);
+        manager.registerDocumentType(type);
+        manager.getAnnotationTypeRegistry().register(annotationType);
+    }
+
+    @Test
+    public void lazily_deserialized_document_equals_original() {
+        Document original = createDocument();
+        Document lazy = deserialize(serialize(original), true);
+        assertEquals(original, lazy);
+        assertEquals(original.toString(), lazy.toString());
+    }
+
+    @Test
+    public void fields_are_deserialized_on_access() {
+        Document lazy = deserialize(serialize(createDocument()), true);
+        assertNotNull(serializedValueOf(lazy, "my_int"));
+        assertEquals(5, lazy.getFieldCount());
+
+        assertEquals(new IntegerFieldValue(42), lazy.getFieldValue("my_int"));
+        assertNull(serializedValueOf(lazy, "my_int"));
+        assertNotNull(serializedValueOf(lazy, "my_str"));
+        assertEquals(5, lazy.getFieldCount());
+    }
+
+    @Test
+    public void unaccessed_fields_are_serialized_as_they_were() {
+        Document original = createDocument();
+        byte[] serialized = serialize(original);
+        Document lazy = deserialize(serialized, true);
+
+        assertArrayEquals(serialized, serialize(lazy));
+        assertNotNull(serializedValueOf(lazy, "my_annotated"));
+    }
+
+    @Test
+    public void changes_to_lazily_deserialized_documents_are_serialized() {
+        Document lazy = deserialize(serialize(createDocument()), true);
+        lazy.setFieldValue("my_str", new StringFieldValue("changed"));
+        ((Struct)lazy.getFieldValue("my_struct")).setFieldValue("count", new IntegerFieldValue(7));
+        lazy.removeFieldValue("my_int");
+
+        Document expected = createDocument();
+        expected.setFieldValue("my_str", new StringFieldValue("changed"));
+        ((Struct)expected.getFieldValue("my_struct")).setFieldValue("count", new IntegerFieldValue(7));
+        expected.removeFieldValue("my_int");
+
+        Document reread = deserialize(serialize(lazy), false);
+        assertEquals(expected, reread);
+        assertArrayEquals(serialize(expected), serialize(lazy));
+    }
+
+    @Test
+    public void clones_of_lazily_deserialized_documents_are_independent() {
+        Document lazy = deserialize(serialize(createDocument()), true);
+        Document clone = lazy.clone();
+        clone.setFieldValue("my_str", new StringFieldValue("changed"));
+
+        assertEquals(new StringFieldValue("foo"), lazy.getFieldValue("my_str"));
+        assertEquals(new StringFieldValue("changed"), clone.getFieldValue("my_str"));
+        assertEquals(createDocument(), lazy);
+    }
+
+    @Test
+    public void modified_values_are_cloned() {
+        Document lazy = deserialize(serialize(createDocument()), true);
+        @SuppressWarnings("unchecked")
+        Array<StringFieldValue> array = (Array<StringFieldValue>)lazy.getFieldValue("my_array");
+        array.add(new StringFieldValue("c"));
+        Document clone = lazy.clone();
+        array.add(new StringFieldValue("d"));
+
+        assertEquals(3, ((Array<?>)clone.getFieldValue("my_array")).size());
+        assertEquals(4, ((Array<?>)lazy.getFieldValue("my_array")).size());
+        assertNull(serializedValueOf(lazy, "my_array"));
+    }
+
+    @Test
+    public void concurrent_reads_deserialize_each_field_once() throws Exception {
+        Document lazy = deserialize(serialize(createDocument()), true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<FieldValue>> values = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+                values.add(executor.submit(() -> lazy.getFieldValue("my_struct")));
+            for (Future<FieldValue> value : values)
+                assertSame(values.get(0).get(), value.get());
+            assertEquals(createDocument(), lazy);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private Document createDocument() {
+        Document document = new Document(type, "doc:scheme:");
+        document.setFieldValue("my_str", new StringFieldValue("foo"));
+        document.setFieldValue("my_int", new IntegerFieldValue(42));
+        Array<StringFieldValue> array = new Array<>(type.getField("my_array").getDataType());
+        array.addAll(Arrays.asList(new StringFieldValue("a"), new StringFieldValue("b")));
+        document.setFieldValue("my_array", array);
+        Struct struct = new Struct(structType);
+        struct.setFieldValue("name", new StringFieldValue("bar"));
+        struct.setFieldValue("count", new IntegerFieldValue(3));
+        document.setFieldValue("my_struct", struct);
+
+        StringFieldValue annotated = new StringFieldValue("lazy fields");
+        SpanList root = new SpanList();
+        Span span = new Span(0, 4);
+        root.add(span);
+        SpanTree tree = new SpanTree("tokens", root);
+        tree.annotate(span, new Annotation(annotationType));
+        annotated.setSpanTree(tree);
+        document.setFieldValue("my_annotated", annotated);
+        return document;
+    }
+
+    private static SerializedFieldValue serializedValueOf(Document document, String fieldName) {
+        Field field = document.getField(fieldName);
+        SerializedFieldValue value = document.getHeader().getSerializedFieldValue(field);
+        return value != null ? value : document.getBody().getSerializedFieldValue(field);
+    }
+
+    private static byte[] serialize(Document document) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.createHead(buffer).write(document);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private Document deserialize(byte[] serialized, boolean lazily) {
+        return new Document(DocumentDeserializerFactory.createHead(manager, GrowableByteBuffer.wrap(serialized), lazily));
+    }
+
+}
@@ -26,6 +26,10 @@ import java.util.stream.Stream;
 final class RoutableRepository {
 
     private static final Logger log = Logger.getLogger(RoutableRepository.class.getName());
+    private static final int ENCODE_BUFFER_SIZE = 8192;
+    /** Encode buffers which have grown larger than this are not reused, to avoid holding on to much memory per thread */
+    private static final int MAX_REUSED_ENCODE_BUFFER_SIZE = 1 << 16;
+    private static final ThreadLocal<GrowableByteBuffer> encodeBuffer = new ThreadLocal<>();
     private final CopyOnWriteHashMap<Integer, VersionMap> factoryTypes = new CopyOnWriteHashMap<>();
     private final CopyOnWriteHashMap<CacheKey, RoutableFactory> cache = new CopyOnWriteHashMap<>();
     private LoadTypeSet loadTypes;
@@ -52,7 +56,10 @@ final class RoutableRepository {
         DocumentDeserializer in;
 
         if (version.getMajor() >= 5) {
-            in = DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
+            // Document fields are deserialized on access, such that routing and processing which only
+            // accesses some fields can pass the rest through as is. Field lengths are validated here, while
+            // field values are validated on access, or by the recipient if they are passed through
+            in = DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data), true);
         } else {
             in = DocumentDeserializerFactory.create42(docMan, GrowableByteBuffer.wrap(data));
         }
@@ -92,24 +99,49 @@ final class RoutableRepository {
                                     " (version " + version + ").");
             return new byte[0];
         }
-        DocumentSerializer out;
+        GrowableByteBuffer buffer = acquireEncodeBuffer();
+        try {
+            DocumentSerializer out;
 
-        if (version.getMajor() >= 5) {
-            out = DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
-        } else {
-            out = DocumentSerializerFactory.create42(new GrowableByteBuffer(8192));
+            if (version.getMajor() >= 5) {
+                out = DocumentSerializerFactory.createHead(buffer);
+            } else {
+                out = DocumentSerializerFactory.create42(buffer);
+            }
+
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        } finally {
+            releaseEncodeBuffer(buffer);
         }
+    }
 
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
+    /**
+     * Returns an empty buffer to encode into. This reuses the buffer of the last encode in this thread,
+     * such that encoding does not allocate, or grow by copying, a new buffer per routable.
+     */
+    private static GrowableByteBuffer acquireEncodeBuffer() {
+        GrowableByteBuffer buffer = encodeBuffer.get();
+        if (buffer == null) {
+            return new GrowableByteBuffer(ENCODE_BUFFER_SIZE);
+        }
+        encodeBuffer.set(null); // in case of reentrant encoding
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void releaseEncodeBuffer(GrowableByteBuffer buffer) {
+        if (buffer.capacity() <= MAX_REUSED_ENCODE_BUFFER_SIZE) {
+            encodeBuffer.set(buffer);
         }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
     }
 
     /**
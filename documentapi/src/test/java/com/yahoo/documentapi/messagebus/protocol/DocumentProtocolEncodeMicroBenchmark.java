@@ -0,0 +1,52 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.protocol;
+
+import com.yahoo.component.Version;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.DocumentTypeManagerConfigurer;
+import com.yahoo.document.datatypes.StringFieldValue;
+
+/**
+ * Measures encoding of put document messages of about 1 kB, 32 kB and 200 kB.
+ */
+public class DocumentProtocolEncodeMicroBenchmark {
+
+    private static PutDocumentMessage createPut(DocumentTypeManager types, int valueLength) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < valueLength; i++)
+            value.append((char)('a' + i % 26));
+        Document document = new Document(types.getDocumentType("testdoc"), "doc:scheme:" + valueLength);
+        document.setFieldValue("stringfield", new StringFieldValue(value.toString()));
+        return new PutDocumentMessage(new DocumentPut(document));
+    }
+
+    private static long encode(DocumentProtocol protocol, Version version, PutDocumentMessage put, int count) {
+        long bytes = 0;
+        for (int i = 0; i < count; i++)
+            bytes += protocol.encode(version, put).length;
+        return bytes;
+    }
+
+    private static void run(String name, DocumentProtocol protocol, PutDocumentMessage put, int count) {
+        Version version = new Version(6, 0);
+        for (int run = 0; run < 5; run++) {
+            long startTime = System.nanoTime();
+            long bytes = encode(protocol, version, put, count);
+            long elapsed = Math.max(1, System.nanoTime() - startTime);
+            System.out.println(name + ": " + (count * 1000000000L / elapsed) + " puts/s, " +
+                               (bytes * 1000L / elapsed) + " MB/s");
+        }
+    }
+
+    public static void main(String[] args) {
+        DocumentTypeManager types = new DocumentTypeManager();
+        DocumentTypeManagerConfigurer.configure(types, "file:./test/cfg/testdoc.cfg");
+        DocumentProtocol protocol = new DocumentProtocol(types);
+        run("1 kB puts", protocol, createPut(types, 1000), 500000);
+        run("32 kB puts", protocol, createPut(types, 32000), 50000);
+        run("200 kB puts", protocol, createPut(types, 200000), 5000);
+    }
+
+}
@@ -2,12 +2,16 @@
 package com.yahoo.documentapi.messagebus.protocol;
 
 import com.yahoo.component.Version;
+import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.DocumentTypeManagerConfigurer;
+import com.yahoo.document.datatypes.StringFieldValue;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -33,4 +37,28 @@ public class DocumentProtocolTest {
         assertEquals(GetDocumentMessage.DEFAULT_FIELD_SET, next.getFieldSet());
     }
 
+    @Test
+    public void requireThatEncodingReusesNoStateFromPreviousRoutables() {
+        DocumentProtocol protocol = new DocumentProtocol(manager);
+        Version version = new Version(5, 2);
+        PutDocumentMessage small = createPut("doc:scheme:small", "small");
+        byte[] expected = protocol.encode(version, small);
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            large.append('x');
+        byte[] largeEncoded = protocol.encode(version, createPut("doc:scheme:large", large.toString()));
+        PutDocumentMessage decoded = (PutDocumentMessage)protocol.decode(version, largeEncoded);
+        assertEquals(new StringFieldValue(large.toString()),
+                     decoded.getDocumentPut().getDocument().getFieldValue("stringfield"));
+
+        assertArrayEquals(expected, protocol.encode(version, small));
+    }
+
+    private PutDocumentMessage createPut(String id, String value) {
+        Document document = new Document(manager.getDocumentType("testdoc"), id);
+        document.setFieldValue("stringfield", new StringFieldValue(value));
+        return new PutDocumentMessage(new DocumentPut(document));
+    }
+
 }
@@ -27,13 +27,16 @@ import java.util.stream.Stream;
 public class FileDistributionRpcServer {
 
     private final static Logger log = Logger.getLogger(FileDistributionRpcServer.class.getName());
+    private final static int maxConcurrentPeerUploads = 4;
 
     private final Supervisor supervisor;
     private final FileDownloader downloader;
+    private final PeerFileServer peerFileServer;
 
     public FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader) {
         this.supervisor = supervisor;
         this.downloader = downloader;
+        this.peerFileServer = new PeerFileServer(downloader.downloadDirectory(), maxConcurrentPeerUploads);
         declareFileDistributionMethods();
     }
 
@@ -59,6 +62,13 @@ public class FileDistributionRpcServer {
                                      .methodDesc("set which file references to download")
                                      .paramDesc(0, "file references", "file reference to download")
                                      .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        // Same signature as the method in config server, lets other nodes download file references from this node
+        supervisor.addMethod(new Method("filedistribution.serveFile", "s", "is",
+                                        this, "serveFile")
+                                     .methodDesc("send file reference to caller, if available on this node")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .returnDesc(0, "ret", "0 if file reference will be sent, 1 otherwise")
+                                     .returnDesc(1, "description", "description of return value"));
     }
 
 
@@ -123,5 +133,18 @@ public class FileDistributionRpcServer {
         req.returnValues().add(new Int32Value(0));
     }
 
+    /** Stops serving file references to other nodes */
+    public void close() {
+        peerFileServer.close();
+    }
+
+    PeerFileServer peerFileServer() {
+        return peerFileServer;
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void serveFile(Request req) {
+        peerFileServer.serveFile(req);
+    }
 
 }
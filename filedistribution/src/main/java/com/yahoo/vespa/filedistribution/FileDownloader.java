@@ -12,6 +12,7 @@ import com.yahoo.yolean.Exceptions;
 import java.io.File;
 import java.time.Duration;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -36,15 +37,30 @@ public class FileDownloader {
     private final FileReferenceDownloader fileReferenceDownloader;
 
     public FileDownloader(ConnectionPool connectionPool) {
+        this(connectionPool, Collections.emptyList());
+    }
+
+    /**
+     * Creates a file downloader which will try to download file references from the given peers
+     * (other nodes running a {@link FileDistributionRpcServer}) before asking the config servers.
+     *
+     * @param peers connection specs (e.g. "tcp/host:port") of peers serving file references
+     */
+    public FileDownloader(ConnectionPool connectionPool, List<String> peers) {
         this(connectionPool,
                 new File(Defaults.getDefaults().underVespaHome("var/db/vespa/filedistribution")),
-                Duration.ofMinutes(15));
+                Duration.ofMinutes(15),
+                peers);
     }
 
     FileDownloader(ConnectionPool connectionPool, File downloadDirectory, Duration timeout) {
+        this(connectionPool, downloadDirectory, timeout, Collections.emptyList());
+    }
+
+    FileDownloader(ConnectionPool connectionPool, File downloadDirectory, Duration timeout, List<String> peers) {
         this.downloadDirectory = downloadDirectory;
         this.timeout = timeout;
-        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, connectionPool, timeout);
+        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, connectionPool, timeout, peers);
     }
 
     public Optional<File> getFile(FileReference fileReference) {
@@ -96,6 +96,7 @@ public class FileReceiver {
             req.returnValues().add(new Int32Value(0));
         } else {
             log.log(LogLevel.WARNING, "Receiving file reference '" + fileReference.value() + "' failed: " + errorDescription);
+            downloader.failedDownloading(fileReference);
             req.returnValues().add(new Int32Value(1));
             // TODO: Add error description return value here too?
         }
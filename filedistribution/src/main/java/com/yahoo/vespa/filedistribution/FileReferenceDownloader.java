@@ -3,23 +3,30 @@ package com.yahoo.vespa.filedistribution;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
 import com.yahoo.jrt.ErrorCode;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
+import com.yahoo.vespa.config.JRTConnection;
 
 import java.io.File;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -30,7 +37,9 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
- * Downloads file reference using rpc requests to config server and keeps track of files being downloaded
+ * Downloads file reference using rpc requests to config server and keeps track of files being downloaded.
+ * If peers are given, they are asked for the file reference first (see {@link PeerScheduler}), so that
+ * nodes that already have a file reference take load off the config servers.
  * <p>
  * Some methods are synchronized to make sure access to downloads is atomic
  *
@@ -41,6 +50,9 @@ public class FileReferenceDownloader {
 
     private final static Logger log = Logger.getLogger(FileReferenceDownloader.class.getName());
     private final static Duration rpcTimeout = Duration.ofSeconds(10);
+    private final static Duration peerRpcTimeout = Duration.ofSeconds(2);
+    private final static Duration maxPeerTransferTimeout = Duration.ofSeconds(30);
+    private final static int maxPeerAttempts = 5;
 
     private final ExecutorService downloadExecutor =
             Executors.newFixedThreadPool(10, new DaemonThreadFactory("filereference downloader"));
@@ -52,39 +64,118 @@ public class FileReferenceDownloader {
     private final Map<FileReference, Double> downloadStatus = new HashMap<>();
     private final Duration downloadTimeout;
     private final FileReceiver fileReceiver;
+    private final PeerScheduler peerScheduler;
+    /** How long to wait for a peer which has accepted to serve a file reference before using the config servers */
+    private final Duration peerTransferTimeout;
+    /** Peer transfers in progress, set to false if the peer reports that it failed */
+    private final Map<FileReference, SettableFuture<Boolean>> peerTransfers = new ConcurrentHashMap<>();
 
     FileReferenceDownloader(File downloadDirectory, ConnectionPool connectionPool, Duration timeout) {
+        this(downloadDirectory, connectionPool, timeout, Collections.emptyList());
+    }
+
+    FileReferenceDownloader(File downloadDirectory, ConnectionPool connectionPool, Duration timeout, List<String> peers) {
         this.connectionPool = connectionPool;
         this.downloadTimeout = timeout;
+        this.peerTransferTimeout = Collections.min(Arrays.asList(maxPeerTransferTimeout, timeout.dividedBy(4)));
+        // Peers send file content back on the connection used for requesting it, so the same supervisor
+        // (which has the receive methods registered) must be used when connecting to peers
+        Supervisor supervisor = connectionPool.getSupervisor();
+        this.fileReceiver = new FileReceiver(supervisor, this, downloadDirectory);
+        this.peerScheduler = new PeerScheduler(peers.stream()
+                                                       .map(peer -> new JRTConnection(peer, supervisor))
+                                                       .collect(Collectors.toList()),
+                                               maxPeerAttempts);
         readFromQueueExecutor.submit(this::readFromQueue);
-        this.fileReceiver = new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory);
     }
 
-    private synchronized Optional<File> startDownload(FileReference fileReference,
-                                                      Duration timeout,
-                                                      FileReferenceDownload fileReferenceDownload)
+    // Not synchronized, as this waits for the download to complete
+    private Optional<File> startDownload(FileReference fileReference,
+                                         Duration timeout,
+                                         FileReferenceDownload fileReferenceDownload)
             throws ExecutionException, InterruptedException, TimeoutException {
-        downloads.put(fileReference, fileReferenceDownload);
+        synchronized (this) {
+            downloads.put(fileReference, fileReferenceDownload);
+        }
         setDownloadStatus(fileReference.value(), 0.0);
 
-        int numAttempts = 0;
-        boolean downloadStarted = false;
-        do {
-            if (startDownloadRpc(fileReference))
-                downloadStarted = true;
-            else
-                Thread.sleep(100);
-        } while (!downloadStarted && ++numAttempts <= 10);  // TODO: How long/many times to retry?
-
-        if (downloadStarted) {
-            return fileReferenceDownload.future().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
-        } else {
-            fileReferenceDownload.future().setException(new RuntimeException("Failed getting file reference '" + fileReference.value() + "'"));
-            downloads.remove(fileReference);
-            return Optional.empty();
+        try {
+            if (downloadFromPeers(fileReference, fileReferenceDownload))
+                return fileReferenceDownload.future().get();
+
+            int numAttempts = 0;
+            boolean downloadStarted = false;
+            while ( ! downloadStarted && numAttempts++ <= 10) {  // TODO: How long/many times to retry?
+                if (startDownloadRpc(fileReference))
+                    downloadStarted = true;
+                else
+                    Thread.sleep(100);
+            }
+
+            if (downloadStarted) {
+                return fileReferenceDownload.future().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                fileReferenceDownload.future().setException(new RuntimeException("Failed getting file reference '" + fileReference.value() + "'"));
+                synchronized (this) {
+                    downloads.remove(fileReference);
+                }
+                return Optional.empty();
+            }
+        } finally {
+            peerScheduler.downloadFinished(fileReference);
         }
     }
 
+    /**
+     * Tries to download the given file reference from a peer.
+     *
+     * @return true if the file reference was received from a peer, false if the config servers should be used:
+     *         No peer had the file reference, or the peer serving it failed or did not deliver it within the peer transfer timeout
+     */
+    private boolean downloadFromPeers(FileReference fileReference, FileReferenceDownload fileReferenceDownload)
+            throws InterruptedException {
+        if (peerScheduler.peerCount() == 0) return false;
+
+        SettableFuture<Boolean> peerTransfer = SettableFuture.create();
+        peerTransfers.put(fileReference, peerTransfer);
+        try {
+            Optional<Connection> peer = startDownloadFromPeers(fileReference);
+            if ( ! peer.isPresent()) return false;
+
+            fileReferenceDownload.future().addListener(() -> peerTransfer.set(true), Runnable::run);
+            try {
+                if (peerTransfer.get(peerTransferTimeout.toMillis(), TimeUnit.MILLISECONDS)) return true;
+                log.log(LogLevel.INFO, "Peer " + peer.get().getAddress() + " failed sending file reference '" +
+                                       fileReference.value() + "', downloading from config server");
+            } catch (TimeoutException e) {
+                log.log(LogLevel.INFO, "Peer " + peer.get().getAddress() + " did not send file reference '" +
+                                       fileReference.value() + "' within " + peerTransferTimeout + ", downloading from config server");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e); // never set to fail
+            }
+            return false;
+        } finally {
+            peerTransfers.remove(fileReference);
+        }
+    }
+
+    private Optional<Connection> startDownloadFromPeers(FileReference fileReference) {
+        Optional<Connection> peer;
+        while ((peer = peerScheduler.nextSource(fileReference)).isPresent()) {
+            Request request = new Request("filedistribution.serveFile");
+            request.parameters().add(new StringValue(fileReference.value()));
+            peer.get().invokeSync(request, (double) peerRpcTimeout.getSeconds());
+            if (validateResponse(request) && request.returnValues().get(0).asInt32() == 0) {
+                log.log(LogLevel.DEBUG, "File reference '" + fileReference.value() + "' available at peer " + peer.get().getAddress());
+                peerScheduler.transferStarted(fileReference, peer.get());
+                return peer;
+            }
+            log.log(LogLevel.DEBUG, "File reference '" + fileReference.value() + "' not available at peer " + peer.get().getAddress() +
+                    (request.isError() ? ": " + request.errorMessage() : ""));
+        }
+        return Optional.empty();
+    }
+
     synchronized void addToDownloadQueue(FileReferenceDownload fileReferenceDownload) {
         downloadQueue.add(fileReferenceDownload);
     }
@@ -113,6 +204,13 @@ public class FileReferenceDownloader {
         } while (true);
     }
 
+    /** Called when the sender of a file reference reports that it failed sending it */
+    void failedDownloading(FileReference fileReference) {
+        SettableFuture<Boolean> peerTransfer = peerTransfers.get(fileReference);
+        if (peerTransfer != null)
+            peerTransfer.set(false);
+    }
+
     void completedDownloading(FileReference fileReference, File file) {
         if (downloads.containsKey(fileReference))
             downloads.get(fileReference).future().set(Optional.of(file));
@@ -0,0 +1,144 @@
+//  Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.concurrent.DaemonThreadFactory;
+import com.yahoo.config.FileReference;
+import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
+import com.yahoo.log.LogLevel;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Serves file references that this node has already downloaded to other nodes, using the same
+ * protocol as the config servers: filedistribution.serveFile is answered right away, and the content
+ * is then sent back to the requesting node with filedistribution.receiveFile.
+ * <p>
+ * The number of concurrent uploads is bounded. When the limit is reached, requests are answered as if the
+ * file reference was not found, so that the requesting node moves on to another peer or a config server.
+ */
+class PeerFileServer {
+
+    private final static Logger log = Logger.getLogger(PeerFileServer.class.getName());
+
+    static final int OK = 0;
+    static final int NOT_FOUND = 1;
+
+    private final File downloadDirectory;
+    private final int maxConcurrentUploads;
+    private final AtomicInteger activeUploads = new AtomicInteger(0);
+    private final AtomicInteger startedUploads = new AtomicInteger(0);
+    private final ExecutorService uploadExecutor;
+    private final XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+
+    PeerFileServer(File downloadDirectory, int maxConcurrentUploads) {
+        this.downloadDirectory = downloadDirectory;
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.uploadExecutor = Executors.newFixedThreadPool(maxConcurrentUploads, new DaemonThreadFactory("filereference peer upload"));
+    }
+
+    void serveFile(Request request) {
+        FileReference fileReference = new FileReference(request.parameters().get(0).asString());
+        Optional<File> file = localFile(fileReference);
+        if ( ! file.isPresent()) {
+            log.log(LogLevel.DEBUG, "Peer asked for file reference '" + fileReference.value() + "', not available locally");
+            reply(request, NOT_FOUND, "File reference '" + fileReference.value() + "' not found");
+        } else if (activeUploads.incrementAndGet() > maxConcurrentUploads) {
+            activeUploads.decrementAndGet();
+            log.log(LogLevel.DEBUG, "Peer asked for file reference '" + fileReference.value() + "', too many active uploads");
+            reply(request, NOT_FOUND, "Too many active uploads, not serving file reference '" + fileReference.value() + "'");
+        } else {
+            reply(request, OK, "OK");
+            startedUploads.incrementAndGet();
+            Target target = request.target();
+            uploadExecutor.execute(() -> upload(fileReference, file.get(), target));
+        }
+    }
+
+    private void upload(FileReference fileReference, File file, Target target) {
+        try {
+            byte[] content;
+            try {
+                content = IOUtils.readFileBytes(file);
+            } catch (IOException e) {
+                log.log(LogLevel.WARNING, "Failed reading file reference '" + fileReference.value() + "' from " +
+                                          file.getAbsolutePath() + ": " + e.getMessage());
+                // Tell the requesting node, such that it does not wait for the file before asking someone else
+                send(target, fileReference, file.getName(), new byte[0], 1, "Failed reading file: " + e.getMessage());
+                return;
+            }
+            send(target, fileReference, file.getName(), content, 0, "OK");
+        } finally {
+            activeUploads.decrementAndGet();
+        }
+    }
+
+    private void send(Target target, FileReference fileReference, String filename, byte[] content,
+                      int errorCode, String errorDescription) {
+        Request fileBlob = new Request("filedistribution.receiveFile");
+        fileBlob.parameters().add(new StringValue(fileReference.value()));
+        fileBlob.parameters().add(new StringValue(filename));
+        fileBlob.parameters().add(new DataValue(content));
+        fileBlob.parameters().add(new Int64Value(hasher.hash(ByteBuffer.wrap(content), 0)));
+        fileBlob.parameters().add(new Int32Value(errorCode));
+        fileBlob.parameters().add(new StringValue(errorDescription));
+        target.invokeSync(fileBlob, 600);
+        if (fileBlob.isError())
+            log.log(LogLevel.WARNING, "Failed delivering file reference '" + fileReference.value() + "' to " +
+                                      target + ": " + fileBlob.errorMessage());
+    }
+
+    /**
+     * Returns the single file of the given file reference in the download directory, if present.
+     * File references come from other nodes, so only plain names of directories directly below the
+     * download directory are accepted.
+     */
+    private Optional<File> localFile(FileReference fileReference) {
+        String name = fileReference.value();
+        if (name.isEmpty() || name.equals(".") || name.equals("..") || name.contains("/") || name.contains(File.separator))
+            return Optional.empty();
+        File directory = new File(downloadDirectory, name);
+        try {
+            if ( ! directory.getCanonicalFile().getParentFile().equals(downloadDirectory.getCanonicalFile()))
+                return Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        File[] files = directory.listFiles();
+        if (files == null || files.length != 1 || ! files[0].isFile() || ! files[0].canRead()) return Optional.empty();
+        return Optional.of(files[0]);
+    }
+
+    private static void reply(Request request, int code, String description) {
+        request.returnValues().add(new Int32Value(code));
+        request.returnValues().add(new StringValue(description));
+    }
+
+    /** Stops accepting uploads, letting the ones in progress complete */
+    void close() {
+        uploadExecutor.shutdown();
+    }
+
+    int activeUploads() {
+        return activeUploads.get();
+    }
+
+    int startedUploads() {
+        return startedUploads.get();
+    }
+
+}
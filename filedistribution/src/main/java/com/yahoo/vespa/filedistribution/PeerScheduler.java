@@ -0,0 +1,86 @@
+//  Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.vespa.config.Connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Chooses which peer to ask for a file reference before falling back to the config servers.
+ * <p>
+ * Each download gets a bounded number of peer attempts. Peers that reported that they do not have a file
+ * reference are not asked again for the same download, and among the remaining peers the one with the
+ * fewest active transfers to this node is chosen, with random tie breaking so that nodes
+ * spread their requests over the swarm instead of all asking the same peer.
+ * <p>
+ * All methods are synchronized, as the scheduler is used from several download threads
+ */
+class PeerScheduler {
+
+    private final List<Connection> peers;
+    private final int maxPeerAttempts;
+    private final Random random;
+    private final Map<FileReference, Set<Connection>> attempted = new HashMap<>();
+    private final Map<FileReference, Connection> activeTransfers = new HashMap<>();
+    private final Map<Connection, Integer> transfersPerPeer = new HashMap<>();
+
+    PeerScheduler(List<Connection> peers, int maxPeerAttempts) {
+        this(peers, maxPeerAttempts, new Random());
+    }
+
+    PeerScheduler(List<Connection> peers, int maxPeerAttempts, Random random) {
+        this.peers = new ArrayList<>(peers);
+        this.maxPeerAttempts = maxPeerAttempts;
+        this.random = random;
+    }
+
+    /** Returns the next peer to ask for the given file reference, or empty if the config servers should be used */
+    synchronized Optional<Connection> nextSource(FileReference fileReference) {
+        Set<Connection> attemptedPeers = attempted.computeIfAbsent(fileReference, __ -> new HashSet<>());
+        if (attemptedPeers.size() >= maxPeerAttempts) return Optional.empty();
+
+        List<Connection> candidates = new ArrayList<>();
+        for (Connection peer : peers)
+            if ( ! attemptedPeers.contains(peer))
+                candidates.add(peer);
+        if (candidates.isEmpty()) return Optional.empty();
+
+        Collections.shuffle(candidates, random);
+        Connection chosen = Collections.min(candidates, Comparator.comparingInt(this::transfers));
+        attemptedPeers.add(chosen);
+        return Optional.of(chosen);
+    }
+
+    /** Called when a peer has accepted to serve a file reference */
+    synchronized void transferStarted(FileReference fileReference, Connection peer) {
+        activeTransfers.put(fileReference, peer);
+        transfersPerPeer.merge(peer, 1, Integer::sum);
+    }
+
+    /** Called when a download has completed or failed, resets all state for the file reference */
+    synchronized void downloadFinished(FileReference fileReference) {
+        attempted.remove(fileReference);
+        Connection peer = activeTransfers.remove(fileReference);
+        if (peer != null)
+            transfersPerPeer.computeIfPresent(peer, (__, count) -> count > 1 ? count - 1 : null);
+    }
+
+    synchronized int transfers(Connection peer) {
+        return transfersPerPeer.getOrDefault(peer, 0);
+    }
+
+    int peerCount() {
+        return peers.size();
+    }
+
+}
@@ -0,0 +1,266 @@
+//  Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Acceptor;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
+import com.yahoo.jrt.Transport;
+import com.yahoo.vespa.config.JRTConnectionPool;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs a number of nodes, each with its own Supervisor, and a stand-in config server in this process,
+ * and distributes file references between them.
+ */
+public class PeerDistributionTest {
+
+    private static final FileReference fileReference = new FileReference("model");
+    private static final String filename = "model.bin";
+    private static final Duration timeout = Duration.ofSeconds(20);
+
+    private final List<Supervisor> supervisors = new ArrayList<>();
+    private final List<JRTConnectionPool> connectionPools = new ArrayList<>();
+    private final List<FileDistributionRpcServer> rpcServers = new ArrayList<>();
+
+    @After
+    public void shutdown() {
+        rpcServers.forEach(FileDistributionRpcServer::close);
+        connectionPools.forEach(JRTConnectionPool::close);
+        supervisors.forEach(supervisor -> supervisor.transport().shutdown().join());
+    }
+
+    @Test
+    public void fileIsDownloadedFromPeerWhenConfigServerDoesNotHaveIt() throws IOException {
+        ConfigServer configServer = new ConfigServer(null);
+        List<Node> nodes = startNodes(2, configServer);
+        Node holder = nodes.get(0);
+        Node downloader = nodes.get(1);
+        IOUtils.writeFile(new File(new File(holder.downloadDirectory, fileReference.value()), filename), "content", false);
+
+        Optional<File> file = downloader.fileDownloader.getFile(fileReference);
+        assertTrue(file.isPresent());
+        assertEquals("content", IOUtils.readFile(file.get()));
+        assertEquals(0, configServer.served.get());
+    }
+
+    @Test
+    public void distributeToManyNodes() throws Exception {
+        int nodeCount = 20;
+        byte[] content = new byte[1 << 20];
+        new Random(0).nextBytes(content);
+        ConfigServer configServer = new ConfigServer(content);
+        List<Node> nodes = startNodes(nodeCount, configServer);
+
+        // The first node has to get the file from the config server, the rest are started together
+        assertTrue(nodes.get(0).fileDownloader.getFile(fileReference).isPresent());
+        ExecutorService executor = Executors.newFixedThreadPool(nodeCount);
+        List<Future<Optional<File>>> downloads = new ArrayList<>();
+        for (Node node : nodes.subList(1, nodeCount))
+            downloads.add(executor.submit(() -> node.fileDownloader.getFile(fileReference)));
+        for (Future<Optional<File>> download : downloads) {
+            Optional<File> file = download.get();
+            assertTrue(file.isPresent());
+            assertEquals(content.length, Files.size(file.get().toPath()));
+        }
+        executor.shutdown();
+
+        int servedByPeers = nodes.stream().mapToInt(node -> node.rpcServer.peerFileServer().startedUploads()).sum();
+        assertEquals(nodeCount, configServer.served.get() + servedByPeers);
+    }
+
+    @Test
+    public void configServerIsUsedWhenPeerDoesNotSendAcceptedFile() throws IOException {
+        assertFallbackToConfigServer(new Peer(false));
+    }
+
+    @Test
+    public void configServerIsUsedWhenPeerFailsSendingAcceptedFile() throws IOException {
+        assertFallbackToConfigServer(new Peer(true));
+    }
+
+    private void assertFallbackToConfigServer(Peer peer) throws IOException {
+        ConfigServer configServer = new ConfigServer("content".getBytes());
+        String peerSpec = listen(peer.supervisor);
+        Supervisor supervisor = new Supervisor(new Transport());
+        listen(supervisor);
+        JRTConnectionPool connectionPool = new JRTConnectionPool(Collections.singletonList(listen(configServer.supervisor)));
+        connectionPools.add(connectionPool);
+        Node node = new Node(supervisor, connectionPool, Collections.singletonList(peerSpec));
+        rpcServers.add(node.rpcServer);
+
+        Optional<File> file = node.fileDownloader.getFile(fileReference);
+        assertTrue(file.isPresent());
+        assertEquals("content", IOUtils.readFile(file.get()));
+        assertEquals(1, peer.asked.get());
+        assertEquals(1, configServer.served.get());
+    }
+
+    @Test
+    public void onlyFileReferencesInTheDownloadDirectoryAreServed() throws IOException {
+        File root = Files.createTempDirectory("filedistribution").toFile();
+        File downloadDirectory = new File(root, "downloads");
+        IOUtils.writeFile(new File(new File(downloadDirectory, fileReference.value()), filename), "content", false);
+        IOUtils.writeFile(new File(new File(root, "secret"), "secret.txt"), "secret", false);
+        PeerFileServer server = new PeerFileServer(downloadDirectory, 1);
+
+        for (String reference : new String[] { "../secret", "..", ".", "", "model/../../secret", "/etc" }) {
+            Request request = new Request("filedistribution.serveFile");
+            request.parameters().add(new StringValue(reference));
+            server.serveFile(request);
+            assertEquals("Not serving '" + reference + "'", PeerFileServer.NOT_FOUND, request.returnValues().get(0).asInt32());
+        }
+        assertEquals(0, server.startedUploads());
+    }
+
+    private List<Node> startNodes(int count, ConfigServer configServer) throws IOException {
+        String configServerSpec = listen(configServer.supervisor);
+        List<Supervisor> nodeSupervisors = new ArrayList<>();
+        List<String> specs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Supervisor supervisor = new Supervisor(new Transport());
+            nodeSupervisors.add(supervisor);
+            specs.add(listen(supervisor));
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String ownSpec = specs.get(i);
+            List<String> peers = specs.stream().filter(spec -> ! spec.equals(ownSpec)).collect(Collectors.toList());
+            JRTConnectionPool connectionPool = new JRTConnectionPool(Collections.singletonList(configServerSpec));
+            connectionPools.add(connectionPool);
+            Node node = new Node(nodeSupervisors.get(i), connectionPool, peers);
+            rpcServers.add(node.rpcServer);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private String listen(Supervisor supervisor) {
+        supervisors.add(supervisor);
+        try {
+            Acceptor acceptor = supervisor.listen(new Spec(0));
+            return "tcp/localhost:" + acceptor.port();
+        } catch (ListenFailedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Node {
+
+        final File downloadDirectory;
+        final FileDownloader fileDownloader;
+        final FileDistributionRpcServer rpcServer;
+
+        Node(Supervisor supervisor, JRTConnectionPool connectionPool, List<String> peers) throws IOException {
+            downloadDirectory = Files.createTempDirectory("filedistribution").toFile();
+            fileDownloader = new FileDownloader(connectionPool, downloadDirectory, timeout, peers);
+            rpcServer = new FileDistributionRpcServer(supervisor, fileDownloader);
+        }
+
+    }
+
+    /** A peer which accepts to serve any file reference, but then either sends nothing, or reports failure */
+    public static class Peer {
+
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        final Supervisor supervisor = new Supervisor(new Transport());
+        final AtomicInteger asked = new AtomicInteger(0);
+        private final boolean reportFailure;
+
+        Peer(boolean reportFailure) {
+            this.reportFailure = reportFailure;
+            supervisor.addMethod(new Method("filedistribution.serveFile", "s", "is", this, "serveFile"));
+        }
+
+        public final void serveFile(Request request) {
+            asked.incrementAndGet();
+            request.returnValues().add(new Int32Value(PeerFileServer.OK));
+            request.returnValues().add(new StringValue("OK"));
+            if ( ! reportFailure) return;
+
+            Target target = request.target();
+            String reference = request.parameters().get(0).asString();
+            executor.execute(() -> {
+                Request fileBlob = new Request("filedistribution.receiveFile");
+                fileBlob.parameters().add(new StringValue(reference));
+                fileBlob.parameters().add(new StringValue(filename));
+                fileBlob.parameters().add(new DataValue(new byte[0]));
+                fileBlob.parameters().add(new Int64Value(0));
+                fileBlob.parameters().add(new Int32Value(1));
+                fileBlob.parameters().add(new StringValue("Failed reading file"));
+                target.invokeSync(fileBlob, 600);
+            });
+        }
+
+    }
+
+    /** Serves a single file reference with the given content, or nothing if content is null */
+    public static class ConfigServer {
+
+        private final XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        final Supervisor supervisor = new Supervisor(new Transport());
+        final AtomicInteger served = new AtomicInteger(0);
+        private final byte[] content;
+
+        ConfigServer(byte[] content) {
+            this.content = content;
+            supervisor.addMethod(new Method("filedistribution.serveFile", "s", "is", this, "serveFile"));
+        }
+
+        public final void serveFile(Request request) {
+            boolean found = content != null && request.parameters().get(0).asString().equals(fileReference.value());
+            request.returnValues().add(new Int32Value(found ? 0 : 1));
+            request.returnValues().add(new StringValue(found ? "OK" : "Not found"));
+            if (found) {
+                Target target = request.target();
+                served.incrementAndGet();
+                executor.execute(() -> {
+                    Request fileBlob = new Request("filedistribution.receiveFile");
+                    fileBlob.parameters().add(new StringValue(fileReference.value()));
+                    fileBlob.parameters().add(new StringValue(filename));
+                    fileBlob.parameters().add(new DataValue(content));
+                    fileBlob.parameters().add(new Int64Value(hasher.hash(ByteBuffer.wrap(content), 0)));
+                    fileBlob.parameters().add(new Int32Value(0));
+                    fileBlob.parameters().add(new StringValue("OK"));
+                    target.invokeSync(fileBlob, 600);
+                });
+            }
+        }
+
+    }
+
+}
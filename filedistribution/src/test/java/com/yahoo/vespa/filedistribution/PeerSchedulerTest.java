@@ -0,0 +1,78 @@
+//  Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Transport;
+import com.yahoo.vespa.config.Connection;
+import com.yahoo.vespa.config.JRTConnection;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PeerSchedulerTest {
+
+    private final Supervisor supervisor = new Supervisor(new Transport());
+    private final Connection a = new JRTConnection("tcp/a:19090", supervisor);
+    private final Connection b = new JRTConnection("tcp/b:19090", supervisor);
+    private final Connection c = new JRTConnection("tcp/c:19090", supervisor);
+    private final FileReference foo = new FileReference("foo");
+    private final FileReference bar = new FileReference("bar");
+
+    @Test
+    public void noPeersMeansConfigServerIsUsed() {
+        PeerScheduler scheduler = new PeerScheduler(Collections.emptyList(), 5);
+        assertFalse(scheduler.nextSource(foo).isPresent());
+    }
+
+    @Test
+    public void eachPeerIsAskedOncePerDownload() {
+        PeerScheduler scheduler = new PeerScheduler(Arrays.asList(a, b, c), 5, new Random(1));
+        Set<Connection> asked = new HashSet<>();
+        Optional<Connection> peer;
+        while ((peer = scheduler.nextSource(foo)).isPresent())
+            assertTrue(asked.add(peer.get()));
+        assertEquals(3, asked.size());
+
+        // Other file references are not affected
+        assertTrue(scheduler.nextSource(bar).isPresent());
+
+        // All peers may be asked again when the download has finished
+        scheduler.downloadFinished(foo);
+        assertTrue(scheduler.nextSource(foo).isPresent());
+    }
+
+    @Test
+    public void numberOfPeerAttemptsIsBounded() {
+        PeerScheduler scheduler = new PeerScheduler(Arrays.asList(a, b, c), 2, new Random(1));
+        assertTrue(scheduler.nextSource(foo).isPresent());
+        assertTrue(scheduler.nextSource(foo).isPresent());
+        assertFalse(scheduler.nextSource(foo).isPresent());
+    }
+
+    @Test
+    public void peersWithFewestActiveTransfersArePreferred() {
+        List<Connection> peers = Arrays.asList(a, b);
+        for (int seed = 0; seed < 10; seed++) {
+            PeerScheduler scheduler = new PeerScheduler(peers, 5, new Random(seed));
+            scheduler.transferStarted(bar, a);
+            assertEquals(1, scheduler.transfers(a));
+            assertEquals(b, scheduler.nextSource(foo).get());
+
+            scheduler.downloadFinished(bar);
+            assertEquals(0, scheduler.transfers(a));
+        }
+    }
+
+}
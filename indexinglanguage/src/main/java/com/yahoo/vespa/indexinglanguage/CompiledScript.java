@@ -0,0 +1,224 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.vespa.indexinglanguage.expressions.AttributeExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.ExecutionContext;
+import com.yahoo.vespa.indexinglanguage.expressions.Expression;
+import com.yahoo.vespa.indexinglanguage.expressions.IndexExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.InputExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.OutputExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.PassthroughExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.StatementExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.SummaryExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.VerificationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An indexing script specialized for executing on documents of one document type, updating them in place.
+ * This produces the same documents as executing the script with a {@link SimpleDocumentAdapter} having the
+ * same input and output document, but
+ * <ul>
+ *     <li>the input and output fields of statements are resolved when compiling rather than for each document,</li>
+ *     <li>consecutive attribute, index, summary and passthrough outputs of a statement are fused into one step,</li>
+ *     <li>the input and output types of the script and its statements are resolved once, rather than by traversing
+ *     the expression tree each time it is executed, and</li>
+ *     <li>statements which are never executed, because they require an input value, are removed.</li>
+ * </ul>
+ * Other expressions are executed as they are.
+ * <p>
+ * This is thread safe if the expressions of the script are.
+ *
+ * @see #compile
+ */
+public final class CompiledScript {
+
+    private static final Set<Class<?>> outputClasses = new HashSet<>(Arrays.asList(AttributeExpression.class,
+                                                                                   IndexExpression.class,
+                                                                                   SummaryExpression.class,
+                                                                                   PassthroughExpression.class));
+
+    private final DocumentType documentType;
+    private final List<Statement> statements;
+
+    private CompiledScript(DocumentType documentType, List<Statement> statements) {
+        this.documentType = documentType;
+        this.statements = statements;
+    }
+
+    /**
+     * Compiles a script for executing on documents of the given type.
+     *
+     * @return the compiled script, or null if this script cannot be compiled
+     */
+    public static CompiledScript compile(ScriptExpression script, DocumentType documentType) {
+        List<Statement> statements = new ArrayList<>(script.size());
+        try {
+            // A script requiring an input value is never executed, as documents are executed with no input value
+            if (script.requiredInputType() != null) return new CompiledScript(documentType, statements);
+
+            for (StatementExpression statement : script) {
+                if (statement.requiredInputType() != null) continue; // never executed: Same as above
+                statements.add(new Statement(statement, compileSteps(statement, documentType)));
+            }
+        }
+        catch (VerificationException e) { // inconsistent types: Leave failing to the interpreter
+            return null;
+        }
+        return new CompiledScript(documentType, statements);
+    }
+
+    private static List<Step> compileSteps(StatementExpression statement, DocumentType documentType) {
+        List<Step> steps = new ArrayList<>(statement.size());
+        List<Field> outputFields = new ArrayList<>();
+        for (Expression expression : statement) {
+            Field outputField = outputFieldOf(expression, documentType);
+            if (outputField != null) {
+                outputFields.add(outputField);
+                continue;
+            }
+            if ( ! outputFields.isEmpty()) {
+                steps.add(new OutputStep(outputFields));
+                outputFields = new ArrayList<>();
+            }
+            Field inputField = inputFieldOf(expression, documentType);
+            if (inputField != null)
+                steps.add(new InputStep(inputField));
+            else
+                steps.add(new ExpressionStep(expression));
+        }
+        if ( ! outputFields.isEmpty())
+            steps.add(new OutputStep(outputFields));
+        return steps;
+    }
+
+    /** Returns the field an expression reads its value from if it can be read directly, or null otherwise */
+    private static Field inputFieldOf(Expression expression, DocumentType documentType) {
+        if (expression.getClass() != InputExpression.class) return null;
+        String fieldName = ((InputExpression)expression).getFieldName();
+        if (fieldName == null) return null;
+        return documentType.getField(fieldName); // null unless this is a (non-nested) field of this type
+    }
+
+    /** Returns the field an expression writes its value to if it can be written directly, or null otherwise */
+    private static Field outputFieldOf(Expression expression, DocumentType documentType) {
+        if ( ! outputClasses.contains(expression.getClass())) return null;
+        String fieldName = ((OutputExpression)expression).getFieldName();
+        if (fieldName == null) return null;
+        return documentType.getField(fieldName);
+    }
+
+    /** Returns the document type this is compiled for */
+    public DocumentType getDocumentType() { return documentType; }
+
+    /**
+     * Executes this on the given document, which must be of the document type of this, and updates it in place.
+     *
+     * @return the given document
+     * @throws IllegalArgumentException if the document is not of the document type of this
+     */
+    public Document execute(Document document) {
+        if (document.getDataType() != documentType)
+            throw new IllegalArgumentException("This script is compiled for document type '" + documentType.getName() +
+                                               "', but got a document of type '" +
+                                               document.getDataType().getName() + "'");
+        ExecutionContext context = new ExecutionContext(new SimpleDocumentAdapter(document, document));
+        for (Statement statement : statements)
+            statement.execute(context, document);
+        return document;
+    }
+
+    private static final class Statement {
+
+        private final StatementExpression expression;
+        private final DataType outputType;
+        private final Step[] steps;
+
+        Statement(StatementExpression expression, List<Step> steps) {
+            this.expression = expression;
+            this.outputType = expression.createdOutputType();
+            this.steps = steps.toArray(new Step[steps.size()]);
+        }
+
+        void execute(ExecutionContext context, Document document) {
+            context.setValue(null);
+            for (Step step : steps)
+                step.execute(context, document);
+            if (outputType != null) { // same check as Expression.execute
+                FieldValue output = context.getValue();
+                if (output != null && ! outputType.isValueCompatible(output))
+                    throw new IllegalStateException("Expression '" + expression + "' expected " + outputType.getName() +
+                                                    " output, got " + output.getDataType().getName() + ".");
+            }
+        }
+
+    }
+
+    private interface Step {
+
+        void execute(ExecutionContext context, Document document);
+
+    }
+
+    /** Executes an expression as is */
+    private static final class ExpressionStep implements Step {
+
+        private final Expression expression;
+
+        ExpressionStep(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public void execute(ExecutionContext context, Document document) {
+            expression.execute(context);
+        }
+
+    }
+
+    /** Sets the value of a field of the document as the current value */
+    private static final class InputStep implements Step {
+
+        private final Field field;
+
+        InputStep(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        public void execute(ExecutionContext context, Document document) {
+            context.setValue(document.getFieldValue(field));
+        }
+
+    }
+
+    /** Sets the current value, if any, to some fields of the document */
+    private static final class OutputStep implements Step {
+
+        private final Field[] fields;
+
+        OutputStep(List<Field> fields) {
+            this.fields = fields.toArray(new Field[fields.size()]);
+        }
+
+        @Override
+        public void execute(ExecutionContext context, Document document) {
+            FieldValue value = context.getValue();
+            if (value == null) return;
+            for (Field field : fields)
+                document.setFieldValue(field, value);
+        }
+
+    }
+
+}
@@ -8,8 +8,11 @@ import com.yahoo.document.annotation.*;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.language.Linguistics;
 import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.StreamingTokenizer;
 import com.yahoo.language.process.Token;
+import com.yahoo.language.process.TokenBuffer;
 import com.yahoo.language.process.Tokenizer;
+import com.yahoo.language.simple.SimpleToken;
 
 import static com.yahoo.language.LinguisticsCase.toLowerCase;
 
@@ -20,6 +23,11 @@ import static com.yahoo.language.LinguisticsCase.toLowerCase;
  */
 public class LinguisticsAnnotator {
 
+    /** Token buffers larger than this number of chars are not kept for reuse */
+    private static final int maxRetainedTokenBufferSize = 1 << 20;
+
+    private static final ThreadLocal<TokenBuffer> tokenBuffers = ThreadLocal.withInitial(TokenBuffer::new);
+
     private final Linguistics factory;
     private final AnnotatorConfig config;
 
@@ -67,12 +75,30 @@ public class LinguisticsAnnotator {
         String input = (text.getString().length() <=  config.getMaxTokenizeLength())
                 ? text.getString()
                 : text.getString().substring(0, config.getMaxTokenizeLength());
-        Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
-                                                    config.getRemoveAccents());
         TermOccurrences termOccurrences = new TermOccurrences(config.getMaxTermOccurrences());
         SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
-        for (Token token : tokens) {
-            addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
+        if (tokenizer instanceof StreamingTokenizer) {
+            TokenBuffer tokens = tokenBuffers.get();
+            try {
+                ((StreamingTokenizer)tokenizer).tokenize(input, config.getLanguage(), config.getStemMode(),
+                                                         config.getRemoveAccents(), tokens);
+                for (int i = 0; i < tokens.size(); i++) {
+                    addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, tokens, i, config.getStemMode(),
+                                      termOccurrences);
+                }
+            }
+            finally {
+                tokens.clear();
+                if (tokens.termCapacity() > maxRetainedTokenBufferSize)
+                    tokenBuffers.remove();
+            }
+        }
+        else {
+            Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
+                                                        config.getRemoveAccents());
+            for (Token token : tokens) {
+                addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
+            }
         }
 
         if (tree.numAnnotations() == 0) return false;
@@ -96,6 +122,39 @@ public class LinguisticsAnnotator {
         return new Annotation(AnnotationTypes.TERM, new StringFieldValue(annotationValue));
     }
 
+    /** Same as addAnnotationSpan for a token object, but avoids creating strings for the original token */
+    private static void addAnnotationSpan(String input, SpanList parent, Tokenizer tokenizer, TokenBuffer tokens, int i,
+                                          StemMode mode, TermOccurrences termOccurrences) {
+        if ( ! tokens.type(i).isIndexable()) return;
+
+        int pos = tokens.offset(i);
+        int len = tokens.length(i);
+        if (pos >= input.length()) {
+            throw new IllegalArgumentException("Token '" + tokens.term(i) + "' has offset " + pos + ", which is outside " +
+                                               "the bounds of the input string; " + input);
+        }
+        if (pos + len > input.length()) {
+            throw new IllegalArgumentException("Token '" + tokens.term(i) + "' has offset " + pos + " and length " + len +
+                                               ", which makes it overflow the bounds of the input string; " + input);
+        }
+        if (mode == StemMode.ALL) { // uncommon: Reuse the logic for token objects
+            String orig = input.substring(pos, pos + len);
+            Token token = new SimpleToken(orig).setOffset(pos).setType(tokens.type(i)).setTokenString(tokens.term(i));
+            addAnnotationSpan(input, parent, tokenizer, token, mode, termOccurrences);
+            return;
+        }
+
+        String term = tokenizer.getReplacementTerm(tokens.term(i));
+        if (term == null || term.trim().isEmpty()) return;
+        if ( ! termOccurrences.termCountBelowLimit(term)) return;
+
+        String lowercasedTerm = toLowerCase(term);
+        if (lowercasedTerm.length() == len && input.regionMatches(pos, lowercasedTerm, 0, len))
+            parent.span(pos, len).annotate(new Annotation(AnnotationTypes.TERM));
+        else
+            parent.span(pos, len).annotate(new Annotation(AnnotationTypes.TERM, new StringFieldValue(lowercasedTerm)));
+    }
+
     private static void addAnnotation(Span here, String term, String orig, TermOccurrences termOccurrences) {
         if (termOccurrences.termCountBelowLimit(term)) {
             here.annotate(lowerCaseTermAnnotation(term, orig));
@@ -0,0 +1,104 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.vespa.indexinglanguage.expressions.InputExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares interpreting an indexing script with executing its compiled form, for a script typical of
+ * a document type with a few indexed text fields and many attribute and summary fields.
+ */
+public class CompiledScriptMicroBenchmark {
+
+    private static final int attributeFields = 20;
+
+    private static DocumentType createType() {
+        DocumentType type = new DocumentType("benchmark");
+        type.addField("title", DataType.STRING);
+        type.addField("title_tokens", DataType.STRING);
+        type.addField("body", DataType.STRING);
+        for (int i = 0; i < attributeFields; i++)
+            type.addField("attribute" + i, DataType.INT);
+        return type;
+    }
+
+    private static ScriptExpression createScript(DocumentType type, boolean tokenize) throws ParseException {
+        StringBuilder script = new StringBuilder("{ ");
+        if (tokenize) {
+            script.append("input title | tokenize normalize stem:\"SHORTEST\" | summary title | index title; ");
+            script.append("input title | lowercase | attribute title_tokens; ");
+            script.append("input body | tokenize normalize stem:\"SHORTEST\" | index body; ");
+        }
+        for (int i = 0; i < attributeFields; i++)
+            script.append("input attribute").append(i).append(" | attribute attribute").append(i)
+                  .append(" | summary attribute").append(i).append("; ");
+        script.append("}");
+        ScriptExpression expression = ScriptExpression.fromString(script.toString());
+        InputExpression.FieldPathOptimizer optimizer = new InputExpression.FieldPathOptimizer(type);
+        expression.select(optimizer, optimizer);
+        return expression;
+    }
+
+    private static List<Document> createDocuments(DocumentType type, int count) {
+        String[] words = { "Search", "engine", "indexing", "documents", "fast", "Running", "queries", "ranking" };
+        Random random = new Random(1);
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Document document = new Document(type, "doc:benchmark:" + i);
+            document.setFieldValue("title", new StringFieldValue(words[random.nextInt(words.length)] + " " +
+                                                                 words[random.nextInt(words.length)]));
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 20; w++)
+                body.append(words[random.nextInt(words.length)]).append(' ');
+            document.setFieldValue("body", new StringFieldValue(body.toString()));
+            for (int a = 0; a < attributeFields; a++)
+                document.setFieldValue("attribute" + a, new IntegerFieldValue(random.nextInt()));
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    private static long interpretAll(List<Document> documents, ScriptExpression script) {
+        long startTime = System.currentTimeMillis();
+        for (Document document : documents)
+            script.execute(new SimpleDocumentAdapter(document, document));
+        return Math.max(1, System.currentTimeMillis() - startTime);
+    }
+
+    private static long executeAll(List<Document> documents, CompiledScript script) {
+        long startTime = System.currentTimeMillis();
+        for (Document document : documents)
+            script.execute(document);
+        return Math.max(1, System.currentTimeMillis() - startTime);
+    }
+
+    private static void benchmark(DocumentType type, boolean tokenize) throws ParseException {
+        ScriptExpression script = createScript(type, tokenize);
+        CompiledScript compiled = CompiledScript.compile(script, type);
+        int count = 100000;
+        for (int run = 0; run < 5; run++) { // documents are updated in place, so use new ones for each execution
+            long interpretedTime = interpretAll(createDocuments(type, count), script);
+            long compiledTime = executeAll(createDocuments(type, count), compiled);
+            System.out.println("Executing " + (tokenize ? "with" : "without") + " tokenization on " + count +
+                               " documents: " + (count * 1000L / interpretedTime) + " documents/s interpreted, " +
+                               (count * 1000L / compiledTime) + " documents/s compiled");
+        }
+    }
+
+    public static void main(String[] args) throws ParseException {
+        DocumentType type = createType();
+        benchmark(type, true);
+        benchmark(type, false);
+    }
+
+}
@@ -0,0 +1,103 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.StructDataType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.Struct;
+import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CompiledScriptTestCase {
+
+    private final DocumentType type;
+
+    public CompiledScriptTestCase() {
+        StructDataType structType = new StructDataType("mystruct");
+        structType.addField(new Field("name", DataType.STRING));
+
+        type = new DocumentType("mytype");
+        type.addField("title", DataType.STRING);
+        type.addField("year", DataType.INT);
+        type.addField("struct", structType);
+        type.addField("out-title", DataType.STRING);
+        type.addField("out-tokens", DataType.STRING);
+        type.addField("out-year", DataType.INT);
+        type.addField("out-name", DataType.STRING);
+        type.addField("out-var", DataType.STRING);
+    }
+
+    @Test
+    public void requireThatCompiledScriptProducesTheSameDocument() throws ParseException {
+        assertSameOutput("{ input title | attribute out-title | summary out-title; " +
+                         "input title | tokenize normalize stem:\"SHORTEST\" | index out-tokens; " +
+                         "input year | attribute out-year | index out-year; " +
+                         "input struct | get_field name | summary out-name; " +
+                         "input title | lowercase | set_var myvar; " +
+                         "get_var myvar | attribute out-var; }");
+    }
+
+    @Test
+    public void requireThatMissingInputsAreSkipped() throws ParseException {
+        Document document = newDocument();
+        document.removeFieldValue("title");
+        assertSameOutput("{ input title | attribute out-title; input year | attribute out-year; }", document);
+    }
+
+    @Test
+    public void requireThatStatementsRequiringInputAreNotExecuted() throws ParseException {
+        Document document = assertSameOutput("{ input title | attribute out-title; attribute out-var; }");
+        assertNull(document.getFieldValue("out-title"));
+    }
+
+    @Test
+    public void requireThatDocumentsOfOtherTypesAreRejected() throws ParseException {
+        CompiledScript compiled = CompiledScript.compile(ScriptExpression.fromString("{ input title | attribute out-title; }"),
+                                                         type);
+        try {
+            compiled.execute(new Document(new DocumentType("other"), "doc:scheme:"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("This script is compiled for document type 'mytype', but got a document of type 'other'",
+                         e.getMessage());
+        }
+    }
+
+    private Document assertSameOutput(String script) throws ParseException {
+        return assertSameOutput(script, newDocument());
+    }
+
+    private Document assertSameOutput(String script, Document input) throws ParseException {
+        Document interpreted = input.clone();
+        ScriptExpression.fromString(script).execute(new SimpleDocumentAdapter(interpreted, interpreted));
+
+        CompiledScript compiled = CompiledScript.compile(ScriptExpression.fromString(script), type);
+        assertNotNull(compiled);
+        Document compiledOutput = input.clone();
+        compiled.execute(compiledOutput);
+
+        assertEquals(interpreted, compiledOutput);
+        return compiledOutput;
+    }
+
+    private Document newDocument() {
+        Document document = new Document(type, "doc:scheme:");
+        document.setFieldValue("title", new StringFieldValue("Running Men"));
+        document.setFieldValue("year", new IntegerFieldValue(1987));
+        Struct struct = new Struct(type.getField("struct").getDataType());
+        struct.setFieldValue("name", new StringFieldValue("Mystruct"));
+        document.setFieldValue("struct", struct);
+        return document;
+    }
+
+}
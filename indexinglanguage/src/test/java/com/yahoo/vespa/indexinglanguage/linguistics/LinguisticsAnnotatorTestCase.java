@@ -14,6 +14,7 @@ import com.yahoo.language.process.TokenType;
 import com.yahoo.language.process.Tokenizer;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.language.simple.SimpleToken;
+import com.yahoo.language.simple.SimpleTokenizer;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -218,6 +219,25 @@ public class LinguisticsAnnotatorTestCase {
         }
     }
 
+    @Test
+    public void requireThatStreamingTokenizationGivesTheSameAnnotations() {
+        Linguistics streaming = new SimpleLinguistics();
+        Linguistics nonStreaming = Mockito.mock(Linguistics.class);
+        Tokenizer simpleTokenizer = new SimpleTokenizer();
+        Mockito.when(nonStreaming.getTokenizer()).thenReturn(simpleTokenizer::tokenize);
+        for (StemMode stemMode : new StemMode[] { StemMode.NONE, StemMode.SHORTEST, StemMode.ALL }) {
+            AnnotatorConfig config = new AnnotatorConfig().setStemMode(stemMode).setMaxTermOccurrences(2);
+            for (String text : new String[] { "Running foxes JUMPED over the lazy dogs, and the dogs ran",
+                                              "Ærøskøbing Café, über-STATIONS 42 times", "" }) {
+                StringFieldValue streamed = new StringFieldValue(text);
+                StringFieldValue notStreamed = new StringFieldValue(text);
+                assertEquals(new LinguisticsAnnotator(nonStreaming, config).annotate(notStreamed),
+                             new LinguisticsAnnotator(streaming, config).annotate(streamed));
+                assertEquals(notStreamed.getSpanTree(SpanTrees.LINGUISTICS), streamed.getSpanTree(SpanTrees.LINGUISTICS));
+            }
+        }
+    }
+
     // --------------------------------------------------------------------------------
     //
     // Utilities
@@ -0,0 +1,28 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.process;
+
+import com.yahoo.language.Language;
+
+/**
+ * A tokenizer which can emit its tokens into a caller-owned {@link TokenBuffer} instead of creating
+ * token objects. This is useful when tokenizing large amounts of text, such as during indexing.
+ * <p>
+ * Tokens emitted this way are always simple: They are never special tokens and have no components
+ * or additional stems besides the token string.
+ */
+public interface StreamingTokenizer extends Tokenizer {
+
+    /**
+     * Adds the tokens produced from an input string to the given buffer. This produces the same tokens as
+     * {@link #tokenize(String, Language, StemMode, boolean)} given the same arguments.
+     *
+     * @param input the string to tokenize. May be arbitrarily large.
+     * @param language the language of the input string.
+     * @param stemMode the stem mode applied on the token strings
+     * @param removeAccents if true accents and similar are removed from the token strings
+     * @param tokens the buffer to add the tokens to. Tokens already in the buffer are kept.
+     * @throws ProcessingException If the underlying library throws an Exception.
+     */
+    void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents, TokenBuffer tokens);
+
+}
@@ -0,0 +1,125 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.process;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer receiving the tokens of a text from a {@link StreamingTokenizer}.
+ * Each token is stored as an offset and length into the tokenized text, while the token strings of all the
+ * tokens are stored after each other in a single char array, such that no objects are created per token.
+ * <p>
+ * A token is added by first appending its token string, and then calling {@link #add}.
+ * Buffers are reused by calling {@link #clear}.
+ * <p>
+ * This is not multithread safe.
+ */
+public final class TokenBuffer {
+
+    private int size = 0;
+
+    private int[] offsets = new int[64];
+    private int[] lengths = new int[64];
+    private TokenType[] types = new TokenType[64];
+    private int[] termEnds = new int[64];
+
+    /** The token strings of all tokens, followed by the token string of the token being added */
+    private char[] terms = new char[512];
+    private int termsLength = 0;
+
+    /** Removes all tokens from this, retaining the allocated capacity */
+    public void clear() {
+        size = 0;
+        termsLength = 0;
+    }
+
+    /** Returns the number of tokens in this */
+    public int size() { return size; }
+
+    /** Returns the offset of token i in the tokenized text */
+    public int offset(int i) { return offsets[checkIndex(i)]; }
+
+    /** Returns the length of token i in the tokenized text */
+    public int length(int i) { return lengths[checkIndex(i)]; }
+
+    /** Returns the type of token i */
+    public TokenType type(int i) { return types[checkIndex(i)]; }
+
+    /** Returns the length of the token string of token i */
+    public int termLength(int i) { return termEnds[checkIndex(i)] - termStart(i); }
+
+    /** Returns the token string of token i as a new string */
+    public String term(int i) {
+        int start = termStart(checkIndex(i));
+        return new String(terms, start, termEnds[i] - start);
+    }
+
+    /** Appends a char to the token string of the token being added */
+    public void append(char c) {
+        ensureTermCapacity(1);
+        terms[termsLength++] = c;
+    }
+
+    /** Appends a sequence of chars to the token string of the token being added */
+    public void append(CharSequence s) {
+        ensureTermCapacity(s.length());
+        for (int i = 0; i < s.length(); i++)
+            terms[termsLength++] = s.charAt(i);
+    }
+
+    /**
+     * Returns the array holding the token string of the token being added, starting at {@link #pendingTermStart}.
+     * The returned array is only valid until the next call to append.
+     */
+    public char[] pendingTermChars() { return terms; }
+
+    /** Returns the start of the token string of the token being added, in the array of {@link #pendingTermChars} */
+    public int pendingTermStart() { return size == 0 ? 0 : termEnds[size - 1]; }
+
+    /** Returns the length of the token string appended so far for the token being added */
+    public int pendingTermLength() { return termsLength - pendingTermStart(); }
+
+    /** Replaces the token string appended so far for the token being added by the given sequence */
+    public void replacePendingTerm(CharSequence s) {
+        termsLength = pendingTermStart();
+        append(s);
+    }
+
+    /**
+     * Adds a token having the token string appended since the last token was added
+     *
+     * @param offset the offset of the token in the tokenized text
+     * @param length the length of the token in the tokenized text
+     * @param type the type of the token
+     */
+    public void add(int offset, int length, TokenType type) {
+        if (size == offsets.length) {
+            int capacity = size * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            types = Arrays.copyOf(types, capacity);
+            termEnds = Arrays.copyOf(termEnds, capacity);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        types[size] = type;
+        termEnds[size] = termsLength;
+        size++;
+    }
+
+    /** Returns the number of token string chars this can hold without growing */
+    public int termCapacity() { return terms.length; }
+
+    private int termStart(int i) { return i == 0 ? 0 : termEnds[i - 1]; }
+
+    private void ensureTermCapacity(int additional) {
+        if (termsLength + additional > terms.length)
+            terms = Arrays.copyOf(terms, Math.max(terms.length * 2, termsLength + additional));
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Token " + i + " requested in a buffer of " + size + " tokens");
+        return i;
+    }
+
+}
@@ -19,13 +19,23 @@ import java.util.List;
  * @author Mathias Mølster Lidal
  * @author bratseth
  */
-public class SimpleTokenizer implements Tokenizer {
+public class SimpleTokenizer implements StreamingTokenizer {
 
     private final static int SPACE_CODE = 32;
+
+    /** The cache of processed tokens shared by all tokenizers using the simple normalizer and transformer */
+    private static final TokenCache sharedCache = new TokenCache(100000);
+
     private final Normalizer normalizer;
     private final Transformer transformer;
     private final KStemmer stemmer = new KStemmer();
 
+    /** Whether the normalizer and transformer leaves ASCII text unchanged, such that we can skip them for ASCII */
+    private final boolean asciiInvariant;
+
+    /** The cache of processed tokens used by this, or null to process every token */
+    private final TokenCache cache;
+
     public SimpleTokenizer() {
         this(new SimpleNormalizer(), new SimpleTransformer());
     }
@@ -35,10 +45,27 @@ public class SimpleTokenizer implements Tokenizer {
     }
 
     public SimpleTokenizer(Normalizer normalizer, Transformer transformer) {
+        this(normalizer, transformer, isSimple(normalizer, transformer) ? sharedCache : null);
+    }
+
+    /**
+     * Creates a tokenizer using the given cache of processed tokens, or no cache if it is null.
+     * The tokens of the cache must be produced by the given normalizer and transformer.
+     */
+    SimpleTokenizer(Normalizer normalizer, Transformer transformer, TokenCache cache) {
         this.normalizer = normalizer;
         this.transformer = transformer;
+        this.asciiInvariant = isSimple(normalizer, transformer);
+        this.cache = cache;
+    }
+
+    private static boolean isSimple(Normalizer normalizer, Transformer transformer) {
+        return normalizer.getClass() == SimpleNormalizer.class && transformer.getClass() == SimpleTransformer.class;
     }
 
+    /** Returns the cache of processed tokens shared by the tokenizers using the simple normalizer and transformer */
+    public static TokenCache sharedCache() { return sharedCache; }
+
     @Override
     public Iterable<Token> tokenize(String input, Language language, StemMode stemMode, boolean removeAccents) {
         if (input.isEmpty()) return Collections.emptyList();
@@ -63,7 +90,63 @@ public class SimpleTokenizer implements Tokenizer {
         return tokens;
     }
 
+    @Override
+    public void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents, TokenBuffer tokens) {
+        if (input.isEmpty()) return;
+
+        int nextCode = input.codePointAt(0);
+        TokenType prevType = SimpleTokenType.valueOf(nextCode);
+        for (int prev = 0, next = Character.charCount(nextCode); next <= input.length(); ) {
+            nextCode = next < input.length() ? input.codePointAt(next) : SPACE_CODE;
+            TokenType nextType = SimpleTokenType.valueOf(nextCode);
+            if (!prevType.isIndexable() || !nextType.isIndexable()) {
+                processToken(input, prev, next, language, stemMode, removeAccents, tokens);
+                tokens.add(prev, next - prev, prevType);
+                prev = next;
+                prevType = nextType;
+            }
+            next += Character.charCount(nextCode);
+        }
+    }
+
+    /** Appends the token string of the given region of the input to the pending token of the given buffer */
+    private void processToken(String input, int start, int end, Language language, StemMode stemMode,
+                              boolean removeAccents, TokenBuffer tokens) {
+        if (asciiInvariant && isAscii(input, start, end)) { // normalizing and removing accents do nothing
+            for (int i = start; i < end; i++) {
+                char c = input.charAt(i);
+                tokens.append(c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c);
+            }
+            if (stemMode != StemMode.NONE) {
+                CharSequence stem = stemmer.stem(tokens.pendingTermChars(), tokens.pendingTermStart(),
+                                                 tokens.pendingTermLength());
+                if (stem != null)
+                    tokens.replacePendingTerm(stem);
+            }
+        }
+        else {
+            tokens.append(processToken(input.substring(start, end), language, stemMode, removeAccents));
+        }
+    }
+
+    private static boolean isAscii(String input, int start, int end) {
+        for (int i = start; i < end; i++)
+            if (input.charAt(i) >= 128) return false;
+        return true;
+    }
+
     private String processToken(String token, Language language, StemMode stemMode, boolean removeAccents) {
+        if (cache == null) return processUncached(token, language, stemMode, removeAccents);
+
+        String processed = cache.get(token, stemMode, removeAccents);
+        if (processed == null) {
+            processed = processUncached(token, language, stemMode, removeAccents);
+            cache.put(token, stemMode, removeAccents, processed);
+        }
+        return processed;
+    }
+
+    private String processUncached(String token, Language language, StemMode stemMode, boolean removeAccents) {
         token = normalizer.normalize(token);
         token = LinguisticsCase.toLowerCase(token);
         if (removeAccents)
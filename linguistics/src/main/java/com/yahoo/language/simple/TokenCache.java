@@ -0,0 +1,132 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.process.StemMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of processed (normalized, lowercased, accent dropped and stemmed) token strings
+ * by the raw token string they are produced from, which may be shared between tokenizers.
+ * As natural language text is dominated by a small vocabulary, most tokens are found in the cache.
+ * <p>
+ * The cached token strings must not depend on the language of the text, which holds for the
+ * {@link SimpleNormalizer} and {@link SimpleTransformer}. The tokens of each combination of stemming and
+ * accent removal are kept in two generations of half the capacity each. When the current generation is full
+ * it replaces the previous one, which is dropped, and tokens found in the previous generation are moved to
+ * the current one. This evicts the tokens which are not used recently while keeping the frequent ones.
+ * <p>
+ * This is thread safe.
+ */
+public final class TokenCache {
+
+    /** Tokens longer than this are not cached */
+    private static final int maxTokenLength = 64;
+
+    /** The cached tokens, by {@link #indexOf} */
+    private final List<Generations> tokens = new ArrayList<>(4);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Creates a cache holding at most the given number of tokens for each combination of processing options */
+    public TokenCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive, not " + capacity);
+        for (int i = 0; i < 4; i++)
+            tokens.add(new Generations(Math.max(1, capacity / 2)));
+    }
+
+    /** Returns the processed token string of the given raw token, or null if it is not cached */
+    String get(String rawToken, StemMode stemMode, boolean removeAccents) {
+        if (rawToken.length() > maxTokenLength) return null;
+
+        String token = tokens.get(indexOf(stemMode, removeAccents)).get(rawToken);
+        if (token != null)
+            hits.increment();
+        else
+            misses.increment();
+        return token;
+    }
+
+    /** Caches the processed token string of the given raw token */
+    void put(String rawToken, StemMode stemMode, boolean removeAccents, String token) {
+        if (rawToken.length() > maxTokenLength) return;
+
+        tokens.get(indexOf(stemMode, removeAccents)).put(rawToken, token);
+    }
+
+    private static int indexOf(StemMode stemMode, boolean removeAccents) {
+        return (stemMode == StemMode.NONE ? 0 : 2) + (removeAccents ? 1 : 0);
+    }
+
+    /** Returns the number of tokens currently cached */
+    public int size() {
+        int size = 0;
+        for (Generations generations : tokens)
+            size += generations.size();
+        return size;
+    }
+
+    /** Returns the number of lookups which found the token in this */
+    public long getHits() { return hits.sum(); }
+
+    /** Returns the number of lookups which did not find the token in this */
+    public long getMisses() { return misses.sum(); }
+
+    /** Returns the fraction of lookups which found the token in this, or 0 if there have been no lookups */
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double)hits / lookups;
+    }
+
+    /** A current and a previous generation of tokens, each holding at most a given number of tokens */
+    private static final class Generations {
+
+        private final int capacity;
+
+        private volatile Map<String, String> current = new ConcurrentHashMap<>();
+        private volatile Map<String, String> previous = new ConcurrentHashMap<>();
+
+        Generations(int capacity) {
+            this.capacity = capacity;
+        }
+
+        String get(String rawToken) {
+            String token = current.get(rawToken);
+            if (token != null) return token;
+
+            token = previous.get(rawToken);
+            if (token != null)
+                put(rawToken, token);
+            return token;
+        }
+
+        void put(String rawToken, String token) {
+            Map<String, String> current = this.current;
+            if (current.size() >= capacity)
+                current = replace(current);
+            current.put(rawToken, token);
+        }
+
+        /** Makes the given full generation the previous one, unless another thread did so already */
+        private synchronized Map<String, String> replace(Map<String, String> full) {
+            if (current == full) {
+                previous = full;
+                current = new ConcurrentHashMap<>();
+            }
+            return current;
+        }
+
+        int size() {
+            return current.size() + previous.size();
+        }
+
+    }
+
+}
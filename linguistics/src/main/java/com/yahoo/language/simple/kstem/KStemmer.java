@@ -1275,10 +1275,22 @@ public class KStemmer {
   public KStemmer() {}
   
   public String stem(String term) {
-    boolean changed = stem(term.toCharArray(), term.length());
+    boolean changed = stemChars(term.toCharArray(), 0, term.length());
     if (!changed) return term;
     return asString();
   }
+
+  /**
+   * Stems the given region of a char array without copying it to a string.
+   *
+   * @return the stem if it is different from the given term, or null if the term is its own stem.
+   *         The returned sequence is only valid until the next call to this stemmer.
+   */
+  public CharSequence stem(char[] term, int offset, int length) {
+    boolean changed = stemChars(term, offset, length);
+    if (!changed) return null;
+    return asCharSequence();
+  }
   
   /**
    * Returns the result of the stem (assuming the word was changed) as a String.
@@ -1320,7 +1332,7 @@ public class KStemmer {
   /**
    * Stems the text in the token. Returns true if changed.
    */
-  boolean stem(char[] term, int len) {
+  boolean stemChars(char[] term, int off, int len) {
     
     result = null;
     
@@ -1331,7 +1343,7 @@ public class KStemmer {
     
     // first check the stemmer dictionaries, and avoid using the
     // cache if it's in there.
-    DictEntry entry = dict_ht.get(term, 0, len);
+    DictEntry entry = dict_ht.get(term, off, len);
     if (entry != null) {
       if (entry.root != null) {
         result = entry.root;
@@ -1352,7 +1364,7 @@ public class KStemmer {
     // allocate enough space so that an expansion is never needed
     word.reserve(len + 10);
     for (int i = 0; i < len; i++) {
-      char ch = term[i];
+      char ch = term[off + i];
       if (!isAlpha(ch)) return false; // don't stem
       // don't lowercase... it's a requirement that lowercase filter be
       // used before this stemmer.
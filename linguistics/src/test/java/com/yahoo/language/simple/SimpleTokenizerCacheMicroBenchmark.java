@@ -0,0 +1,83 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.Language;
+import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares tokenizing with and without a token cache, for a corpus where words are drawn from
+ * a Zipf distributed vocabulary, as in natural language text, with some capitalized and accented words.
+ */
+public class SimpleTokenizerCacheMicroBenchmark {
+
+    private static final String[] stems = { "run", "walk", "index", "search", "document", "query", "rank", "feed",
+                                            "café", "naïve", "résumé", "über", "token" };
+    private static final String[] suffixes = { "", "s", "ing", "ed", "er", "ers", "ation", "ly" };
+
+    private static List<String> createVocabulary(int size) {
+        Random random = new Random(1);
+        List<String> words = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String word = stems[random.nextInt(stems.length)] + (char)('a' + i % 26) + (i / 26) +
+                          suffixes[random.nextInt(suffixes.length)];
+            words.add(random.nextInt(10) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return words;
+    }
+
+    /** Returns documents of words drawn from the vocabulary with probabilities proportional to 1/rank */
+    private static List<String> createCorpus(List<String> vocabulary, int documents, int wordsPerDocument) {
+        double[] cumulative = new double[vocabulary.size()];
+        double sum = 0;
+        for (int i = 0; i < cumulative.length; i++)
+            cumulative[i] = sum += 1.0 / (i + 1);
+
+        Random random = new Random(2);
+        List<String> corpus = new ArrayList<>(documents);
+        for (int d = 0; d < documents; d++) {
+            StringBuilder document = new StringBuilder();
+            for (int w = 0; w < wordsPerDocument; w++) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                document.append(vocabulary.get(index < 0 ? -index - 1 : index));
+                document.append(w % 12 == 11 ? ". " : " ");
+            }
+            corpus.add(document.toString());
+        }
+        return corpus;
+    }
+
+    private static long tokenizeAll(List<String> corpus, SimpleTokenizer tokenizer) {
+        long tokens = 0;
+        for (String document : corpus)
+            for (Token token : tokenizer.tokenize(document, Language.ENGLISH, StemMode.SHORTEST, true))
+                tokens++;
+        return tokens;
+    }
+
+    public static void main(String[] args) {
+        List<String> corpus = createCorpus(createVocabulary(50000), 10000, 200);
+        TokenCache cache = new TokenCache(100000);
+        SimpleTokenizer uncached = new SimpleTokenizer(new SimpleNormalizer(), new SimpleTransformer(), null);
+        SimpleTokenizer cached = new SimpleTokenizer(new SimpleNormalizer(), new SimpleTransformer(), cache);
+        for (int run = 0; run < 3; run++) {
+            long startTime = System.currentTimeMillis();
+            long tokens = tokenizeAll(corpus, uncached);
+            long uncachedTime = Math.max(1, System.currentTimeMillis() - startTime);
+            startTime = System.currentTimeMillis();
+            tokenizeAll(corpus, cached);
+            long cachedTime = Math.max(1, System.currentTimeMillis() - startTime);
+            System.out.println("Tokenizing " + tokens + " tokens: " +
+                               (tokens * 1000 / uncachedTime) + " tokens/s without cache, " +
+                               (tokens * 1000 / cachedTime) + " tokens/s with cache (" +
+                               cache.getHits() + " hits, " + cache.getMisses() + " misses, " +
+                               cache.size() + " cached)");
+        }
+    }
+
+}
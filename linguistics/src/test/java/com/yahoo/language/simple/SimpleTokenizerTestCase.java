@@ -1,10 +1,17 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.language.simple;
 
+import com.yahoo.language.Language;
 import com.yahoo.language.process.AbstractTokenizerTestCase;
 import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
+import com.yahoo.language.process.TokenBuffer;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @author bratseth
@@ -33,4 +40,72 @@ public class SimpleTokenizerTestCase extends AbstractTokenizerTestCase {
                             " ", "gods", ".", "running", ")");
     }
 
+    @Test
+    public void testStreamingTokenizingGivesTheSameTokens() {
+        String input = "a\u030a tralalala n4lle. \uD800\uDFC8 (old Persian sign Auramazda, sorry if " +
+                       "anyone 1s offended by ancien7 gods.Running) Ærøskøbing, Café Über-STATIONS";
+        SimpleTokenizer tokenizer = new SimpleTokenizer();
+        TokenBuffer buffer = new TokenBuffer();
+        for (StemMode stemMode : StemMode.values()) {
+            for (boolean removeAccents : new boolean[] { false, true }) {
+                buffer.clear();
+                tokenizer.tokenize(input, Language.ENGLISH, stemMode, removeAccents, buffer);
+                int i = 0;
+                for (Token token : tokenizer.tokenize(input, Language.ENGLISH, stemMode, removeAccents)) {
+                    assertEquals(token.getOffset(), buffer.offset(i));
+                    assertEquals(token.getOrig().length(), buffer.length(i));
+                    assertEquals(token.getType(), buffer.type(i));
+                    assertEquals(token.getTokenString(), buffer.term(i));
+                    i++;
+                }
+                assertEquals(i, buffer.size());
+            }
+        }
+    }
+
+    @Test
+    public void testCachedTokenizingGivesTheSameTokens() {
+        String input = "a\u030a tralalala n4lle. (old Persian sign Auramazda, sorry if anyone 1s offended " +
+                       "by ancien7 gods.Running) Ærøskøbing, Café Über-STATIONS running Running running";
+        TokenCache cache = new TokenCache(1000);
+        SimpleTokenizer cached = new SimpleTokenizer(new SimpleNormalizer(), new SimpleTransformer(), cache);
+        SimpleTokenizer uncached = new SimpleTokenizer(new SimpleNormalizer(), new SimpleTransformer(), null);
+        for (int pass = 0; pass < 2; pass++) {
+            for (StemMode stemMode : StemMode.values()) {
+                for (boolean removeAccents : new boolean[] { false, true }) {
+                    assertEquals(toString(uncached.tokenize(input, Language.ENGLISH, stemMode, removeAccents)),
+                                 toString(cached.tokenize(input, Language.ENGLISH, stemMode, removeAccents)));
+                }
+            }
+        }
+        assertTrue("Repeated tokens are found in the cache: " + cache.getHitRate(), cache.getHitRate() > 0.5);
+    }
+
+    @Test
+    public void testTokenCacheIsBoundedAndKeepsRecentlyUsedTokens() {
+        TokenCache cache = new TokenCache(4);
+        for (String token : new String[] { "a", "b", "c", "d" })
+            cache.put(token, StemMode.NONE, false, token);
+        cache.put("x", StemMode.ALL, true, "x");
+        assertEquals(5, cache.size());
+        assertEquals("a", cache.get("a", StemMode.NONE, false));
+        assertNull(cache.get("a", StemMode.ALL, false));
+
+        cache.put("e", StemMode.NONE, false, "e");
+        cache.put("f", StemMode.NONE, false, "f");
+        assertEquals("a", cache.get("a", StemMode.NONE, false));
+        assertNull(cache.get("b", StemMode.NONE, false));
+        assertNull(cache.get("c", StemMode.NONE, false));
+        assertEquals("f", cache.get("f", StemMode.NONE, false));
+        assertEquals("x", cache.get("x", StemMode.ALL, true));
+        assertTrue(cache.size() <= 4 + 1);
+    }
+
+    private static String toString(Iterable<Token> tokens) {
+        StringBuilder b = new StringBuilder();
+        for (Token token : tokens)
+            b.append(token.getOffset()).append(':').append(token.getTokenString()).append(' ');
+        return b.toString();
+    }
+
 }
@@ -0,0 +1,400 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.yahoo.io.FatalErrorHandler;
+import com.yahoo.log.LogLevel;
+import com.yahoo.log.LogMessage;
+import com.yahoo.log.event.Event;
+import com.yahoo.logserver.handlers.LogHandler;
+
+/**
+ * A LogDispatcher which puts incoming messages into a ring buffer
+ * instead of calling the handlers inline.  Each registered handler
+ * has its own consumer thread which reads batches of messages from
+ * the ring buffer, so a slow handler does not hold up the others or
+ * the threads reading log messages from the network.
+ * <p>
+ * The number of messages a handler may lag behind is bounded by the
+ * size of the ring buffer.  What happens when a handler falls that far
+ * behind is decided by its {@link OverflowPolicy}.
+ * <p>
+ * There is a single producer at any time: {@link #handle(LogMessage)}
+ * is synchronized, but it only blocks when a handler with the
+ * {@link OverflowPolicy#BLOCK} policy is full.
+ */
+public class AsyncLogDispatcher extends LogDispatcher {
+    private static final Logger log = Logger.getLogger(AsyncLogDispatcher.class.getName());
+
+    public static final int DEFAULT_RINGSIZE = 1 << 16;
+    private static final int maxBatchSize = 5000;
+    private static final long flushTimeoutMillis = 5000;
+    private static final long metricsIntervalMillis = 60000;
+
+    /**
+     * What to do when a handler lags so much behind that
+     * unconsumed messages would be overwritten.
+     */
+    public enum OverflowPolicy {
+        /** Wait for the handler to catch up before accepting more messages */
+        BLOCK,
+        /** Let the handler skip the oldest messages it has not consumed */
+        DROP
+    }
+
+    private static final AtomicInteger consumerCount = new AtomicInteger(0);
+
+    private final AtomicReferenceArray<LogMessage> ring;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong(0);
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private FatalErrorHandler fatalErrorHandler;
+    private boolean hasBeenShutDown = false;
+    private long lastMetricsEmit = System.currentTimeMillis();
+
+    public AsyncLogDispatcher() {
+        this(DEFAULT_RINGSIZE);
+    }
+
+    /**
+     * @param ringSize the number of messages a handler may lag
+     *                 behind, rounded up to a power of two
+     */
+    public AsyncLogDispatcher(int ringSize) {
+        int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public synchronized void setFatalErrorHandler(FatalErrorHandler fatalErrorHandler) {
+        this.fatalErrorHandler = fatalErrorHandler;
+    }
+
+    /**
+     * Publishes a message to all the registered handlers.
+     *
+     * @param msg The LogMessage instance we wish to dispatch
+     */
+    @Override
+    public synchronized void handle(LogMessage msg) {
+        if (msg == null) {
+            throw new NullPointerException("LogMessage was null");
+        }
+        long sequence = published.get();
+        for (Consumer consumer : consumers) {
+            consumer.awaitCapacity(sequence);
+        }
+        ring.set((int) sequence & mask, msg);
+        published.lazySet(sequence + 1);
+    }
+
+    /** Batching is what this dispatcher always does, so this is ignored */
+    @Override
+    public void setBatchedMode(boolean batchedMode) {
+    }
+
+    /**
+     * Waits (within reason) for all handlers to consume the messages
+     * published so far, and then has each handler flushed by its own
+     * thread.
+     */
+    @Override
+    public void flush() {
+        long target = published.get();
+        long deadline = System.currentTimeMillis() + flushTimeoutMillis;
+        for (Consumer consumer : consumers) {
+            consumer.requestFlush(target);
+        }
+        for (Consumer consumer : consumers) {
+            if (! consumer.awaitFlush(target, deadline)) {
+                log.log(LogLevel.DEBUG, "Timed out waiting for " + consumer.handler + " to flush");
+            }
+        }
+    }
+
+    /**
+     * Stops all consumer threads.  Each consumer handles the messages
+     * it has not yet consumed and then closes its handler, like the
+     * handler threads of {@link LogDispatcher} did on shutdown.
+     */
+    @Override
+    public synchronized void close() {
+        if (hasBeenShutDown) {
+            throw new IllegalStateException("Shutdown already in progress");
+        }
+        hasBeenShutDown = true;
+        for (Consumer consumer : consumers) {
+            consumer.shutdown();
+            log.fine("Closing handler " + consumer.handler);
+            consumer.handler.close();
+        }
+        consumers.clear();
+        log.log(LogLevel.DEBUG, "Logdispatcher shut down.  Handled " + published.get() + " messages");
+    }
+
+    /**
+     * Register a handler with the {@link OverflowPolicy#BLOCK} policy.
+     */
+    @Override
+    public void registerLogHandler(LogHandler handler) {
+        registerLogHandler(handler, handler.toString(), OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Register a handler which will consume messages in a thread
+     * of its own.  The handler will only see messages published
+     * after registration.
+     *
+     * @param handler    the handler to register
+     * @param threadName name of the consumer thread
+     * @param policy     what to do when the handler lags too much behind
+     */
+    public synchronized void registerLogHandler(LogHandler handler, String threadName, OverflowPolicy policy) {
+        if (hasBeenShutDown) {
+            throw new IllegalStateException("Tried to register LogHandler on" +
+                                                    " LogDispatcher which was shut down");
+        }
+        if (findConsumer(handler) != null) {
+            log.warning("LogHandler was already registered: " + handler);
+            return;
+        }
+        Consumer consumer = new Consumer(handler, threadName, policy, published.get());
+        consumers.add(consumer);
+        consumer.start();
+        log.fine("Added and started LogHandler " + handler + " with policy " + policy);
+    }
+
+    /**
+     * Unregister a handler.  Messages it has not yet consumed are
+     * handled before this returns.  The handler is not closed; that
+     * is up to whoever registered it.
+     */
+    public synchronized void unregisterLogHandler(LogHandler handler) {
+        Consumer consumer = findConsumer(handler);
+        if (consumer != null) {
+            consumers.remove(consumer);
+            consumer.shutdown();
+        }
+    }
+
+    private Consumer findConsumer(LogHandler handler) {
+        for (Consumer consumer : consumers) {
+            if (consumer.handler == handler) {
+                return consumer;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public LogHandler[] getLogHandlers() {
+        List<LogHandler> handlers = new ArrayList<>();
+        for (Consumer consumer : consumers) {
+            handlers.add(consumer.handler);
+        }
+        return handlers.toArray(new LogHandler[handlers.size()]);
+    }
+
+    @Override
+    public int getMessageCount() {
+        return (int) published.get();
+    }
+
+    /**
+     * Return the number of messages the given handler has yet to consume,
+     * or -1 if it is not registered.
+     */
+    public long getQueueDepth(LogHandler handler) {
+        Consumer consumer = findConsumer(handler);
+        return consumer == null ? -1 : published.get() - consumer.sequence.get();
+    }
+
+    /**
+     * Return the number of messages handled by the given handler,
+     * or -1 if it is not registered.
+     */
+    public long getHandledCount(LogHandler handler) {
+        Consumer consumer = findConsumer(handler);
+        return consumer == null ? -1 : consumer.handled.get();
+    }
+
+    /**
+     * Return the number of messages the given handler has skipped
+     * because it lagged too much behind, or -1 if it is not registered.
+     */
+    public long getDroppedCount(LogHandler handler) {
+        Consumer consumer = findConsumer(handler);
+        return consumer == null ? -1 : consumer.dropped.get();
+    }
+
+    /**
+     * Emits queue depth and throughput of each handler as events,
+     * at most once every minute.
+     */
+    @Override
+    public void selectLoopHook(boolean before) {
+        long now = System.currentTimeMillis();
+        if (now - lastMetricsEmit < metricsIntervalMillis) {
+            return;
+        }
+        double seconds = (now - lastMetricsEmit) / 1000.0;
+        lastMetricsEmit = now;
+        for (Consumer consumer : consumers) {
+            consumer.emitMetrics(seconds);
+        }
+    }
+
+    private synchronized FatalErrorHandler fatalErrorHandler() {
+        return fatalErrorHandler;
+    }
+
+    /**
+     * Reads messages for one handler from the ring buffer.
+     */
+    private class Consumer extends Thread {
+        final LogHandler handler;
+        final OverflowPolicy policy;
+        final String metricPrefix;
+        final AtomicLong sequence;
+        final AtomicLong handled = new AtomicLong(0);
+        final AtomicLong dropped = new AtomicLong(0);
+        final AtomicLong flushRequested = new AtomicLong(-1);
+        final AtomicLong flushed = new AtomicLong(-1);
+        private volatile boolean running = true;
+        private long handledAtLastEmit = 0;
+
+        Consumer(LogHandler handler, String threadName, OverflowPolicy policy, long startSequence) {
+            super(threadName);
+            setDaemon(true);
+            this.handler = handler;
+            this.policy = policy;
+            this.metricPrefix = "logserver.dispatch." + threadName.replace(' ', '_') + "." + consumerCount.incrementAndGet();
+            this.sequence = new AtomicLong(startSequence);
+        }
+
+        /** Called by the producer before overwriting the slot of sequence - ring.length */
+        void awaitCapacity(long nextSequence) {
+            if (policy != OverflowPolicy.BLOCK) {
+                return;
+            }
+            while (running && isAlive() && nextSequence - sequence.get() >= ring.length()) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+
+        void requestFlush(long target) {
+            flushRequested.accumulateAndGet(target, Math::max);
+        }
+
+        boolean awaitFlush(long target, long deadline) {
+            while (flushed.get() < target) {
+                if ( ! isAlive() || System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return true;
+        }
+
+        void shutdown() {
+            running = false;
+            try {
+                join(flushTimeoutMillis);
+            } catch (InterruptedException e) {
+                // NOP
+            }
+        }
+
+        void emitMetrics(double seconds) {
+            long handledNow = handled.get();
+            Event.value(metricPrefix + ".queuedepth", published.get() - sequence.get());
+            Event.value(metricPrefix + ".rate", (handledNow - handledAtLastEmit) / seconds);
+            Event.count(metricPrefix + ".handled", handledNow);
+            Event.count(metricPrefix + ".dropped", dropped.get());
+            handledAtLastEmit = handledNow;
+        }
+
+        public void run() {
+            try {
+                boolean more = true;
+                while (running || more) {
+                    more = consumeBatch();
+                    if ( ! more) {
+                        flushIfRequested();
+                        if (running) {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                        }
+                    }
+                }
+                flushIfRequested();
+            } catch (Throwable t) {
+                FatalErrorHandler errorHandler = fatalErrorHandler();
+                if (errorHandler != null) {
+                    errorHandler.handle(t, null);
+                } else {
+                    log.log(LogLevel.ERROR, "Handler " + handler + " failed", t);
+                }
+            } finally {
+                log.fine("Consumer thread " + getName() + " exiting");
+            }
+        }
+
+        /**
+         * Hands the next batch of published messages to the handler.
+         *
+         * @return true if there were any messages to consume
+         */
+        private boolean consumeBatch() {
+            long start = sequence.get();
+            long end = Math.min(published.get(), start + maxBatchSize);
+            if (end == start) {
+                return false;
+            }
+            List<LogMessage> batch = new ArrayList<>((int) (end - start));
+            for (long s = start; s < end; s++) {
+                batch.add(ring.get((int) s & mask));
+            }
+            if (policy == OverflowPolicy.DROP) {
+                // The producer may have overwritten the oldest entries while we were reading them.
+                // The slots are read as volatiles, so a slot we saw overwritten is covered by the
+                // published sequence read below. The slot of the sequence currently being published
+                // is also considered overwritten.
+                long oldestValid = published.get() - ring.length() + 1;
+                if (oldestValid > start) {
+                    int skipped = (int) Math.min(oldestValid - start, batch.size());
+                    batch.subList(0, skipped).clear();
+                    dropped.addAndGet(skipped);
+                    if (batch.isEmpty()) {
+                        sequence.set(oldestValid);
+                        return true;
+                    }
+                }
+            }
+            sequence.set(end);
+            handler.handle(batch);
+            handled.addAndGet(batch.size());
+            return true;
+        }
+
+        private void flushIfRequested() {
+            long target = flushRequested.get();
+            if (target > flushed.get() && sequence.get() >= target) {
+                handler.flush();
+                flushed.accumulateAndGet(target, Math::max);
+            }
+        }
+
+        public String toString() {
+            return "consumer " + getName() + " for " + handler;
+        }
+    }
+}
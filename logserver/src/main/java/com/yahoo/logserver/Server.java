@@ -6,7 +6,7 @@ import com.yahoo.io.Listener;
 import com.yahoo.log.LogLevel;
 import com.yahoo.log.LogSetup;
 import com.yahoo.log.event.Event;
-import com.yahoo.logserver.handlers.HandlerThread;
+import com.yahoo.logserver.AsyncLogDispatcher.OverflowPolicy;
 import com.yahoo.logserver.handlers.LogHandler;
 import com.yahoo.logserver.net.LogConnectionFactory;
 import com.yahoo.logserver.net.control.Levels;
@@ -33,7 +33,6 @@ public class Server implements Runnable {
     private static final Server instance = new Server();
     private static final Logger log = Logger.getLogger(Server.class.getName());
     private static final FatalErrorHandler fatalErrorHandler = new FatalErrorHandler();
-    private static final HashMap<String, HandlerThread> handlerThreads = new HashMap<>();
     private static final HashMap<LogHandler, String> threadNameForHandler = new HashMap<>();
 
     static {
@@ -46,7 +45,7 @@ public class Server implements Runnable {
 
     private int listenPort;
     private Listener listener;
-    private final LogDispatcher dispatch;
+    private final AsyncLogDispatcher dispatch;
 
     private final boolean isInitialized;
 
@@ -54,25 +53,22 @@ public class Server implements Runnable {
      * Server constructor
      */
     private Server() {
-        dispatch = new LogDispatcher();
-        dispatch.setBatchedMode(true);
+        dispatch = new AsyncLogDispatcher(ringSize());
         isInitialized = false;
     }
 
-    public static Server getInstance() {
-        return instance;
+    /**
+     * The ring size is set by logserver.ring.size, or else by the
+     * logserver.queue.size setting of the old handler thread queues.
+     */
+    private static int ringSize() {
+        Integer queueSize = Integer.getInteger(APPNAME + ".queue.size");
+        return Integer.getInteger(APPNAME + ".ring.size",
+                                  queueSize != null ? queueSize : AsyncLogDispatcher.DEFAULT_RINGSIZE);
     }
 
-    private HandlerThread getHandlerThread(String threadName) {
-        threadName += " handler thread";
-        HandlerThread ht = handlerThreads.get(threadName);
-        if (ht == null) {
-            ht = new HandlerThread(threadName);
-            handlerThreads.put(threadName, ht);
-            ht.setFatalErrorHandler(fatalErrorHandler);
-            dispatch.registerLogHandler(ht);
-        }
-        return ht;
+    public static Server getInstance() {
+        return instance;
     }
 
     public void registerPluginLoader(PluginLoader loader) {
@@ -80,8 +76,17 @@ public class Server implements Runnable {
     }
 
     public void registerLogHandler(LogHandler lh, String threadName) {
-        HandlerThread ht = getHandlerThread(threadName);
-        ht.registerHandler(lh);
+        registerLogHandler(lh, threadName, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Register a handler which will consume log messages in a thread
+     * of its own.
+     *
+     * @param policy what to do if the handler cannot keep up
+     */
+    public void registerLogHandler(LogHandler lh, String threadName, OverflowPolicy policy) {
+        dispatch.registerLogHandler(lh, threadName + " handler thread", policy);
         threadNameForHandler.put(lh, threadName);
     }
 
@@ -91,8 +96,7 @@ public class Server implements Runnable {
     }
 
     public void unregisterLogHandler(LogHandler lh, String threadName) {
-        HandlerThread ht = getHandlerThread(threadName);
-        ht.unregisterHandler(lh);
+        dispatch.unregisterLogHandler(lh);
         threadNameForHandler.remove(lh);
     }
 
@@ -119,6 +123,7 @@ public class Server implements Runnable {
         }
 
         this.listenPort = listenPort;
+        dispatch.setFatalErrorHandler(fatalErrorHandler);
 
         // plugins
         registerPluginLoader(new BuiltinPluginLoader());
@@ -181,7 +186,8 @@ public class Server implements Runnable {
         System.out.println();
         System.out.println("System properties:");
         System.out.println(" - " + APPNAME + ".listenport (" + LISTEN_PORT + ")");
-        System.out.println(" - " + APPNAME + ".queue.size (" + HandlerThread.DEFAULT_QUEUESIZE + ")");
+        System.out.println(" - " + APPNAME + ".ring.size (" + AsyncLogDispatcher.DEFAULT_RINGSIZE + ")");
+        System.out.println(" - " + APPNAME + ".queue.size (used as ring size if " + APPNAME + ".ring.size is not set)");
         System.out.println(" - logserver.default.loglevels (" + (new Levels()).toString() + ")");
         System.out.println();
     }
@@ -0,0 +1,18 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import com.yahoo.log.LogMessage;
+
+/**
+ * Writes the log messages of one time slot of the archive,
+ * see {@link ArchiverHandler}.
+ */
+public interface ArchiveWriter extends Closeable, Flushable {
+
+    void write(LogMessage msg) throws IOException;
+
+}
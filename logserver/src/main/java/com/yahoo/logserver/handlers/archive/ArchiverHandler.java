@@ -28,6 +28,10 @@ import com.yahoo.logserver.handlers.AbstractLogHandler;
  * This class is not thread safe.
  * </p>
  * <p>
+ * Optionally the archive files are compressed on the fly, see
+ * {@link CompressedLogWriter}.
+ * </p>
+ * <p>
  * TODO:
  * </p>
  * <ul>
@@ -73,6 +77,11 @@ public class ArchiverHandler extends AbstractLogHandler {
      */
     private int maxFileSize;
 
+    /**
+     * Whether to write compressed, indexed archive files
+     */
+    private boolean compress = false;
+
     /**
      * Calendar instance for operating on Date objects
      */
@@ -84,8 +93,8 @@ public class ArchiverHandler extends AbstractLogHandler {
     private final SimpleDateFormat dateformat;
 
     /**
-     * This is an LRU cache for LogWriter objects.  Remember that
-     * we have one LogWriter for each time slot
+     * This is an LRU cache for ArchiveWriter objects.  Remember that
+     * we have one ArchiveWriter for each time slot
      */
     private final LogWriterLRUCache logWriterLRUCache;
 
@@ -121,24 +130,35 @@ public class ArchiverHandler extends AbstractLogHandler {
      * the given root directory.
      */
     public ArchiverHandler(String rootDir, int maxFileSize) {
+        this(rootDir, maxFileSize, false);
+    }
+
+    /**
+     * Creates an ArchiverHandler which puts files under
+     * the given root directory, compressing them if
+     * <code>compress</code> is set.
+     */
+    public ArchiverHandler(String rootDir, int maxFileSize, boolean compress) {
         this();
         setRootDir(rootDir);
         this.maxFileSize = maxFileSize;
+        this.compress = compress;
     }
 
 
     /**
-     * Return the appropriate LogWriter given a log message.
+     * Return the appropriate ArchiveWriter given a log message.
      */
-    private synchronized LogWriter getLogWriter(LogMessage m) throws IOException {
+    private synchronized ArchiveWriter getLogWriter(LogMessage m) throws IOException {
         Integer slot = dateHash(m.getTime());
-        LogWriter logWriter = logWriterLRUCache.get(slot);
+        ArchiveWriter logWriter = logWriterLRUCache.get(slot);
         if (logWriter != null) {
             return logWriter;
         }
 
-        // invariant: LogWriter we sought was not in the cache
-        logWriter = new LogWriter(getPrefix(m), maxFileSize);
+        // invariant: ArchiveWriter we sought was not in the cache
+        logWriter = compress ? new CompressedLogWriter(getPrefix(m), maxFileSize)
+                             : new LogWriter(getPrefix(m), maxFileSize);
         logWriterLRUCache.put(slot, logWriter);
 
         return logWriter;
@@ -196,10 +216,14 @@ public class ArchiverHandler extends AbstractLogHandler {
         return result.toString();
     }
 
-    public boolean doHandle(LogMessage msg) {
+    /**
+     * Writes the message while holding the same lock as {@link #flush()}
+     * and {@link #close()}, as the log writers are not thread-safe.
+     */
+    public synchronized boolean doHandle(LogMessage msg) {
         try {
-            LogWriter logWriter = getLogWriter(msg);
-            logWriter.write(msg.toString());
+            ArchiveWriter logWriter = getLogWriter(msg);
+            logWriter.write(msg);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -207,7 +231,7 @@ public class ArchiverHandler extends AbstractLogHandler {
     }
 
     public synchronized void flush() {
-        for (LogWriter l : logWriterLRUCache.values()) {
+        for (ArchiveWriter l : logWriterLRUCache.values()) {
             try {
                 l.flush();
             } catch (IOException e) {
@@ -217,9 +241,9 @@ public class ArchiverHandler extends AbstractLogHandler {
     }
 
     public synchronized void close() {
-        Iterator<LogWriter> it = logWriterLRUCache.values().iterator();
+        Iterator<ArchiveWriter> it = logWriterLRUCache.values().iterator();
         while (it.hasNext()) {
-            LogWriter l = it.next();
+            ArchiveWriter l = it.next();
             try {
                 l.close();
             } catch (IOException e) {
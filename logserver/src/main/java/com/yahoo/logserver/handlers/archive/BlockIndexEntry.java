@@ -0,0 +1,142 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.log.LogLevel;
+
+/**
+ * Describes one compressed block of log messages in a compressed
+ * log archive file: where it is, how big it is, and which time
+ * interval, services and log levels it contains.  The index file
+ * next to each archive file is a sequence of these entries, which
+ * lets readers skip blocks they are not interested in without
+ * decompressing them.
+ *
+ * @see CompressedLogWriter
+ * @see LogArchiveQuery
+ */
+public class BlockIndexEntry {
+
+    /** The max number of distinct services recorded per block, blocks with more match any service */
+    static final int MAX_SERVICES = 64;
+
+    private static final String[] levelNames = {
+            "fatal", "error", "warning", "config", "info", "event", "debug", "spam"
+    };
+    private static final int UNKNOWN_LEVEL_BIT = levelNames.length;
+
+    private final long offset;
+    private final CompressionType compression;
+    private final int compressedSize;
+    private final int uncompressedSize;
+    private final int messageCount;
+    private final long firstTime;
+    private final long lastTime;
+    private final int levelMask;
+    private final Set<String> services;
+
+    /**
+     * @param services the services in this block, or null if there
+     *                 were too many to record
+     */
+    public BlockIndexEntry(long offset, CompressionType compression, int compressedSize, int uncompressedSize,
+                           int messageCount, long firstTime, long lastTime, int levelMask, Set<String> services) {
+        this.offset = offset;
+        this.compression = compression;
+        this.compressedSize = compressedSize;
+        this.uncompressedSize = uncompressedSize;
+        this.messageCount = messageCount;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+        this.levelMask = levelMask;
+        this.services = services == null ? null : Collections.unmodifiableSet(new TreeSet<>(services));
+    }
+
+    public long getOffset() { return offset; }
+    public CompressionType getCompression() { return compression; }
+    public int getCompressedSize() { return compressedSize; }
+    public int getUncompressedSize() { return uncompressedSize; }
+    public int getMessageCount() { return messageCount; }
+    public long getFirstTime() { return firstTime; }
+    public long getLastTime() { return lastTime; }
+
+    /** Returns whether this block may contain messages in the given time interval, in milliseconds, inclusive */
+    public boolean overlaps(long fromTime, long toTime) {
+        return firstTime <= toTime && lastTime >= fromTime;
+    }
+
+    /** Returns whether this block may contain messages from the given service */
+    public boolean mayContainService(String service) {
+        return services == null || services.contains(service);
+    }
+
+    /** Returns whether this block may contain messages with the given level */
+    public boolean mayContainLevel(Level level) {
+        return (levelMask & levelBit(level)) != 0;
+    }
+
+    /** Returns the bit representing the given level in the level mask of an entry */
+    static int levelBit(Level level) {
+        String name = LogLevel.getVespaLogLevel(level).getName().toLowerCase();
+        for (int i = 0; i < levelNames.length; i++) {
+            if (levelNames[i].equals(name)) {
+                return 1 << i;
+            }
+        }
+        return 1 << UNKNOWN_LEVEL_BIT;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(offset);
+        out.writeByte(compression.getCode());
+        out.writeInt(compressedSize);
+        out.writeInt(uncompressedSize);
+        out.writeInt(messageCount);
+        out.writeLong(firstTime);
+        out.writeLong(lastTime);
+        out.writeInt(levelMask);
+        if (services == null) {
+            out.writeShort(-1);
+        } else {
+            out.writeShort(services.size());
+            for (String service : services) {
+                out.writeUTF(service);
+            }
+        }
+    }
+
+    public static BlockIndexEntry read(DataInput in) throws IOException {
+        long offset = in.readLong();
+        CompressionType compression = CompressionType.valueOf(in.readByte());
+        int compressedSize = in.readInt();
+        int uncompressedSize = in.readInt();
+        int messageCount = in.readInt();
+        long firstTime = in.readLong();
+        long lastTime = in.readLong();
+        int levelMask = in.readInt();
+        int serviceCount = in.readShort();
+        Set<String> services = null;
+        if (serviceCount >= 0) {
+            services = new TreeSet<>();
+            for (int i = 0; i < serviceCount; i++) {
+                services.add(in.readUTF());
+            }
+        }
+        return new BlockIndexEntry(offset, compression, compressedSize, uncompressedSize,
+                                   messageCount, firstTime, lastTime, levelMask, services);
+    }
+
+    public String toString() {
+        return "block at " + offset + ": " + messageCount + " messages, "
+                + uncompressedSize + " -> " + compressedSize + " bytes, time "
+                + firstTime + "-" + lastTime;
+    }
+}
@@ -0,0 +1,248 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.log.InvalidLogFormatException;
+import com.yahoo.log.LogLevel;
+import com.yahoo.log.LogMessage;
+import com.yahoo.text.Utf8;
+
+/**
+ * An ArchiveWriter which collects log messages into blocks, compresses
+ * each block with LZ4 and appends it to the archive file.  For each
+ * block an {@link BlockIndexEntry} describing it is appended to an
+ * index file next to the archive file, so that the archive can be
+ * searched without decompressing all of it (see {@link LogArchiveQuery}).
+ * <p>
+ * Each block in the archive file is preceded by a header of
+ * {@link #BLOCK_MAGIC}, the compression type code, and the
+ * uncompressed and compressed sizes, so the archive file can also
+ * be read without its index.
+ * <p>
+ * Blocks are written when they are full or when the writer is closed.
+ * {@link #flush()} only writes out a partial block when it has been open
+ * for at least the max block age, so periodic flushing does not fill the
+ * archive with tiny blocks.  This is a durability trade-off: messages in
+ * the open block are in memory only, so a crash loses up to the max block
+ * age (plus the flush interval) of messages.  A lower age loses less but
+ * writes smaller blocks, which compress worse and make the index larger.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class CompressedLogWriter implements ArchiveWriter {
+    private static final Logger log = Logger.getLogger(CompressedLogWriter.class.getName());
+
+    public static final String SUFFIX = ".lz4b";
+    public static final String INDEX_SUFFIX = ".idx";
+    public static final int BLOCK_MAGIC = 0x4c4f4742; // "LOGB"
+    public static final int BLOCK_HEADER_SIZE = 4 + 1 + 4 + 4;
+    public static final int DEFAULT_BLOCKSIZE = 256 * 1024;
+    public static final long DEFAULT_MAX_BLOCK_AGE_MILLIS = 10 * 1000;
+
+    private final String prefix;
+    private final int maxSize;
+    private final int blockSize;
+    private final long maxBlockAgeMillis;
+    private final int resumeLimitSize;
+    private final Compressor compressor = new Compressor(CompressionType.LZ4, 6, 0.95, 0);
+
+    private int generation = 0;
+    private File currentFile;
+    private OutputStream data;
+    private DataOutputStream index;
+    private long bytesWritten = 0;
+
+    private final ByteArrayOutputStream block;
+    private int messageCount = 0;
+    private long blockStartMillis = 0;
+    private long firstTime = Long.MAX_VALUE;
+    private long lastTime = Long.MIN_VALUE;
+    private int levelMask = 0;
+    private Set<String> services = new TreeSet<>();
+
+    /**
+     * @param prefix    prefix of archive file names
+     * @param maxSize   the size in compressed bytes after which the
+     *                  archive file is rotated
+     * @param blockSize the number of uncompressed bytes to put in
+     *                  each block
+     * @param maxBlockAgeMillis how long a partial block may be kept
+     *                  in memory before it is written on flush
+     */
+    public CompressedLogWriter(String prefix, int maxSize, int blockSize, long maxBlockAgeMillis) {
+        this.prefix = prefix;
+        this.maxSize = maxSize;
+        this.blockSize = blockSize;
+        this.maxBlockAgeMillis = maxBlockAgeMillis;
+        this.resumeLimitSize = maxSize / 100 * 95;
+        this.block = new ByteArrayOutputStream(blockSize + blockSize / 8);
+    }
+
+    public CompressedLogWriter(String prefix, int maxSize, int blockSize) {
+        this(prefix, maxSize, blockSize, DEFAULT_MAX_BLOCK_AGE_MILLIS);
+    }
+
+    public CompressedLogWriter(String prefix, int maxSize) {
+        this(prefix, maxSize, DEFAULT_BLOCKSIZE);
+    }
+
+    @Override
+    public void write(LogMessage msg) throws IOException {
+        byte[] bytes = Utf8.toBytes(msg.toString());
+        if (messageCount > 0 && block.size() + bytes.length > blockSize) {
+            writeBlock();
+        }
+        if (messageCount == 0) {
+            blockStartMillis = System.currentTimeMillis();
+        }
+        block.write(bytes);
+        messageCount++;
+        firstTime = Math.min(firstTime, msg.getTime());
+        lastTime = Math.max(lastTime, msg.getTime());
+        levelMask |= BlockIndexEntry.levelBit(msg.getLevel());
+        if (services != null) {
+            services.add(msg.getService());
+            if (services.size() > BlockIndexEntry.MAX_SERVICES) {
+                services = null;
+            }
+        }
+        if (block.size() >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes log messages given in native format, one per line.  The
+     * lines are parsed as the index needs the fields of each message,
+     * so prefer {@link #write(LogMessage)} when the message is at hand.
+     *
+     * @throws IOException if a line is not a valid log message
+     */
+    public void write(String str) throws IOException {
+        for (String line : str.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                write(LogMessage.parseNativeFormat(line));
+            } catch (InvalidLogFormatException e) {
+                throw new IOException("Not a valid log message: " + line, e);
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (messageCount == 0) {
+            return;
+        }
+        if (data == null) {
+            nextFiles();
+        }
+
+        Compressor.Compression compressed = compressor.compress(block.toByteArray());
+        BlockIndexEntry entry = new BlockIndexEntry(bytesWritten, compressed.type(), compressed.data().length,
+                                                    block.size(), messageCount, firstTime, lastTime,
+                                                    levelMask, services);
+        DataOutputStream header = new DataOutputStream(data);
+        header.writeInt(BLOCK_MAGIC);
+        header.writeByte(compressed.type().getCode());
+        header.writeInt(block.size());
+        header.writeInt(compressed.data().length);
+        data.write(compressed.data());
+        entry.write(index);
+        bytesWritten += BLOCK_HEADER_SIZE + compressed.data().length;
+
+        block.reset();
+        messageCount = 0;
+        firstTime = Long.MAX_VALUE;
+        lastTime = Long.MIN_VALUE;
+        levelMask = 0;
+        services = new TreeSet<>();
+
+        if (bytesWritten >= maxSize) {
+            log.fine("archive file '" + currentFile.getAbsolutePath() + "' full, rotating");
+            closeFiles();
+        }
+    }
+
+    /**
+     * Opens the next archive and index file, resuming the first
+     * one which is not too big already.
+     */
+    private void nextFiles() throws IOException {
+        int maxAttempts = 1000;
+        while (maxAttempts-- > 0) {
+            File f = new File(prefix + "-" + generation++ + SUFFIX);
+            File dir = f.getParentFile();
+            if (! dir.exists()) {
+                dir.mkdirs();
+            }
+            if (f.exists() && (! f.isFile() || f.length() >= resumeLimitSize)) {
+                continue;
+            }
+            log.log(LogLevel.DEBUG, "nextFiles, using " + f + (f.exists() ? ", resuming at " + f.length() : ""));
+            currentFile = f;
+            bytesWritten = f.length();
+            data = new BufferedOutputStream(new FileOutputStream(f, true), 64 * 1024);
+            index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(f), true)));
+            return;
+        }
+        throw new RuntimeException("Unable to create next log file");
+    }
+
+    private void closeFiles() throws IOException {
+        if (data != null) {
+            data.close();
+            index.close();
+            data = null;
+            index = null;
+        }
+    }
+
+    /** Returns the index file belonging to the given archive file */
+    public static File indexFile(File archiveFile) {
+        return new File(archiveFile.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Flushes the written blocks to disk.  The current block is only
+     * compressed and written if it has been open for too long.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (messageCount > 0 && System.currentTimeMillis() - blockStartMillis >= maxBlockAgeMillis) {
+            writeBlock();
+        }
+        flushFiles();
+    }
+
+    private void flushFiles() throws IOException {
+        if (data != null) {
+            data.flush();
+            index.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeBlock();
+        flushFiles();
+        closeFiles();
+    }
+
+    public String toString() {
+        return CompressedLogWriter.class.getName() + ": prefix=" + prefix;
+    }
+}
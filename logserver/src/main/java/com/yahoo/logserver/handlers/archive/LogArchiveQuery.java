@@ -0,0 +1,189 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.log.InvalidLogFormatException;
+import com.yahoo.log.LogLevel;
+import com.yahoo.log.LogMessage;
+import com.yahoo.text.Utf8;
+
+/**
+ * Searches a compressed log archive written by {@link CompressedLogWriter}.
+ * Only the blocks which the index says may contain matching messages
+ * are read and decompressed.
+ * <p>
+ * Usage: <code>LogArchiveQuery dir [-from seconds] [-to seconds] [-service name] [-level name]</code>
+ */
+public class LogArchiveQuery {
+
+    private final long fromTime;
+    private final long toTime;
+    private final Optional<String> service;
+    private final Optional<Level> level;
+    private final Compressor compressor = new Compressor();
+
+    private long blocksRead = 0;
+    private long blocksSkipped = 0;
+
+    /**
+     * @param fromTime start of time interval in milliseconds, inclusive
+     * @param toTime   end of time interval in milliseconds, inclusive
+     */
+    public LogArchiveQuery(long fromTime, long toTime, Optional<String> service, Optional<Level> level) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+        this.service = service;
+        this.level = level;
+    }
+
+    /**
+     * Passes all matching messages in the archive files under the
+     * given directory to the given consumer, file by file.
+     */
+    public void search(File root, Consumer<LogMessage> consumer) throws IOException {
+        List<File> files = new ArrayList<>();
+        findArchiveFiles(root, files);
+        Collections.sort(files);
+        for (File file : files) {
+            search(file, readIndex(CompressedLogWriter.indexFile(file)), consumer);
+        }
+    }
+
+    private void search(File file, List<BlockIndexEntry> index, Consumer<LogMessage> consumer) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (BlockIndexEntry entry : index) {
+                if ( ! mayMatch(entry)) {
+                    blocksSkipped++;
+                    continue;
+                }
+                blocksRead++;
+                for (LogMessage message : readBlock(in, entry)) {
+                    if (matches(message)) {
+                        consumer.accept(message);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean mayMatch(BlockIndexEntry entry) {
+        return entry.overlaps(fromTime, toTime)
+                && ( ! service.isPresent() || entry.mayContainService(service.get()))
+                && ( ! level.isPresent() || entry.mayContainLevel(level.get()));
+    }
+
+    private boolean matches(LogMessage message) {
+        return message.getTime() >= fromTime && message.getTime() <= toTime
+                && ( ! service.isPresent() || service.get().equals(message.getService()))
+                && ( ! level.isPresent() || level.get().equals(message.getLevel()));
+    }
+
+    private List<LogMessage> readBlock(RandomAccessFile in, BlockIndexEntry entry) throws IOException {
+        in.seek(entry.getOffset());
+        if (in.readInt() != CompressedLogWriter.BLOCK_MAGIC) {
+            throw new IOException("No block found at offset " + entry.getOffset());
+        }
+        CompressionType compression = CompressionType.valueOf(in.readByte());
+        int uncompressedSize = in.readInt();
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        String text = Utf8.toString(compressor.decompress(compressed, compression, uncompressedSize));
+
+        List<LogMessage> messages = new ArrayList<>(entry.getMessageCount());
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; start = end + 1, end = text.indexOf('\n', start)) {
+            try {
+                messages.add(LogMessage.parseNativeFormat(text.substring(start, end)));
+            } catch (InvalidLogFormatException e) {
+                // Everything in the archive was parsed by the log server, so this should not happen
+                throw new IOException("Invalid log message in block at offset " + entry.getOffset(), e);
+            }
+        }
+        return messages;
+    }
+
+    /** Reads all entries in an index file */
+    public static List<BlockIndexEntry> readIndex(File indexFile) throws IOException {
+        List<BlockIndexEntry> entries = new ArrayList<>();
+        if ( ! indexFile.exists()) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            while (true) {
+                entries.add(BlockIndexEntry.read(in));
+            }
+        } catch (EOFException e) {
+            // Done, or the last entry was partially written
+        }
+        return entries;
+    }
+
+    private static void findArchiveFiles(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                findArchiveFiles(child, files);
+            } else if (child.getName().endsWith(CompressedLogWriter.SUFFIX)) {
+                files.add(child);
+            }
+        }
+    }
+
+    /** Returns the number of blocks decompressed by searches so far */
+    public long getBlocksRead() {
+        return blocksRead;
+    }
+
+    /** Returns the number of blocks skipped using the index by searches so far */
+    public long getBlocksSkipped() {
+        return blocksSkipped;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: LogArchiveQuery dir [-from seconds] [-to seconds] [-service name] [-level name]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length % 2 != 1) {
+            usage();
+        }
+        long from = 0;
+        long to = Long.MAX_VALUE;
+        Optional<String> service = Optional.empty();
+        Optional<Level> level = Optional.empty();
+        for (int i = 1; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "-from": from = (long) (Double.parseDouble(args[i + 1]) * 1000); break;
+                case "-to": to = (long) (Double.parseDouble(args[i + 1]) * 1000); break;
+                case "-service": service = Optional.of(args[i + 1]); break;
+                case "-level": level = Optional.of(LogLevel.parse(args[i + 1])); break;
+                default: usage();
+            }
+        }
+
+        PrintStream out = System.out;
+        LogArchiveQuery query = new LogArchiveQuery(from, to, service, level);
+        query.search(new File(args[0]), message -> out.print(message.toString()));
+        System.err.println("Read " + query.getBlocksRead() + " blocks, skipped " + query.getBlocksSkipped());
+    }
+}
@@ -8,13 +8,14 @@ import java.io.Writer;
 import java.util.logging.Logger;
 
 import com.yahoo.log.LogLevel;
+import com.yahoo.log.LogMessage;
 
 /**
  * This class is not thread-safe.
  *
  * @author Bjorn Borud
  */
-public class LogWriter extends Writer {
+public class LogWriter extends Writer implements ArchiveWriter {
     private static final Logger log = Logger.getLogger(LogWriter.class.getName());
 
     private long bytesWritten = 0;
@@ -109,6 +110,11 @@ public class LogWriter extends Writer {
         throw new RuntimeException("This method should not be used");
     }
 
+    @Override
+    public void write(LogMessage msg) throws IOException {
+        write(msg.toString());
+    }
+
     public void write(String str) throws IOException {
         if (writer == null) {
             writer = nextWriter();
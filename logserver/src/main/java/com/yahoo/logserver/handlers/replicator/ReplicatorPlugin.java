@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.logging.Logger;
 
 import com.yahoo.log.LogLevel;
+import com.yahoo.logserver.AsyncLogDispatcher;
 import com.yahoo.logserver.Server;
 import com.yahoo.plugin.Config;
 import com.yahoo.plugin.Plugin;
@@ -36,7 +37,8 @@ public class ReplicatorPlugin implements Plugin {
             log.log(LogLevel.WARNING, "init failed: " + e);
             return;
         }
-        server.registerLogHandler(replicator, threadName);
+        // Replication clients should not be able to hold up log ingestion
+        server.registerLogHandler(replicator, threadName, AsyncLogDispatcher.OverflowPolicy.DROP);
     }
 
     /**
@@ -0,0 +1,189 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+
+import com.yahoo.log.InvalidLogFormatException;
+import com.yahoo.log.LogLevel;
+import com.yahoo.log.LogMessage;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests writing and searching compressed log archives.
+ */
+public class CompressedLogWriterTestCase {
+
+    private static final long startTime = 1095159244000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static LogMessage message(long time, String service, String level, String payload) {
+        try {
+            return LogMessage.parseNativeFormat((time / 1000) + "." + String.format("%03d", time % 1000)
+                                                        + "\thost\t1/2\t" + service + "\tcomponent\t" + level + "\t" + payload);
+        } catch (InvalidLogFormatException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Writes 1000 messages one second apart, every 100th from service "rare" with level error */
+    private List<LogMessage> writeArchive(File dir, int maxSize) throws IOException {
+        List<LogMessage> written = new ArrayList<>();
+        CompressedLogWriter writer = new CompressedLogWriter(new File(dir, "archive").getAbsolutePath(), maxSize, 4096);
+        for (int i = 0; i < 1000; i++) {
+            boolean rare = i % 100 == 0;
+            LogMessage m = message(startTime + i * 1000L, rare ? "rare" : "common", rare ? "error" : "info",
+                                   "payload " + i + " with some text which compresses well");
+            writer.write(m);
+            written.add(m);
+        }
+        writer.close();
+        return written;
+    }
+
+    private static List<LogMessage> search(File dir, LogArchiveQuery query) throws IOException {
+        List<LogMessage> found = new ArrayList<>();
+        query.search(dir, found::add);
+        return found;
+    }
+
+    @Test
+    public void testAllMessagesAreReadBack() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        List<LogMessage> written = writeArchive(dir, 20 * 1024 * 1024);
+
+        File archive = new File(dir, "archive-0" + CompressedLogWriter.SUFFIX);
+        assertTrue(archive.exists());
+        assertTrue("Archive is compressed", archive.length() < 1000 * 60 / 2);
+
+        List<BlockIndexEntry> index = LogArchiveQuery.readIndex(CompressedLogWriter.indexFile(archive));
+        assertTrue(index.size() > 1);
+        int messages = 0;
+        for (BlockIndexEntry entry : index) {
+            messages += entry.getMessageCount();
+        }
+        assertEquals(1000, messages);
+
+        List<LogMessage> found = search(dir, new LogArchiveQuery(0, Long.MAX_VALUE, Optional.empty(), Optional.empty()));
+        assertEquals(written.size(), found.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertEquals(written.get(i).toString(), found.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testOnlyRelevantBlocksAreRead() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        writeArchive(dir, 20 * 1024 * 1024);
+
+        LogArchiveQuery byTime = new LogArchiveQuery(startTime + 500 * 1000, startTime + 509 * 1000,
+                                                     Optional.empty(), Optional.empty());
+        List<LogMessage> found = search(dir, byTime);
+        assertEquals(10, found.size());
+        assertEquals(startTime + 500 * 1000, found.get(0).getTime());
+        assertTrue(byTime.getBlocksSkipped() > byTime.getBlocksRead());
+
+        LogArchiveQuery byService = new LogArchiveQuery(0, Long.MAX_VALUE, Optional.of("rare"), Optional.empty());
+        found = search(dir, byService);
+        assertEquals(10, found.size());
+        for (LogMessage m : found) {
+            assertEquals("rare", m.getService());
+        }
+        assertTrue(byService.getBlocksSkipped() > 0);
+
+        LogArchiveQuery byLevel = new LogArchiveQuery(0, Long.MAX_VALUE, Optional.empty(), Optional.of(LogLevel.ERROR));
+        assertEquals(10, search(dir, byLevel).size());
+        assertEquals(byService.getBlocksRead(), byLevel.getBlocksRead());
+
+        LogArchiveQuery noMatch = new LogArchiveQuery(0, Long.MAX_VALUE, Optional.of("rare"), Optional.of((Level) LogLevel.DEBUG));
+        assertEquals(0, search(dir, noMatch).size());
+        assertEquals(0, noMatch.getBlocksRead());
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        writeArchive(dir, 2000);
+
+        assertTrue(new File(dir, "archive-1" + CompressedLogWriter.SUFFIX).exists());
+        assertTrue(new File(dir, "archive-1" + CompressedLogWriter.SUFFIX + CompressedLogWriter.INDEX_SUFFIX).exists());
+        assertEquals(1000, search(dir, new LogArchiveQuery(0, Long.MAX_VALUE, Optional.empty(), Optional.empty())).size());
+    }
+
+    @Test
+    public void testArchiverHandlerWritesCompressedFiles() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        ArchiverHandler archiver = new ArchiverHandler(dir.getAbsolutePath(), 1024 * 1024, true);
+        LogMessage m = message(startTime, "service", "info", "payload");
+        archiver.handle(m);
+        archiver.close();
+
+        assertTrue(new File(archiver.getPrefix(m) + "-0" + CompressedLogWriter.SUFFIX).exists());
+        List<LogMessage> found = search(dir, new LogArchiveQuery(0, Long.MAX_VALUE, Optional.empty(), Optional.empty()));
+        assertEquals(1, found.size());
+        assertEquals(m.toString(), found.get(0).toString());
+    }
+
+    @Test
+    public void testFlushKeepsPartialBlockOpen() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        CompressedLogWriter writer = new CompressedLogWriter(new File(dir, "archive").getAbsolutePath(), 1024 * 1024, 4096);
+        for (int i = 0; i < 3; i++) {
+            writer.write(message(startTime + i * 1000L, "service", "info", "payload " + i));
+            writer.flush();
+        }
+        File archive = new File(dir, "archive-0" + CompressedLogWriter.SUFFIX);
+        assertFalse(archive.exists());
+
+        writer.close();
+        List<BlockIndexEntry> index = LogArchiveQuery.readIndex(CompressedLogWriter.indexFile(archive));
+        assertEquals(1, index.size());
+        assertEquals(3, index.get(0).getMessageCount());
+    }
+
+    @Test
+    public void testFlushWritesPartialBlockOlderThanMaxAge() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        CompressedLogWriter writer = new CompressedLogWriter(new File(dir, "archive").getAbsolutePath(), 1024 * 1024, 4096, 0);
+        writer.write(message(startTime, "service", "info", "payload"));
+        writer.flush();
+        File archive = new File(dir, "archive-0" + CompressedLogWriter.SUFFIX);
+        List<BlockIndexEntry> index = LogArchiveQuery.readIndex(CompressedLogWriter.indexFile(archive));
+        assertEquals(1, index.size());
+        assertEquals(1, index.get(0).getMessageCount());
+        writer.close();
+    }
+
+    @Test
+    public void testWriteOfNativeFormatLines() throws IOException {
+        File dir = temporaryFolder.newFolder();
+        CompressedLogWriter writer = new CompressedLogWriter(new File(dir, "archive").getAbsolutePath(), 1024 * 1024, 4096);
+        LogMessage first = message(startTime, "service", "info", "first");
+        LogMessage second = message(startTime + 1000, "service", "warning", "second");
+        writer.write(first.toString() + second.toString());
+        writer.close();
+
+        List<LogMessage> found = search(dir, new LogArchiveQuery(0, Long.MAX_VALUE, Optional.empty(), Optional.empty()));
+        assertEquals(2, found.size());
+        assertEquals(first.toString(), found.get(0).toString());
+        assertEquals(second.toString(), found.get(1).toString());
+
+        try {
+            new CompressedLogWriter(new File(dir, "other").getAbsolutePath(), 1024 * 1024).write("not a log message\n");
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a log message"));
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.yahoo.log.InvalidLogFormatException;
+import com.yahoo.log.LogMessage;
+import com.yahoo.logserver.AsyncLogDispatcher;
+import com.yahoo.logserver.AsyncLogDispatcher.OverflowPolicy;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the AsyncLogDispatcher class.
+ */
+public class AsyncLogDispatcherTestCase {
+    private static LogMessage sample;
+
+    static {
+        try {
+            sample = LogMessage.parseNativeFormat("1096639280.524133	malfunction	26851	-	logtest	info	Starting up, called as ./log/logtest");
+        } catch (InvalidLogFormatException e) {
+            assertTrue(false);
+        }
+    }
+
+    /**
+     * A handler which blocks until released.
+     */
+    private static class BlockingHandler extends LogDispatcherTestCase.MockHandler {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<LogMessage> received = Collections.synchronizedList(new ArrayList<>());
+
+        public void handle(List<LogMessage> messages) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            received.addAll(messages);
+        }
+    }
+
+    @Test
+    public void testMessagesAreHandledAndFlushed() {
+        LogDispatcherTestCase.MockHandler handler = new LogDispatcherTestCase.MockHandler();
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(16);
+        dispatcher.registerLogHandler(handler);
+
+        for (int i = 0; i < 100; i++) {
+            dispatcher.handle(sample);
+        }
+        assertEquals(100, dispatcher.getMessageCount());
+        dispatcher.flush();
+        assertEquals(100, handler.messages.size());
+        assertEquals(1, handler.flushCalled);
+        assertEquals(100, dispatcher.getHandledCount(handler));
+        assertEquals(0, dispatcher.getQueueDepth(handler));
+        assertEquals(0, dispatcher.getDroppedCount(handler));
+
+        dispatcher.close();
+        assertEquals(1, handler.closeCalled);
+        assertEquals(-1, dispatcher.getHandledCount(handler));
+    }
+
+    @Test
+    public void testSlowHandlerWithDropPolicyDoesNotBlockOthers() throws InterruptedException {
+        LogDispatcherTestCase.MockHandler fast = new LogDispatcherTestCase.MockHandler();
+        BlockingHandler slow = new BlockingHandler();
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(16);
+        dispatcher.registerLogHandler(fast, "fast", OverflowPolicy.BLOCK);
+        dispatcher.registerLogHandler(slow, "slow", OverflowPolicy.DROP);
+
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.handle(sample);
+        }
+        long deadline = System.currentTimeMillis() + 60000;
+        while (dispatcher.getHandledCount(fast) < 1000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1000, dispatcher.getHandledCount(fast));
+
+        slow.release.countDown();
+        dispatcher.flush();
+        assertEquals(1000, slow.received.size() + dispatcher.getDroppedCount(slow));
+        assertTrue(dispatcher.getDroppedCount(slow) > 0);
+        assertTrue(slow.received.size() > 0);
+        dispatcher.close();
+    }
+
+    @Test
+    public void testSlowHandlerWithBlockPolicyGetsAllMessages() throws InterruptedException {
+        BlockingHandler slow = new BlockingHandler();
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher(16);
+        dispatcher.registerLogHandler(slow, "slow", OverflowPolicy.BLOCK);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                dispatcher.handle(sample);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue("Producer is held back by the blocked handler", producer.isAlive());
+        assertTrue(dispatcher.getQueueDepth(slow) <= 16);
+
+        slow.release.countDown();
+        producer.join();
+        dispatcher.flush();
+        assertEquals(1000, slow.received.size());
+        assertEquals(0, dispatcher.getDroppedCount(slow));
+        dispatcher.close();
+    }
+
+    @Test
+    public void testUnregisterDrainsButDoesNotCloseHandler() {
+        LogDispatcherTestCase.MockHandler handler = new LogDispatcherTestCase.MockHandler();
+        AsyncLogDispatcher dispatcher = new AsyncLogDispatcher();
+        dispatcher.registerLogHandler(handler);
+        assertEquals(1, dispatcher.getLogHandlers().length);
+
+        dispatcher.handle(sample);
+        dispatcher.unregisterLogHandler(handler);
+        assertEquals(0, dispatcher.getLogHandlers().length);
+        assertEquals(1, handler.messages.size());
+        assertEquals(0, handler.closeCalled);
+
+        dispatcher.close();
+        assertEquals(0, handler.closeCalled);
+    }
+
+}
@@ -0,0 +1,35 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.metrics.simple.UntypedMetric.AssumedType;
+
+/**
+ * A counter at a fixed point in the metric space. Adding to this does not
+ * allocate any objects, which makes it suitable for very frequently updated
+ * metrics. Create a bound counter with {@link Counter#bind(Point)}.
+ */
+@Beta
+public final class BoundCounter extends BoundMetric {
+
+    BoundCounter(String name, Point point, MetricReceiver receiver) {
+        super(name, point, AssumedType.COUNTER, receiver);
+    }
+
+    /**
+     * Increase this counter by 1.
+     */
+    public void add() {
+        record(1L);
+    }
+
+    /**
+     * Add to this counter.
+     *
+     * @param n the amount by which to increase this counter
+     */
+    public void add(long n) {
+        record(n);
+    }
+
+}
@@ -0,0 +1,29 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.metrics.simple.UntypedMetric.AssumedType;
+
+/**
+ * A gauge at a fixed point in the metric space. Sampling this does not
+ * allocate any objects, except when recording into a histogram requires
+ * the histogram to grow, which makes it suitable for very frequently
+ * updated metrics. Create a bound gauge with {@link Gauge#bind(Point)}.
+ */
+@Beta
+public final class BoundGauge extends BoundMetric {
+
+    BoundGauge(String name, Point point, MetricReceiver receiver) {
+        super(name, point, AssumedType.GAUGE, receiver);
+    }
+
+    /**
+     * Record a sample.
+     *
+     * @param x sample value
+     */
+    public void sample(double x) {
+        record(x);
+    }
+
+}
@@ -0,0 +1,49 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.yahoo.concurrent.LocalInstance;
+import com.yahoo.metrics.simple.UntypedMetric.AssumedType;
+
+/**
+ * Common implementation of metrics where the name and point are resolved once, such that recording
+ * a value does not allocate. Each thread reuses a single sample and its thread local instance in the
+ * metric receiver.
+ */
+abstract class BoundMetric {
+
+    private final MetricReceiver receiver;
+    private final ThreadLocal<Recorder> recorders;
+
+    BoundMetric(String name, Point point, AssumedType type, MetricReceiver receiver) {
+        this.receiver = receiver;
+        Identifier identifier = new Identifier(name, point);
+        recorders = ThreadLocal.withInitial(() -> new Recorder(new Sample(identifier, type), receiver.getLocalInstance()));
+    }
+
+    final void record(long x) {
+        if (receiver == null) return;
+        Recorder recorder = recorders.get();
+        recorder.sample.setValue(x);
+        receiver.update(recorder.sample, recorder.localInstance);
+    }
+
+    final void record(double x) {
+        if (receiver == null) return;
+        Recorder recorder = recorders.get();
+        recorder.sample.setValue(x);
+        receiver.update(recorder.sample, recorder.localInstance);
+    }
+
+    private static final class Recorder {
+
+        final Sample sample;
+        final LocalInstance<Bucket, Sample> localInstance;
+
+        Recorder(Sample sample, LocalInstance<Bucket, Sample> localInstance) {
+            this.sample = sample;
+            this.localInstance = localInstance;
+        }
+
+    }
+
+}
@@ -16,18 +16,20 @@ public class Counter {
     private final Point defaultPosition;
     private final String name;
     private final MetricReceiver metricReceiver;
+    private final BoundCounter defaultCounter;
 
     Counter(String name, Point defaultPosition, MetricReceiver receiver) {
         this.name = name;
         this.defaultPosition = defaultPosition;
         this.metricReceiver = receiver;
+        this.defaultCounter = new BoundCounter(name, defaultPosition, receiver);
     }
 
     /**
      * Increase the dimension-less/zero-point value of this counter by 1.
      */
     public void add() {
-        add(1L, defaultPosition);
+        defaultCounter.add();
     }
 
     /**
@@ -36,7 +38,7 @@ public class Counter {
      * @param n the amount by which to increase this counter
      */
     public void add(long n) {
-        add(n, defaultPosition);
+        defaultCounter.add(n);
     }
 
     /**
@@ -60,6 +62,18 @@ public class Counter {
         metricReceiver.update(new Sample(new Measurement(Long.valueOf(n)), new Identifier(name, p), AssumedType.COUNTER));
     }
 
+    /**
+     * Create a counter bound to the given point, which can be added to without
+     * allocating any objects. Create the bound counter once and keep it, as
+     * creating it is much more expensive than adding to it.
+     *
+     * @param p the point in the metric space of the returned counter
+     * @return a thread-safe counter at the given point
+     */
+    public BoundCounter bind(Point p) {
+        return new BoundCounter(name, p, metricReceiver);
+    }
+
     /**
      * Create a PointBuilder with default dimension values as given when this
      * counter was declared.
@@ -19,11 +19,13 @@ public class Gauge {
     private final Point defaultPosition;
     private final String name;
     private final MetricReceiver receiver;
+    private final BoundGauge defaultGauge;
 
     Gauge(String name, Point defaultPosition, MetricReceiver receiver) {
         this.name = name;
         this.defaultPosition = defaultPosition;
         this.receiver = receiver;
+        this.defaultGauge = new BoundGauge(name, defaultPosition, receiver);
     }
 
     /**
@@ -33,7 +35,7 @@ public class Gauge {
      *            sample value
      */
     public void sample(double x) {
-        sample(x, defaultPosition);
+        defaultGauge.sample(x);
     }
 
     /**
@@ -48,6 +50,18 @@ public class Gauge {
         receiver.update(new Sample(new Measurement(Double.valueOf(x)), new Identifier(name, p), AssumedType.GAUGE));
     }
 
+    /**
+     * Create a gauge bound to the given point, which can be sampled without
+     * allocating any objects. Create the bound gauge once and keep it, as
+     * creating it is much more expensive than sampling it.
+     *
+     * @param p position/dimension values of the returned gauge
+     * @return a thread-safe gauge at the given point
+     */
+    public BoundGauge bind(Point p) {
+        return new BoundGauge(name, p, receiver);
+    }
+
     /**
      * Create a PointBuilder with the default dimension values reflecting those
      * given when this gauge was declared.
@@ -12,14 +12,15 @@ public class Identifier {
 
     private final String name;
     private final Point location;
+    private final int hashCode;
 
     public Identifier(String name, Point location) {
         this.name = (name == null ? "" : name);
         this.location = (location == null ? Point.emptyPoint() : location);
+        this.hashCode = computeHashCode();
     }
 
-    @Override
-    public int hashCode() {
+    private int computeHashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result + location.hashCode();
@@ -27,6 +28,11 @@ public class Identifier {
         return result;
     }
 
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -34,6 +40,9 @@ public class Identifier {
         if (getClass() != obj.getClass()) return false;
 
         Identifier other = (Identifier) obj;
+        if (hashCode != other.hashCode) {
+            return false;
+        }
         if (!location.equals(other.location)) {
             return false;
         }
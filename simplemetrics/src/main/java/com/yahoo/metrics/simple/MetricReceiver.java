@@ -8,6 +8,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableMap;
+import com.yahoo.concurrent.LocalInstance;
 import com.yahoo.concurrent.ThreadLocalDirectory;
 
 /**
@@ -174,6 +175,20 @@ public class MetricReceiver {
         metricsCollection.update(s);
     }
 
+    /**
+     * Update a metric using the given thread local instance, which must be the
+     * one of the calling thread.
+     */
+    void update(Sample s, LocalInstance<Bucket, Sample> localInstance) {
+        s.setReceiver(this);
+        metricsCollection.update(s, localInstance);
+    }
+
+    /** Returns the thread local instance of the calling thread */
+    LocalInstance<Bucket, Sample> getLocalInstance() {
+        return metricsCollection.getLocalInstance();
+    }
+
     /**
      * Declare a counter metric without setting any default position.
      *
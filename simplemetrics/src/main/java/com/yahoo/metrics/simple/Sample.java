@@ -15,12 +15,40 @@ public class Sample {
     private final AssumedType metricType;
     private MetricReceiver metricReceiver = null;
 
+    /** The value of a sample without a measurement, which is reused by a single thread */
+    private long longValue;
+    private double doubleValue;
+
     public Sample(Measurement measurement, Identifier id, AssumedType t) {
         this.identifier = id;
         this.measurement = measurement;
         this.metricType = t;
     }
 
+    /**
+     * Creates a sample for reuse, where the value is set before each update
+     * instead of being given by a measurement.
+     */
+    Sample(Identifier id, AssumedType t) {
+        this(null, id, t);
+    }
+
+    void setValue(long x) {
+        longValue = x;
+    }
+
+    void setValue(double x) {
+        doubleValue = x;
+    }
+
+    long longValue() {
+        return measurement == null ? longValue : measurement.getMagnitude().longValue();
+    }
+
+    double doubleValue() {
+        return measurement == null ? doubleValue : measurement.getMagnitude().doubleValue();
+    }
+
     Identifier getIdentifier() {
         return identifier;
     }
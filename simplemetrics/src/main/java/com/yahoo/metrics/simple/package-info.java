@@ -16,6 +16,14 @@
  * </p>
  *
  * <p>
+ * Metrics which are updated very frequently at a fixed point should be bound to that point once,
+ * using {@link com.yahoo.metrics.simple.Counter#bind(Point)} or
+ * {@link com.yahoo.metrics.simple.Gauge#bind(Point)}, as updating the resulting
+ * {@link com.yahoo.metrics.simple.BoundCounter} or {@link com.yahoo.metrics.simple.BoundGauge}
+ * does not allocate any objects.
+ * </p>
+ *
+ * <p>
  * Clients input data through the API in {@link com.yahoo.metrics.simple.MetricReceiver},
  * while the internal work is done by {@link com.yahoo.metrics.simple.MetricAggregator}.
  * Initialization is done top-down from {@link com.yahoo.metrics.simple.MetricManager}.
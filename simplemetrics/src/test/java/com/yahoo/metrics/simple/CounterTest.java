@@ -108,4 +108,43 @@ public class CounterTest {
         assertEquals(twoToThePowerOfFourtyeight, x.get(0).getValue().getCount());
     }
 
+    @Test
+    public final void testBoundCounter() {
+        final String metricName = "unitTestCounter";
+        Counter c = receiver.declareCounter(metricName);
+        Point p = receiver.pointBuilder().set("x", 2L).build();
+        BoundCounter bound = c.bind(p);
+        bound.add();
+        bound.add(5L);
+        Bucket b = receiver.getSnapshot();
+        assertEquals(6L, b.getMapForMetric(metricName).get(p).getCount());
+
+        // the next generation is also recorded
+        bound.add(2L);
+        b = receiver.getSnapshot();
+        assertEquals(2L, b.getMapForMetric(metricName).get(p).getCount());
+    }
+
+    @Test
+    public final void testBoundCounterDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threadBean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if ( ! (threadBean instanceof com.sun.management.ThreadMXBean)) return;
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if ( ! allocationBean.isThreadAllocatedMemorySupported() || ! allocationBean.isThreadAllocatedMemoryEnabled()) return;
+
+        final String metricName = "unitTestCounter";
+        Point p = receiver.pointBuilder().set("x", "y").build();
+        BoundCounter bound = receiver.declareCounter(metricName).bind(p);
+        bound.add(); // create the thread local state
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            bound.add();
+        }
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        // allocating a sample per update would be several megabytes
+        assertTrue("Allocated " + allocated + " bytes", allocated < 100000);
+        assertEquals(100001L, receiver.getSnapshot().getMapForMetric(metricName).get(p).getCount());
+    }
+
 }
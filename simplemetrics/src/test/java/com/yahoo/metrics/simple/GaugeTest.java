@@ -80,4 +80,20 @@ public class GaugeTest {
         assertEquals(Math.E, x.get(0).getValue().getLast(), 1e-15);
     }
 
+    @Test
+    public final void testBoundGaugeWithHistogram() {
+        final String metricName = "unitTestGauge";
+        Gauge g = receiver.declareGauge(metricName, java.util.Optional.empty(),
+                                        new MetricSettings.Builder().histogram(true).build());
+        Point p = receiver.pointBuilder().set("x", "y").build();
+        BoundGauge bound = g.bind(p);
+        bound.sample(1.0d);
+        bound.sample(3.0d);
+        UntypedMetric value = receiver.getSnapshot().getMapForMetric(metricName).get(p);
+        assertEquals(2L, value.getCount());
+        assertEquals(3.0d, value.getLast(), 0.0d);
+        assertEquals(4.0d, value.getSum(), 0.0d);
+        assertEquals(2L, value.getHistogram().getTotalCount());
+    }
+
 }
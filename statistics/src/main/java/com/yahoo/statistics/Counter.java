@@ -2,7 +2,7 @@
 package com.yahoo.statistics;
 
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.yahoo.log.event.Event;
 import com.yahoo.container.StatisticsConfig;
@@ -14,8 +14,10 @@ import com.yahoo.container.StatisticsConfig;
  * @author  <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
 public class Counter extends Handle {
-    // The current value of this counter
-    private AtomicLong current = new AtomicLong(0L);
+    // The current value of this counter. This is striped over cells when
+    // contended, such that incrementing threads do not contend on a single
+    // word, while reading and resetting it never blocks them.
+    private final LongAdder current = new LongAdder();
 
     // Whether or not this counter shall be reset between each logging
     // interval
@@ -123,21 +125,21 @@ public class Counter extends Handle {
      * Increment by 1.
      */
     public void increment() {
-        current.incrementAndGet();
+        current.increment();
     }
 
     /**
      * Increment by n.
      */
     public void increment(long n) {
-        current.addAndGet(n);
+        current.add(n);
     }
 
     /**
      * @return current value of this counter
      */
     public long get() {
-        return current.get();
+        return current.sum();
     }
 
     /**
@@ -156,10 +158,21 @@ public class Counter extends Handle {
      */
     public void reset() {
         if (resetCounter) {
-            current.set(0L);
+            getAndReset();
         }
     }
 
+    /**
+     * Subtracts the value read rather than zeroing the counter, such that
+     * increments done concurrently with this are counted in the next interval
+     * rather than lost.
+     */
+    private long getAndReset() {
+        long value = current.sum();
+        current.add(-value);
+        return value;
+    }
+
     /**
      * Log current state and reset.
      */
@@ -170,10 +183,10 @@ public class Counter extends Handle {
         boolean resetState = getResetCounter();
 
         if (resetState) {
-            lastCurrent = current.getAndSet(0L);
+            lastCurrent = getAndReset();
             Event.value(name, lastCurrent);
         } else {
-            lastCurrent = current.get();
+            lastCurrent = current.sum();
             Event.count(name, lastCurrent);
         }
     }
@@ -186,9 +199,9 @@ public class Counter extends Handle {
     CounterProxy getProxyAndReset() {
         CounterProxy c = new CounterProxy(getName());
         if (getResetCounter()) {
-            c.setRaw(current.getAndSet(0L));
+            c.setRaw(getAndReset());
         } else {
-            c.setRaw(current.get());
+            c.setRaw(current.sum());
         }
         return c;
     }
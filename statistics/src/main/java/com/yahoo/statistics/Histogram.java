@@ -102,6 +102,15 @@ public class Histogram implements Bucket {
         bucket.put(value, ++dim);
     }
 
+    /**
+     * Increment the corresponding bucket for this data point in a one
+     * dimensional histogram by 1. This does not allocate, and is not
+     * synchronized, as it is used by a single sampling thread.
+     */
+    void put(double value) {
+        findBucket(0, buckets.size(), value).add(1L);
+    }
+
     private Bucket findBucket(int offset, int limit, double value) {
         int index = offset + (limit - offset) / 2;
         Bucket bucket = buckets.get(index);
@@ -2,58 +2,55 @@
 package com.yahoo.statistics;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.yahoo.statistics.SampleSet.Sampling;
 
 /**
- * Book-keeping class to know which SampleSet instances have unlogged data.
+ * Book-keeping class to know which SampleSet instances exist. Each sampling
+ * thread registers its SampleSet once, and it is removed when the thread is
+ * gone and its data is logged.
  *
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
 final class SampleDirectory {
-    private final Object directoryLock = new Object();
-    private List<SampleSet> directory = new ArrayList<>(200);
+    private final Queue<SampleSet> directory = new ConcurrentLinkedQueue<>();
 
     void put(SampleSet s) {
-        synchronized (directoryLock) {
-            directory.add(s);
-            s.setRegisteredForLogging(true);
-        }
+        directory.add(s);
     }
 
     /**
-     * Get a view of the current generation of data and instantiate a new
-     * generation. This does the memory barrier two-step for the
-     * client.
+     * Get the current generation of data and instantiate a new
+     * generation. This never blocks the sampling threads.
      */
     Sampling[] fetchValues() {
-        Sampling[] copyToReturn;
-        synchronized (directoryLock) {
-            List<SampleSet> tmpDir = directory;
-            copyToReturn = new Sampling[tmpDir.size()];
-            List<SampleSet> newDir = new ArrayList<>(200);
-            for (int i = 0; i < copyToReturn.length; ++i) {
-                copyToReturn[i] = tmpDir.get(i).getAndReset();
+        List<Sampling> values = new ArrayList<>();
+        for (Iterator<SampleSet> i = directory.iterator(); i.hasNext(); ) {
+            SampleSet s = i.next();
+            // check before fetching, so no samples are added after the fetch
+            boolean abandoned = s.isAbandoned();
+            values.add(s.getAndReset());
+            if (abandoned) {
+                i.remove();
             }
-            directory = newDir;
         }
-        return copyToReturn;
+        return values.toArray(new Sampling[values.size()]);
     }
 
     /**
-     * Return a view of the current generation of data. This does the memory
-     * barrier two-step for the client.
+     * Return a view of the current generation of data. This never blocks
+     * the sampling threads.
      */
     Sampling[] viewValues() {
-        Sampling[] copy;
-        synchronized (directoryLock) {
-            copy = new Sampling[directory.size()];
-            for (int i = 0; i < copy.length; ++i) {
-                copy[i] = directory.get(i).values;
-            }
+        List<Sampling> values = new ArrayList<>();
+        for (SampleSet s : directory) {
+            values.add(s.view());
         }
-        return copy;
+        return values.toArray(new Sampling[values.size()]);
     }
 
 }
@@ -1,21 +1,41 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.statistics;
 
+import java.lang.ref.WeakReference;
+import java.util.concurrent.locks.StampedLock;
+
 /**
  * A running set of samples for a Value instance. It is
  * used only in a very specific context between the sampling threads (each instance
- * is only used by on sampling thread) and the single logging thread.
+ * is only used by on sampling thread) and the logging thread.
+ *
+ * <p>
+ * The sampling thread updates an active accumulator in place, and the logging
+ * thread takes an interval by swapping in the inactive accumulator. The write
+ * lock is only ever taken by the sampling thread, so it is uncontended, and
+ * readers only read it optimistically, such that the sampling thread never
+ * waits for a reader.
+ * </p>
  *
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
 final class SampleSet {
-    Sampling values;
     final Limits histogramLimits;
-    private boolean isRegisteredForLogging = false;
+    private final WeakReference<Thread> samplingThread;
+
+    // Held by the sampling thread while updating the active accumulator
+    private final StampedLock writing = new StampedLock();
+    private volatile Accumulator active;
+
+    // The accumulator not in use by the sampling thread, always empty,
+    // guarded by this
+    private Accumulator inactive;
 
     SampleSet(Limits histogramLimits) {
         this.histogramLimits = histogramLimits;
-        values = new Sampling(0.0d, 0L, 0.0d, 0.0d, histogramLimits);
+        samplingThread = new WeakReference<>(Thread.currentThread());
+        active = new Accumulator(histogramLimits);
+        inactive = new Accumulator(histogramLimits);
     }
 
     static final class Sampling {
@@ -46,57 +66,114 @@ final class SampleSet {
         }
     }
 
+    /**
+     * The mutable state of a sample set, only written by the sampling thread.
+     */
+    private static final class Accumulator {
+        private final Limits histogramLimits;
+        private final Histogram histogram;
+        private double sum = 0.0d;
+        private long insertions = 0L;
+        private double max = 0.0d;
+        private double min = 0.0d;
+
+        Accumulator(Limits histogramLimits) {
+            this.histogramLimits = histogramLimits;
+            if (histogramLimits != null) {
+                histogram = new Histogram(histogramLimits);
+            } else {
+                histogram = null;
+            }
+        }
+
+        void put(double x) {
+            if (histogram != null) {
+                histogram.put(x);
+            }
+            sum += x;
+            if (insertions == 0) {
+                max = x;
+                min = x;
+            } else {
+                max = Math.max(x, max);
+                min = Math.min(x, min);
+            }
+            insertions++;
+        }
 
-    private Sampling createSampling(double x, Sampling previous) {
-        double sum = previous.sum;
-        long insertions = previous.insertions;
-        double max = previous.max;
-        double min = previous.min;
+        void reset() {
+            if (histogram != null) {
+                histogram.reset();
+            }
+            sum = 0.0d;
+            insertions = 0L;
+            max = 0.0d;
+            min = 0.0d;
+        }
 
-        sum += x;
-        if (insertions == 0) {
-            max = x;
-            min = x;
-        } else {
-            max = Math.max(x, max);
-            min = Math.min(x, min);
+        Sampling toSampling() {
+            Sampling sampling = new Sampling(sum, insertions, max, min, histogramLimits);
+            if (histogram != null) {
+                sampling.histogram.merge(histogram);
+            }
+            return sampling;
         }
-        insertions++;
-        return new Sampling(sum, insertions, max, min, previous.histogram);
     }
 
     /**
      * Insert x, do all pertinent operations. (Update histogram, update
-     * insertion count for calculating mean, etc.)
-     *
-     * @return whether this is registered for logging
+     * insertion count for calculating mean, etc.) This must only be called
+     * by the sampling thread which created this.
      */
-    synchronized boolean put(double x) {
-        Sampling previous = values;
-        Histogram histogram = previous.histogram;
-        if (histogram != null) {
-            histogram.put(new double[] {x});
+    void put(double x) {
+        long stamp = writing.writeLock();
+        try {
+            active.put(x);
+        } finally {
+            writing.unlockWrite(stamp);
         }
-        values = createSampling(x, previous);
-        return isRegisteredForLogging;
     }
 
     /**
      * Get state and reset it.
      */
     synchronized Sampling getAndReset() {
-        Sampling previous = values;
-        values = new Sampling(0.0d, 0L, 0.0d, 0.0d, histogramLimits);
-        setRegisteredForLogging(false);
-        return previous;
+        Accumulator interval = active;
+        active = inactive;
+        // An update in progress may still be to the interval taken, but any
+        // update starting after this will see the new active accumulator
+        while (writing.tryOptimisticRead() == 0L) {
+            Thread.yield();
+        }
+        Sampling sampling = interval.toSampling();
+        interval.reset();
+        inactive = interval;
+        return sampling;
+    }
+
+    /**
+     * Get a copy of the current state without resetting it.
+     */
+    synchronized Sampling view() {
+        while (true) {
+            long stamp = writing.tryOptimisticRead();
+            if (stamp != 0L) {
+                Sampling sampling = active.toSampling();
+                if (writing.validate(stamp)) {
+                    return sampling;
+                }
+            }
+            Thread.yield();
+        }
     }
 
-    // Setting this state is protected by SampleDirectory.directoryLock. It is
-    // either set from the logging thread (protected by directoryLock and using
-    // "this" as a memory barrier through getAndReset()), or from the sampling
-    // thread protected by directoryLock and without a mem barrier.
-    void setRegisteredForLogging(boolean isRegisteredForLogging) {
-        this.isRegisteredForLogging = isRegisteredForLogging;
+    /**
+     * Returns whether the sampling thread of this is gone, such that no
+     * more samples will be added to this.
+     */
+    boolean isAbandoned() {
+        Thread thread = samplingThread.get();
+        return thread == null || ! thread.isAlive();
     }
 
 }
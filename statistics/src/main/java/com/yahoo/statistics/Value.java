@@ -26,9 +26,9 @@ public class Value extends Handle {
     // lastValue is a memory barrier between {n sampling threads} and {n
     // sampling threads, logging thread}.
 
-    // Therefore, the logging thread first locks SampleDirectory.directoryLock,
-    // then locks each SampleSet, one by one. The sampling threads _either_ lock
-    // a single SampleSet _or_ lock SampleDirectory.directoryLock.
+    // Each sampling thread registers its SampleSet in the directory once,
+    // and then only updates it. The logging thread swaps out the interval of
+    // each SampleSet without ever making the sampling threads wait.
 
     // It is necessary to create a memory relationship between the logging
     // threads to ensure the newest sample ends up in the log for logRaw = true.
@@ -508,16 +508,13 @@ public class Value extends Handle {
         if (s == null) {
             s = new SampleSet(histogram);
             sample.set(s);
+            directory.put(s);
         }
         return s;
     }
 
     private void putComposite(double x) {
-        SampleSet s = getSample();
-        boolean isInDir = s.put(x);
-        if (!isInDir) {
-            directory.put(s);
-        }
+        getSample().put(x);
     }
 
     /**
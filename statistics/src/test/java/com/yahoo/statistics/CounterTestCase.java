@@ -32,6 +32,30 @@ public class CounterTestCase extends junit.framework.TestCase {
         assertEquals(0, c.get());
     }
 
+    public void testNoIncrementsAreLostWhenResettingConcurrently() throws InterruptedException {
+        Counter c = new Counter("test", Statistics.nullImplementation, false, null, true);
+        int threadCount = 4;
+        int incrementsPerThread = 100000;
+        Thread[] incrementers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            incrementers[i] = new Thread(() -> {
+                for (int j = 0; j < incrementsPerThread; ++j) {
+                    c.increment();
+                }
+            });
+            incrementers[i].start();
+        }
+        long logged = 0;
+        for (Thread incrementer : incrementers) {
+            while (incrementer.isAlive()) {
+                logged += c.getProxyAndReset().getRaw();
+            }
+            incrementer.join();
+        }
+        logged += c.getProxyAndReset().getRaw();
+        assertEquals(threadCount * incrementsPerThread, logged);
+    }
+
     public void testObjectContracts() {
         final String counterName = "test";
         Counter c = new Counter(counterName, Statistics.nullImplementation, false);
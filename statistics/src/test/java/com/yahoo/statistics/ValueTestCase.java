@@ -84,6 +84,42 @@ public class ValueTestCase extends junit.framework.TestCase {
                 " thingie (1) < 0.0 (1) < 1.0 (1) < 2.0 (2)"));
     }
 
+    public void testNoSamplesAreLostWhenSnapshottingConcurrently() throws InterruptedException {
+        Value v = new Value("thingie", Statistics.nullImplementation, new Parameters()
+                .setLogMax(true).setLogHistogram(true).setHistogramId(HistogramType.REGULAR)
+                .setLimits(new Limits(new double[] { 0.0 })));
+        int threadCount = 4;
+        int samplesPerThread = 100000;
+        Thread[] samplers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            samplers[i] = new Thread(() -> {
+                for (int j = 0; j < samplesPerThread; ++j) {
+                    v.put(1.0d);
+                }
+            });
+            samplers[i].start();
+        }
+        long logged = 0;
+        for (Thread sampler : samplers) {
+            while (sampler.isAlive()) {
+                logged += countSamples(v.getProxyAndReset());
+                v.getMax();
+            }
+            sampler.join();
+        }
+        logged += countSamples(v.getProxyAndReset());
+        assertEquals(threadCount * samplesPerThread, logged);
+        assertEquals(0, countSamples(v.getProxyAndReset()));
+    }
+
+    private static long countSamples(ValueProxy proxy) {
+        long samples = 0;
+        for (Bucket b : proxy.getHistogram().getBuckets()) {
+            samples += b.getSum();
+        }
+        return samples;
+    }
+
     public void testCallback() {
         Logger logger = Logger.getLogger(Value.class.getName());
         boolean initUseParentHandlers = logger.getUseParentHandlers();
@@ -398,6 +398,15 @@ public class Distribution {
         return resultNodes;
     }
 
+    /**
+     * Returns a calculator of ideal storage nodes for the given cluster state, which is much cheaper
+     * per bucket than {@link #getIdealStorageNodes} when ideal nodes are needed for many buckets.
+     * The calculator does not reflect later changes to this or the cluster state.
+     */
+    public IdealStateCalculator createIdealStateCalculator(ClusterState clusterState, String upStates) {
+        return new IdealStateCalculator(this, nodeGraph, redundancy, clusterState, upStates);
+    }
+
     public static class TooFewBucketBitsInUseException extends Exception {
         public TooFewBucketBitsInUseException(String message) {
             super(message);
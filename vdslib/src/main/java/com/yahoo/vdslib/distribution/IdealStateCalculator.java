@@ -0,0 +1,372 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vdslib.distribution;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.vdslib.state.ClusterState;
+import com.yahoo.vdslib.state.Node;
+import com.yahoo.vdslib.state.NodeState;
+import com.yahoo.vdslib.state.NodeType;
+import com.yahoo.vdslib.state.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Calculates the ideal storage nodes of buckets for one cluster state, giving the same
+ * results as {@link Distribution#getIdealStorageNodes}, but much cheaper per bucket.
+ * <p>
+ * The group tree, the node states and capacities of the cluster state are flattened into
+ * primitive arrays once when this is created, and when the cluster uses few enough
+ * distribution bits, the ideal groups of each distribution key are memoized as they are
+ * computed, as they are the same for all buckets having the same key.
+ * <p>
+ * An instance reflects the distribution and cluster state at the time of creation, so a new
+ * one must be created when either changes. Instances are thread safe.
+ *
+ * @see Distribution#createIdealStateCalculator
+ */
+public class IdealStateCalculator {
+
+    /** The max number of distribution bits for which the ideal groups are memoized */
+    static final int MAX_MEMOIZED_DISTRIBUTION_BITS = 16;
+
+    private final Distribution distribution;
+    private final int redundancy;
+    private final int distributionBitCount;
+    private final int distributionBitMask;
+    private final GroupNode root;
+    private final AtomicReferenceArray<IdealGroups> memoizedGroups;
+
+    IdealStateCalculator(Distribution distribution, Group rootGroup, int redundancy,
+                         ClusterState clusterState, String upStates) {
+        this.distribution = distribution;
+        this.redundancy = redundancy;
+        this.distributionBitCount = clusterState.getDistributionBitCount();
+        this.distributionBitMask = distributionBitMask(distributionBitCount);
+        this.root = new GroupNode(rootGroup, clusterState, upStates);
+        this.memoizedGroups = ( ! rootGroup.isLeafGroup() && distributionBitCount <= MAX_MEMOIZED_DISTRIBUTION_BITS)
+                ? new AtomicReferenceArray<>(1 << distributionBitCount)
+                : null;
+    }
+
+    /** Returns the ideal storage nodes of the given bucket, in order of preference */
+    public int[] getIdealStorageNodes(BucketId bucket) throws Distribution.TooFewBucketBitsInUseException {
+        return getIdealStorageNodes(bucket, new Scratch(redundancy));
+    }
+
+    /**
+     * Returns the ideal storage nodes of each of the given buckets, in the same order as the buckets.
+     * This is cheaper than calling {@link #getIdealStorageNodes(BucketId)} for each bucket.
+     */
+    public List<int[]> getIdealStorageNodes(List<BucketId> buckets) throws Distribution.TooFewBucketBitsInUseException {
+        Scratch scratch = new Scratch(redundancy);
+        List<int[]> result = new ArrayList<>(buckets.size());
+        for (BucketId bucket : buckets) {
+            result.add(getIdealStorageNodes(bucket, scratch));
+        }
+        return result;
+    }
+
+    public int getDistributionBitCount() { return distributionBitCount; }
+
+    private int[] getIdealStorageNodes(BucketId bucket, Scratch scratch) throws Distribution.TooFewBucketBitsInUseException {
+        if (bucket.getUsedBits() < distributionBitCount) {
+            throw new Distribution.TooFewBucketBitsInUseException(
+                    "Cannot get ideal state for bucket " + bucket + " using " + bucket.getUsedBits()
+                    + " bits when cluster uses " + distributionBitCount + " distribution bits.");
+        }
+        IdealGroups groups = getIdealGroups(bucket, scratch.random);
+
+        int seed = storageSeed(bucket);
+        FastRandom random = scratch.random;
+        random.setSeed(seed);
+        int randomIndex = 0;
+        int[] result = new int[groups.totalRedundancy];
+        int resultIndex = 0;
+        int[] bestNodes = scratch.nodes;
+        double[] bestScores = scratch.scores;
+        for (int g = 0; g < groups.leaves.length; ++g) {
+            GroupNode leaf = groups.leaves[g];
+            int groupRedundancy = groups.redundancies[g];
+            scratch.ensureCapacity(groupRedundancy);
+            bestNodes = scratch.nodes;
+            bestScores = scratch.scores;
+            for (int i = 0; i < groupRedundancy; ++i) {
+                bestNodes[i] = 0;
+                bestScores[i] = 0.0;
+            }
+
+            for (int n = 0; n < leaf.nodeIndexes.length; ++n) {
+                int nodeIndex = leaf.nodeIndexes[n];
+                if (leaf.nodesWithDisksDown[n] != null) {
+                    NodeState nodeState = leaf.nodesWithDisksDown[n];
+                    int idealDisk = distribution.getIdealDisk(nodeState, nodeIndex, bucket);
+                    if (nodeState.getDiskState(idealDisk).getState() != State.UP) {
+                        continue;
+                    }
+                }
+
+                if (nodeIndex != randomIndex) {
+                    if (nodeIndex < randomIndex) {
+                        random.setSeed(seed);
+                        randomIndex = 0;
+                    }
+                    for (int k = randomIndex; k < nodeIndex; ++k) {
+                        random.nextDouble();
+                    }
+                    randomIndex = nodeIndex;
+                }
+                double score = random.nextDouble();
+                ++randomIndex;
+                if (leaf.nodeInverseCapacities[n] != 1.0) {
+                    score = Math.pow(score, leaf.nodeInverseCapacities[n]);
+                }
+                if (score > bestScores[groupRedundancy - 1]) {
+                    int position = 0;
+                    while (score <= bestScores[position]) {
+                        ++position;
+                    }
+                    for (int i = groupRedundancy - 1; i > position; --i) {
+                        bestNodes[i] = bestNodes[i - 1];
+                        bestScores[i] = bestScores[i - 1];
+                    }
+                    bestNodes[position] = nodeIndex;
+                    bestScores[position] = score;
+                }
+            }
+            System.arraycopy(bestNodes, 0, result, resultIndex, groupRedundancy);
+            resultIndex += groupRedundancy;
+        }
+        return result;
+    }
+
+    private IdealGroups getIdealGroups(BucketId bucket, FastRandom random) {
+        if (root.isLeaf()) {
+            return root.asIdealGroups(redundancy);
+        }
+        int distributionKey = ((int) bucket.getRawId()) & distributionBitMask;
+        if (memoizedGroups == null) {
+            return computeIdealGroups(distributionKey, random);
+        }
+        IdealGroups groups = memoizedGroups.get(distributionKey);
+        if (groups == null) {
+            groups = computeIdealGroups(distributionKey, random);
+            memoizedGroups.lazySet(distributionKey, groups);
+        }
+        return groups;
+    }
+
+    private IdealGroups computeIdealGroups(int distributionKey, FastRandom random) {
+        List<GroupNode> leaves = new ArrayList<>();
+        List<Integer> redundancies = new ArrayList<>();
+        addIdealGroups(distributionKey, random, root, redundancy, leaves, redundancies);
+        return new IdealGroups(leaves, redundancies);
+    }
+
+    /** Mirrors Distribution.getIdealGroups */
+    private void addIdealGroups(int distributionKey, FastRandom random, GroupNode parent, int redundancy,
+                                List<GroupNode> leaves, List<Integer> redundancies) {
+        if (parent.isLeaf()) {
+            leaves.add(parent);
+            redundancies.add(redundancy);
+            return;
+        }
+        int[] redundancyArray = parent.distribution.getRedundancyArray(redundancy);
+        GroupNode[] bestGroups = new GroupNode[redundancyArray.length];
+        double[] bestScores = new double[redundancyArray.length];
+
+        random.setSeed(distributionKey ^ parent.distributionHash);
+        int currentIndex = 0;
+        for (int i = 0; i < parent.subgroups.length; ++i) {
+            while (parent.subgroupIndexes[i] < currentIndex++) {
+                random.nextDouble();
+            }
+            double score = random.nextDouble();
+            if (parent.subgroupInverseCapacities[i] != 1.0) {
+                score = Math.pow(score, parent.subgroupInverseCapacities[i]);
+            }
+            if (score > bestScores[bestScores.length - 1]) {
+                int position = 0;
+                while (score <= bestScores[position]) {
+                    ++position;
+                }
+                for (int j = bestScores.length - 1; j > position; --j) {
+                    bestGroups[j] = bestGroups[j - 1];
+                    bestScores[j] = bestScores[j - 1];
+                }
+                bestGroups[position] = parent.subgroups[i];
+                bestScores[position] = score;
+            }
+        }
+        for (int i = 0; i < bestGroups.length; ++i) {
+            if (bestGroups[i] != null) {
+                addIdealGroups(distributionKey, random, bestGroups[i], redundancyArray[i], leaves, redundancies);
+            }
+        }
+    }
+
+    /** Mirrors Distribution.getStorageSeed */
+    private int storageSeed(BucketId bucket) {
+        int seed = ((int) bucket.getRawId()) & distributionBitMask;
+        if (bucket.getUsedBits() > 33) {
+            int usedBits = bucket.getUsedBits() - 1;
+            seed ^= (distributionBitMask(usedBits - 32) & (bucket.getRawId() >> 32)) << 6;
+        }
+        return seed;
+    }
+
+    private static int distributionBitMask(int bits) {
+        return bits >= 32 ? -1 : (1 << bits) - 1;
+    }
+
+    /** A group in the group tree, with the parts of it and the cluster state needed to calculate ideal nodes */
+    private static final class GroupNode {
+
+        final int distributionHash;
+        final Group.Distribution distribution;
+
+        /** For inner groups: The subgroups, their configured indexes, and 1 / capacity of each */
+        final GroupNode[] subgroups;
+        final int[] subgroupIndexes;
+        final double[] subgroupInverseCapacities;
+
+        /** For leaf groups: The nodes which are in one of the up states, 1 / capacity, and the states of those with disks down */
+        final int[] nodeIndexes;
+        final double[] nodeInverseCapacities;
+        final NodeState[] nodesWithDisksDown;
+
+        private final IdealGroups[] asIdealGroups;
+
+        GroupNode(Group group, ClusterState clusterState, String upStates) {
+            distributionHash = group.getDistributionHash();
+            distribution = group.getDistribution();
+            if (group.isLeafGroup()) {
+                subgroups = null;
+                subgroupIndexes = null;
+                subgroupInverseCapacities = null;
+                List<ConfiguredNode> nodes = new ArrayList<>();
+                for (ConfiguredNode node : group.getNodes()) {
+                    if (clusterState.getNodeState(new Node(NodeType.STORAGE, node.index())).getState().oneOf(upStates)) {
+                        nodes.add(node);
+                    }
+                }
+                nodeIndexes = new int[nodes.size()];
+                nodeInverseCapacities = new double[nodes.size()];
+                nodesWithDisksDown = new NodeState[nodes.size()];
+                for (int i = 0; i < nodes.size(); ++i) {
+                    NodeState nodeState = clusterState.getNodeState(new Node(NodeType.STORAGE, nodes.get(i).index()));
+                    nodeIndexes[i] = nodes.get(i).index();
+                    nodeInverseCapacities[i] = nodeState.getCapacity() != 1.0 ? 1.0 / nodeState.getCapacity() : 1.0;
+                    nodesWithDisksDown[i] = nodeState.isAnyDiskDown() ? nodeState : null;
+                }
+                asIdealGroups = new IdealGroups[256];
+            } else {
+                Map<Integer, Group> children = group.getSubgroups();
+                subgroups = new GroupNode[children.size()];
+                subgroupIndexes = new int[children.size()];
+                subgroupInverseCapacities = new double[children.size()];
+                int i = 0;
+                for (Map.Entry<Integer, Group> child : children.entrySet()) {
+                    subgroups[i] = new GroupNode(child.getValue(), clusterState, upStates);
+                    subgroupIndexes[i] = child.getKey();
+                    double capacity = child.getValue().getCapacity();
+                    subgroupInverseCapacities[i] = capacity != 1 ? 1.0 / capacity : 1.0;
+                    ++i;
+                }
+                nodeIndexes = null;
+                nodeInverseCapacities = null;
+                nodesWithDisksDown = null;
+                asIdealGroups = null;
+            }
+        }
+
+        boolean isLeaf() { return nodeIndexes != null; }
+
+        /** Returns the ideal groups of a distribution where this leaf is the root group */
+        IdealGroups asIdealGroups(int redundancy) {
+            IdealGroups groups = asIdealGroups[redundancy];
+            if (groups == null) {
+                List<GroupNode> leaves = new ArrayList<>(1);
+                leaves.add(this);
+                List<Integer> redundancies = new ArrayList<>(1);
+                redundancies.add(redundancy);
+                asIdealGroups[redundancy] = groups = new IdealGroups(leaves, redundancies);
+            }
+            return groups;
+        }
+
+    }
+
+    /** The leaf groups a bucket should have copies in, and how many copies in each. Immutable. */
+    private static final class IdealGroups {
+
+        final GroupNode[] leaves;
+        final int[] redundancies;
+        final int totalRedundancy;
+
+        IdealGroups(List<GroupNode> leaves, List<Integer> redundancies) {
+            this.leaves = leaves.toArray(new GroupNode[leaves.size()]);
+            this.redundancies = new int[redundancies.size()];
+            int total = 0;
+            for (int i = 0; i < this.redundancies.length; ++i) {
+                this.redundancies[i] = redundancies.get(i);
+                total += this.redundancies[i];
+            }
+            this.totalRedundancy = total;
+        }
+
+    }
+
+    /** Working storage reused between the buckets of one call */
+    private static final class Scratch {
+
+        final FastRandom random = new FastRandom();
+        int[] nodes;
+        double[] scores;
+
+        Scratch(int redundancy) {
+            nodes = new int[redundancy];
+            scores = new double[redundancy];
+        }
+
+        void ensureCapacity(int redundancy) {
+            if (nodes.length < redundancy) {
+                nodes = new int[redundancy];
+                scores = new double[redundancy];
+            }
+        }
+
+    }
+
+    /**
+     * The same sequence of numbers as {@link RandomGen}, without the synchronization and allocation
+     * overhead of {@link java.util.Random}. The algorithm is the one specified by java.util.Random.
+     */
+    static final class FastRandom {
+
+        private static final long multiplier = 0x5DEECE66DL;
+        private static final long addend = 0xBL;
+        private static final long mask = (1L << 48) - 1;
+
+        private long seed;
+
+        /** Sets the seed and skips the first number, as RandomGen does */
+        void setSeed(long seed) {
+            this.seed = (seed ^ multiplier) & mask;
+            nextDouble();
+        }
+
+        private int next(int bits) {
+            seed = (seed * multiplier + addend) & mask;
+            return (int) (seed >>> (48 - bits));
+        }
+
+        double nextDouble() {
+            return (((long) next(26) << 27) + next(27)) * 0x1.0p-53;
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vdslib.distribution;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.vdslib.state.ClusterState;
+import com.yahoo.vespa.config.content.StorDistributionConfig;
+
+import java.util.List;
+
+/**
+ * Compares the cost of ideal state calculation for 200 nodes in 3 levels of groups
+ * using {@link Distribution} and {@link IdealStateCalculator}.
+ */
+public class IdealStateCalculatorMicroBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Distribution distribution = new Distribution(new StorDistributionConfig(IdealStateCalculatorTest.threeLevelConfig(4, 25)));
+        ClusterState state = new ClusterState("distributor:200 storage:200 .13.s:d .77.s:m .150.c:2.0");
+        List<BucketId> buckets = IdealStateCalculatorTest.randomBuckets(100000, 16, 42);
+
+        for (int run = 0; run < 3; ++run) {
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (BucketId bucket : buckets) {
+                checksum += distribution.getIdealStorageNodes(state, bucket, "uim").get(0);
+            }
+            long distributionNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            IdealStateCalculator calculator = distribution.createIdealStateCalculator(state, "uim");
+            long calculatorChecksum = 0;
+            for (int[] nodes : calculator.getIdealStorageNodes(buckets)) {
+                calculatorChecksum += nodes[0];
+            }
+            long calculatorNanos = System.nanoTime() - start;
+
+            if (checksum != calculatorChecksum) {
+                throw new IllegalStateException("Distribution and IdealStateCalculator disagree");
+            }
+            System.out.println("Ideal storage nodes for " + buckets.size() + " buckets: Distribution " +
+                               distributionNanos / 1000000 + " ms, IdealStateCalculator " + calculatorNanos / 1000000 + " ms");
+        }
+    }
+
+}
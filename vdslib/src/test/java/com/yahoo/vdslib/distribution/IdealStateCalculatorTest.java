@@ -0,0 +1,125 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vdslib.distribution;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.vdslib.state.ClusterState;
+import com.yahoo.vespa.config.content.StorDistributionConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class IdealStateCalculatorTest {
+
+    static List<BucketId> randomBuckets(int count, int minUsedBits, long seed) {
+        Random random = new Random(seed);
+        List<BucketId> buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            buckets.add(new BucketId(minUsedBits + random.nextInt(58 - minUsedBits + 1), random.nextLong()));
+        }
+        return buckets;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static void assertSameAsDistribution(Distribution distribution, String clusterState, String upStates) throws Exception {
+        ClusterState state = new ClusterState(clusterState);
+        IdealStateCalculator calculator = distribution.createIdealStateCalculator(state, upStates);
+        List<BucketId> buckets = randomBuckets(2000, state.getDistributionBitCount(), 17);
+        List<int[]> batch = calculator.getIdealStorageNodes(buckets);
+        for (int i = 0; i < buckets.size(); ++i) {
+            BucketId bucket = buckets.get(i);
+            int[] expected = toArray(distribution.getIdealStorageNodes(state, bucket, upStates));
+            assertArrayEquals(bucket + " in " + clusterState, expected, calculator.getIdealStorageNodes(bucket));
+            assertArrayEquals(bucket + " in " + clusterState, expected, batch.get(i));
+        }
+    }
+
+    /** Returns the config of a three level group tree with the given number of nodes per leaf group */
+    static StorDistributionConfig.Builder threeLevelConfig(int redundancy, int nodesPerLeaf) {
+        StorDistributionConfig.Builder builder = new StorDistributionConfig.Builder().redundancy(redundancy);
+        builder.group(new StorDistributionConfig.Group.Builder().name("invalid").index("invalid").partitions("*|*"));
+        int node = 0;
+        for (int i = 0; i < 2; ++i) {
+            builder.group(new StorDistributionConfig.Group.Builder().name("switch" + i).index("" + i).partitions("1|*")
+                                  .capacity(i == 0 ? 1.0 : 1.5));
+            for (int j = 0; j < 4; ++j) {
+                StorDistributionConfig.Group.Builder rack = new StorDistributionConfig.Group.Builder()
+                        .name("rack" + j).index(i + "." + j);
+                for (int k = 0; k < nodesPerLeaf; ++k) {
+                    rack.nodes(new StorDistributionConfig.Group.Nodes.Builder().index(node++));
+                }
+                builder.group(rack);
+            }
+        }
+        return builder;
+    }
+
+    @Test
+    public void testFlatDistributionGivesSameResultAsDistribution() throws Exception {
+        Distribution distribution = new Distribution(Distribution.getDefaultDistributionConfig(3, 20));
+        assertSameAsDistribution(distribution, "distributor:20 storage:20", "uim");
+        assertSameAsDistribution(distribution, "bits:8 distributor:20 storage:20 .3.s:d .7.s:m .9.c:2.5 .12.c:0.5", "uim");
+        assertSameAsDistribution(distribution, "bits:20 distributor:20 storage:20 .3.s:d .7.s:m .11.s:r", "u");
+        assertSameAsDistribution(distribution, "bits:16 storage:20 .0.d:3 .0.d.1.s:d .5.d:4 .5.d.2.s:d", "uim");
+    }
+
+    @Test
+    public void testFewerAvailableNodesThanRedundancyGivesSameResultAsDistribution() throws Exception {
+        Distribution distribution = new Distribution(Distribution.getDefaultDistributionConfig(3, 4));
+        assertSameAsDistribution(distribution, "storage:4 .1.s:d .2.s:d", "uim");
+    }
+
+    @Test
+    public void testHierarchicalDistributionGivesSameResultAsDistribution() throws Exception {
+        Distribution distribution = new Distribution(new StorDistributionConfig(threeLevelConfig(4, 5)));
+        assertSameAsDistribution(distribution, "distributor:40 storage:40", "uim");
+        assertSameAsDistribution(distribution, "bits:4 storage:40 .2.s:d .3.s:d .4.s:d .17.c:3.0", "uim");
+        assertSameAsDistribution(distribution, "bits:24 storage:40 .2.s:m .30.s:d", "u");
+        assertSameAsDistribution(new Distribution(Distribution.getSimpleGroupConfig(2, 10)), "bits:12 storage:10 .5.s:d", "uim");
+    }
+
+    @Test
+    public void testTooFewUsedBitsFails() throws Exception {
+        Distribution distribution = new Distribution(Distribution.getDefaultDistributionConfig(2, 5));
+        IdealStateCalculator calculator = distribution.createIdealStateCalculator(new ClusterState("storage:5"), "uim");
+        assertEquals(16, calculator.getDistributionBitCount());
+        try {
+            calculator.getIdealStorageNodes(new BucketId(15, 0));
+            fail("Expected exception");
+        } catch (Distribution.TooFewBucketBitsInUseException e) {
+            assertEquals("Cannot get ideal state for bucket BucketId(0x3c00000000000000) using 15 bits when cluster uses 16 distribution bits.",
+                         e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFastRandomGivesSameSequenceAsRandomGen() {
+        IdealStateCalculator.FastRandom fast = new IdealStateCalculator.FastRandom();
+        for (int seed : new int[] { 0, 1, -1, 0x8badf00d, 123456789 }) {
+            RandomGen random = new RandomGen(seed);
+            fast.setSeed(seed);
+            for (int i = 0; i < 100; ++i) {
+                assertEquals(random.nextDouble(), fast.nextDouble(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeHierarchicalDistributionGivesSameResultAsDistribution() throws Exception {
+        Distribution distribution = new Distribution(new StorDistributionConfig(threeLevelConfig(4, 25)));
+        assertSameAsDistribution(distribution, "distributor:200 storage:200 .13.s:d .77.s:m .150.c:2.0", "uim");
+    }
+
+}
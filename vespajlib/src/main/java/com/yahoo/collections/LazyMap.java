@@ -127,6 +127,16 @@ public abstract class LazyMap<K, V> implements Map<K, V> {
             }
         }
 
+        @Override
+        public V get(Object key) {
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return false;
+        }
+
         @Override
         public Set<Entry<K, V>> entrySet() {
             return Collections.emptySet();
@@ -143,6 +153,22 @@ public abstract class LazyMap<K, V> implements Map<K, V> {
             this.value = value;
         }
 
+        // Overridden to avoid allocating the entry set and iterator of AbstractMap lookups
+        @Override
+        public V get(Object key) {
+            return Objects.equals(this.key, key) ? value : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return Objects.equals(this.key, key);
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
         @Override
         public V put(K key, V value) {
             if (containsKey(key)) {